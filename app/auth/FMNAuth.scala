@@ -16,12 +16,13 @@
 
 package auth
 
+import com.codahale.metrics.{MetricRegistry, Timer}
 import connectors.FandFConnector
 import play.api.Logging
 import play.api.mvc.*
 import play.api.mvc.Results.Unauthorized
 import uk.gov.hmrc.auth.core.*
-import uk.gov.hmrc.auth.core.AuthProvider.GovernmentGateway
+import uk.gov.hmrc.auth.core.AuthProvider.{GovernmentGateway, PrivilegedApplication}
 import uk.gov.hmrc.auth.core.retrieve.v2.Retrievals.{credentialRole, credentials, internalId, nino}
 import uk.gov.hmrc.auth.core.retrieve.{Credentials, Retrieval, ~}
 import uk.gov.hmrc.http.HeaderCarrier
@@ -37,16 +38,37 @@ final case class AuthContext[A](
   request: Request[A]
 )
 
-trait FMNAuth(val fandFConnector: FandFConnector) extends AuthorisedFunctions with Logging {
+trait FMNAuth(val fandFConnector: FandFConnector, metricRegistry: MetricRegistry)
+    extends AuthorisedFunctions
+    with Logging {
   protected type FMNAction[A] = AuthContext[A] => Future[Result]
   val AuthPredicate                                                                                            = AuthProviders(GovernmentGateway)
   val FMNRetrievals: Retrieval[Option[String] ~ Option[CredentialRole] ~ Option[String] ~ Option[Credentials]] =
     nino and credentialRole and internalId and credentials
 
+  val PrivilegedPredicate = AuthProviders(PrivilegedApplication)
+
+  private val authoriseTimer     = metricRegistry.timer("fmn-auth.authorise")
+  private val trustedHelperTimer = metricRegistry.timer("fmn-auth.trusted-helper")
+
   def authorisedAsFMNUser(
     body: FMNAction[Any]
   )(implicit ec: ExecutionContext, hc: HeaderCarrier, request: Request[_]): Future[Result] = authorisedUser(body)
 
+  /** For the batch endpoints, which create passes for many NINOs at once and so cannot be checked against the
+    * caller's own NINO. Only privileged applications may call them, and no trusted helper lookup is made.
+    */
+  def authorisedAsPrivilegedApplication(
+    body: => Future[Result]
+  )(implicit ec: ExecutionContext, hc: HeaderCarrier): Future[Result] =
+    timed(authoriseTimer)(authorised(PrivilegedPredicate)(Future.unit))
+      .flatMap(_ => body)
+      .recover { case ex: AuthorisationException =>
+        logger.warn("could not authenticate privileged application.")
+        logger.debug("could not authenticate privileged application.", ex)
+        Unauthorized
+      }
+
   // $COVERAGE-OFF$
   def authorisedAsFMNUser(implicit
     ec: ExecutionContext,
@@ -69,13 +91,21 @@ trait FMNAuth(val fandFConnector: FandFConnector) extends AuthorisedFunctions wi
     }
   // $COVERAGE-ON$
 
+  /** The trusted helper lookup does not depend on the auth retrievals, so it is started alongside the auth call
+    * rather than after it. It never fails, and when the user is not authorised its result is simply not used. A
+    * request without a bearer token cannot be authorised, so no lookup is made for it.
+    */
   private def authorisedUser[A](
     block: FMNAction[A]
-  )(implicit ec: ExecutionContext, hc: HeaderCarrier, request: Request[A]): Future[Result] =
-    authorised(AuthPredicate)
-      .retrieve(FMNRetrievals) {
+  )(implicit ec: ExecutionContext, hc: HeaderCarrier, request: Request[A]): Future[Result] = {
+    val trustedHelper =
+      if (hc.authorization.isDefined) timed(trustedHelperTimer)(fandFConnector.getTrustedHelper())
+      else Future.successful(None)
+
+    timed(authoriseTimer)(authorised(AuthPredicate).retrieve(FMNRetrievals)(Future.successful))
+      .flatMap {
         case Some(nino) ~ Some(User) ~ Some(internalId) ~ Some(credentials) =>
-          fandFConnector.getTrustedHelper().flatMap { helper =>
+          trustedHelper.flatMap { helper =>
             val effectiveNino = helper.fold(nino)(h => h.principalNino.getOrElse(nino))
 
             block(
@@ -102,4 +132,10 @@ trait FMNAuth(val fandFConnector: FandFConnector) extends AuthorisedFunctions wi
           logger.debug("user was not authenticated.", ex)
           Unauthorized
       }
+  }
+
+  private def timed[T](timer: Timer)(future: => Future[T])(implicit ec: ExecutionContext): Future[T] = {
+    val context = timer.time()
+    future.andThen { case _ => context.stop() }
+  }
 }
@@ -34,21 +34,21 @@ class AppConfig @Inject() (config: Configuration, featureFlagService: FeatureFla
 
   lazy val applePassSigningEnabled: Boolean = config.getOptional[Boolean]("applePass.signingEnabled").getOrElse(true)
 
+  lazy val primaryAppleCerts: AppleCerts = AppleCerts(
+    config.get[String]("applePass.appleWWDRCA"),
+    config.get[String]("applePass.privateCertificate"),
+    config.get[String]("applePass.privateCertificatePassword")
+  )
+
+  lazy val secondaryAppleCerts: AppleCerts = AppleCerts(
+    config.get[String]("applePass.appleWWDRCA2"),
+    config.get[String]("applePass.privateCertificate2"),
+    config.get[String]("applePass.privateCertificatePassword2")
+  )
+
   def appleCerts: Future[AppleCerts] =
     featureFlagService.get(ApplePassCertificates2).map { featureFlag =>
-      if (featureFlag.isEnabled) {
-        AppleCerts(
-          config.get[String]("applePass.appleWWDRCA2"),
-          config.get[String]("applePass.privateCertificate2"),
-          config.get[String]("applePass.privateCertificatePassword2")
-        )
-      } else {
-        AppleCerts(
-          config.get[String]("applePass.appleWWDRCA"),
-          config.get[String]("applePass.privateCertificate"),
-          config.get[String]("applePass.privateCertificatePassword")
-        )
-      }
+      if (featureFlag.isEnabled) secondaryAppleCerts else primaryAppleCerts
     }
 
   val googleIssuerId: String        = config.get[String]("googlePass.issuerId")
@@ -59,9 +59,76 @@ class AppConfig @Inject() (config: Configuration, featureFlagService: FeatureFla
   val cacheTtl: Long                = config.get[Int]("mongodb.timeToLiveInSeconds")
   val sessionCacheTTLInSeconds: Int = config.get[Int]("mongodb.session-cache.timeToLiveInSeconds")
 
+  lazy val sessionReadCacheEnabled: Boolean     = config.get[Boolean]("mongodb.session-cache.readCache.enabled")
+  lazy val sessionReadCacheMaxSizeInBytes: Long = config.get[Long]("mongodb.session-cache.readCache.maxSizeInBytes")
+  lazy val sessionReadCacheTtlInSeconds: Long   =
+    config.get[Long]("mongodb.session-cache.readCache.timeToLiveInSeconds")
+
+  lazy val individualDetailsSinglePassProjection: Boolean =
+    config.get[Boolean]("individualDetails.singlePassProjection")
+
+  lazy val individualDetailsCacheProjection: Boolean =
+    config.get[Boolean]("individualDetails.cache.storeProjection")
+  lazy val individualDetailsSoftTtlInSeconds: Long   =
+    config.get[Long]("individualDetails.cache.softTimeToLiveInSeconds")
+  // Cached details cannot outlive the session cache document holding them
+  lazy val individualDetailsHardTtlInSeconds: Long   =
+    math.min(config.get[Long]("individualDetails.cache.hardTimeToLiveInSeconds"), sessionCacheTTLInSeconds.toLong)
+
+  lazy val individualDetailsResilienceEnabled: Boolean         =
+    config.get[Boolean]("individualDetails.resilience.enabled")
+  lazy val individualDetailsAttemptTimeoutInMillis: Long       =
+    config.get[Long]("individualDetails.resilience.attemptTimeoutInMillis")
+  lazy val individualDetailsHedgeEnabled: Boolean              =
+    config.get[Boolean]("individualDetails.resilience.hedge.enabled")
+  lazy val individualDetailsHedgePercentile: Double            =
+    config.get[Double]("individualDetails.resilience.hedge.percentile")
+  lazy val individualDetailsHedgeInitialDelayInMillis: Long    =
+    config.get[Long]("individualDetails.resilience.hedge.initialDelayInMillis")
+  lazy val individualDetailsHedgeMinDelayInMillis: Long        =
+    config.get[Long]("individualDetails.resilience.hedge.minDelayInMillis")
+  lazy val individualDetailsCircuitBreakerMaxFailures: Int     =
+    config.get[Int]("individualDetails.resilience.circuitBreaker.maxFailures")
+  lazy val individualDetailsCircuitBreakerResetInSeconds: Long =
+    config.get[Long]("individualDetails.resilience.circuitBreaker.resetTimeoutInSeconds")
+
+  lazy val googlePassUrlCacheMaxEntries: Long        = config.get[Long]("googlePass.urlCache.maxEntries")
+  lazy val googlePassUrlRefreshMarginInSeconds: Long = config.get[Long]("googlePass.urlCache.refreshMarginInSeconds")
+
+  lazy val qrCodeCacheMaxEntries: Long   = config.get[Long]("qrCode.cache.maxEntries")
+  // Rendered QR codes must not outlive the pass they point at
+  lazy val qrCodeCacheTtlInSeconds: Long = math.min(config.get[Long]("qrCode.cache.timeToLiveInSeconds"), cacheTtl)
+
   val encryptionKey: String      = config.get[String]("mongodb.encryption.key")
   val encryptionEnabled: Boolean = config.get[Boolean]("mongodb.encryption.enabled")
 
+  lazy val compactSensitiveValues: Boolean = config.get[Boolean]("mongodb.encryption.compactValues")
+
+  lazy val passCacheEnabled: Boolean           = config.get[Boolean]("passCache.enabled")
+  lazy val applePassCacheMaxSizeInBytes: Long  = config.get[Long]("passCache.apple.maxSizeInBytes")
+  lazy val googlePassCacheMaxSizeInBytes: Long = config.get[Long]("passCache.google.maxSizeInBytes")
+
+  lazy val passBatchMaxSize: Int = config.get[Int]("passBatch.maxSize")
+
+  // Each chunk is queued on the pass build pool, so it must leave most of the queue free for other creates. Checked
+  // eagerly so a bad value stops the application starting
+  val passBatchChunkSize: Int = {
+    val chunkSize = config.get[Int]("passBatch.chunkSize")
+    if (chunkSize <= 0 || chunkSize > passBuildQueueDepth / 2) {
+      throw config.reportError(
+        "passBatch.chunkSize",
+        s"passBatch.chunkSize must be between 1 and half of passBuild.queueDepth ($passBuildQueueDepth)"
+      )
+    }
+    chunkSize
+  }
+
+  // Not set in application.conf, as the default depends on the host
+  lazy val passBuildParallelism: Int          =
+    config.getOptional[Int]("passBuild.parallelism").getOrElse(Runtime.getRuntime.availableProcessors())
+  lazy val passBuildQueueDepth: Int           = config.get[Int]("passBuild.queueDepth")
+  lazy val passBuildRetryAfterInSeconds: Long = config.get[Long]("passBuild.retryAfterInSeconds")
+
   lazy val individualDetailsToken: String        = config.get[String]("external-url.individual-details.auth-token")
   lazy val individualDetailsEnvironment: String  = config.get[String]("external-url.individual-details.environment")
   lazy val individualDetailsOriginatorId: String = config.get[String]("external-url.individual-details.originator-id")
@@ -87,6 +154,9 @@ class AppConfig @Inject() (config: Configuration, featureFlagService: FeatureFla
   lazy val fandfPort: String     = config.get[String]("microservice.services.fandf.port")
   val fandfServiceUrl: String    =
     s"$fandfProtocol://$fandfHost:$fandfPort"
+
+  lazy val trustedHelperCacheMaxEntries: Long   = config.get[Long]("trustedHelperCache.maxEntries")
+  lazy val trustedHelperCacheTtlInSeconds: Long = config.get[Long]("trustedHelperCache.timeToLiveInSeconds")
 }
 
 object AppConfig {
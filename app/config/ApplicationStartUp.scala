@@ -18,6 +18,8 @@ package config
 
 import models.admin._
 import play.api.Logging
+import services.ApplePassSigningMaterialRegistry
+import services.googlepass.GooglePassSigningMaterialRegistry
 import uk.gov.hmrc.mongoFeatureToggles.model.FeatureFlagNamesLibrary
 import util.CertificatesCheck
 
@@ -28,10 +30,17 @@ import javax.inject.{Inject, Singleton}
 import scala.concurrent.ExecutionContext
 
 @Singleton
-class ApplicationStartUp @Inject() (certificatesCheck: CertificatesCheck)(implicit ec: ExecutionContext)
+class ApplicationStartUp @Inject() (
+  certificatesCheck: CertificatesCheck,
+  signingMaterialRegistry: ApplePassSigningMaterialRegistry,
+  googleSigningMaterialRegistry: GooglePassSigningMaterialRegistry
+)(implicit ec: ExecutionContext)
     extends Logging {
   FeatureFlagNamesLibrary.addFlags(AllFeatureFlags.list)
 
+  signingMaterialRegistry.warmUp()
+  googleSigningMaterialRegistry.warmUp()
+
   certificatesCheck.getPrivateCertificateDetails.map { certs =>
     if (certs._1.before(Date.from(Instant.now().plus(60, DAYS)))) {
       logger.error(
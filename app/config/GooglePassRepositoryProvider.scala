@@ -0,0 +1,54 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config
+
+import com.codahale.metrics.MetricRegistry
+import models.google.GooglePass
+import repositories.cache.PassReadCache
+import repositories.*
+
+import java.time.Duration
+import javax.inject.{Inject, Provider, Singleton}
+
+@Singleton
+class GooglePassRepositoryProvider @Inject() (
+  appConfig: AppConfig,
+  metricRegistry: MetricRegistry,
+  encryptedRepository: Provider[EncryptedGooglePassRepository],
+  plainRepository: Provider[GooglePassRepository]
+) extends Provider[GooglePassRepoTrait] {
+
+  private lazy val repository: GooglePassRepoTrait = {
+    val underlying = if (appConfig.encryptionEnabled) encryptedRepository.get() else plainRepository.get()
+
+    if (appConfig.passCacheEnabled) {
+      val passCache = new PassReadCache[GooglePass](
+        "google-pass",
+        appConfig.googlePassCacheMaxSizeInBytes,
+        Duration.ofSeconds(appConfig.cacheTtl),
+        CachingGooglePassRepository.sizeOf,
+        _.lastUpdated,
+        metricRegistry
+      )
+      new CachingGooglePassRepository(underlying, passCache)
+    } else {
+      underlying
+    }
+  }
+
+  override def get(): GooglePassRepoTrait = repository
+}
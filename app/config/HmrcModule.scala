@@ -19,31 +19,23 @@ package config
 import play.api.inject.{Binding, Module}
 import play.api.{Configuration, Environment}
 import repositories.*
+import services.PassAssetBundle
 import uk.gov.hmrc.auth.core.AuthConnector
 import uk.gov.hmrc.crypto.{Decrypter, Encrypter}
 import uk.gov.hmrc.play.bootstrap.auth.DefaultAuthConnector
 
-class HmrcModule extends Module {
+import javax.inject.Singleton
 
-  override def bindings(environment: Environment, configuration: Configuration): Seq[Binding[_]] = {
-    val encryptionEnabled = configuration.get[Boolean]("mongodb.encryption.enabled")
+class HmrcModule extends Module {
 
+  override def bindings(environment: Environment, configuration: Configuration): Seq[Binding[_]] =
     Seq(
       bind[ApplicationStartUp].toSelf.eagerly(),
+      bind[PassAssetBundle].toSelf.eagerly(),
       bind[AuthConnector].to(classOf[DefaultAuthConnector]),
-      bind[Encrypter with Decrypter].toProvider[CryptoProvider]
-    ) ++ {
-      if (encryptionEnabled) {
-        Seq(
-          bind[ApplePassRepoTrait].to(classOf[EncryptedApplePassRepository]),
-          bind[GooglePassRepoTrait].to(classOf[EncryptedGooglePassRepository])
-        )
-      } else {
-        Seq(
-          bind[ApplePassRepoTrait].to(classOf[ApplePassRepository]),
-          bind[GooglePassRepoTrait].to(classOf[GooglePassRepository])
-        )
-      }
-    }
-  }
+      bind[Encrypter with Decrypter].toProvider[CryptoProvider],
+      // Picks the plain or encrypted repository from mongodb.encryption.enabled and wraps it in the pass cache
+      bind[ApplePassRepoTrait].toProvider[ApplePassRepositoryProvider].in[Singleton],
+      bind[GooglePassRepoTrait].toProvider[GooglePassRepositoryProvider].in[Singleton]
+    )
 }
@@ -16,26 +16,64 @@
 
 package connectors
 
-import com.google.inject.Inject
+import com.google.common.cache.{Cache, CacheBuilder}
+import com.google.inject.{Inject, Singleton}
 import config.AppConfig
 import models.TrustedHelper
 import play.api.Logging
 import play.api.http.Status.{NOT_FOUND, OK}
 import uk.gov.hmrc.http.HttpReads.Implicits.*
 import uk.gov.hmrc.http.client.HttpClientV2
-import uk.gov.hmrc.http.{HeaderCarrier, HttpResponse, StringContextOps, UpstreamErrorResponse}
+import uk.gov.hmrc.http.{Authorization, HeaderCarrier, HttpResponse, SessionId, StringContextOps, UpstreamErrorResponse}
 
+import java.time.Duration
 import scala.concurrent.{ExecutionContext, Future}
 import scala.util.control.NonFatal
 import scala.util.{Failure, Success, Try}
 
+/** One frontend journey makes several authorised calls with the same session, and each of them asks fandf for the
+  * trusted helper. Lookups are therefore cached per session for `trustedHelperCacheTtlInSeconds`, and concurrent
+  * lookups for a session share the call already in flight. Both a helper and a 404 are cached; a failed lookup is
+  * not, so the next request asks fandf again.
+  */
+@Singleton
 class FandFConnector @Inject() (
   val httpClient: HttpClientV2,
   appConfig: AppConfig
 )(implicit val ec: ExecutionContext)
     extends Logging {
 
+  import FandFConnector.*
+
+  private val trustedHelpers: Cache[CacheKey, Future[Option[TrustedHelper]]] =
+    CacheBuilder
+      .newBuilder()
+      .maximumSize(
+        if (appConfig.trustedHelperCacheTtlInSeconds > 0) appConfig.trustedHelperCacheMaxEntries else 0L
+      )
+      .expireAfterWrite(Duration.ofSeconds(math.max(appConfig.trustedHelperCacheTtlInSeconds, 1L)))
+      .build[CacheKey, Future[Option[TrustedHelper]]]()
+
   def getTrustedHelper()(implicit hc: HeaderCarrier): Future[Option[TrustedHelper]] =
+    cacheKey(hc)
+      .fold(fetchTrustedHelper())(cachedTrustedHelper)
+      .recover { case NonFatal(ex) =>
+        logger.error(s"Exception: ${ex.getMessage}", ex)
+        None
+      }
+
+  /** Drops the cached lookup for the caller's session, so the next request asks fandf again. */
+  def invalidateTrustedHelper()(implicit hc: HeaderCarrier): Unit =
+    cacheKey(hc).foreach(trustedHelpers.invalidate)
+
+  // Guava loads each key once, so callers arriving while a lookup is in flight are handed the same future
+  private def cachedTrustedHelper(key: CacheKey)(implicit hc: HeaderCarrier): Future[Option[TrustedHelper]] = {
+    val lookup = trustedHelpers.get(key, () => fetchTrustedHelper())
+    lookup.failed.foreach(_ => trustedHelpers.asMap().remove(key, lookup))
+    lookup
+  }
+
+  private def fetchTrustedHelper()(implicit hc: HeaderCarrier): Future[Option[TrustedHelper]] =
     httpClient
       .get(url"${appConfig.fandfServiceUrl}/delegation/get")
       .execute[HttpResponse]
@@ -45,18 +83,18 @@ class FandFConnector @Inject() (
           case OK        =>
             Try(httpResponse.json.as[TrustedHelper](TrustedHelper.reads)) match {
               case Success(trustedHelper) => Some(trustedHelper)
-              case Failure(ex)            =>
-                logger.error(s"Failed to parse TrustedHelper", ex)
-                None
+              case Failure(ex)            => throw new IllegalStateException("Failed to parse TrustedHelper", ex)
             }
-          case status    =>
-            val ex = UpstreamErrorResponse("Invalid response status", status)
-            logger.error(ex.message, ex)
-            None
+          case status    => throw UpstreamErrorResponse("Invalid response status", status)
         }
       }
-      .recover { case NonFatal(ex) =>
-        logger.error(s"Exception: ${ex.getMessage}", ex)
-        None
-      }
+}
+
+object FandFConnector {
+
+  private type CacheKey = (Authorization, Option[SessionId])
+
+  // Without an Authorization header fandf cannot resolve a helper, so such calls are not worth caching
+  private def cacheKey(hc: HeaderCarrier): Option[CacheKey] =
+    hc.authorization.map(_ -> hc.sessionId)
 }
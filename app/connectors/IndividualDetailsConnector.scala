@@ -17,13 +17,18 @@
 package connectors
 
 import cats.data.EitherT
+import com.codahale.metrics.MetricRegistry
+import com.google.common.cache.{Cache, CacheBuilder}
 import com.google.inject.{ImplementedBy, Inject, Singleton}
 import config.AppConfig
 import models.CorrelationId
 import play.api.Logging
-import play.api.libs.json.{Format, JsValue}
+import play.api.libs.functional.syntax.toFunctionalBuilderOps
+import play.api.http.Status.INTERNAL_SERVER_ERROR
+import play.api.libs.json.{Format, JsError, JsObject, JsResultException, JsSuccess, JsValue, __}
 import repositories.cache.FMNSessionCacheRepository
 import services.SensitiveFormatService
+import transformations.IndividualDetails
 import uk.gov.hmrc.auth.core.retrieve.Credentials
 import uk.gov.hmrc.domain.Nino
 import uk.gov.hmrc.http.HttpReads.Implicits.*
@@ -31,8 +36,14 @@ import uk.gov.hmrc.http.client.HttpClientV2
 import uk.gov.hmrc.http.{HeaderCarrier, HttpResponse, StringContextOps, UpstreamErrorResponse}
 import uk.gov.hmrc.mongo.cache.DataKey
 
-import scala.concurrent.{ExecutionContext, Future}
+import java.lang.Long as JavaLong
+import java.time.{Duration, Instant}
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import scala.concurrent.{ExecutionContext, Future, Promise}
+import scala.util.{Failure, Success}
 
+/** Individual details as projected by [[transformations.IndividualDetails.reads]]. */
 @ImplementedBy(classOf[CachingIndividualDetailsConnector])
 trait IndividualDetailsConnector {
   def getIndividualDetails(nino: String, credentials: Credentials, resolveMerge: String)(implicit
@@ -44,10 +55,13 @@ trait IndividualDetailsConnector {
   ): EitherT[Future, UpstreamErrorResponse, Unit]
 }
 
+/** The raw individual details payload from DES, called through [[IndividualDetailsResilience]]. */
 @Singleton
-class DefaultIndividualDetailsConnector @Inject() (val httpClientV2: HttpClientV2, appConfig: AppConfig)
-    extends IndividualDetailsConnector
-    with Logging {
+class DefaultIndividualDetailsConnector @Inject() (
+  val httpClientV2: HttpClientV2,
+  appConfig: AppConfig,
+  resilience: IndividualDetailsResilience
+) extends Logging {
 
   private val extraDesHeaders: Seq[(String, String)] = Seq(
     "Authorization" -> s"Bearer ${appConfig.individualDetailsToken}",
@@ -57,7 +71,7 @@ class DefaultIndividualDetailsConnector @Inject() (val httpClientV2: HttpClientV
     "OriginatorId"  -> appConfig.individualDetailsOriginatorId
   )
 
-  override def getIndividualDetails(nino: String, credentials: Credentials, resolveMerge: String)(implicit
+  def getIndividualDetails(nino: String, credentials: Credentials, resolveMerge: String)(implicit
     ec: ExecutionContext,
     headerCarrier: HeaderCarrier
   ): EitherT[Future, UpstreamErrorResponse, JsValue] = {
@@ -66,61 +80,262 @@ class DefaultIndividualDetailsConnector @Inject() (val httpClientV2: HttpClientV
     val url                        =
       s"${appConfig.individualDetailsServiceUrl}/individuals/details/NINO/${nino.take(8)}?resolveMerge=$resolveMerge"
 
-    val apiResponse: Future[Either[UpstreamErrorResponse, HttpResponse]] = httpClientV2
-      .get(url"$url")
-      .execute[Either[UpstreamErrorResponse, HttpResponse]](readEitherOf(readRaw))
+    val apiResponse: Future[Either[UpstreamErrorResponse, HttpResponse]] = resilience.call { () =>
+      httpClientV2
+        .get(url"$url")
+        .execute[Either[UpstreamErrorResponse, HttpResponse]](readEitherOf(readRaw))
+    }
     EitherT(apiResponse).map(_.json)
   }
-
-  override def deleteIndividualDetailsIfCached(nino: String, credentials: Credentials)(implicit
-    ec: ExecutionContext
-  ): EitherT[Future, UpstreamErrorResponse, Unit] = EitherT(Future.successful(Right((): Unit)))
 }
 
+/** Details are cached in the session cache with the time they were fetched. Up to the soft time to live they are
+  * served as they are. Up to the hard time to live they are still served at once, and one refresh from DES is started
+  * in the background; if it fails the cached details keep being served until they reach the hard age. Older details,
+  * or none, are fetched before replying.
+  *
+  * The projection is cached rather than the DES payload unless `individualDetailsCacheProjection` is off. Raw payloads,
+  * cached with it off, are projected again on every read.
+  *
+  * Cached details are kept under a versioned key. The key used by earlier releases, which held the bare DES payload,
+  * is only ever read, so instances still on those releases never find a value they cannot parse.
+  */
 @Singleton
 class CachingIndividualDetailsConnector @Inject() (
   underlying: DefaultIndividualDetailsConnector,
   sessionCacheRepository: FMNSessionCacheRepository,
-  sensitiveFormatService: SensitiveFormatService
+  sensitiveFormatService: SensitiveFormatService,
+  metricRegistry: MetricRegistry,
+  appConfig: AppConfig
 )(implicit ec: ExecutionContext)
     extends IndividualDetailsConnector
     with Logging {
 
-  private def cache[L, A: Format](
-    key: String,
-    nino: Nino
-  )(f: => EitherT[Future, L, A]): EitherT[Future, L, A] = {
-    def fetchAndCache: EitherT[Future, L, A] = for {
-      result <- f
-      _      <- EitherT.liftF(sessionCacheRepository.putSession[A](DataKey[A](key), result, nino))
-    } yield result
-
-    EitherT {
-      sessionCacheRepository.getFromSession[A](DataKey[A](key), nino).flatMap {
-        case Some(value) => Future.successful(Right(value))
-        case None        => fetchAndCache.value
+  import CachingIndividualDetailsConnector.*
+
+  private val lookups         = metricRegistry.counter("individual-details.lookups")
+  private val coalesced       = metricRegistry.counter("individual-details.coalesced")
+  private val staleServed     = metricRegistry.counter("individual-details.stale-served")
+  private val refreshes       = metricRegistry.counter("individual-details.refreshes")
+  private val refreshFailures = metricRegistry.counter("individual-details.refresh-failures")
+
+  private val projectionReads =
+    if (appConfig.individualDetailsSinglePassProjection) IndividualDetails.singlePassReads else IndividualDetails.reads
+
+  private val softTtl = Duration.ofSeconds(appConfig.individualDetailsSoftTtlInSeconds)
+  private val hardTtl = Duration.ofSeconds(appConfig.individualDetailsHardTtlInSeconds)
+
+  private val inFlight   = new ConcurrentHashMap[String, Future[Either[UpstreamErrorResponse, JsValue]]]()
+  private val refreshing = new ConcurrentHashMap[String, Future[Unit]]()
+
+  // A delete leaves a tombstone holding the lookup sequence at the time, so that fetches which started before it do
+  // not write the deleted details back. Fetches are bounded by DES timeouts, far shorter than a tombstone lasts.
+  private val lookupSequence                     = new AtomicLong()
+  private val deletedAt: Cache[String, JavaLong] =
+    CacheBuilder
+      .newBuilder()
+      .expireAfterWrite(TombstoneTtl)
+      .build[String, JavaLong]()
+
+  private def cache(key: String, nino: Nino)(
+    fetch: => EitherT[Future, UpstreamErrorResponse, JsValue]
+  )(implicit
+    format: Format[CachedIndividualDetails],
+    detailsFormat: Format[JsValue]
+  ): Future[Either[UpstreamErrorResponse, JsValue]] =
+    cachedEntry(key, nino).flatMap { entry =>
+      entry.flatMap(cached => projectionOf(cached).map(cached -> _)) match {
+        case Some((cached, projection)) if !cached.isOlderThan(softTtl) =>
+          Future.successful(projection)
+
+        case Some((cached, projection)) if !cached.isOlderThan(hardTtl) =>
+          staleServed.inc()
+          refreshInBackground(key, nino)(fetch)
+          Future.successful(projection)
+
+        case _ =>
+          fetchAndCache(key, nino)(fetch).value
+      }
+    }
+
+  // A payload cached by an earlier release has no fetch time. It is served as stale, which refreshes it into the
+  // current key, rather than every NINO cached before a deploy waiting on DES at once.
+  private def cachedEntry(key: String, nino: Nino)(implicit
+    format: Format[CachedIndividualDetails],
+    detailsFormat: Format[JsValue]
+  ): Future[Option[CachedIndividualDetails]] =
+    sessionCacheRepository.getFromSession[CachedIndividualDetails](DataKey(key), nino).flatMap {
+      case None  =>
+        sessionCacheRepository
+          .getFromSession[JsValue](DataKey(legacyCachingKey(nino)), nino)
+          .map(_.map(CachedIndividualDetails(_, Instant.now().minus(softTtl).minusSeconds(1), None)))
+      case entry => Future.successful(entry)
+    }
+
+  private def fetchAndCache(key: String, nino: Nino)(
+    fetch: => EitherT[Future, UpstreamErrorResponse, JsValue]
+  )(implicit format: Format[CachedIndividualDetails]): EitherT[Future, UpstreamErrorResponse, JsObject] = {
+    val startedAt = lookupSequence.incrementAndGet()
+
+    for {
+      details    <- fetch
+      projection <- EitherT.fromEither[Future](project(details))
+      _          <- EitherT.liftF(putUnlessDeleted(key, startedAt, toCache(details, projection), nino))
+    } yield projection
+  }
+
+  private def putUnlessDeleted(key: String, startedAt: Long, cached: CachedIndividualDetails, nino: Nino)(implicit
+    format: Format[CachedIndividualDetails]
+  ): Future[Unit] =
+    if (Option(deletedAt.getIfPresent(key)).exists(_.longValue >= startedAt)) {
+      Future.unit
+    } else {
+      sessionCacheRepository.putSession(DataKey(key), cached, nino).map(_ => ())
+    }
+
+  private def toCache(details: JsValue, projection: JsObject): CachedIndividualDetails =
+    if (appConfig.individualDetailsCacheProjection) {
+      CachedIndividualDetails(projection, Instant.now(), Some(ProjectionSchemaVersion))
+    } else {
+      CachedIndividualDetails(details, Instant.now(), None)
+    }
+
+  // A projection from another schema version cannot be projected again, so it is treated as not cached
+  private def projectionOf(cached: CachedIndividualDetails): Option[Either[UpstreamErrorResponse, JsObject]] =
+    cached.schemaVersion match {
+      case Some(ProjectionSchemaVersion) => cached.details.asOpt[JsObject].map(Right(_))
+      case Some(_)                       => None
+      case None                          => Some(project(cached.details))
+    }
+
+  private def project(details: JsValue): Either[UpstreamErrorResponse, JsObject] =
+    details.transform(projectionReads) match {
+      case JsSuccess(projection, _) => Right(projection)
+      case JsError(errors)          =>
+        val ex = JsResultException(errors)
+        logger.error("Json transformation failure", ex)
+        Left(UpstreamErrorResponse(ex.getMessage, INTERNAL_SERVER_ERROR))
+    }
+
+  // At most one refresh per key runs at a time; other callers served the same stale details do not start another
+  private def refreshInBackground(key: String, nino: Nino)(
+    fetch: => EitherT[Future, UpstreamErrorResponse, JsValue]
+  )(implicit format: Format[CachedIndividualDetails]): Unit = {
+    val done = Promise[Unit]()
+
+    if (refreshing.putIfAbsent(key, done.future) == null) {
+      refreshes.inc()
+      Future.unit
+        .flatMap(_ => fetchAndCache(key, nino)(fetch).value)
+        .onComplete { result =>
+          refreshing.remove(key, done.future)
+          done.success(())
+          result match {
+            case Success(Right(_))    => ()
+            case Success(Left(error)) =>
+              refreshFailures.inc()
+              logger.warn(s"Background refresh of individual details failed with status ${error.statusCode}")
+            case Failure(ex)          =>
+              refreshFailures.inc()
+              logger.warn("Background refresh of individual details failed", ex)
+          }
+        }
+    }
+  }
+
+  /** Callers arriving while a lookup for the same key is still running wait for that lookup instead of starting
+    * their own, so a cold NINO costs one cache read, one upstream call and one cache write on each node.
+    */
+  private def singleFlight(key: String)(
+    lookup: => Future[Either[UpstreamErrorResponse, JsValue]]
+  ): Future[Either[UpstreamErrorResponse, JsValue]] = {
+    val leader  = Promise[Either[UpstreamErrorResponse, JsValue]]()
+    val running = inFlight.putIfAbsent(key, leader.future)
+
+    if (running != null) {
+      coalesced.inc()
+      running
+    } else {
+      lookups.inc()
+      // The entry is dropped before callers see the result, so a caller that has it can start a fresh lookup
+      Future.unit.flatMap(_ => lookup).onComplete { result =>
+        inFlight.remove(key, leader.future)
+        leader.complete(result)
       }
+      leader.future
     }
   }
 
-  private def cachingKey(nino: Nino): String = s"individual-details-nino-${nino.nino}"
+  private def cachingKey(nino: Nino): String = s"individual-details-v2-nino-${nino.nino}"
+
+  // Written by releases that cached the bare DES payload; read as a fallback and deleted, never written
+  private def legacyCachingKey(nino: Nino): String = s"individual-details-nino-${nino.nino}"
 
   override def getIndividualDetails(nino: String, credentials: Credentials, resolveMerge: String)(implicit
     ec: ExecutionContext,
     headerCarrier: HeaderCarrier
   ): EitherT[Future, UpstreamErrorResponse, JsValue] = {
-    val ninoObject = Nino(nino)
+    val ninoObject    = Nino(nino)
+    val key           = cachingKey(ninoObject)
+    val detailsFormat = sensitiveFormatService.sensitiveFormatFromReadsWrites[JsValue]
 
-    cache(cachingKey(ninoObject), ninoObject) {
-      underlying.getIndividualDetails(nino, credentials, resolveMerge)
-    }(sensitiveFormatService.sensitiveFormatFromReadsWrites[JsValue])
+    EitherT(singleFlight(key) {
+      cache(key, ninoObject) {
+        underlying.getIndividualDetails(nino, credentials, resolveMerge)
+      }(CachedIndividualDetails.format(detailsFormat), detailsFormat)
+    })
   }
 
   override def deleteIndividualDetailsIfCached(nino: String, credentials: Credentials)(implicit
     ec: ExecutionContext
   ): EitherT[Future, UpstreamErrorResponse, Unit] = {
     val ninoObject = Nino(nino)
-    EitherT.liftF(sessionCacheRepository.deleteFromSession(DataKey[JsValue](cachingKey(ninoObject)), ninoObject))
+    val key        = cachingKey(ninoObject)
+    deletedAt.put(key, lookupSequence.incrementAndGet())
+
+    // Later callers must not pick up a lookup that started before the delete, and the entry is only deleted once
+    // lookups and refreshes already running have finished, so none of their writes can land after it
+    val running: Seq[Future[Unit]] =
+      Option(inFlight.remove(key)).map(_.transform(_ => Success(()))).toSeq ++ Option(refreshing.get(key)).toSeq
+
+    EitherT.liftF(
+      Future
+        .sequence(running)
+        .flatMap(_ => sessionCacheRepository.deleteFromSession(DataKey[CachedIndividualDetails](key), ninoObject))
+        .flatMap(_ =>
+          sessionCacheRepository.deleteFromSession(DataKey[JsValue](legacyCachingKey(ninoObject)), ninoObject)
+        )
+    )
+  }
+
+}
+
+object CachingIndividualDetailsConnector {
+
+  // Bump whenever IndividualDetails.reads changes the shape of the projection
+  val ProjectionSchemaVersion = 1
+
+  private val TombstoneTtl = Duration.ofMinutes(5)
+
+  /** `details` is the projection when `schemaVersion` is set, and the DES payload when it is not. */
+  final case class CachedIndividualDetails(details: JsValue, fetchedAt: Instant, schemaVersion: Option[Int]) {
+    def isOlderThan(age: Duration): Boolean = fetchedAt.plus(age).isBefore(Instant.now())
   }
 
+  object CachedIndividualDetails {
+
+    def format(detailsFormat: Format[JsValue]): Format[CachedIndividualDetails] =
+      Format(
+        (
+          (__ \ "details").read(detailsFormat) and
+            (__ \ "fetchedAt").read[Instant] and
+            (__ \ "schemaVersion").readNullable[Int]
+        )(CachedIndividualDetails.apply),
+        (
+          (__ \ "details").write(detailsFormat) and
+            (__ \ "fetchedAt").write[Instant] and
+            (__ \ "schemaVersion").writeNullable[Int]
+        )((cached: CachedIndividualDetails) => (cached.details, cached.fetchedAt, cached.schemaVersion))
+      )
+  }
 }
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package connectors
+
+import com.codahale.metrics.MetricRegistry
+import com.google.inject.{Inject, Singleton}
+import config.AppConfig
+import org.apache.pekko.actor.ActorSystem
+import org.apache.pekko.pattern.{CircuitBreaker, CircuitBreakerOpenException}
+import play.api.Logging
+import play.api.http.Status.{GATEWAY_TIMEOUT, SERVICE_UNAVAILABLE}
+import uk.gov.hmrc.http.{HttpResponse, UpstreamErrorResponse}
+
+import java.util.concurrent.atomic.{AtomicBoolean, AtomicInteger}
+import java.util.concurrent.{TimeUnit, TimeoutException}
+import scala.concurrent.duration.*
+import scala.concurrent.{ExecutionContext, Future, Promise}
+import scala.util.{Failure, Success, Try}
+
+/** Latency controls for calls to DES individual details, applied when `individualDetailsResilienceEnabled` is on.
+  *
+  * Every attempt goes through a circuit breaker and fails after `individualDetailsAttemptTimeoutInMillis`. Failed,
+  * timed out and 5xx attempts count towards opening the breaker. While it is open calls are answered with a 503 at
+  * once; after the reset timeout a single probe call decides whether it closes again. An attempt that has not answered
+  * within the configured percentile of recent DES latencies is hedged with a second one, and the first successful
+  * answer is used.
+  */
+@Singleton
+class IndividualDetailsResilience @Inject() (
+  appConfig: AppConfig,
+  actorSystem: ActorSystem,
+  metricRegistry: MetricRegistry
+) extends Logging {
+  import IndividualDetailsResilience.*
+
+  private val latency       = metricRegistry.timer("individual-details.des.latency")
+  private val hedgesFired   = metricRegistry.counter("individual-details.hedges.fired")
+  private val hedgesWon     = metricRegistry.counter("individual-details.hedges.won")
+  private val hedgesWasted  = metricRegistry.counter("individual-details.hedges.wasted")
+  private val breakerOpened = metricRegistry.counter("individual-details.circuit-breaker.opened")
+
+  private lazy val breaker: CircuitBreaker =
+    CircuitBreaker(
+      actorSystem.scheduler,
+      maxFailures = appConfig.individualDetailsCircuitBreakerMaxFailures,
+      callTimeout = appConfig.individualDetailsAttemptTimeoutInMillis.millis,
+      resetTimeout = appConfig.individualDetailsCircuitBreakerResetInSeconds.seconds
+    ).onOpen {
+      breakerOpened.inc()
+      logger.warn("Circuit breaker for DES individual details opened")
+    }.onClose(logger.info("Circuit breaker for DES individual details closed"))
+
+  def call(attempt: () => Future[Response])(implicit ec: ExecutionContext): Future[Response] =
+    if (appConfig.individualDetailsResilienceEnabled) {
+      val response = if (appConfig.individualDetailsHedgeEnabled) hedged(attempt) else guarded(attempt)
+
+      response.recover {
+        case _: CircuitBreakerOpenException =>
+          Left(UpstreamErrorResponse("DES individual details circuit breaker is open", SERVICE_UNAVAILABLE))
+        case _: TimeoutException            =>
+          Left(UpstreamErrorResponse("DES individual details timed out", GATEWAY_TIMEOUT))
+      }
+    } else {
+      attempt()
+    }
+
+  private def guarded(attempt: () => Future[Response])(implicit ec: ExecutionContext): Future[Response] = {
+    val start = System.nanoTime()
+
+    breaker.withCircuitBreaker(attempt(), isFailure).andThen {
+      case outcome if !isFailure(outcome) => latency.update(System.nanoTime() - start, TimeUnit.NANOSECONDS)
+    }
+  }
+
+  // Recent latencies decide the delay once there are enough of them
+  private def hedgeDelay: FiniteDuration = {
+    val minDelay = appConfig.individualDetailsHedgeMinDelayInMillis.millis
+
+    if (latency.getCount < MinLatencySamples) {
+      appConfig.individualDetailsHedgeInitialDelayInMillis.millis
+    } else {
+      minDelay.max(latency.getSnapshot.getValue(appConfig.individualDetailsHedgePercentile).toLong.nanos)
+    }
+  }
+
+  /** Up to two attempts race. A successful answer settles the call at once, but a failure only settles it when the
+    * other attempt cannot still answer, so a hedge that fails fast does not hide a primary that is about to succeed.
+    */
+  private def hedged(attempt: () => Future[Response])(implicit ec: ExecutionContext): Future[Response] = {
+    val settled = Promise[(Response, Boolean)]()
+    val pending = new AtomicInteger(1)
+    val hedging = new AtomicBoolean(false)
+
+    def settle(outcome: Try[Response], fromHedge: Boolean): Unit =
+      if (!isFailure(outcome) || pending.decrementAndGet() == 0) {
+        settled.tryComplete(outcome.map(_ -> fromHedge))
+        ()
+      }
+
+    guarded(attempt).onComplete(settle(_, fromHedge = false))
+
+    // A half-open breaker lets only its probe through, so there is nothing to hedge with
+    val hedge = actorSystem.scheduler.scheduleOnce(hedgeDelay) {
+      if (!settled.isCompleted && breaker.isClosed) {
+        pending.incrementAndGet()
+        hedging.set(true)
+        hedgesFired.inc()
+        guarded(attempt).onComplete(settle(_, fromHedge = true))
+      }
+    }
+
+    settled.future.onComplete { outcome =>
+      hedge.cancel()
+      outcome match {
+        case Success((_, true)) => hedgesWon.inc()
+        case _ if hedging.get() => hedgesWasted.inc()
+        case _                  => ()
+      }
+    }
+    settled.future.map { case (response, _) => response }
+  }
+}
+
+object IndividualDetailsResilience {
+
+  type Response = Either[UpstreamErrorResponse, HttpResponse]
+
+  private val MinLatencySamples = 20
+
+  // 4xx answers are DES working as intended and do not count towards opening the breaker
+  private val isFailure: Try[Response] => Boolean = {
+    case Success(Left(error)) => error.statusCode >= 500
+    case Success(Right(_))    => false
+    case Failure(_)           => true
+  }
+}
@@ -16,12 +16,16 @@
 
 package controllers
 
+import com.codahale.metrics.MetricRegistry
+import config.AppConfig
 import connectors.FandFConnector
+import models.PassBatchResult
 import models.apple.ApplePassDetails
 import play.api.libs.json.{JsError, Json, OFormat, Writes}
 import play.api.mvc.{Action, AnyContent, MessagesControllerComponents}
 import play.api.{Configuration, Environment, Logging}
-import services.ApplePassService
+import services.qrcode.{QrCodeRenderer, QrCodeVariant}
+import services.{ApplePassService, PassQrCodeService}
 import uk.gov.hmrc.auth.core.AuthConnector
 
 import java.util.Base64
@@ -32,13 +36,15 @@ import scala.concurrent.{ExecutionContext, Future}
 class ApplePassController @Inject() (
   authConnector: AuthConnector,
   fandFConnector: FandFConnector,
+  metricRegistry: MetricRegistry,
   passService: ApplePassService
 )(implicit
   config: Configuration,
   env: Environment,
   cc: MessagesControllerComponents,
+  appConfig: AppConfig,
   ec: ExecutionContext
-) extends FMNBaseController(authConnector, fandFConnector)
+) extends FMNBaseController(authConnector, fandFConnector, metricRegistry)
     with Logging {
 
   implicit val passRequestFormatter: OFormat[ApplePassDetails] = Json.format[ApplePassDetails]
@@ -65,6 +71,31 @@ class ApplePassController @Inject() (
                       ),
                     result => Ok(result)
                   )
+                  .recover(passBuildRejected)
+            )
+
+        case None =>
+          Future.successful(BadRequest("Expected JSON body"))
+      }
+    }
+  }
+
+  def createPasses: Action[AnyContent] = Action.async { implicit request =>
+    authorisedAsPrivilegedApplication {
+      request.body.asJson match {
+        case Some(json) =>
+          json
+            .validate[Seq[ApplePassDetails]]
+            .fold(
+              errs => Future.successful(BadRequest(JsError.toJson(errs))),
+              passRequests =>
+                if (passRequests.size > appConfig.passBatchMaxSize) {
+                  Future.successful(BadRequest(s"Expected at most ${appConfig.passBatchMaxSize} passes"))
+                } else {
+                  passService
+                    .createPasses(passRequests)
+                    .map(results => Ok(Json.toJson(results.map(PassBatchResult.fromResult))))
+                }
             )
 
         case None =>
@@ -83,13 +114,55 @@ class ApplePassController @Inject() (
     }
   }
 
-  def getQrCodeByPassId(passId: String): Action[AnyContent] = Action.async { implicit request =>
+  def getPassCardFileByPassId(passId: String): Action[AnyContent] = Action.async { implicit request =>
     authorisedAsFMNUser { authContext =>
-      logger.debug(message = s"[Get QR Code] $passId")
-      passService.getQrCodeByPassIdAndNINO(passId, authContext.nino).map {
-        case Some(data) => Ok(Base64.getEncoder.encodeToString(data))
-        case _          => NotFound
-      }
+      logger.debug(message = s"[Get Pass Card File] $passId")
+      PassContentResults.cachedContent(
+        PassContentResults.etag(passId),
+        PassContentResults.PKPASS_CONTENT_TYPE,
+        PassContentResults.IMMUTABLE_CACHE_CONTROL
+      )(passService.isPassOwnedBy(passId, authContext.nino))(
+        passService.getPassCardByPassIdAndNINO(passId, authContext.nino)
+      )
     }
   }
+
+  def getQrCodeByPassId(passId: String, size: Option[Int], format: Option[String]): Action[AnyContent] =
+    Action.async { implicit request =>
+      authorisedAsFMNUser { authContext =>
+        logger.debug(message = s"[Get QR Code] $passId")
+        QrCodeVariant.fromRequest(size, format) match {
+          case Left(error)    => Future.successful(BadRequest(error))
+          case Right(variant) =>
+            passService.getQrCodeByPassIdAndNINO(passId, authContext.nino, variant).map {
+              case Some(data) => Ok(Base64.getEncoder.encodeToString(data))
+              case _          => NotFound
+            }
+        }
+      }
+    }
+
+  def getQrCodeImageByPassId(passId: String, size: Option[Int], format: Option[String]): Action[AnyContent] =
+    Action.async { implicit request =>
+      authorisedAsFMNUser { authContext =>
+        logger.debug(message = s"[Get QR Code Image] $passId")
+        QrCodeVariant.fromRequest(size, format) match {
+          case Left(error)    => Future.successful(BadRequest(error))
+          case Right(variant) =>
+            val etag = PassContentResults.etag(
+              PassQrCodeService.applePassQrText(appConfig.frontendServiceUrl, passId),
+              QrCodeRenderer.Version,
+              variant.size.toString,
+              variant.format.toString
+            )
+            PassContentResults.cachedContent(
+              etag,
+              variant.format.contentType,
+              PassContentResults.QR_CODE_CACHE_CONTROL
+            )(passService.isPassOwnedBy(passId, authContext.nino))(
+              passService.getQrCodeByPassIdAndNINO(passId, authContext.nino, variant)
+            )
+        }
+      }
+    }
 }
@@ -17,10 +17,12 @@
 package controllers
 
 import auth.FMNAuth
+import com.codahale.metrics.MetricRegistry
 import connectors.FandFConnector
 import play.api.i18n.I18nSupport
-import play.api.mvc.{MessagesControllerComponents, RequestHeader}
+import play.api.mvc.{MessagesControllerComponents, RequestHeader, Result}
 import play.api.{Configuration, Environment}
+import services.PassBuildRejectedException
 import uk.gov.hmrc.auth.core.AuthConnector
 import uk.gov.hmrc.http.HeaderCarrier
 import uk.gov.hmrc.play.bootstrap.backend.controller.BackendController
@@ -29,14 +31,23 @@ import uk.gov.hmrc.play.http.HeaderCarrierConverter
 import javax.inject.{Inject, Singleton}
 
 @Singleton
-class FMNBaseController @Inject() (val authConnector: AuthConnector, fandFConnector: FandFConnector)(implicit
+class FMNBaseController @Inject() (
+  val authConnector: AuthConnector,
+  fandFConnector: FandFConnector,
+  metricRegistry: MetricRegistry
+)(implicit
   val config: Configuration,
   val env: Environment,
   cc: MessagesControllerComponents
 ) extends BackendController(cc)
-    with FMNAuth(fandFConnector)
+    with FMNAuth(fandFConnector, metricRegistry)
     with I18nSupport {
 
   override implicit def hc(implicit rh: RequestHeader): HeaderCarrier =
     HeaderCarrierConverter.fromRequest(rh)
+
+  /** Sheds a create the pass build pool had no room for, telling the caller when to retry. */
+  protected val passBuildRejected: PartialFunction[Throwable, Result] = { case e: PassBuildRejectedException =>
+    ServiceUnavailable(e.getMessage).withHeaders(RETRY_AFTER -> e.retryAfterSeconds.toString)
+  }
 }
@@ -16,19 +16,20 @@
 
 package controllers
 
-import com.google.auth.oauth2.GoogleCredentials
+import com.codahale.metrics.MetricRegistry
 import config.AppConfig
 import connectors.FandFConnector
+import models.PassBatchResult
 import models.google.GooglePassDetails
 import play.api.libs.json.{JsError, Json, OFormat, Writes}
 import play.api.mvc.{Action, AnyContent, MessagesControllerComponents}
 import play.api.{Configuration, Environment, Logging}
-import services.GooglePassService
+import services.qrcode.{QrCodeRenderer, QrCodeVariant}
+import services.{GooglePassService, PassQrCodeService}
 import uk.gov.hmrc.auth.core.AuthConnector
 
-import java.io.ByteArrayInputStream
 import java.time.{ZoneId, ZonedDateTime}
-import java.util.{Base64, Collections}
+import java.util.Base64
 import javax.inject.{Inject, Singleton}
 import scala.concurrent.{ExecutionContext, Future}
 
@@ -36,6 +37,7 @@ import scala.concurrent.{ExecutionContext, Future}
 class GooglePassController @Inject() (
   authConnector: AuthConnector,
   fandFConnector: FandFConnector,
+  metricRegistry: MetricRegistry,
   passService: GooglePassService
 )(implicit
   config: Configuration,
@@ -43,7 +45,7 @@ class GooglePassController @Inject() (
   cc: MessagesControllerComponents,
   appConfig: AppConfig,
   ec: ExecutionContext
-) extends FMNBaseController(authConnector, fandFConnector)
+) extends FMNBaseController(authConnector, fandFConnector, metricRegistry)
     with Logging {
 
   implicit val passRequestFormatter: OFormat[GooglePassDetails] = Json.format[GooglePassDetails]
@@ -60,23 +62,12 @@ class GooglePassController @Inject() (
             .validate[GooglePassDetails]
             .fold(
               errs => Future.successful(BadRequest(JsError.toJson(errs))),
-              passRequest => {
-                val expirationDate = ZonedDateTime.now(ZoneId.of("UTC")).plusYears(DEFAULT_EXPIRATION_YEARS).toString
-                val scope          = "https://www.googleapis.com/auth/wallet_object.issuer"
-
-                val keyAsStream       = new ByteArrayInputStream(Base64.getDecoder.decode(appConfig.googleKey))
-                val googleCredentials =
-                  try
-                    GoogleCredentials.fromStream(keyAsStream).createScoped(Collections.singletonList(scope))
-                  finally
-                    keyAsStream.close()
-
+              passRequest =>
                 passService
                   .createPassWithCredentials(
                     passRequest.fullName,
                     passRequest.nino,
-                    expirationDate,
-                    googleCredentials
+                    expirationDate()
                   )
                   .map {
                     case Right(value) => Ok(value)
@@ -88,7 +79,7 @@ class GooglePassController @Inject() (
                         )
                       )
                   }
-              }
+                  .recover(passBuildRejected)
             )
 
         case None =>
@@ -96,23 +87,81 @@ class GooglePassController @Inject() (
       }
     }
   }
+
+  private def expirationDate(): String =
+    ZonedDateTime.now(ZoneId.of("UTC")).plusYears(DEFAULT_EXPIRATION_YEARS).toString
   // $COVERAGE-ON$
 
-  def getPassUrlByPassId(passId: String): Action[AnyContent] = Action.async { implicit request =>
-    authorisedAsFMNUser { authContext =>
-      passService.getPassUrlByPassIdAndNINO(passId, authContext.nino).map {
-        case Some(data) => Ok(data)
-        case _          => NotFound
+  def createPassesWithCredentials: Action[AnyContent] = Action.async { implicit request =>
+    authorisedAsPrivilegedApplication {
+      request.body.asJson match {
+        case Some(json) =>
+          json
+            .validate[Seq[GooglePassDetails]]
+            .fold(
+              errs => Future.successful(BadRequest(JsError.toJson(errs))),
+              passRequests =>
+                if (passRequests.size > appConfig.passBatchMaxSize) {
+                  Future.successful(BadRequest(s"Expected at most ${appConfig.passBatchMaxSize} passes"))
+                } else {
+                  passService
+                    .createPassesWithCredentials(passRequests, expirationDate())
+                    .map(results => Ok(Json.toJson(results.map(PassBatchResult.fromResult))))
+                }
+            )
+
+        case None =>
+          Future.successful(BadRequest("Expected JSON body"))
       }
     }
   }
 
-  def getQrCodeByPassId(passId: String): Action[AnyContent] = Action.async { implicit request =>
+  def getPassUrlByPassId(passId: String): Action[AnyContent] = Action.async { implicit request =>
     authorisedAsFMNUser { authContext =>
-      passService.getQrCodeByPassIdAndNINO(passId, authContext.nino).map {
-        case Some(data) => Ok(Base64.getEncoder.encodeToString(data))
-        case _          => NotFound
-      }
+      passService
+        .getPassUrlByPassIdAndNINO(passId, authContext.nino)
+        .map {
+          case Some(data) => Ok(data)
+          case _          => NotFound
+        }
+        .recover(passBuildRejected)
     }
   }
+
+  def getQrCodeByPassId(passId: String, size: Option[Int], format: Option[String]): Action[AnyContent] =
+    Action.async { implicit request =>
+      authorisedAsFMNUser { authContext =>
+        QrCodeVariant.fromRequest(size, format) match {
+          case Left(error)    => Future.successful(BadRequest(error))
+          case Right(variant) =>
+            passService.getQrCodeByPassIdAndNINO(passId, authContext.nino, variant).map {
+              case Some(data) => Ok(Base64.getEncoder.encodeToString(data))
+              case _          => NotFound
+            }
+        }
+      }
+    }
+
+  def getQrCodeImageByPassId(passId: String, size: Option[Int], format: Option[String]): Action[AnyContent] =
+    Action.async { implicit request =>
+      authorisedAsFMNUser { authContext =>
+        QrCodeVariant.fromRequest(size, format) match {
+          case Left(error)    => Future.successful(BadRequest(error))
+          case Right(variant) =>
+            val etag = PassContentResults.etag(
+              PassQrCodeService.googlePassQrText(appConfig.frontendServiceUrl, passId),
+              QrCodeRenderer.Version,
+              variant.size.toString,
+              variant.format.toString
+            )
+            PassContentResults.cachedContent(
+              etag,
+              variant.format.contentType,
+              PassContentResults.QR_CODE_CACHE_CONTROL
+            )(passService.isPassOwnedBy(passId, authContext.nino))(
+              passService.getQrCodeByPassIdAndNINO(passId, authContext.nino, variant)
+            )
+        }
+      }
+    }
 }
@@ -17,12 +17,12 @@
 package controllers
 
 import cats.data.EitherT
+import com.codahale.metrics.MetricRegistry
 import connectors.FandFConnector
-import play.api.libs.json.{JsError, JsResultException, JsSuccess, JsValue}
+import play.api.libs.json.JsValue
 import play.api.mvc.*
 import play.api.{Configuration, Environment}
 import services.IndividualDetailsService
-import transformations.IndividualDetails
 import uk.gov.hmrc.auth.core.AuthConnector
 import uk.gov.hmrc.http.{HeaderCarrier, UpstreamErrorResponse}
 import uk.gov.hmrc.play.http.HeaderCarrierConverter
@@ -34,9 +34,10 @@ import scala.concurrent.{ExecutionContext, Future}
 class IndividualsDetailsController @Inject() (
   authConnector: AuthConnector,
   fandFConnector: FandFConnector,
+  metricRegistry: MetricRegistry,
   individualDetailsService: IndividualDetailsService
 )(implicit config: Configuration, env: Environment, cc: MessagesControllerComponents, ec: ExecutionContext)
-    extends FMNBaseController(authConnector, fandFConnector) {
+    extends FMNBaseController(authConnector, fandFConnector, metricRegistry) {
 
   private val NinoPrefixLength                        = 8
   private def sameNino(a: String, b: String): Boolean =
@@ -74,19 +75,7 @@ class IndividualsDetailsController @Inject() (
   }
 
   private def resultFromStatus(response: EitherT[Future, UpstreamErrorResponse, JsValue]): Future[Result] =
-    response
-      .bimap(
-        errorToResponse,
-        jsValue =>
-          jsValue.transform(IndividualDetails.reads) match {
-            case JsSuccess(jsObject, _) => Ok(jsObject)
-            case JsError(errors)        =>
-              val ex = JsResultException(errors)
-              logger.error("Json transformation failure", ex)
-              InternalServerError(ex.getMessage)
-          }
-      )
-      .merge
+    response.bimap(errorToResponse, Ok(_)).merge
 
   private def errorToResponse(error: UpstreamErrorResponse): Result =
     error match {
@@ -16,6 +16,7 @@
 
 package controllers
 
+import com.codahale.metrics.MetricRegistry
 import connectors.FandFConnector
 import models.nps.ChildReferenceNumberUpliftRequest
 import play.api.mvc.*
@@ -27,13 +28,17 @@ import javax.inject.{Inject, Singleton}
 import scala.concurrent.ExecutionContext
 
 @Singleton()
-class NPSController @Inject() (authConnector: AuthConnector, fandFConnector: FandFConnector, npsService: NPSService)(
-  implicit
+class NPSController @Inject() (
+  authConnector: AuthConnector,
+  fandFConnector: FandFConnector,
+  metricRegistry: MetricRegistry,
+  npsService: NPSService
+)(implicit
   config: Configuration,
   env: Environment,
   cc: MessagesControllerComponents,
   ec: ExecutionContext
-) extends FMNBaseController(authConnector, fandFConnector)
+) extends FMNBaseController(authConnector, fandFConnector, metricRegistry)
     with Logging {
 
   def upliftCRN(identifier: String): Action[AnyContent] = Action.async { implicit request =>
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package controllers
+
+import com.google.common.hash.Hashing
+import play.api.http.HeaderNames.{CACHE_CONTROL, ETAG, IF_NONE_MATCH}
+import play.api.mvc.Results.{NotFound, NotModified, Ok}
+import play.api.mvc.{RequestHeader, Result}
+
+import java.nio.charset.StandardCharsets
+import scala.concurrent.{ExecutionContext, Future}
+
+/** Results for the binary pass endpoints. The ETag is derived from the request and the inputs the content is built
+  * from, so a matching `If-None-Match` only needs the ownership check, not the stored content. The pass file is
+  * immutable once created; QR images are rendered from configuration, so they are only cached for a day.
+  */
+object PassContentResults {
+
+  val PKPASS_CONTENT_TYPE     = "application/vnd.apple.pkpass"
+  val IMMUTABLE_CACHE_CONTROL = "private, max-age=31536000, immutable"
+  val QR_CODE_CACHE_CONTROL   = "private, max-age=86400"
+
+  def etag(parts: String*): String =
+    "\"" + Hashing.sha256().hashString(parts.mkString("|"), StandardCharsets.UTF_8).toString + "\""
+
+  def cachedContent(etag: String, contentType: String, cacheControl: String)(isOwner: => Future[Boolean])(
+    content: => Future[Option[Array[Byte]]]
+  )(implicit request: RequestHeader, ec: ExecutionContext): Future[Result] =
+    if (ifNoneMatch(request, etag)) {
+      isOwner.map {
+        case true  => NotModified.withHeaders(cacheHeaders(etag, cacheControl)*)
+        case false => NotFound
+      }
+    } else {
+      content.map {
+        case Some(bytes) => Ok(bytes).as(contentType).withHeaders(cacheHeaders(etag, cacheControl)*)
+        case None        => NotFound
+      }
+    }
+
+  private def cacheHeaders(etag: String, cacheControl: String): Seq[(String, String)] =
+    Seq(ETAG -> etag, CACHE_CONTROL -> cacheControl)
+
+  private def ifNoneMatch(request: RequestHeader, etag: String): Boolean =
+    request.headers.getAll(IF_NONE_MATCH).flatMap(_.split(',')).map(_.trim.stripPrefix("W/")).exists { tag =>
+      tag == etag || tag == "*"
+    }
+}
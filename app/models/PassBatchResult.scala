@@ -0,0 +1,29 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package models
+
+import play.api.libs.json.{Json, OFormat}
+
+/** Outcome of one pass in a batch request, in the position of its details in the request. */
+case class PassBatchResult(passId: Option[String], error: Option[String])
+
+object PassBatchResult {
+  implicit val format: OFormat[PassBatchResult] = Json.format[PassBatchResult]
+
+  def fromResult(result: Either[Exception, String]): PassBatchResult =
+    result.fold(error => PassBatchResult(None, Some(error.getMessage)), passId => PassBatchResult(Some(passId), None))
+}
@@ -26,7 +26,6 @@ case class ApplePass(
   fullName: String,
   nino: String,
   applePassCard: Array[Byte],
-  qrCode: Array[Byte],
   lastUpdated: Instant
 )
 
@@ -35,10 +34,9 @@ object ApplePass {
     passId: String,
     fullName: String,
     nino: String,
-    applePassCard: Array[Byte],
-    qrCode: Array[Byte]
+    applePassCard: Array[Byte]
   ): ApplePass =
-    ApplePass(passId, fullName, nino, applePassCard, qrCode, Instant.now)
+    ApplePass(passId, fullName, nino, applePassCard, Instant.now)
 
   implicit val dateFormat: Format[Instant]      = MongoJavatimeFormats.instantFormat
   implicit val arrayFormat: Format[Array[Byte]] = MongoBinaryFormats.byteArrayFormat
@@ -18,7 +18,7 @@ package models.encryption
 
 import play.api.libs.functional.syntax.toFunctionalBuilderOps
 import play.api.libs.json.{Format, OFormat, __}
-import uk.gov.hmrc.crypto.{EncryptedValue, SymmetricCryptoFactory}
+import uk.gov.hmrc.crypto.EncryptedValue
 import EncryptedValueFormat._
 import models.apple.ApplePass
 import uk.gov.hmrc.mongo.play.json.formats.MongoJavatimeFormats
@@ -29,8 +29,7 @@ case class EncryptedApplePass(
   passId: String,
   fullName: EncryptedValue,
   nino: EncryptedValue,
-  applePassCard: EncryptedValue,
-  qrCode: EncryptedValue,
+  applePassCard: EncryptedBinary,
   lastUpdated: Instant
 )
 
@@ -42,37 +41,34 @@ object EncryptedApplePass {
     ((__ \ "passId").format[String]
       ~ (__ \ "fullName").format[EncryptedValue]
       ~ (__ \ "nino").format[EncryptedValue]
-      ~ (__ \ "applePassCard").format[EncryptedValue]
-      ~ (__ \ "qrCode").format[EncryptedValue]
+      ~ (__ \ "applePassCard").format[EncryptedBinary]
       ~ (__ \ "lastUpdated").format[Instant])(
       EncryptedApplePass.apply,
-      eap => Tuple6(eap.passId, eap.fullName, eap.nino, eap.applePassCard, eap.qrCode, eap.lastUpdated)
+      eap => Tuple5(eap.passId, eap.fullName, eap.nino, eap.applePassCard, eap.lastUpdated)
     )
 
-  def encrypt(applePass: ApplePass, key: String): EncryptedApplePass = {
+  def encrypt(applePass: ApplePass, crypto: PassCrypto): EncryptedApplePass = {
     def e(field: String): EncryptedValue =
-      SymmetricCryptoFactory.aesGcmAdCrypto(key).encrypt(field, applePass.passId)
+      crypto.encrypt(field, applePass.passId)
 
     EncryptedApplePass(
       passId = applePass.passId,
       fullName = e(applePass.fullName),
       nino = e(applePass.nino),
-      applePassCard = e(applePass.applePassCard.mkString(",")),
-      qrCode = e(applePass.qrCode.mkString(",")),
+      applePassCard = EncryptedBinary.encrypt(applePass.applePassCard, applePass.passId, crypto),
       lastUpdated = applePass.lastUpdated
     )
   }
 
-  def decrypt(encryptedApplePass: EncryptedApplePass, key: String): ApplePass = {
+  def decrypt(encryptedApplePass: EncryptedApplePass, crypto: PassCrypto): ApplePass = {
     def d(field: EncryptedValue): String =
-      SymmetricCryptoFactory.aesGcmAdCrypto(key).decrypt(field, encryptedApplePass.passId)
+      crypto.decrypt(field, encryptedApplePass.passId)
 
     ApplePass(
       passId = encryptedApplePass.passId,
       fullName = d(encryptedApplePass.fullName),
       nino = d(encryptedApplePass.nino),
-      applePassCard = d(encryptedApplePass.applePassCard).split(",").map(_.toByte),
-      qrCode = d(encryptedApplePass.qrCode).split(",").map(_.toByte),
+      applePassCard = EncryptedBinary.decrypt(encryptedApplePass.applePassCard, encryptedApplePass.passId, crypto),
       lastUpdated = encryptedApplePass.lastUpdated
     )
   }
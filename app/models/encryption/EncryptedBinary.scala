@@ -0,0 +1,89 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package models.encryption
+
+import play.api.libs.json.{Format, Json, Reads, Writes}
+import uk.gov.hmrc.crypto.EncryptedValue
+import uk.gov.hmrc.mongo.play.json.formats.MongoBinaryFormats
+
+import java.nio.charset.StandardCharsets
+import java.security.SecureRandom
+import javax.crypto.Cipher
+import javax.crypto.spec.GCMParameterSpec
+
+/** An AES-GCM encrypted binary field. New values are written as a versioned envelope stored as a BSON Binary; values
+  * written before the envelope existed (decimal bytes joined with commas and encrypted as a string) are still read.
+  */
+sealed trait EncryptedBinary
+
+object EncryptedBinary {
+
+  /** `[version: 1 byte][nonce: 12 bytes][ciphertext + 16 byte tag]` */
+  final case class Envelope(bytes: Array[Byte]) extends EncryptedBinary
+
+  final case class Legacy(value: EncryptedValue) extends EncryptedBinary
+
+  val VERSION_1: Byte = 1
+
+  private val Transformation = "AES/GCM/NoPadding"
+  private val NonceLength    = 12
+  private val TagLengthBits  = 128
+  private val HeaderLength   = 1 + NonceLength
+
+  private val secureRandom = new SecureRandom()
+
+  implicit val format: Format[EncryptedBinary] = Format(
+    MongoBinaryFormats.byteArrayFormat.map[EncryptedBinary](Envelope(_)) orElse
+      EncryptedValueFormat.encryptedValueFormat.map[EncryptedBinary](Legacy(_)),
+    Writes[EncryptedBinary] {
+      case Envelope(bytes) => Json.toJson(bytes)(MongoBinaryFormats.byteArrayFormat)
+      case Legacy(value)   => Json.toJson(value)(EncryptedValueFormat.encryptedValueFormat)
+    }
+  )
+
+  def encrypt(plain: Array[Byte], associatedText: String, crypto: PassCrypto): EncryptedBinary = {
+    val nonce = new Array[Byte](NonceLength)
+    secureRandom.nextBytes(nonce)
+
+    val cipher = Cipher.getInstance(Transformation)
+    cipher.init(Cipher.ENCRYPT_MODE, crypto.secretKey, new GCMParameterSpec(TagLengthBits, nonce))
+    cipher.updateAAD(associatedText.getBytes(StandardCharsets.UTF_8))
+
+    val envelope = new Array[Byte](HeaderLength + cipher.getOutputSize(plain.length))
+    envelope(0) = VERSION_1
+    System.arraycopy(nonce, 0, envelope, 1, NonceLength)
+    cipher.doFinal(plain, 0, plain.length, envelope, HeaderLength)
+
+    Envelope(envelope)
+  }
+
+  def decrypt(field: EncryptedBinary, associatedText: String, crypto: PassCrypto): Array[Byte] =
+    field match {
+      case Envelope(bytes) if bytes.length > HeaderLength && bytes(0) == VERSION_1 =>
+        val cipher = Cipher.getInstance(Transformation)
+        cipher.init(Cipher.DECRYPT_MODE, crypto.secretKey, new GCMParameterSpec(TagLengthBits, bytes, 1, NonceLength))
+        cipher.updateAAD(associatedText.getBytes(StandardCharsets.UTF_8))
+        cipher.doFinal(bytes, HeaderLength, bytes.length - HeaderLength)
+
+      case Envelope(bytes) =>
+        val version = bytes.headOption.map(_.toString).getOrElse("none")
+        throw new IllegalStateException(s"Unsupported encrypted envelope version: $version")
+
+      case Legacy(value) =>
+        crypto.decrypt(value, associatedText).split(",").map(_.toByte)
+    }
+}
@@ -19,7 +19,7 @@ package models.encryption
 import models.google.GooglePass
 import play.api.libs.functional.syntax.toFunctionalBuilderOps
 import play.api.libs.json.{Format, OFormat, __}
-import uk.gov.hmrc.crypto.{EncryptedValue, SymmetricCryptoFactory}
+import uk.gov.hmrc.crypto.EncryptedValue
 import EncryptedValueFormat._
 import uk.gov.hmrc.mongo.play.json.formats.MongoJavatimeFormats
 
@@ -30,8 +30,6 @@ case class EncryptedGooglePass(
   fullName: EncryptedValue,
   nino: EncryptedValue,
   expirationDate: EncryptedValue,
-  googlePassUrl: EncryptedValue,
-  qrCode: EncryptedValue,
   lastUpdated: Instant
 )
 
@@ -44,40 +42,33 @@ object EncryptedGooglePass {
       ~ (__ \ "fullName").format[EncryptedValue]
       ~ (__ \ "nino").format[EncryptedValue]
       ~ (__ \ "expirationDate").format[EncryptedValue]
-      ~ (__ \ "googlePassUrl").format[EncryptedValue]
-      ~ (__ \ "qrCode").format[EncryptedValue]
       ~ (__ \ "lastUpdated").format[Instant])(
       EncryptedGooglePass.apply,
-      egp =>
-        Tuple7(egp.passId, egp.fullName, egp.nino, egp.expirationDate, egp.googlePassUrl, egp.qrCode, egp.lastUpdated)
+      egp => Tuple5(egp.passId, egp.fullName, egp.nino, egp.expirationDate, egp.lastUpdated)
     )
 
-  def encrypt(googlePass: GooglePass, key: String): EncryptedGooglePass = {
+  def encrypt(googlePass: GooglePass, crypto: PassCrypto): EncryptedGooglePass = {
     def e(field: String): EncryptedValue =
-      SymmetricCryptoFactory.aesGcmAdCrypto(key).encrypt(field, googlePass.passId)
+      crypto.encrypt(field, googlePass.passId)
 
     EncryptedGooglePass(
       passId = googlePass.passId,
       fullName = e(googlePass.fullName),
       nino = e(googlePass.nino),
       expirationDate = e(googlePass.expirationDate),
-      googlePassUrl = e(googlePass.googlePassUrl),
-      qrCode = e(googlePass.qrCode.mkString(",")),
       lastUpdated = googlePass.lastUpdated
     )
   }
 
-  def decrypt(encryptedGooglePass: EncryptedGooglePass, key: String): GooglePass = {
+  def decrypt(encryptedGooglePass: EncryptedGooglePass, crypto: PassCrypto): GooglePass = {
     def d(field: EncryptedValue): String =
-      SymmetricCryptoFactory.aesGcmAdCrypto(key).decrypt(field, encryptedGooglePass.passId)
+      crypto.decrypt(field, encryptedGooglePass.passId)
 
     GooglePass(
       passId = encryptedGooglePass.passId,
       fullName = d(encryptedGooglePass.fullName),
       nino = d(encryptedGooglePass.nino),
       expirationDate = d(encryptedGooglePass.expirationDate),
-      googlePassUrl = d(encryptedGooglePass.googlePassUrl),
-      qrCode = d(encryptedGooglePass.qrCode).split(",").map(_.toByte),
       lastUpdated = encryptedGooglePass.lastUpdated
     )
   }
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package models.encryption
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.dataformat.smile.SmileFactory
+import play.api.libs.json.jackson.PlayJsonMapperModule
+import play.api.libs.json.{JsObject, JsValue, JsonConfig, Json}
+import uk.gov.hmrc.crypto.{Crypted, Decrypter, Encrypter, PlainBytes}
+import uk.gov.hmrc.mongo.play.json.formats.MongoBinaryFormats
+
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream}
+import java.util.{Arrays, Base64}
+import java.util.zip.{DeflaterOutputStream, InflaterInputStream}
+import scala.util.Using
+
+/** A JSON value encrypted as a versioned envelope and stored as a BSON Binary, in place of the JSON text encrypted as a
+  * base64 string. The plaintext is the value in Smile, Jackson's binary JSON encoding, compressed with Deflate, which
+  * shrinks the repetitive DES payloads kept in the session cache to a fraction of their encrypted string form.
+  */
+object EncryptedJsValue {
+
+  /** `[version: 1 byte][ciphertext of the deflated Smile document]` */
+  val VERSION_1: Byte = 1
+
+  private val smileMapper: ObjectMapper =
+    new ObjectMapper(new SmileFactory()).registerModule(new PlayJsonMapperModule(JsonConfig.settings))
+
+  def encrypt(value: JsValue, encrypter: Encrypter): JsValue = {
+    val compressed = new ByteArrayOutputStream()
+    Using.resource(new DeflaterOutputStream(compressed))(smileMapper.writeValue(_, value))
+
+    val ciphertext = Base64.getDecoder.decode(encrypter.encrypt(PlainBytes(compressed.toByteArray)).value)
+    val envelope   = new Array[Byte](1 + ciphertext.length)
+    envelope(0) = VERSION_1
+    System.arraycopy(ciphertext, 0, envelope, 1, ciphertext.length)
+
+    Json.toJson(envelope)(MongoBinaryFormats.byteArrayFormat)
+  }
+
+  /** Matches a stored value written by `encrypt`. Plaintext values and values encrypted as strings do not match. */
+  def unapply(stored: JsValue): Option[Array[Byte]] = stored match {
+    case _: JsObject => MongoBinaryFormats.byteArrayFormat.reads(stored).asOpt
+    case _           => None
+  }
+
+  def decrypt(envelope: Array[Byte], decrypter: Decrypter): JsValue =
+    envelope.headOption match {
+      case Some(VERSION_1) =>
+        val ciphertext = Base64.getEncoder.encodeToString(Arrays.copyOfRange(envelope, 1, envelope.length))
+        val compressed = decrypter.decryptAsBytes(Crypted(ciphertext)).value
+        Using.resource(new InflaterInputStream(new ByteArrayInputStream(compressed)))(
+          smileMapper.readValue(_, classOf[JsValue])
+        )
+
+      case version =>
+        throw new IllegalStateException(
+          s"Unsupported encrypted value version: ${version.map(_.toString).getOrElse("none")}"
+        )
+    }
+}
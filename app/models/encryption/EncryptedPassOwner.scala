@@ -0,0 +1,32 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package models.encryption
+
+import models.PassOwner
+import play.api.libs.json.{Json, OFormat}
+import uk.gov.hmrc.crypto.EncryptedValue
+import EncryptedValueFormat.encryptedValueOFormat
+
+case class EncryptedPassOwner(passId: String, nino: EncryptedValue)
+
+object EncryptedPassOwner {
+
+  implicit val format: OFormat[EncryptedPassOwner] = Json.format[EncryptedPassOwner]
+
+  def decrypt(encryptedPassOwner: EncryptedPassOwner, crypto: PassCrypto): PassOwner =
+    PassOwner(encryptedPassOwner.passId, crypto.decrypt(encryptedPassOwner.nino, encryptedPassOwner.passId))
+}
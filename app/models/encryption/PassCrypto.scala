@@ -0,0 +1,47 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package models.encryption
+
+import uk.gov.hmrc.crypto.{EncryptedValue, SymmetricCryptoFactory}
+
+import java.util.Base64
+import java.util.concurrent.ConcurrentHashMap
+import javax.crypto.spec.SecretKeySpec
+
+/** The crypto used for one encryption key, built once and shared. Both the string crypto and the key spec are
+  * immutable, with a cipher created per operation, so a single instance is safe to use from any thread.
+  */
+final class PassCrypto private (key: String) {
+
+  private val adCrypto = SymmetricCryptoFactory.aesGcmAdCrypto(key)
+
+  private[encryption] val secretKey: SecretKeySpec = new SecretKeySpec(Base64.getDecoder.decode(key), "AES")
+
+  def encrypt(value: String, associatedText: String): EncryptedValue =
+    adCrypto.encrypt(value, associatedText)
+
+  def decrypt(value: EncryptedValue, associatedText: String): String =
+    adCrypto.decrypt(value, associatedText)
+}
+
+object PassCrypto {
+
+  private val instances = new ConcurrentHashMap[String, PassCrypto]()
+
+  def apply(key: String): PassCrypto =
+    instances.computeIfAbsent(key, new PassCrypto(_))
+}
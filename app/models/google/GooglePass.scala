@@ -26,8 +26,6 @@ case class GooglePass(
   fullName: String,
   nino: String,
   expirationDate: String,
-  googlePassUrl: String,
-  qrCode: Array[Byte],
   lastUpdated: Instant
 )
 
@@ -36,11 +34,9 @@ object GooglePass {
     passId: String,
     fullName: String,
     nino: String,
-    expirationDate: String,
-    googlePassUrl: String,
-    qrCode: Array[Byte]
+    expirationDate: String
   ): GooglePass =
-    GooglePass(passId, fullName, nino, expirationDate: String, googlePassUrl, qrCode, Instant.now)
+    GooglePass(passId, fullName, nino, expirationDate: String, Instant.now)
 
   implicit val dateFormat: Format[Instant]      = MongoJavatimeFormats.instantFormat
   implicit val arrayFormat: Format[Array[Byte]] = MongoBinaryFormats.byteArrayFormat
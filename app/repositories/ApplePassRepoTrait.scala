@@ -16,13 +16,19 @@
 
 package repositories
 
+import models.PassOwner
 import models.apple.ApplePass
 import scala.concurrent.{ExecutionContext, Future}
 
 trait ApplePassRepoTrait {
-  def insert(passId: String, fullName: String, nino: String, applePassCard: Array[Byte], qrCode: Array[Byte])(implicit
+  def insert(passId: String, fullName: String, nino: String, applePassCard: Array[Byte])(implicit
     ec: ExecutionContext
   ): Future[Unit]
 
+  /** Writes the passes in one round trip and returns the ids of those that were stored. */
+  def insertMany(applePasses: Seq[ApplePass])(implicit ec: ExecutionContext): Future[Set[String]]
+
   def findByPassId(passId: String)(implicit ec: ExecutionContext): Future[Option[ApplePass]]
+
+  def findOwnerByPassId(passId: String)(implicit ec: ExecutionContext): Future[Option[PassOwner]]
 }
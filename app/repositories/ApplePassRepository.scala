@@ -18,11 +18,12 @@ package repositories
 
 import com.google.inject.{Inject, Singleton}
 import config.AppConfig
+import models.PassOwner
 import models.apple.ApplePass
-import org.mongodb.scala.model.{Filters, IndexModel, IndexOptions, Indexes}
+import org.mongodb.scala.model.{Filters, IndexModel, IndexOptions, Indexes, Projections}
 import play.api.Logging
 import uk.gov.hmrc.mongo.MongoComponent
-import uk.gov.hmrc.mongo.play.json.PlayMongoRepository
+import uk.gov.hmrc.mongo.play.json.{Codecs, PlayMongoRepository}
 
 import java.util.concurrent.TimeUnit
 import scala.concurrent.{ExecutionContext, Future}
@@ -52,17 +53,18 @@ class ApplePassRepository @Inject() (
             .expireAfter(appConfig.cacheTtl, TimeUnit.SECONDS)
         )
       ),
-      replaceIndexes = true
+      replaceIndexes = true,
+      extraCodecs = Seq(Codecs.playFormatCodec(PassOwner.format))
     )
     with Logging
     with ApplePassRepoTrait {
 
-  def insert(passId: String, fullName: String, nino: String, applePassCard: Array[Byte], qrCode: Array[Byte])(implicit
+  def insert(passId: String, fullName: String, nino: String, applePassCard: Array[Byte])(implicit
     ec: ExecutionContext
   ): Future[Unit] = {
     logger.info(s"Inserted one in $collectionName table")
     collection
-      .insertOne(ApplePass(passId, fullName, nino, applePassCard, qrCode))
+      .insertOne(ApplePass(passId, fullName, nino, applePassCard))
       .head()
       .map(_ => ())
       .recoverWith { case e =>
@@ -72,9 +74,17 @@ class ApplePassRepository @Inject() (
       }
   }
 
+  def insertMany(applePasses: Seq[ApplePass])(implicit ec: ExecutionContext): Future[Set[String]] =
+    PassInserts.insertMany(collection, applePasses.map(applePass => applePass.passId -> applePass))
+
   def findByPassId(passId: String)(implicit ec: ExecutionContext): Future[Option[ApplePass]] =
     collection
       .find(Filters.equal("passId", passId))
       .headOption()
 
+  def findOwnerByPassId(passId: String)(implicit ec: ExecutionContext): Future[Option[PassOwner]] =
+    collection
+      .find[PassOwner](Filters.equal("passId", passId))
+      .projection(Projections.include(PassOwner.fields*))
+      .headOption()
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package repositories
+
+import models.PassOwner
+import models.apple.ApplePass
+import repositories.cache.PassReadCache
+
+import scala.concurrent.{ExecutionContext, Future}
+
+/** Read-through cache in front of the Apple pass repository. A newly created pass is cached as soon as its write is
+  * confirmed, so the frontend's first fetch after creating it does not go to Mongo. Ownership is still checked by the
+  * callers.
+  */
+class CachingApplePassRepository(underlying: ApplePassRepoTrait, passCache: PassReadCache[ApplePass])
+    extends ApplePassRepoTrait {
+
+  // Written with insertMany, which reports the passes it stored, so a pass whose write failed is never cached
+  def insert(passId: String, fullName: String, nino: String, applePassCard: Array[Byte])(implicit
+    ec: ExecutionContext
+  ): Future[Unit] = {
+    val applePass = ApplePass(passId, fullName, nino, applePassCard)
+    underlying.insertMany(Seq(applePass)).map { written =>
+      if (written.contains(passId)) passCache.put(passId, applePass)
+    }
+  }
+
+  // Batches are operational re-issues rather than passes about to be fetched, so they are not cached
+  def insertMany(applePasses: Seq[ApplePass])(implicit ec: ExecutionContext): Future[Set[String]] =
+    underlying.insertMany(applePasses)
+
+  def findByPassId(passId: String)(implicit ec: ExecutionContext): Future[Option[ApplePass]] =
+    passCache.get(passId) match {
+      case Some(applePass) => Future.successful(Some(applePass))
+      case None            =>
+        underlying.findByPassId(passId).map { applePass =>
+          applePass.foreach(passCache.put(passId, _))
+          applePass
+        }
+    }
+
+  def findOwnerByPassId(passId: String)(implicit ec: ExecutionContext): Future[Option[PassOwner]] =
+    passCache.get(passId) match {
+      case Some(applePass) => Future.successful(Some(PassOwner(applePass.passId, applePass.nino)))
+      case None            => underlying.findOwnerByPassId(passId)
+    }
+}
+
+object CachingApplePassRepository {
+
+  def sizeOf(applePass: ApplePass): Int =
+    PassReadCache.ENTRY_OVERHEAD_BYTES +
+      applePass.applePassCard.length +
+      (applePass.passId.length + applePass.fullName.length + applePass.nino.length) * 2
+}
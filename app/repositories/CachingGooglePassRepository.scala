@@ -0,0 +1,72 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package repositories
+
+import models.PassOwner
+import models.google.GooglePass
+import repositories.cache.PassReadCache
+
+import scala.concurrent.{ExecutionContext, Future}
+
+/** Read-through cache in front of the Google pass repository. A newly created pass is cached as soon as its write is
+  * confirmed, so the frontend's first fetch after creating it does not go to Mongo. Ownership is still checked by the
+  * callers.
+  */
+class CachingGooglePassRepository(underlying: GooglePassRepoTrait, passCache: PassReadCache[GooglePass])
+    extends GooglePassRepoTrait {
+
+  // Written with insertMany, which reports the passes it stored, so a pass whose write failed is never cached
+  def insert(
+    passId: String,
+    fullName: String,
+    nino: String,
+    expirationDate: String
+  )(implicit ec: ExecutionContext): Future[Unit] = {
+    val googlePass = GooglePass(passId, fullName, nino, expirationDate)
+    underlying.insertMany(Seq(googlePass)).map { written =>
+      if (written.contains(passId)) passCache.put(passId, googlePass)
+    }
+  }
+
+  // Batches are operational re-issues rather than passes about to be fetched, so they are not cached
+  def insertMany(googlePasses: Seq[GooglePass])(implicit ec: ExecutionContext): Future[Set[String]] =
+    underlying.insertMany(googlePasses)
+
+  def findByPassId(passId: String)(implicit ec: ExecutionContext): Future[Option[GooglePass]] =
+    passCache.get(passId) match {
+      case Some(googlePass) => Future.successful(Some(googlePass))
+      case None             =>
+        underlying.findByPassId(passId).map { googlePass =>
+          googlePass.foreach(passCache.put(passId, _))
+          googlePass
+        }
+    }
+
+  def findOwnerByPassId(passId: String)(implicit ec: ExecutionContext): Future[Option[PassOwner]] =
+    passCache.get(passId) match {
+      case Some(googlePass) => Future.successful(Some(PassOwner(googlePass.passId, googlePass.nino)))
+      case None             => underlying.findOwnerByPassId(passId)
+    }
+}
+
+object CachingGooglePassRepository {
+
+  def sizeOf(googlePass: GooglePass): Int =
+    PassReadCache.ENTRY_OVERHEAD_BYTES +
+      (googlePass.passId.length + googlePass.fullName.length + googlePass.nino.length +
+        googlePass.expirationDate.length) * 2
+}
@@ -19,12 +19,13 @@ package repositories
 import com.google.inject.{Inject, Singleton}
 import config.AppConfig
 import models.apple.ApplePass
-import models.encryption.EncryptedApplePass
+import models.PassOwner
+import models.encryption.{EncryptedApplePass, EncryptedPassOwner, PassCrypto}
 import models.encryption.EncryptedApplePass.*
-import org.mongodb.scala.model.{Filters, IndexModel, IndexOptions, Indexes}
+import org.mongodb.scala.model.{Filters, IndexModel, IndexOptions, Indexes, Projections}
 import play.api.Logging
 import uk.gov.hmrc.mongo.MongoComponent
-import uk.gov.hmrc.mongo.play.json.PlayMongoRepository
+import uk.gov.hmrc.mongo.play.json.{Codecs, PlayMongoRepository}
 
 import java.util.concurrent.TimeUnit
 import scala.concurrent.{ExecutionContext, Future}
@@ -54,17 +55,20 @@ class EncryptedApplePassRepository @Inject() (
             .expireAfter(appConfig.cacheTtl, TimeUnit.SECONDS)
         )
       ),
-      replaceIndexes = true
+      replaceIndexes = true,
+      extraCodecs = Seq(Codecs.playFormatCodec(EncryptedPassOwner.format))
     )
     with Logging
     with ApplePassRepoTrait {
 
-  def insert(passId: String, fullName: String, nino: String, applePassCard: Array[Byte], qrCode: Array[Byte])(implicit
+  private val crypto = PassCrypto(appConfig.encryptionKey)
+
+  def insert(passId: String, fullName: String, nino: String, applePassCard: Array[Byte])(implicit
     ec: ExecutionContext
   ): Future[Unit] = {
     logger.info(s"Inserted one in $collectionName table")
     collection
-      .insertOne(encrypt(ApplePass(passId, fullName, nino, applePassCard, qrCode), appConfig.encryptionKey))
+      .insertOne(encrypt(ApplePass(passId, fullName, nino, applePassCard), crypto))
       .head()
       .map(_ => ())
       .recoverWith { case e =>
@@ -74,12 +78,23 @@ class EncryptedApplePassRepository @Inject() (
       }
   }
 
+  def insertMany(applePasses: Seq[ApplePass])(implicit ec: ExecutionContext): Future[Set[String]] =
+    PassInserts.insertMany(collection, applePasses.map(applePass => applePass.passId -> encrypt(applePass, crypto)))
+
   def findByPassId(passId: String)(implicit ec: ExecutionContext): Future[Option[ApplePass]] =
     collection
       .find(Filters.equal("passId", passId))
       .first()
       .toFutureOption()
       .map(optEncryptedApplePass =>
-        optEncryptedApplePass.map(encryptedApplePass => decrypt(encryptedApplePass, appConfig.encryptionKey))
+        optEncryptedApplePass.map(encryptedApplePass => decrypt(encryptedApplePass, crypto))
       )
+
+  def findOwnerByPassId(passId: String)(implicit ec: ExecutionContext): Future[Option[PassOwner]] =
+    collection
+      .find[EncryptedPassOwner](Filters.equal("passId", passId))
+      .projection(Projections.include(PassOwner.fields*))
+      .first()
+      .toFutureOption()
+      .map(_.map(EncryptedPassOwner.decrypt(_, crypto)))
 }
@@ -18,13 +18,14 @@ package repositories
 
 import com.google.inject.{Inject, Singleton}
 import config.AppConfig
-import models.encryption.EncryptedGooglePass
+import models.PassOwner
+import models.encryption.{EncryptedGooglePass, EncryptedPassOwner, PassCrypto}
 import models.encryption.EncryptedGooglePass.*
 import models.google.GooglePass
-import org.mongodb.scala.model.{Filters, IndexModel, IndexOptions, Indexes}
+import org.mongodb.scala.model.{Filters, IndexModel, IndexOptions, Indexes, Projections}
 import play.api.Logging
 import uk.gov.hmrc.mongo.MongoComponent
-import uk.gov.hmrc.mongo.play.json.PlayMongoRepository
+import uk.gov.hmrc.mongo.play.json.{Codecs, PlayMongoRepository}
 
 import java.util.concurrent.TimeUnit
 import scala.concurrent.{ExecutionContext, Future}
@@ -54,23 +55,23 @@ class EncryptedGooglePassRepository @Inject() (
             .expireAfter(appConfig.cacheTtl, TimeUnit.SECONDS)
         )
       ),
-      replaceIndexes = true
+      replaceIndexes = true,
+      extraCodecs = Seq(Codecs.playFormatCodec(EncryptedPassOwner.format))
     )
     with Logging
     with GooglePassRepoTrait {
+
+  private val crypto = PassCrypto(appConfig.encryptionKey)
+
   def insert(
     passId: String,
     fullName: String,
     nino: String,
-    expirationDate: String,
-    googlePassUrl: String,
-    qrCode: Array[Byte]
+    expirationDate: String
   )(implicit ec: ExecutionContext): Future[Unit] = {
     logger.info(s"Inserted one in $collectionName table")
     collection
-      .insertOne(
-        encrypt(GooglePass(passId, fullName, nino, expirationDate, googlePassUrl, qrCode), appConfig.encryptionKey)
-      )
+      .insertOne(encrypt(GooglePass(passId, fullName, nino, expirationDate), crypto))
       .head()
       .map(_ => ())
       .recoverWith { case e =>
@@ -80,12 +81,23 @@ class EncryptedGooglePassRepository @Inject() (
       }
   }
 
+  def insertMany(googlePasses: Seq[GooglePass])(implicit ec: ExecutionContext): Future[Set[String]] =
+    PassInserts.insertMany(collection, googlePasses.map(googlePass => googlePass.passId -> encrypt(googlePass, crypto)))
+
   def findByPassId(passId: String)(implicit ec: ExecutionContext): Future[Option[GooglePass]] =
     collection
       .find(Filters.equal("passId", passId))
       .first()
       .toFutureOption()
       .map(optEncryptedGooglePass =>
-        optEncryptedGooglePass.map(encryptedGooglePass => decrypt(encryptedGooglePass, appConfig.encryptionKey))
+        optEncryptedGooglePass.map(encryptedGooglePass => decrypt(encryptedGooglePass, crypto))
       )
+
+  def findOwnerByPassId(passId: String)(implicit ec: ExecutionContext): Future[Option[PassOwner]] =
+    collection
+      .find[EncryptedPassOwner](Filters.equal("passId", passId))
+      .projection(Projections.include(PassOwner.fields*))
+      .first()
+      .toFutureOption()
+      .map(_.map(EncryptedPassOwner.decrypt(_, crypto)))
 }
@@ -16,6 +16,7 @@
 
 package repositories
 
+import models.PassOwner
 import models.google.GooglePass
 import scala.concurrent.{ExecutionContext, Future}
 
@@ -24,11 +25,14 @@ trait GooglePassRepoTrait {
     passId: String,
     fullName: String,
     nino: String,
-    expirationDate: String,
-    googlePassUrl: String,
-    qrCode: Array[Byte]
+    expirationDate: String
   )(implicit ec: ExecutionContext): Future[Unit]
 
+  /** Writes the passes in one round trip and returns the ids of those that were stored. */
+  def insertMany(googlePasses: Seq[GooglePass])(implicit ec: ExecutionContext): Future[Set[String]]
+
   def findByPassId(passId: String)(implicit ec: ExecutionContext): Future[Option[GooglePass]]
 
+  def findOwnerByPassId(passId: String)(implicit ec: ExecutionContext): Future[Option[PassOwner]]
+
 }
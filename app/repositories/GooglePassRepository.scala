@@ -18,11 +18,12 @@ package repositories
 
 import com.google.inject.{Inject, Singleton}
 import config.AppConfig
+import models.PassOwner
 import models.google.GooglePass
-import org.mongodb.scala.model.{Filters, IndexModel, IndexOptions, Indexes}
+import org.mongodb.scala.model.{Filters, IndexModel, IndexOptions, Indexes, Projections}
 import play.api.Logging
 import uk.gov.hmrc.mongo.MongoComponent
-import uk.gov.hmrc.mongo.play.json.PlayMongoRepository
+import uk.gov.hmrc.mongo.play.json.{Codecs, PlayMongoRepository}
 
 import java.util.concurrent.TimeUnit
 import scala.concurrent.{ExecutionContext, Future}
@@ -52,7 +53,8 @@ class GooglePassRepository @Inject() (
             .expireAfter(appConfig.cacheTtl, TimeUnit.SECONDS)
         )
       ),
-      replaceIndexes = true
+      replaceIndexes = true,
+      extraCodecs = Seq(Codecs.playFormatCodec(PassOwner.format))
     )
     with Logging
     with GooglePassRepoTrait {
@@ -60,13 +62,11 @@ class GooglePassRepository @Inject() (
     passId: String,
     fullName: String,
     nino: String,
-    expirationDate: String,
-    googlePassUrl: String,
-    qrCode: Array[Byte]
+    expirationDate: String
   )(implicit ec: ExecutionContext): Future[Unit] = {
     logger.info(s"Inserted one in $collectionName table")
     collection
-      .insertOne(GooglePass(passId, fullName, nino, expirationDate, googlePassUrl, qrCode))
+      .insertOne(GooglePass(passId, fullName, nino, expirationDate))
       .head()
       .map(_ => ())
       .recoverWith { case e =>
@@ -76,8 +76,17 @@ class GooglePassRepository @Inject() (
       }
   }
 
+  def insertMany(googlePasses: Seq[GooglePass])(implicit ec: ExecutionContext): Future[Set[String]] =
+    PassInserts.insertMany(collection, googlePasses.map(googlePass => googlePass.passId -> googlePass))
+
   def findByPassId(passId: String)(implicit ec: ExecutionContext): Future[Option[GooglePass]] =
     collection
       .find(Filters.equal("passId", passId))
       .headOption()
+
+  def findOwnerByPassId(passId: String)(implicit ec: ExecutionContext): Future[Option[PassOwner]] =
+    collection
+      .find[PassOwner](Filters.equal("passId", passId))
+      .projection(Projections.include(PassOwner.fields*))
+      .headOption()
 }
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package repositories
+
+import com.mongodb.MongoBulkWriteException
+import org.mongodb.scala.MongoCollection
+import org.mongodb.scala.model.InsertManyOptions
+import play.api.Logging
+
+import scala.concurrent.{ExecutionContext, Future}
+import scala.jdk.CollectionConverters.*
+import scala.util.control.NonFatal
+
+private[repositories] object PassInserts extends Logging {
+
+  /** Writes a batch of passes in one unordered insertMany, so a single failed document does not stop the rest of the
+    * batch, and returns the ids of the passes that were written.
+    */
+  def insertMany[A](collection: MongoCollection[A], documents: Seq[(String, A)])(implicit
+    ec: ExecutionContext
+  ): Future[Set[String]] =
+    if (documents.isEmpty) {
+      Future.successful(Set.empty)
+    } else {
+      val collectionName = collection.namespace.getCollectionName
+      collection
+        .insertMany(documents.map(_._2), InsertManyOptions().ordered(false))
+        .head()
+        .map { _ =>
+          logger.info(s"Inserted ${documents.size} in $collectionName table")
+          documents.map(_._1).toSet
+        }
+        .recover {
+          case e: MongoBulkWriteException =>
+            val failed = e.getWriteErrors.asScala.map(_.getIndex).toSet
+            logger.warn(s"failed to insert ${failed.size} of ${documents.size} passes into $collectionName table")
+            documents.indices.filterNot(failed.contains).map(documents(_)._1).toSet
+
+          case NonFatal(e) =>
+            logger.warn(s"failed to insert ${documents.size} passes into $collectionName table with ${e.getMessage}")
+            Set.empty
+        }
+    }
+}
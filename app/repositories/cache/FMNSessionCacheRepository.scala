@@ -16,9 +16,11 @@
 
 package repositories.cache
 
+import com.codahale.metrics.MetricRegistry
 import config.AppConfig
 import uk.gov.hmrc.mongo.{CurrentTimestampSupport, MongoComponent}
 
+import java.time.Duration as JavaDuration
 import java.util.concurrent.TimeUnit
 import javax.inject.{Inject, Singleton}
 import scala.concurrent.ExecutionContext
@@ -27,11 +29,20 @@ import scala.concurrent.duration.Duration
 @Singleton
 class FMNSessionCacheRepository @Inject() (
   appConfig: AppConfig,
-  mongoComponent: MongoComponent
+  mongoComponent: MongoComponent,
+  metricRegistry: MetricRegistry
 )(implicit ec: ExecutionContext)
     extends SessionCacheRepository(
       mongoComponent = mongoComponent,
       collectionName = "session-cache",
       ttl = Duration(appConfig.sessionCacheTTLInSeconds, TimeUnit.SECONDS),
-      timestampSupport = new CurrentTimestampSupport()
+      timestampSupport = new CurrentTimestampSupport(),
+      readCache = Option.when(appConfig.sessionReadCacheEnabled)(
+        new SessionReadCache(
+          appConfig.sessionReadCacheMaxSizeInBytes,
+          JavaDuration.ofSeconds(appConfig.sessionCacheTTLInSeconds),
+          JavaDuration.ofSeconds(appConfig.sessionReadCacheTtlInSeconds),
+          metricRegistry
+        )
+      )
     )
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package repositories.cache
+
+import com.codahale.metrics.MetricRegistry
+import com.google.common.cache.{Cache, CacheBuilder, RemovalCause, RemovalListener, RemovalNotification, Weigher}
+
+import java.time.{Clock, Duration, Instant}
+
+/** A bounded in-memory copy of recently created or read passes, keyed by pass id.
+  *
+  * The cache is bounded by the approximate size of the cached passes and evicts least recently used entries first. An
+  * entry is never served after the stored document would have been removed by the Mongo TTL index, which is measured
+  * from the pass's own `lastUpdated` rather than from when it was cached.
+  */
+final class PassReadCache[A <: AnyRef](
+  name: String,
+  maxSizeInBytes: Long,
+  timeToLive: Duration,
+  sizeOf: A => Int,
+  lastUpdated: A => Instant,
+  metricRegistry: MetricRegistry,
+  clock: Clock = Clock.systemUTC()
+) {
+
+  private val hits      = metricRegistry.counter(s"pass-cache.$name.hits")
+  private val misses    = metricRegistry.counter(s"pass-cache.$name.misses")
+  private val evictions = metricRegistry.counter(s"pass-cache.$name.evictions")
+
+  private val passes: Cache[String, A] =
+    CacheBuilder
+      .newBuilder()
+      .maximumWeight(maxSizeInBytes)
+      .weigher(new Weigher[String, A] {
+        override def weigh(passId: String, pass: A): Int = passId.length * 2 + sizeOf(pass)
+      })
+      .expireAfterWrite(timeToLive)
+      .removalListener(new RemovalListener[String, A] {
+        override def onRemoval(notification: RemovalNotification[String, A]): Unit =
+          if (notification.getCause == RemovalCause.SIZE) evictions.inc()
+      })
+      .build[String, A]()
+
+  def get(passId: String): Option[A] =
+    Option(passes.getIfPresent(passId)) match {
+      case Some(pass) if !isExpired(pass) =>
+        hits.inc()
+        Some(pass)
+
+      case Some(_) =>
+        passes.invalidate(passId)
+        misses.inc()
+        None
+
+      case None =>
+        misses.inc()
+        None
+    }
+
+  def put(passId: String, pass: A): Unit =
+    if (!isExpired(pass)) passes.put(passId, pass)
+
+  private def isExpired(pass: A): Boolean =
+    !lastUpdated(pass).plus(timeToLive).isAfter(clock.instant())
+}
+
+object PassReadCache {
+  // Rough per-entry allowance for object headers, the Instant and the cache's own bookkeeping
+  val ENTRY_OVERHEAD_BYTES = 256
+}
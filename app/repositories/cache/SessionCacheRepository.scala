@@ -16,16 +16,23 @@
 
 package repositories.cache
 
+import org.bson.BsonTimestamp
+import org.mongodb.scala.Document
 import org.mongodb.scala.model.IndexModel
-import play.api.libs.json.{Reads, Writes}
+import org.mongodb.scala.model.changestream.ChangeStreamDocument
+import play.api.Logging
+import play.api.libs.json.{JsDefined, JsLookupResult, JsObject, JsResultException, Reads, Writes}
 import uk.gov.hmrc.domain.Nino
 import uk.gov.hmrc.mongo.cache.{CacheIdType, DataKey, MongoCacheRepository}
 import uk.gov.hmrc.mongo.{MongoComponent, MongoDatabaseCollection, TimestampSupport}
 import uk.gov.hmrc.mdc.Mdc
 
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.{CompletableFuture, TimeUnit}
 import javax.inject.{Inject, Singleton}
-import scala.concurrent.duration.Duration
+import scala.concurrent.duration.{Duration, DurationInt, FiniteDuration}
 import scala.concurrent.{ExecutionContext, Future}
+import scala.util.{Failure, Success}
 
 case object NinoCacheId extends CacheIdType[Nino] {
   override def run: Nino => String = _.nino
@@ -37,9 +44,11 @@ abstract class SessionCacheRepository @Inject() (
   override val collectionName: String,
   replaceIndexes: Boolean = true,
   ttl: Duration,
-  timestampSupport: TimestampSupport
+  timestampSupport: TimestampSupport,
+  readCache: Option[SessionReadCache] = None
 )(implicit ec: ExecutionContext)
-    extends MongoDatabaseCollection {
+    extends MongoDatabaseCollection
+    with Logging {
   /*
     This class exists in hmrc-mongo library but uses the sessionId from the request session.
     This service is backend-only, so entries are keyed by NINO instead.
@@ -57,6 +66,11 @@ abstract class SessionCacheRepository @Inject() (
   override val indexes: Seq[IndexModel] =
     cacheRepo.indexes
 
+  // Consecutive change stream failures, which set how long to wait before reopening it
+  private val streamFailures = new AtomicInteger()
+
+  readCache.foreach(watchForChanges)
+
   def putSession[T: Writes](
     dataKey: DataKey[T],
     data: T,
@@ -65,21 +79,108 @@ abstract class SessionCacheRepository @Inject() (
     Mdc.preservingMdc {
       cacheRepo
         .put[T](nino)(dataKey, data)
-        .map(res => "nino" -> res.id)
+        .map { res =>
+          invalidateReadCache(nino)
+          "nino" -> res.id
+        }
     }
 
   def getFromSession[T: Reads](dataKey: DataKey[T], nino: Nino): Future[Option[T]] =
     Mdc.preservingMdc {
-      cacheRepo.get[T](nino)(dataKey)
+      readCache match {
+        case Some(cache) if cache.isEnabled =>
+          readThrough(cache, nino).map(_.flatMap(SessionCacheRepository.valueAt(_, dataKey)))
+        case _                              =>
+          cacheRepo.get[T](nino)(dataKey)
+      }
     }
 
   def deleteFromSession[T](dataKey: DataKey[T], nino: Nino): Future[Unit] =
     Mdc.preservingMdc {
-      cacheRepo.delete(nino)(dataKey)
+      cacheRepo.delete(nino)(dataKey).map(_ => invalidateReadCache(nino))
     }
 
   def deleteAllFromSession(nino: Nino): Future[Unit] =
     Mdc.preservingMdc {
-      cacheRepo.deleteEntity(nino)
+      cacheRepo.deleteEntity(nino).map(_ => invalidateReadCache(nino))
+    }
+
+  private def readThrough(cache: SessionReadCache, nino: Nino): Future[Option[JsObject]] =
+    cache.get(nino.nino) match {
+      case Some(data) => Future.successful(Some(data))
+      case None       =>
+        val generation = cache.currentGeneration
+        cacheRepo.findById(nino).map { item =>
+          item.foreach(cache.put(nino.nino, _, generation))
+          item.map(_.data)
+        }
     }
+
+  private def invalidateReadCache(nino: Nino): Unit =
+    readCache.foreach(_.invalidate(nino.nino))
+
+  /** Other instances change documents too, so every change seen on the collection drops the local copy of that
+    * document. The stream starts from a cluster time taken before the cache is enabled, so a change made while it is
+    * still opening is replayed rather than missed. If the stream fails the cache is switched off until it has been
+    * reopened; on a standalone Mongo, which has no change streams, it stays off.
+    */
+  private def watchForChanges(cache: SessionReadCache): Unit =
+    mongoComponent.database
+      .runCommand(Document("ping" -> 1))
+      .toFuture()
+      .map(_.get[BsonTimestamp]("operationTime"))
+      .onComplete {
+        case Success(Some(startAt))            => openChangeStream(cache, startAt)
+        case Success(None)                     =>
+          logger.warn(s"Mongo has no change streams, serving $collectionName from Mongo only")
+        case Failure(_: IllegalStateException) => () // The client has been closed as the application stops
+        case Failure(ex)                       => restartChangeStream(cache, ex)
+      }
+
+  private def openChangeStream(cache: SessionReadCache, startAt: BsonTimestamp): Unit = {
+    mongoComponent.database
+      .getCollection(collectionName)
+      .watch()
+      .startAtOperationTime(startAt)
+      .subscribe(
+        (change: ChangeStreamDocument[Document]) => {
+          streamFailures.set(0)
+          Option(change.getDocumentKey).flatMap(key => Option(key.get("_id"))).filter(_.isString) match {
+            case Some(id) => cache.invalidate(id.asString.getValue)
+            case None     => cache.invalidateAll()
+          }
+        },
+        (ex: Throwable) => restartChangeStream(cache, ex),
+        () => restartChangeStream(cache, new IllegalStateException("Change stream closed"))
+      )
+    cache.enable()
+  }
+
+  private def restartChangeStream(cache: SessionReadCache, cause: Throwable): Unit = {
+    cache.disable()
+    val failures = streamFailures.incrementAndGet()
+    val delay    = SessionCacheRepository.restartDelay(failures)
+    logger.warn(s"Session cache change stream unavailable, serving $collectionName from Mongo only for $delay", cause)
+    CompletableFuture
+      .delayedExecutor(delay.toMillis, TimeUnit.MILLISECONDS)
+      .execute(() => watchForChanges(cache))
+  }
+}
+
+object SessionCacheRepository {
+
+  private val InitialRestartDelay = 1.second
+  private val MaxRestartDelay     = 1.minute
+
+  // Doubles with each consecutive failure, up to MaxRestartDelay
+  private def restartDelay(failures: Int): FiniteDuration =
+    (InitialRestartDelay * math.pow(2, math.min(failures - 1, 6)).toLong).min(MaxRestartDelay)
+
+  // Mirrors MongoCacheRepository.get, which stores a dotted data key as nested fields
+  private def valueAt[T: Reads](data: JsObject, dataKey: DataKey[T]): Option[T] =
+    dataKey.unwrap
+      .split('.')
+      .foldLeft[JsLookupResult](JsDefined(data))(_ \ _)
+      .validateOpt[T]
+      .fold(errors => throw JsResultException(errors), identity)
 }
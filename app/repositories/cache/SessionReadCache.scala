@@ -0,0 +1,134 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package repositories.cache
+
+import com.codahale.metrics.MetricRegistry
+import com.google.common.cache.{Cache, CacheBuilder, RemovalCause, RemovalListener, RemovalNotification, Weigher}
+import play.api.libs.json.{JsObject, Json}
+import uk.gov.hmrc.mongo.cache.CacheItem
+
+import java.nio.charset.StandardCharsets.UTF_8
+import java.time.{Clock, Duration, Instant}
+import java.util.concurrent.atomic.AtomicLong
+
+/** A bounded in-memory copy of recently read session cache documents, keyed by NINO.
+  *
+  * Each entry mirrors one Mongo document as the JSON stored there, so sensitive values stay encrypted and are only
+  * decrypted by the caller's `Reads`. An entry is never served after the document would have been removed by the
+  * Mongo TTL index, which is measured from the document's own `modifiedAt`, nor once it has been held for
+  * `maxEntryAge`, which bounds how long a change the repository was not told about can go unnoticed.
+  *
+  * The cache starts disabled. The repository enables it once it is told about changes made by other instances, and
+  * disables it again if it stops being told.
+  */
+final class SessionReadCache(
+  maxSizeInBytes: Long,
+  timeToLive: Duration,
+  maxEntryAge: Duration,
+  metricRegistry: MetricRegistry,
+  clock: Clock = Clock.systemUTC()
+) {
+
+  import SessionReadCache.*
+
+  private val hits      = metricRegistry.counter("session-cache.l1.hits")
+  private val misses    = metricRegistry.counter("session-cache.l1.misses")
+  private val evictions = metricRegistry.counter("session-cache.l1.evictions")
+
+  @volatile private var enabled = false
+
+  // Bumped by every invalidation, so a read from Mongo that raced one is not cached
+  private val generation = new AtomicLong()
+
+  private val documents: Cache[String, CachedDocument] =
+    CacheBuilder
+      .newBuilder()
+      .maximumWeight(maxSizeInBytes)
+      .weigher(new Weigher[String, CachedDocument] {
+        override def weigh(nino: String, document: CachedDocument): Int =
+          nino.length * 2 + document.json.length + ENTRY_OVERHEAD_BYTES
+      })
+      .expireAfterWrite(maxEntryAge)
+      .removalListener(new RemovalListener[String, CachedDocument] {
+        override def onRemoval(notification: RemovalNotification[String, CachedDocument]): Unit =
+          if (notification.getCause == RemovalCause.SIZE) evictions.inc()
+      })
+      .build[String, CachedDocument]()
+
+  def isEnabled: Boolean = enabled
+
+  /** Taken before reading from Mongo and handed back to [[put]]. */
+  def currentGeneration: Long = generation.get()
+
+  def get(nino: String): Option[JsObject] =
+    Option(documents.getIfPresent(nino)) match {
+      case Some(document) if enabled && !isExpired(document) =>
+        hits.inc()
+        Some(Json.parse(document.json).as[JsObject])
+
+      case Some(_) =>
+        documents.invalidate(nino)
+        misses.inc()
+        None
+
+      case None =>
+        misses.inc()
+        None
+    }
+
+  def put(nino: String, item: CacheItem, readAtGeneration: Long): Unit =
+    if (enabled && !isPastMongoTtl(item.modifiedAt)) {
+      val document = CachedDocument(Json.stringify(item.data).getBytes(UTF_8), item.modifiedAt, clock.instant())
+      documents.put(nino, document)
+      // An invalidation that landed while this document was being read wins
+      if (generation.get() != readAtGeneration) documents.asMap().remove(nino, document)
+    }
+
+  def invalidate(nino: String): Unit = {
+    generation.incrementAndGet()
+    documents.invalidate(nino)
+  }
+
+  def invalidateAll(): Unit = {
+    generation.incrementAndGet()
+    documents.invalidateAll()
+  }
+
+  // Reads that started before the cache was enabled are not cached, as nothing was watching for changes then
+  def enable(): Unit = {
+    generation.incrementAndGet()
+    enabled = true
+  }
+
+  def disable(): Unit = {
+    enabled = false
+    invalidateAll()
+  }
+
+  private def isPastMongoTtl(modifiedAt: Instant): Boolean =
+    !modifiedAt.plus(timeToLive).isAfter(clock.instant())
+
+  private def isExpired(document: CachedDocument): Boolean =
+    isPastMongoTtl(document.modifiedAt) || !document.cachedAt.plus(maxEntryAge).isAfter(clock.instant())
+}
+
+object SessionReadCache {
+  // Rough per-entry allowance for object headers, the Instant and the cache's own bookkeeping
+  val ENTRY_OVERHEAD_BYTES = 128
+
+  private final case class CachedDocument(json: Array[Byte], modifiedAt: Instant, cachedAt: Instant)
+}
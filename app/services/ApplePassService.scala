@@ -17,25 +17,36 @@
 package services
 
 import cats.data.EitherT
+import com.codahale.metrics.{MetricRegistry, Timer}
 import config.AppConfig
-import models.apple.ApplePassCard
+import models.apple.{ApplePass, ApplePassCard, ApplePassDetails}
 import play.api.Logging
 import repositories.ApplePassRepoTrait
+import services.qrcode.QrCodeVariant
 
 import java.util.UUID
 import javax.inject.*
 import scala.concurrent.{ExecutionContext, Future}
+import scala.util.control.NonFatal
 
 class ApplePassService @Inject() (
   val config: AppConfig,
   val applePassRepository: ApplePassRepoTrait,
   val fileService: FileService,
   val signatureService: SignatureService,
-  val qrCodeService: QrCodeService
+  val signingMaterialRegistry: ApplePassSigningMaterialRegistry,
+  val passQrCodeService: PassQrCodeService,
+  val passBuildPool: PassBuildPool,
+  val metricRegistry: MetricRegistry
 ) extends Logging {
 
   private val signingEnabled: Boolean = config.applePassSigningEnabled
 
+  private val passFilesStage       = metricRegistry.timer("apple-pass.create.pass-files")
+  private val signingMaterialStage = metricRegistry.timer("apple-pass.create.signing-material")
+  private val signAndZipStage      = metricRegistry.timer("apple-pass.create.sign-and-zip")
+  private val storeStage           = metricRegistry.timer("apple-pass.create.store")
+
   private def ninoMatches(storedNino: String, sessionNino: String): Boolean =
     storedNino.replace(" ", "").take(8) == sessionNino.take(8)
 
@@ -54,12 +65,18 @@ class ApplePassService @Inject() (
         None
     }
 
-  def getQrCodeByPassIdAndNINO(passId: String, nino: String)(implicit
+  /** Checks ownership from the owner projection alone, so a conditional request can be answered without loading the
+    * stored pass.
+    */
+  def isPassOwnedBy(passId: String, nino: String)(implicit ec: ExecutionContext): Future[Boolean] =
+    applePassRepository.findOwnerByPassId(passId).map(_.exists(owner => ninoMatches(owner.nino, nino)))
+
+  def getQrCodeByPassIdAndNINO(passId: String, nino: String, variant: QrCodeVariant)(implicit
     ec: ExecutionContext
   ): Future[Option[Array[Byte]]] =
-    applePassRepository.findByPassId(passId).map {
-      case Some(applePass) if ninoMatches(applePass.nino, nino) =>
-        Some(applePass.qrCode)
+    applePassRepository.findOwnerByPassId(passId).map {
+      case Some(owner) if ninoMatches(owner.nino, nino) =>
+        passQrCodeService.applePassQrCode(owner.passId, variant)
 
       case Some(_) =>
         logger.warn("Pass NINO does not match session NINO")
@@ -71,81 +88,125 @@ class ApplePassService @Inject() (
 
   def createPass(name: String, nino: String)(implicit ec: ExecutionContext): EitherT[Future, Exception, String] =
     EitherT {
-      val uuid = UUID.randomUUID().toString
-      val pass = ApplePassCard(name, nino, uuid)
+      val uuid         = UUID.randomUUID().toString
+      val pkPassWriter = fileService.newPkPassWriter()
 
-      val passFilesInBytes = fileService.createFileBytesForPass(pass)
-
-      if (passFilesInBytes.isEmpty) {
-        Future.successful(
-          Left(new Exception("Problem occurred while creating Apple Pass. Pass files generated: false"))
-        )
-      } else {
-
-        val signatureF: Future[FileAsBytes] =
-          if (!signingEnabled) {
-            Future.successful(FileAsBytes(SignatureService.SIGNATURE_FILE_NAME, Array.emptyByteArray))
-          } else {
-            config.appleCerts.map { certs =>
-              signatureService.createSignatureForPass(
-                passFilesInBytes,
-                certs.privateCert,
-                certs.privateCertPassword,
-                certs.wwdrca
-              )
+      // The pass files (everything in the zip but the signature) are written on the build pool while the signing
+      // material is resolved; only signing and closing the zip wait for both
+      val manifestF = timed(passFilesStage) {
+        passBuildPool.submit(pkPassWriter.writePassContent(ApplePassCard(name, nino, uuid)))
+      }
+      val signerF = timed(signingMaterialStage)(passSigner)
+
+      val built: Future[Either[Exception, Array[Byte]]] =
+        manifestF.flatMap {
+          case None           => Future.successful(Left(passFilesNotGenerated))
+          case Some(manifest) =>
+            signerF.flatMap { sign =>
+              timed(signAndZipStage)(passBuildPool.submit(finishPkPass(pkPassWriter, manifest, sign)))
             }
-          }
+        }
 
-        signatureF.flatMap { signature =>
-          val signatureOk = !signingEnabled || signature.content.nonEmpty
-
-          if (!signatureOk) {
-            logger.error(
-              s"[Creating Apple Pass] Signature failed. isPassFilesGenerated: ${passFilesInBytes.nonEmpty} || isPassSigned: false"
-            )
-            Future.successful(
-              Left(
-                new Exception(
-                  s"Problem occurred while creating Apple Pass. Pass files generated: true, Pass files signed: false"
-                )
-              )
-            )
-          } else {
-
-            val passDataOpt =
-              for {
-                pkPassByteArray <- fileService.createPkPassZipForPass(passFilesInBytes, signature)
-                qrCodeByteArray <-
-                  qrCodeService.createQRCode(s"${config.frontendServiceUrl}/get-pass-card?passId=$uuid&qr-code=true")
-              } yield (pkPassByteArray, qrCodeByteArray)
-
-            passDataOpt match {
-              case Some((pkPass, qrCode)) =>
-                applePassRepository
-                  .insert(uuid, name, nino, pkPass, qrCode)
-                  .map(_ => Right(uuid))
-                  .recover { case e =>
-                    Left(new Exception("Problem occurred while storing Apple Pass.", e))
-                  }
-
-              case None =>
-                logger.error(
-                  s"[Creating Apple Pass] Zip/QRCode generation failed. " +
-                    s"isPassFilesGenerated: ${passFilesInBytes.nonEmpty} || isPassSigned: ${signature.content.nonEmpty}"
-                )
-                Future.successful(
-                  Left(
-                    new Exception(
-                      s"Problem occurred while creating Apple Pass. " +
-                        s"Pass files generated: ${passFilesInBytes.nonEmpty}, Pass files signed: ${signature.content.nonEmpty}"
-                    )
-                  )
-                )
+      val created: Future[Either[Exception, String]] = built.flatMap {
+        case Right(pkPass) =>
+          timed(storeStage)(applePassRepository.insert(uuid, name, nino, pkPass))
+            .map(_ => Right(uuid))
+            .recover { case e =>
+              Left(new Exception("Problem occurred while storing Apple Pass.", e))
             }
+
+        case Left(error) =>
+          Future.successful(Left(error))
+      }
+
+      created.andThen { case _ => pkPassWriter.close() }
+    }
+
+  /** Creates a pass for each of the details, building them in parallel on the pass build pool and writing each chunk
+    * with a single insertMany. Signing material is resolved once for the whole batch. Results are in the order of
+    * `passDetails`, holding the new pass id or the reason that pass was not created.
+    */
+  def createPasses(passDetails: Seq[ApplePassDetails])(implicit
+    ec: ExecutionContext
+  ): Future[Seq[Either[Exception, String]]] =
+    passSigner.flatMap { sign =>
+      passBuildPool.createInChunks(passDetails) { details =>
+        val uuid = UUID.randomUUID().toString
+        buildPkPass(ApplePassCard(details.fullName, details.nino, uuid), sign)
+          .map(pkPass => ApplePass(uuid, details.fullName, details.nino, pkPass))
+      } { applePasses =>
+        applePassRepository.insertMany(applePasses).map { inserted =>
+          applePasses.map { applePass =>
+            if (inserted.contains(applePass.passId)) Right(applePass.passId)
+            else Left(new Exception("Problem occurred while storing Apple Pass."))
           }
         }
       }
     }
+
+  private def passSigner(implicit ec: ExecutionContext): Future[Array[Byte] => FileAsBytes] = {
+    val unsigned: Array[Byte] => FileAsBytes =
+      _ => FileAsBytes(SignatureService.SIGNATURE_FILE_NAME, Array.emptyByteArray)
+
+    if (!signingEnabled) {
+      Future.successful(unsigned)
+    } else {
+      signingMaterialRegistry.current
+        .map[Array[Byte] => FileAsBytes] { signingMaterial => manifest =>
+          signatureService.createSignatureForPass(manifest, signingMaterial)
+        }
+        .recover { case NonFatal(ex) =>
+          logger.error("[Creating Apple Pass] Signing material unavailable", ex)
+          unsigned
+        }
+    }
+  }
+
+  private def buildPkPass(pass: ApplePassCard, sign: Array[Byte] => FileAsBytes): Either[Exception, Array[Byte]] = {
+    val pkPassWriter = fileService.newPkPassWriter()
+    try
+      pkPassWriter
+        .writePassContent(pass)
+        .toRight(passFilesNotGenerated)
+        .flatMap(manifest => finishPkPass(pkPassWriter, manifest, sign))
+    finally pkPassWriter.close()
+  }
+
+  private def finishPkPass(
+    pkPassWriter: PkPassWriter,
+    manifest: Array[Byte],
+    sign: Array[Byte] => FileAsBytes
+  ): Either[Exception, Array[Byte]] = {
+    val signature = sign(manifest)
+
+    if (signingEnabled && signature.content.isEmpty) {
+      logger.error("[Creating Apple Pass] Signature failed. isPassFilesGenerated: true || isPassSigned: false")
+      Left(
+        new Exception(
+          "Problem occurred while creating Apple Pass. Pass files generated: true, Pass files signed: false"
+        )
+      )
+    } else {
+      pkPassWriter.finish(signature).toRight {
+        logger.error(
+          "[Creating Apple Pass] Zip generation failed. " +
+            s"isPassFilesGenerated: true || isPassSigned: ${signature.content.nonEmpty}"
+        )
+        new Exception(
+          "Problem occurred while creating Apple Pass. " +
+            s"Pass files generated: true, Pass files signed: ${signature.content.nonEmpty}"
+        )
+      }
+    }
+  }
+
+  private def timed[A](stage: Timer)(future: => Future[A])(implicit ec: ExecutionContext): Future[A] = {
+    val timer = stage.time()
+    future.andThen { case _ => timer.stop() }
+  }
+
+  private def passFilesNotGenerated: Exception =
+    new Exception("Problem occurred while creating Apple Pass. Pass files generated: false")
 }
 
 object ApplePassService {
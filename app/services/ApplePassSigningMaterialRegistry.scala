@@ -0,0 +1,68 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package services
+
+import config.AppConfig
+import config.AppConfig.AppleCerts
+import play.api.Logging
+
+import java.util.concurrent.atomic.AtomicReference
+import javax.inject.{Inject, Singleton}
+import scala.concurrent.{ExecutionContext, Future}
+import scala.util.Try
+
+/** Holds the parsed signing material for each Apple certificate set so that pass creation never has to decode or
+  * load a key store. The active set is still chosen per call through AppConfig.appleCerts (whose feature flag lookup
+  * is cached by the toggles client), so flipping ApplePassCertificates2 switches sets without a restart. Sets are
+  * keyed on their configured values, so changed config is parsed once and replaces the oldest entry.
+  */
+@Singleton
+class ApplePassSigningMaterialRegistry @Inject() (config: AppConfig) extends Logging {
+
+  import ApplePassSigningMaterialRegistry.*
+
+  private val parsedSets: AtomicReference[Vector[(AppleCerts, Try[ApplePassSigningMaterial])]] =
+    new AtomicReference(Vector.empty)
+
+  def current(implicit ec: ExecutionContext): Future[ApplePassSigningMaterial] =
+    config.appleCerts.flatMap(certs => Future.fromTry(materialFor(certs)))
+
+  def warmUp(): Unit =
+    if (config.applePassSigningEnabled) {
+      Seq(config.primaryAppleCerts, config.secondaryAppleCerts).foreach(certs => materialFor(certs))
+    }
+
+  private[services] def materialFor(certs: AppleCerts): Try[ApplePassSigningMaterial] =
+    parsedSets
+      .get()
+      .collectFirst { case (parsedCerts, material) if parsedCerts == certs => material }
+      .getOrElse {
+        val material =
+          SignatureService.loadSigningMaterial(certs.privateCert, certs.privateCertPassword, certs.wwdrca)
+        material.failed.foreach(ex => logger.error("Unable to load Apple pass signing material", ex))
+
+        parsedSets.updateAndGet { sets =>
+          (sets.filterNot(_._1 == certs) :+ (certs -> material)).takeRight(MaxCertificateSets)
+        }
+        material
+      }
+}
+
+object ApplePassSigningMaterialRegistry {
+  // applePass.* and applePass.*2
+  val MaxCertificateSets = 2
+}
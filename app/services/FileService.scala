@@ -16,75 +16,29 @@
 
 package services
 
-import com.google.common.hash.Hashing
+import com.codahale.metrics.MetricRegistry
 import models.apple.{ApplePassCard, ApplePassField, ApplePassGeneric}
 import play.api.Logging
 import play.api.libs.json.{Json, OFormat}
+import util.SizeClassBufferPool
 
-import java.io.ByteArrayOutputStream
-import java.nio.charset.StandardCharsets
-import java.util.zip.{ZipEntry, ZipOutputStream}
-import javax.inject.Inject
-import scala.annotation.nowarn
-import scala.util.{Success, Try}
+import javax.inject.{Inject, Singleton}
 
 case class FileAsBytes(filename: String, content: Array[Byte])
 
-class FileService @Inject() () extends Logging {
+@Singleton
+class FileService @Inject() (passAssetBundle: PassAssetBundle, metricRegistry: MetricRegistry) extends Logging {
 
   import FileService._
 
-  def createFileBytesForPass(pass: ApplePassCard): List[FileAsBytes] = {
+  private val bufferPool = new SizeClassBufferPool(BUFFER_SIZE_CLASSES, MAX_POOLED_BUFFERS_PER_CLASS)
 
-    val iconSource = getClass.getResourceAsStream(ICON_RESOURCE_PATH).readAllBytes()
-    val logoSource = getClass.getResourceAsStream(LOGO_RESOURCE_PATH).readAllBytes()
+  private val allocatedBytesPerPass = metricRegistry.histogram("apple-pass.pkpass.allocated-bytes")
 
-    val filePass = FileAsBytes(PASS_FILE_NAME, Json.toJson(pass).toString().getBytes(StandardCharsets.UTF_8))
-    val iconFile = FileAsBytes(ICON_FILE_NAME, iconSource)
-    val logoFile = FileAsBytes(LOGO_FILE_NAME, logoSource)
+  private val initialBufferSize = passAssetBundle.assets.map(_.content.length).sum + PASS_CONTENT_ALLOWANCE
 
-    val manifestInput: List[FileAsBytes] = List(filePass, iconFile, logoFile)
-    val createdManifest: FileAsBytes     = createManifest(manifestInput).getOrElse(FileAsBytes("", Array.emptyByteArray))
-
-    if (
-      filePass.content.nonEmpty && iconFile.content.nonEmpty && logoFile.content.nonEmpty && createdManifest.content.nonEmpty
-    ) {
-      List(filePass, iconFile, logoFile, createdManifest)
-    } else {
-      List.empty
-    }
-  }
-
-  def createPkPassZipForPass(passContent: List[FileAsBytes], signatureContent: FileAsBytes): Option[Array[Byte]] =
-    Try {
-      val byteArrayOStream = new ByteArrayOutputStream()
-      val zip              = new ZipOutputStream(byteArrayOStream)
-
-      passContent.foreach { file =>
-        zip.putNextEntry(new ZipEntry(file.filename))
-        zip.write(file.content)
-        zip.closeEntry()
-      }
-      zip.putNextEntry(new ZipEntry(signatureContent.filename)) // add signature file to zip file
-      zip.write(signatureContent.content)
-      zip.close()
-      byteArrayOStream
-    } match {
-      case Success(value) => Some(value.toByteArray)
-      case _              => None
-    }
-
-  private def createManifest(files: List[FileAsBytes]): Option[FileAsBytes] =
-    Try {
-      // If you must interoperate with a system that requires SHA-1, then use this method, despite its deprecation.
-      // As this is linked with Apple / Google integration we plan to use SHA1 as per current live processing for interop.
-      @nowarn
-      val map: Map[String, String] = files.map(p => (p.filename, Hashing.sha1().hashBytes(p.content).toString)).toMap
-      FileAsBytes(MANIFEST_JSON_FILE_NAME, Json.toJson(map).toString().getBytes(StandardCharsets.UTF_8))
-    } match {
-      case Success(value) => Some(value)
-      case _              => None
-    }
+  def newPkPassWriter(): PkPassWriter =
+    new PkPassWriter(passAssetBundle, bufferPool, initialBufferSize, allocatedBytesPerPass)
 }
 
 object FileService {
@@ -95,7 +49,15 @@ object FileService {
   val PASS_FILE_NAME          = "pass.json"
   val ICON_FILE_NAME          = "icon.png"
   val LOGO_FILE_NAME          = "logo.png" // top of the card logo
+  val ICON_2X_FILE_NAME       = "icon@2x.png"
+  val LOGO_2X_FILE_NAME       = "logo@2x.png"
   val MANIFEST_JSON_FILE_NAME = "manifest.json"
-  val ICON_RESOURCE_PATH      = s"/resources/pass/$ICON_FILE_NAME"
-  val LOGO_RESOURCE_PATH      = s"/resources/pass/$LOGO_FILE_NAME"
+  val PASS_RESOURCE_DIRECTORY = "/resources/pass"
+  val ICON_RESOURCE_PATH      = s"$PASS_RESOURCE_DIRECTORY/$ICON_FILE_NAME"
+  val LOGO_RESOURCE_PATH      = s"$PASS_RESOURCE_DIRECTORY/$LOGO_FILE_NAME"
+
+  // pass.json, manifest, signature and zip headers come to a few KB on top of the static images
+  val PASS_CONTENT_ALLOWANCE: Int       = 8 * 1024
+  val BUFFER_SIZE_CLASSES: Seq[Int]     = Seq(16, 32, 64, 128, 256).map(_ * 1024)
+  val MAX_POOLED_BUFFERS_PER_CLASS: Int = 32
 }
@@ -16,11 +16,12 @@
 
 package services
 
-import com.google.auth.oauth2.GoogleCredentials
 import config.AppConfig
+import models.google.{GooglePass, GooglePassDetails}
 import play.api.Logging
 import repositories.GooglePassRepoTrait
-import services.googlepass.GooglePassUtil
+import services.googlepass.*
+import services.qrcode.QrCodeVariant
 
 import java.util.UUID
 import javax.inject.*
@@ -30,31 +31,57 @@ class GooglePassService @Inject() (
   val config: AppConfig,
   val googlePassUtil: GooglePassUtil,
   val googlePassRepository: GooglePassRepoTrait,
-  val qrCodeService: QrCodeService
+  val passQrCodeService: PassQrCodeService,
+  val signingMaterialRegistry: GooglePassSigningMaterialRegistry,
+  val googlePassUrlCache: GooglePassUrlCache,
+  val passBuildPool: PassBuildPool
 ) extends Logging {
 
   private def ninoMatches(storedNino: String, sessionNino: String): Boolean =
     storedNino.replace(" ", "").take(8) == sessionNino.take(8)
 
+  /** Returns a save URL for the pass. The URL's JWT expires after `googlePass.expiry` minutes, so it is minted on
+    * demand rather than stored, and reused for repeat fetches until shortly before it expires. Signing runs on the pass
+    * build pool, so a saturated pool fails the fetch with [[PassBuildRejectedException]].
+    */
   def getPassUrlByPassIdAndNINO(passId: String, nino: String)(implicit ec: ExecutionContext): Future[Option[String]] =
-    googlePassRepository.findByPassId(passId).map {
+    googlePassRepository.findByPassId(passId).flatMap {
       case Some(googlePass) if ninoMatches(googlePass.nino, nino) =>
-        Some(googlePass.googlePassUrl)
+        Future.fromTry(signingMaterialRegistry.current).flatMap { signingMaterial =>
+          googlePassUrlCache
+            .getOrMint(googlePass.passId) {
+              passBuildPool.submit(
+                googlePassUtil.createGooglePassWithCredentials(
+                  googlePass.passId,
+                  googlePass.fullName,
+                  googlePass.nino,
+                  signingMaterial
+                )
+              )
+            }
+            .map(Some(_))
+        }
 
       case Some(_) =>
         logger.warn("Pass NINO does not match session NINO")
-        None
+        Future.successful(None)
 
       case None =>
-        None
+        Future.successful(None)
     }
 
-  def getQrCodeByPassIdAndNINO(passId: String, nino: String)(implicit
+  /** Checks ownership from the owner projection alone, so a conditional request can be answered without loading the
+    * stored pass.
+    */
+  def isPassOwnedBy(passId: String, nino: String)(implicit ec: ExecutionContext): Future[Boolean] =
+    googlePassRepository.findOwnerByPassId(passId).map(_.exists(owner => ninoMatches(owner.nino, nino)))
+
+  def getQrCodeByPassIdAndNINO(passId: String, nino: String, variant: QrCodeVariant)(implicit
     ec: ExecutionContext
   ): Future[Option[Array[Byte]]] =
-    googlePassRepository.findByPassId(passId).map {
-      case Some(googlePass) if ninoMatches(googlePass.nino, nino) =>
-        Some(googlePass.qrCode)
+    googlePassRepository.findOwnerByPassId(passId).map {
+      case Some(owner) if ninoMatches(owner.nino, nino) =>
+        passQrCodeService.googlePassQrCode(owner.passId, variant)
 
       case Some(_) =>
         logger.warn("Pass NINO does not match session NINO")
@@ -64,25 +91,64 @@ class GooglePassService @Inject() (
         None
     }
 
+  /** Stores the pass details only; the save URL is minted when it is fetched. Creation still fails while the signing
+    * material is unavailable, rather than storing a pass that could not be saved to a wallet.
+    */
   def createPassWithCredentials(
     name: String,
     nino: String,
-    expirationDate: String,
-    googleCredentials: GoogleCredentials
-  )(implicit ec: ExecutionContext): Future[Either[Exception, String]] = {
-
-    val uuid                  = UUID.randomUUID().toString
-    val googlePassUrl: String = googlePassUtil.createGooglePassWithCredentials(name, nino, googleCredentials)
-
-    val qrCode: Array[Byte] = qrCodeService
-      .createQRCode(s"${config.frontendServiceUrl}/get-google-pass?passId=$uuid&qr-code=true")
-      .getOrElse(Array.emptyByteArray)
-
-    googlePassRepository
-      .insert(uuid, name, nino, expirationDate, googlePassUrl, qrCode)
-      .map(_ => Right(uuid))
-      .recover { case e =>
-        Left(new Exception("Problem occurred while storing Google Pass.", e))
+    expirationDate: String
+  )(implicit ec: ExecutionContext): Future[Either[Exception, String]] =
+    signingMaterial match {
+      case Left(error) =>
+        Future.successful(Left(error))
+
+      case Right(_) =>
+        val uuid = UUID.randomUUID().toString
+
+        googlePassRepository
+          .insert(uuid, name, nino, expirationDate)
+          .map(_ => Right(uuid))
+          .recover { case e =>
+            Left(new Exception("Problem occurred while storing Google Pass.", e))
+          }
+    }
+
+  /** Creates a pass for each of the details, writing each chunk with a single insertMany. Results are in the order of
+    * `passDetails`. Only the pass details are stored, so there is nothing to build on the pass build pool.
+    */
+  def createPassesWithCredentials(
+    passDetails: Seq[GooglePassDetails],
+    expirationDate: String
+  )(implicit ec: ExecutionContext): Future[Seq[Either[Exception, String]]] =
+    signingMaterial match {
+      case Left(error) =>
+        Future.successful(passDetails.map(_ => Left(error)))
+
+      case Right(_) =>
+        passDetails
+          .grouped(config.passBatchChunkSize)
+          .foldLeft(Future.successful(Vector.empty[Either[Exception, String]])) { (stored, chunk) =>
+            stored.flatMap(results => insertChunk(chunk, expirationDate).map(results ++ _))
+          }
+    }
+
+  private def insertChunk(chunk: Seq[GooglePassDetails], expirationDate: String)(implicit
+    ec: ExecutionContext
+  ): Future[Seq[Either[Exception, String]]] = {
+    val googlePasses =
+      chunk.map(details => GooglePass(UUID.randomUUID().toString, details.fullName, details.nino, expirationDate))
+
+    googlePassRepository.insertMany(googlePasses).map { inserted =>
+      googlePasses.map { googlePass =>
+        if (inserted.contains(googlePass.passId)) Right(googlePass.passId)
+        else Left(new Exception("Problem occurred while storing Google Pass."))
       }
+    }
   }
+
+  private def signingMaterial: Either[Exception, GooglePassSigningMaterial] =
+    signingMaterialRegistry.current.toEither.left.map { ex =>
+      new Exception("Problem occurred while creating Google Pass. Signing material unavailable", ex)
+    }
 }
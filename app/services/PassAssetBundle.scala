@@ -0,0 +1,94 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package services
+
+import com.google.common.hash.Hashing
+import play.api.Logging
+import play.api.libs.json.{JsString, Json}
+
+import java.io.ByteArrayOutputStream
+import java.nio.charset.StandardCharsets
+import java.util.zip.CRC32
+import javax.inject.{Inject, Singleton}
+import scala.annotation.nowarn
+import scala.util.Using
+
+final case class PassAsset(filename: String, content: Array[Byte], sha1: String, crc32: Long) {
+  val file: FileAsBytes = FileAsBytes(filename, content)
+}
+
+/** The images bundled into every pkpass, read from the classpath once at startup together with their SHA-1 digests
+  * and the matching manifest entries, so only pass.json has to be hashed per pass.
+  */
+@Singleton
+class PassAssetBundle @Inject() () extends Logging {
+
+  import FileService.*
+  import PassAssetBundle.*
+
+  val assets: List[PassAsset] =
+    RequiredAssets.map(filename =>
+      loadAsset(filename).getOrElse(throw new IllegalStateException(s"Missing pass asset $filename"))
+    ) ++ OptionalAssets.flatMap(loadAsset)
+
+  val files: List[FileAsBytes] = assets.map(_.file)
+
+  private val manifestFragment: Array[Byte] =
+    assets.map(asset => manifestEntry(asset.filename, asset.sha1)).mkString(",").getBytes(StandardCharsets.UTF_8)
+
+  logger.info(s"Loaded pass assets: ${assets.map(_.filename).mkString(", ")}")
+
+  def manifestFor(passContent: Array[Byte]): Array[Byte] =
+    manifestForPassDigest(sha1Hex(passContent))
+
+  def manifestForPassDigest(passSha1: String): Array[Byte] = {
+    val passEntry = manifestEntry(PASS_FILE_NAME, passSha1).getBytes(StandardCharsets.UTF_8)
+    val out       = new ByteArrayOutputStream(passEntry.length + manifestFragment.length + 3)
+
+    out.write('{')
+    out.writeBytes(passEntry)
+    if (manifestFragment.nonEmpty) {
+      out.write(',')
+      out.writeBytes(manifestFragment)
+    }
+    out.write('}')
+    out.toByteArray
+  }
+
+  private def loadAsset(filename: String): Option[PassAsset] =
+    Option(getClass.getResourceAsStream(s"$PASS_RESOURCE_DIRECTORY/$filename")).map { stream =>
+      val content = Using.resource(stream)(_.readAllBytes())
+      val crc     = new CRC32()
+      crc.update(content)
+      PassAsset(filename, content, sha1Hex(content), crc.getValue)
+    }
+}
+
+object PassAssetBundle {
+  import FileService.*
+
+  val RequiredAssets: List[String] = List(ICON_FILE_NAME, LOGO_FILE_NAME)
+  val OptionalAssets: List[String] = List(ICON_2X_FILE_NAME, LOGO_2X_FILE_NAME)
+
+  // If you must interoperate with a system that requires SHA-1, then use this method, despite its deprecation.
+  // As this is linked with Apple / Google integration we plan to use SHA1 as per current live processing for interop.
+  @nowarn
+  def sha1Hex(content: Array[Byte]): String = Hashing.sha1().hashBytes(content).toString
+
+  private def manifestEntry(filename: String, sha1: String): String =
+    s"${Json.stringify(JsString(filename))}:${Json.stringify(JsString(sha1))}"
+}
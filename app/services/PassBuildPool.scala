@@ -0,0 +1,130 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package services
+
+import com.codahale.metrics.MetricRegistry
+import com.google.common.util.concurrent.ThreadFactoryBuilder
+import config.AppConfig
+import play.api.inject.ApplicationLifecycle
+
+import java.util.concurrent.{ArrayBlockingQueue, RejectedExecutionException, ThreadPoolExecutor, TimeUnit}
+import javax.inject.{Inject, Singleton}
+import scala.concurrent.{ExecutionContext, Future, Promise}
+import scala.util.Try
+
+/** Bulkhead for the CPU-bound part of pass creation: zipping and signing pkpass files and minting Google JWTs. It runs
+  * on a fixed number of threads with a bounded queue, away from Play's default dispatcher, so a burst of creates
+  * cannot starve the read endpoints. Work that does not fit in the queue is rejected straight away with a
+  * [[PassBuildRejectedException]] rather than left waiting.
+  */
+@Singleton
+class PassBuildPool @Inject() (config: AppConfig, metricRegistry: MetricRegistry, lifecycle: ApplicationLifecycle) {
+
+  private val executor: ThreadPoolExecutor =
+    new ThreadPoolExecutor(
+      config.passBuildParallelism,
+      config.passBuildParallelism,
+      0L,
+      TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue[Runnable](config.passBuildQueueDepth),
+      new ThreadFactoryBuilder().setNameFormat("pass-build-%d").setDaemon(true).build()
+    )
+
+  private val queueWait  = metricRegistry.timer("pass-build.queue-wait")
+  private val runTime    = metricRegistry.timer("pass-build.run")
+  private val rejections = metricRegistry.counter("pass-build.rejected")
+
+  lifecycle.addStopHook(() => Future.successful(executor.shutdown()))
+
+  /** Runs `task` on the pool, or fails with [[PassBuildRejectedException]] when the queue is full. */
+  def submit[A](task: => A): Future[A] = {
+    val promise  = Promise[A]()
+    val enqueued = System.nanoTime()
+
+    val run: Runnable = () => {
+      queueWait.update(System.nanoTime() - enqueued, TimeUnit.NANOSECONDS)
+      val timer = runTime.time()
+      try promise.complete(Try(task))
+      catch {
+        // Try lets fatal errors through; fail the caller rather than leave it waiting, then let the error propagate
+        case fatal: Throwable =>
+          promise.tryFailure(fatal)
+          throw fatal
+      } finally timer.close()
+      ()
+    }
+
+    try executor.execute(run)
+    catch {
+      case _: RejectedExecutionException =>
+        rejections.inc()
+        promise.failure(new PassBuildRejectedException(config.passBuildRetryAfterInSeconds))
+        ()
+    }
+
+    promise.future
+  }
+
+  /** Builds the items a chunk at a time on the pool and hands each built chunk to `store`. The next chunk is built
+    * while the previous one is being stored, so at most two chunks of passes are held in memory. Within a chunk no
+    * more builds are submitted at once than the pool has threads, so one batch cannot fill the queue and shed other
+    * creates. Results are in the order of `items`; `store` must return one result per pass it is given. A pass the
+    * pool has no room for is reported as a [[PassBuildRejectedException]] in its place, so the caller can retry just
+    * those.
+    */
+  def createInChunks[A, P](items: Seq[A])(build: A => Either[Exception, P])(
+    store: Seq[P] => Future[Seq[Either[Exception, String]]]
+  )(implicit ec: ExecutionContext): Future[Seq[Either[Exception, String]]] = {
+
+    def buildChunk(chunk: Seq[A]): Future[Seq[Either[Exception, P]]] =
+      chunk.grouped(config.passBuildParallelism).foldLeft(Future.successful(Vector.empty[Either[Exception, P]])) {
+        (built, wave) =>
+          built.flatMap { done =>
+            Future
+              .traverse(wave)(item => submit(build(item)).recover { case e: Exception => Left(e) })
+              .map(done ++ _)
+          }
+      }
+
+    def storeChunk(built: Seq[Either[Exception, P]]): Future[Seq[Either[Exception, String]]] =
+      store(built.collect { case Right(pass) => pass }).map { stored =>
+        val storedResults = stored.iterator
+        built.map {
+          case Left(error) => Left(error)
+          case Right(_)    => storedResults.next()
+        }
+      }
+
+    def pipeline(
+      chunks: Iterator[Seq[A]],
+      stored: Future[Vector[Either[Exception, String]]]
+    ): Future[Vector[Either[Exception, String]]] =
+      if (!chunks.hasNext) {
+        stored
+      } else {
+        buildChunk(chunks.next()).zip(stored).flatMap { case (built, results) =>
+          pipeline(chunks, storeChunk(built).map(results ++ _))
+        }
+      }
+
+    pipeline(items.grouped(config.passBatchChunkSize), Future.successful(Vector.empty))
+  }
+}
+
+/** The pass build pool is saturated; the request should be retried after `retryAfterSeconds`. */
+final class PassBuildRejectedException(val retryAfterSeconds: Long)
+    extends RuntimeException("Pass build capacity exhausted, retry later")
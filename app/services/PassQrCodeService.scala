@@ -0,0 +1,67 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package services
+
+import com.google.common.cache.{Cache, CacheBuilder}
+import config.AppConfig
+import services.qrcode.QrCodeVariant
+
+import java.time.Duration
+import javax.inject.{Inject, Singleton}
+
+/** Renders pass QR codes on demand. The QR content is derived from the frontend URL and the pass id, so nothing is
+  * stored alongside the pass; rendered variants are kept in a bounded in-memory cache that expires no later than the
+  * pass itself.
+  */
+@Singleton
+class PassQrCodeService @Inject() (config: AppConfig, qrCodeService: QrCodeService) {
+
+  import PassQrCodeService.*
+
+  private val renderedQrCodes: Cache[(String, QrCodeVariant), Array[Byte]] =
+    CacheBuilder
+      .newBuilder()
+      .maximumSize(config.qrCodeCacheMaxEntries)
+      .expireAfterWrite(Duration.ofSeconds(config.qrCodeCacheTtlInSeconds))
+      .build[(String, QrCodeVariant), Array[Byte]]()
+
+  def applePassQrCode(passId: String, variant: QrCodeVariant): Option[Array[Byte]] =
+    qrCodeFor(applePassQrText(config.frontendServiceUrl, passId), variant)
+
+  def googlePassQrCode(passId: String, variant: QrCodeVariant): Option[Array[Byte]] =
+    qrCodeFor(googlePassQrText(config.frontendServiceUrl, passId), variant)
+
+  private def qrCodeFor(qrText: String, variant: QrCodeVariant): Option[Array[Byte]] = {
+    val key = (qrText, variant)
+    Option(renderedQrCodes.getIfPresent(key)).orElse {
+      val rendered = qrCodeService.createQRCode(qrText, variant.size, variant.format)
+      rendered.foreach(renderedQrCodes.put(key, _))
+      rendered
+    }
+  }
+}
+
+object PassQrCodeService {
+  val APPLE_PASS_PATH  = "/get-pass-card"
+  val GOOGLE_PASS_PATH = "/get-google-pass"
+
+  def applePassQrText(frontendServiceUrl: String, passId: String): String =
+    s"$frontendServiceUrl$APPLE_PASS_PATH?passId=$passId&qr-code=true"
+
+  def googlePassQrText(frontendServiceUrl: String, passId: String): String =
+    s"$frontendServiceUrl$GOOGLE_PASS_PATH?passId=$passId&qr-code=true"
+}
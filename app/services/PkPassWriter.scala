@@ -0,0 +1,122 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package services
+
+import com.codahale.metrics.Histogram
+import models.apple.ApplePassCard
+import play.api.Logging
+import play.api.libs.json.Json
+import util.{PooledByteArrayOutputStream, SizeClassBufferPool}
+
+import java.lang.management.ManagementFactory
+import java.security.{DigestOutputStream, MessageDigest}
+import java.util.HexFormat
+import java.util.zip.{ZipEntry, ZipOutputStream}
+import scala.util.Try
+
+/** Streams a single pkpass into a pooled buffer: pass.json is deflated and SHA-1 digested in one write, the static
+  * images go in as STORED entries using their precomputed CRCs, and the manifest is built from the cached digests.
+  * Not thread safe; one writer per pass, closed once the pass has been built or abandoned.
+  */
+class PkPassWriter(
+  passAssetBundle: PassAssetBundle,
+  bufferPool: SizeClassBufferPool,
+  initialBufferSize: Int,
+  allocatedBytesPerPass: Histogram
+) extends AutoCloseable
+    with Logging {
+
+  import FileService.*
+  import PkPassWriter.*
+
+  private val buffer    = new PooledByteArrayOutputStream(bufferPool, initialBufferSize)
+  private val zip       = new ZipOutputStream(buffer)
+  private var allocated = 0L
+  private var closed    = false
+
+  def allocatedBytes: Long = allocated
+
+  /** Writes pass.json, the static assets and the manifest, returning the manifest bytes to be signed. */
+  def writePassContent(pass: ApplePassCard): Option[Array[Byte]] = measured {
+    Try {
+      val passDigest = MessageDigest.getInstance(SHA_1)
+      zip.putNextEntry(new ZipEntry(PASS_FILE_NAME))
+      new DigestOutputStream(zip, passDigest).write(Json.toBytes(Json.toJson(pass)))
+      zip.closeEntry()
+
+      passAssetBundle.assets.foreach(writeStored)
+
+      val manifest = passAssetBundle.manifestForPassDigest(HexFormat.of().formatHex(passDigest.digest()))
+      zip.putNextEntry(new ZipEntry(MANIFEST_JSON_FILE_NAME))
+      zip.write(manifest)
+      zip.closeEntry()
+      manifest
+    }.toOption
+  }
+
+  /** Adds the signature, completes the archive and copies it out of the pooled buffer. */
+  def finish(signatureContent: FileAsBytes): Option[Array[Byte]] = measured {
+    Try {
+      zip.putNextEntry(new ZipEntry(signatureContent.filename)) // add signature file to zip file
+      zip.write(signatureContent.content)
+      zip.close()
+      buffer.toByteArray
+    }.toOption
+  }
+
+  override def close(): Unit =
+    if (!closed) {
+      closed = true
+      // Ends the zip's deflater for a pass abandoned before finish; once finish has closed the zip this does nothing
+      Try(zip.close())
+      buffer.release()
+      allocatedBytesPerPass.update(allocated)
+      logger.debug(s"[PkPassWriter] Allocated $allocated bytes building pass")
+    }
+
+  private def writeStored(asset: PassAsset): Unit = {
+    // PNGs are already deflate-compressed, so store them as-is rather than compressing them again
+    val entry = new ZipEntry(asset.filename)
+    entry.setMethod(ZipEntry.STORED)
+    entry.setSize(asset.content.length.toLong)
+    entry.setCompressedSize(asset.content.length.toLong)
+    entry.setCrc(asset.crc32)
+
+    zip.putNextEntry(entry)
+    zip.write(asset.content)
+    zip.closeEntry()
+  }
+
+  private def measured[A](block: => A): A = {
+    val before = currentThreadAllocatedBytes
+    try block
+    finally allocated += currentThreadAllocatedBytes - before
+  }
+}
+
+object PkPassWriter {
+  val SHA_1 = "SHA-1"
+
+  private val threadMXBean: Option[com.sun.management.ThreadMXBean] =
+    ManagementFactory.getThreadMXBean match {
+      case bean: com.sun.management.ThreadMXBean if bean.isThreadAllocatedMemorySupported => Some(bean)
+      case _                                                                              => None
+    }
+
+  def currentThreadAllocatedBytes: Long =
+    threadMXBean.filter(_.isThreadAllocatedMemoryEnabled).fold(0L)(_.getCurrentThreadAllocatedBytes)
+}
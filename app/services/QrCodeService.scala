@@ -16,13 +16,12 @@
 
 package services
 
+import com.google.zxing.common.BitMatrix
 import com.google.zxing.qrcode.QRCodeWriter
 import com.google.zxing.{BarcodeFormat, EncodeHintType}
+import services.qrcode.{QrCodeFormat, QrCodeRenderer}
 
-import java.awt.Color
-import java.io.ByteArrayOutputStream
 import java.util.Hashtable
-import javax.imageio.ImageIO
 import javax.inject.Inject
 import scala.util.{Success, Try}
 
@@ -31,38 +30,32 @@ class QrCodeService @Inject() () {
   import QrCodeService.*
 
   def createQRCode(qrText: String, imageSize: Int = DEFAULT_BARCODE_SIZE): Option[Array[Byte]] =
-    Try {
-      val hintMap = new Hashtable[EncodeHintType, Any]
-      hintMap.put(EncodeHintType.CHARACTER_SET, UTF_8)
-      hintMap.put(EncodeHintType.MARGIN, 4)
-
-      val byteMatrix = new QRCodeWriter().encode(qrText, BarcodeFormat.QR_CODE, imageSize, imageSize, hintMap)
-
-      val matrixWidth = byteMatrix.getWidth
-      val image       = new java.awt.image.BufferedImage(matrixWidth, matrixWidth, java.awt.image.BufferedImage.TYPE_INT_RGB)
-      val graphics    = image.getGraphics.asInstanceOf[java.awt.Graphics2D]
-
-      graphics.setColor(Color.WHITE)
-      graphics.fillRect(0, 0, matrixWidth, matrixWidth)
-
-      graphics.setColor(Color.BLACK)
-      for (i <- 0 until matrixWidth)
-        for (j <- 0 until matrixWidth)
-          if (byteMatrix.get(i, j)) graphics.fillRect(i, j, 1, 1)
+    createQRCode(qrText, imageSize, QrCodeFormat.Png)
 
-      val out = new ByteArrayOutputStream()
-      ImageIO.write(image, FILE_TYPE, out)
-      graphics.dispose()
-
-      out.toByteArray
+  def createQRCode(qrText: String, imageSize: Int, format: QrCodeFormat): Option[Array[Byte]] =
+    Try {
+      format match {
+        case QrCodeFormat.Png => QrCodeRenderer.png(encode(qrText, imageSize))
+        // Encoded at module resolution; the SVG viewBox does the scaling
+        case QrCodeFormat.Svg => QrCodeRenderer.svg(encode(qrText, 0), imageSize)
+      }
     } match {
       case Success(value) => Some(value)
       case _              => None
     }
+
+  private def encode(qrText: String, size: Int): BitMatrix = {
+    val hintMap = new Hashtable[EncodeHintType, Any]
+    hintMap.put(EncodeHintType.CHARACTER_SET, UTF_8)
+    hintMap.put(EncodeHintType.MARGIN, MARGIN)
+
+    new QRCodeWriter().encode(qrText, BarcodeFormat.QR_CODE, size, size, hintMap)
+  }
 }
 
 object QrCodeService {
   val FILE_TYPE            = "png"
   val DEFAULT_BARCODE_SIZE = 200
   val UTF_8                = "utf-8"
+  val MARGIN               = 4
 }
@@ -18,6 +18,7 @@ package services
 
 import com.google.inject.Inject
 import config.AppConfig
+import models.encryption.EncryptedJsValue
 import play.api.libs.json.*
 import uk.gov.hmrc.crypto.{Crypted, Decrypter, Encrypter, PlainText, Sensitive}
 
@@ -30,7 +31,11 @@ class SensitiveFormatService @Inject() (
   import SensitiveFormatService.*
 
   private def writeJsValueWithEncryption(jsValue: JsValue): JsValue =
-    JsString(encrypterDecrypter.encrypt(PlainText(Json.stringify(jsValue))).value)
+    if (appConfig.compactSensitiveValues) {
+      EncryptedJsValue.encrypt(jsValue, encrypterDecrypter)
+    } else {
+      JsString(encrypterDecrypter.encrypt(PlainText(Json.stringify(jsValue))).value)
+    }
 
   private def sensitiveReadsJsValue[A <: JsValue: Format]: Reads[SensitiveJsValue] = {
     case JsString(s) =>
@@ -47,6 +52,9 @@ class SensitiveFormatService @Inject() (
         case Failure(_: SecurityException) => JsSuccess(SensitiveJsValue(JsString(s).as[A]))
         case Failure(exception)            => throw exception
       }
+    // Read whatever the setting for writes, so that it can be turned off again
+    case EncryptedJsValue(envelope) =>
+      JsSuccess(SensitiveJsValue(EncryptedJsValue.decrypt(envelope, encrypterDecrypter).as[A]))
     case js: JsValue => JsSuccess(SensitiveJsValue(js))
   }
 
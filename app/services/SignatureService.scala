@@ -24,10 +24,11 @@ import org.bouncycastle.cert.jcajce.JcaCertStore
 import org.bouncycastle.cms.jcajce.JcaSignerInfoGeneratorBuilder
 import org.bouncycastle.cms.{CMSProcessableByteArray, CMSSignedDataGenerator, CMSTypedData, DefaultSignedAttributeTableGenerator}
 import org.bouncycastle.jce.provider.BouncyCastleProvider
+import org.bouncycastle.operator.DigestCalculatorProvider
 import org.bouncycastle.operator.jcajce.{JcaContentSignerBuilder, JcaDigestCalculatorProviderBuilder}
 import play.api.Logging
 
-import scala.util.Failure
+import scala.util.{Failure, Success}
 import java.io.ByteArrayInputStream
 import java.security.cert.X509Certificate
 import java.security.{KeyStore, PrivateKey, Security}
@@ -43,36 +44,41 @@ class SignatureService @Inject() () extends Logging {
   Security.addProvider(new BouncyCastleProvider)
 
   def createSignatureForPass(
-    passContent: List[FileAsBytes],
+    manifest: Array[Byte],
     privateCertificate: String,
     privateCertificatePassword: String,
     appleWWDRCACertificate: String
   ): FileAsBytes =
+    if (manifest.isEmpty) {
+      FileAsBytes(SIGNATURE_FILE_NAME, Array.emptyByteArray)
+    } else {
+      loadSigningMaterial(privateCertificate, privateCertificatePassword, appleWWDRCACertificate)
+        .map(createSignatureForPass(manifest, _))
+        .getOrElse(FileAsBytes(SIGNATURE_FILE_NAME, Array.emptyByteArray))
+    }
+
+  def createSignatureForPass(manifest: Array[Byte], signingMaterial: ApplePassSigningMaterial): FileAsBytes =
     // To create the signature file, make a PKCS #7 detached signature of the manifest file,
     // using the private key associated with your signing certificate.
     // Include the WWDR intermediate certificate as part of the signature.
 
-    if (passContent.isEmpty) {
+    if (manifest.isEmpty) {
       FileAsBytes(SIGNATURE_FILE_NAME, Array.emptyByteArray)
     } else {
       val resultForCreateSignature = for {
-        signInfo             <- loadSigningInformation(privateCertificate, privateCertificatePassword, appleWWDRCACertificate)
-        processableFileBytes <- Try(new CMSProcessableByteArray(passContent.last.content)) // last is manifest
-        signContent          <- signManifestUsingContent(processableFileBytes, signInfo)
+        processableFileBytes <- Try(new CMSProcessableByteArray(manifest))
+        signContent          <- signManifestUsingContent(processableFileBytes, signingMaterial)
       } yield signContent
 
       FileAsBytes(SIGNATURE_FILE_NAME, resultForCreateSignature.getOrElse(Array.emptyByteArray))
     }
 
-  private def signManifestUsingContent(content: CMSTypedData, signInfo: ApplePassSignInformation): Try[Array[Byte]] =
+  private def signManifestUsingContent(content: CMSTypedData, signInfo: ApplePassSigningMaterial): Try[Array[Byte]] =
     Try {
       val signedDataGenerator = new CMSSignedDataGenerator
 
-      // Sha1 Signer (We are using SHA1 to create Manifest file)
-      // https://developer.apple.com/library/archive/documentation/UserExperience/Conceptual/PassKit_PG/Creating.html#//apple_ref/doc/uid/TP40012195-CH4-SW55
-      val sha1Signer = new JcaContentSignerBuilder("SHA1withRSA")
-        .setProvider(BouncyCastleProvider.PROVIDER_NAME)
-        .build(signInfo.privateKey)
+      // Content signers hold a live Signature instance so cannot be shared between threads; the builder can.
+      val sha1Signer = signInfo.contentSignerBuilder.build(signInfo.privateKey)
 
       val signedAttributes = new ASN1EncodableVector
       val signingAttribute = new Attribute(CMSAttributes.signingTime, new DERSet(new DERUTCTime(new Date)))
@@ -83,39 +89,40 @@ class SignatureService @Inject() () extends Logging {
 
       // Create the table table generator that will added to the Signer builder
       val signedAttributeGenerator = new DefaultSignedAttributeTableGenerator(signedAttributesTable)
-      val digestCalculateProvider  =
-        new JcaDigestCalculatorProviderBuilder().setProvider(BouncyCastleProvider.PROVIDER_NAME).build
       signedDataGenerator.addSignerInfoGenerator(
-        new JcaSignerInfoGeneratorBuilder(digestCalculateProvider)
+        new JcaSignerInfoGeneratorBuilder(signInfo.digestCalculatorProvider)
           .setSignedAttributeGenerator(signedAttributeGenerator)
           .build(sha1Signer, signInfo.privateCertificate)
       )
 
-      val certList = new util.ArrayList[X509Certificate]
-      certList.add(signInfo.appleWWDRCACert)
-      certList.add(signInfo.privateCertificate)
-      val certs    = new JcaCertStore(certList)
-      signedDataGenerator.addCertificates(certs)
+      signedDataGenerator.addCertificates(signInfo.certStore)
       signedDataGenerator.generate(content, false).getEncoded
     }
+}
+
+object SignatureService {
+  val SIGNATURE_FILE_NAME     = "signature"
+  val MANIFEST_JSON_FILE_NAME = "manifest.json"
 
-  private def loadSigningInformation(
+  def loadSigningMaterial(
     privateCertificate: String,
     privateCertificatePassword: String,
     appleWWDRCACertificate: String
-  ): Try[ApplePassSignInformation] = {
-    val decodedPublicCertificate  = Base64.getDecoder.decode(appleWWDRCACertificate)
-    val decodedPrivateCertificate = Base64.getDecoder.decode(privateCertificate)
-
+  ): Try[ApplePassSigningMaterial] =
     for {
-      appleCertificate   <- loadX509Certificate(decodedPublicCertificate)
-      privateCertificate <- loadPKCS12File(decodedPrivateCertificate, privateCertificatePassword)
-    } yield ApplePassSignInformation(privateCertificate._2, privateCertificate._1, appleCertificate)
-  }
-
-  private def loadX509Certificate(publicCertificate: Array[Byte]): Try[X509Certificate] = Try {
-    X509CertUtils.parse(publicCertificate)
-  }
+      decodedPublicCertificate  <- Try(Base64.getDecoder.decode(appleWWDRCACertificate))
+      decodedPrivateCertificate <- Try(Base64.getDecoder.decode(privateCertificate))
+      appleCertificate          <- loadX509Certificate(decodedPublicCertificate)
+      privateKeyAndCertificate  <- loadPKCS12File(decodedPrivateCertificate, privateCertificatePassword)
+      signingMaterial           <-
+        ApplePassSigningMaterial(privateKeyAndCertificate._1, privateKeyAndCertificate._2, appleCertificate)
+    } yield signingMaterial
+
+  private def loadX509Certificate(publicCertificate: Array[Byte]): Try[X509Certificate] =
+    Try(X509CertUtils.parse(publicCertificate)).flatMap {
+      case null        => Failure(new IllegalStateException("Unable to parse the Apple WWDR certificate"))
+      case certificate => Success(certificate)
+    }
 
   private def isPrivateX509(keyStore: KeyStore, password: String)(alias: String) =
     for {
@@ -123,30 +130,59 @@ class SignatureService @Inject() () extends Logging {
       cert <- Try(keyStore.getCertificate(alias).asInstanceOf[X509Certificate])
     } yield (key, cert)
 
-  private def loadPKCS12File(privateCertificate: Array[Byte], password: String): Try[(PrivateKey, X509Certificate)] = {
-    val keyStore = KeyStore.getInstance("PKCS12")
-    keyStore.load(new ByteArrayInputStream(privateCertificate), password.toCharArray)
+  private def loadPKCS12File(privateCertificate: Array[Byte], password: String): Try[(PrivateKey, X509Certificate)] =
+    Try {
+      val keyStore = KeyStore.getInstance("PKCS12")
+      keyStore.load(new ByteArrayInputStream(privateCertificate), password.toCharArray)
+      keyStore
+    }.flatMap { keyStore =>
+      import scala.jdk.CollectionConverters._
+
+      keyStore
+        .aliases()
+        .asScala
+        .toSeq
+        .map(isPrivateX509(keyStore, password))
+        .find(_.isSuccess)
+        .getOrElse(Failure(new IllegalStateException("No valid key-certificate pair in the key store")))
+    }
+}
 
-    import scala.jdk.CollectionConverters._
+/** Everything needed to sign a pass manifest, parsed once from the configured certificates so that the signing path
+  * does no Base64 decoding or key store work.
+  */
+final case class ApplePassSigningMaterial(
+  privateKey: PrivateKey,
+  privateCertificate: X509Certificate,
+  appleWWDRCACert: X509Certificate,
+  certStore: JcaCertStore,
+  contentSignerBuilder: JcaContentSignerBuilder,
+  digestCalculatorProvider: DigestCalculatorProvider
+)
 
-    keyStore
-      .aliases()
-      .asScala
-      .toSeq
-      .map(isPrivateX509(keyStore, password))
-      .find(_.isSuccess)
-      .getOrElse(Failure(new IllegalStateException("No valid key-certificate pair in the key store")))
-  }
-}
+object ApplePassSigningMaterial {
 
-object SignatureService {
-  val SIGNATURE_FILE_NAME     = "signature"
-  val MANIFEST_JSON_FILE_NAME = "manifest.json"
+  Security.addProvider(new BouncyCastleProvider)
 
-}
+  def apply(
+    privateKey: PrivateKey,
+    privateCertificate: X509Certificate,
+    appleWWDRCACert: X509Certificate
+  ): Try[ApplePassSigningMaterial] =
+    Try {
+      val certList = new util.ArrayList[X509Certificate]
+      certList.add(appleWWDRCACert)
+      certList.add(privateCertificate)
 
-private case class ApplePassSignInformation(
-  privateCertificate: X509Certificate,
-  privateKey: PrivateKey,
-  appleWWDRCACert: X509Certificate
-)
+      // Sha1 Signer (We are using SHA1 to create Manifest file)
+      // https://developer.apple.com/library/archive/documentation/UserExperience/Conceptual/PassKit_PG/Creating.html#//apple_ref/doc/uid/TP40012195-CH4-SW55
+      ApplePassSigningMaterial(
+        privateKey,
+        privateCertificate,
+        appleWWDRCACert,
+        new JcaCertStore(certList),
+        new JcaContentSignerBuilder("SHA1withRSA").setProvider(BouncyCastleProvider.PROVIDER_NAME),
+        new JcaDigestCalculatorProviderBuilder().setProvider(BouncyCastleProvider.PROVIDER_NAME).build
+      )
+    }
+}
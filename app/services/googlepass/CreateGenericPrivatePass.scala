@@ -18,19 +18,15 @@ package services.googlepass
 
 import com.auth0.jwt.JWT
 import com.auth0.jwt.algorithms.Algorithm
-import com.google.auth.oauth2.{GoogleCredentials, ServiceAccountCredentials}
 import config.AppConfig
-import models.google.{GooglePassCard, GooglePassTextRow}
-import services.googlepass.googleModels.*
+import models.google.GooglePassCard
+import services.googlepass.payload.*
 
 import java.io.IOException
-import java.security.interfaces.RSAPrivateKey
 import java.time.{LocalDateTime, ZoneId}
 import java.util
 import java.util.{Collections, Date}
 import javax.inject.Inject
-import scala.collection.mutable.ArrayBuffer
-import scala.jdk.CollectionConverters.*
 
 // $COVERAGE-OFF$
 class CreateGenericPrivatePass @Inject() (config: AppConfig) {
@@ -39,15 +35,19 @@ class CreateGenericPrivatePass @Inject() (config: AppConfig) {
     "https://www.tax.service.gov.uk/save-your-national-insurance-number/assets/images/hmrc-logo-tudor-google-pass.png"
   private val logoImageDescription = "HMRC"
 
-  def createJwtWithCredentials(
-    id: String,
-    issuerId: String,
-    googlePassCard: GooglePassCard,
-    googleCredentials: GoogleCredentials,
-    expiry: Int
-  ): String =
-    try
-      createAndSignJWT(googleCredentials, createGenericPrivatePassObject(id, issuerId, googlePassCard), expiry)
+  /** Serializes the generic private pass for the JWT `payload` claim.
+    *
+    * @param id
+    *   A unique identifier for the generic private pass
+    * @param issuerId
+    *   A unique ID identifying your issuer account
+    * @param googlePassCard
+    *   The google pass card model containing the data to display on the card
+    * @return
+    *   The `payload` claim as JSON
+    */
+  def createPayloadJson(id: String, issuerId: String, googlePassCard: GooglePassCard): String =
+    try GooglePassPayload.json(Seq(createGenericPrivatePassObject(id, issuerId, googlePassCard)))
     catch {
       case e: IOException =>
         throw new RuntimeException("Error saving JWT: " + e)
@@ -70,74 +70,68 @@ class CreateGenericPrivatePass @Inject() (config: AppConfig) {
     googlePassCard: GooglePassCard
   ): GenericPrivatePass = {
 
-    val image = new Image().setSourceUri(
-      new ImageUri()
-        .setDescription(logoImageDescription)
-        .setUri(logoImageUrl)
-    )
+    val image = Image(ImageUri(description = logoImageDescription, uri = logoImageUrl))
 
-    val textModulesData = ArrayBuffer[TextModuleData]()
-    for (row: GooglePassTextRow <- googlePassCard.rows.get)
-      textModulesData += new TextModuleData()
-        .setBody(row.body.getOrElse(""))
-        .setId(row.id.getOrElse(""))
-        .setHeader(row.header.getOrElse(""))
-
-    val title = new LocalizedString().setDefaultValue(
-      new TranslatedString()
-        .setValue(googlePassCard.title)
-        .setLanguage(googlePassCard.language)
-    )
+    val textModulesData = googlePassCard.rows.get.toSeq.map { row =>
+      TextModuleData(body = row.body.getOrElse(""), header = row.header.getOrElse(""), id = row.id.getOrElse(""))
+    }
 
-    val header = new LocalizedString().setDefaultValue(
-      new TranslatedString()
-        .setValue(googlePassCard.header)
-        .setLanguage(googlePassCard.language)
+    val title  = LocalizedString(TranslatedString(language = googlePassCard.language, value = googlePassCard.title))
+    val header = LocalizedString(TranslatedString(language = googlePassCard.language, value = googlePassCard.header))
+
+    GenericPrivatePass(
+      header = header,
+      headerLogo = image,
+      hexBackgroundColor = googlePassCard.hexBackgroundColour,
+      id = issuerId + "." + id,
+      textModulesData = textModulesData,
+      title = title,
+      `type` = "GENERIC_PRIVATE_PASS_TYPE_UNSPECIFIED"
     )
-
-    new GenericPrivatePass()
-      .setId(issuerId + "." + id)
-      .setHeaderLogo(image)
-      .setTitle(title)
-      .setType("GENERIC_PRIVATE_PASS_TYPE_UNSPECIFIED")
-      .setHeader(header)
-      .setTextModulesData(textModulesData.asJava)
-      .setHexBackgroundColor(googlePassCard.hexBackgroundColour)
   }
 
-  /** Creates and signs a JWT using a private key
+  /** Compiles the save JWT template for passes issued by `issuerId`, writing the pass with [[createPayloadJson]]. */
+  def jwtTemplate(algorithmName: String, issuerId: String): GooglePassJwtTemplate =
+    GooglePassJwtTemplate.compile(algorithmName)(
+      fields =>
+        createPayloadJson(fields.id, issuerId, GooglePassUtil.createGooglePassCardContent(fields.name, fields.nino)),
+      (fields, payloadClaim, algorithm) => createJwt(fields.clientEmail, payloadClaim, algorithm, fields.expiresAt)
+    )
+
+  /** Creates and signs a JWT using a private key. The `payload` claim is only a stand-in for the pass, which
+    * [[GooglePassJwtTemplate]] splices in, so this is not used on its own.
     *
-    * @param googleCredentials
-    *   The google credentials containing the private key for signing
-    * @param genericPrivatePass
-    *   The generic private pass object
+    * @param clientEmail
+    *   The service account email the pass is issued by
+    * @param payloadClaim
+    *   The value written for the `payload` claim
+    * @param algorithm
+    *   The algorithm signing with the service account's private key
+    * @param expiresAt
+    *   When the save link stops working
     * @return
     *   The generated JWT string signed with a private key
     */
-  private def createAndSignJWT(
-    googleCredentials: GoogleCredentials,
-    genericPrivatePass: GenericPrivatePass,
-    expiry: Int
+  private[googlepass] def createJwt(
+    clientEmail: String,
+    payloadClaim: String,
+    algorithm: Algorithm,
+    expiresAt: Date
   ): String = {
-    val creds   = googleCredentials.asInstanceOf[ServiceAccountCredentials]
-    val expires = Date.from(LocalDateTime.now().plusMinutes(expiry).atZone(ZoneId.systemDefault()).toInstant)
-
-    val payload = new util.HashMap[String, Object]()
-    payload.put("genericPrivatePasses", java.util.Arrays.asList(genericPrivatePass))
-
     val claims = new util.HashMap[String, Object]()
-    claims.put("iss", creds.getClientEmail)
+    claims.put("iss", clientEmail)
     claims.put("aud", "google")
     claims.put("origins", Collections.singletonList(config.googleOrigins))
     claims.put("typ", "savetowallet")
-    claims.put("payload", payload)
-
-    val algorithm = Algorithm.RSA256(
-      null,
-      creds.getPrivateKey.asInstanceOf[RSAPrivateKey]
-    )
+    claims.put("payload", payloadClaim)
 
-    JWT.create.withExpiresAt(expires).withPayload(claims).sign(algorithm)
+    JWT.create.withExpiresAt(expiresAt).withPayload(claims).sign(algorithm)
   }
 }
+
+object CreateGenericPrivatePass {
+
+  def expiresAt(expiryInMinutes: Int): Date =
+    Date.from(LocalDateTime.now().plusMinutes(expiryInMinutes).atZone(ZoneId.systemDefault()).toInstant)
+}
 // $COVERAGE-ON$
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package services.googlepass
+
+import com.auth0.jwt.algorithms.Algorithm
+import com.auth0.jwt.exceptions.SignatureVerificationException
+import com.auth0.jwt.interfaces.DecodedJWT
+
+import java.nio.charset.StandardCharsets
+import java.util.{Base64, Date}
+
+/** The per-pass values of a Google pass save JWT. */
+final case class GooglePassJwtFields(id: String, clientEmail: String, name: String, nino: String, expiresAt: Date)
+
+/** A Google pass save JWT with everything except the [[GooglePassJwtFields]] already serialized.
+  *
+  * The template is compiled once from placeholder fields: java-jwt writes the header and the claims around the pass,
+  * and the pass itself is written by the `payload` claim writer. Minting a pass then only escapes and splices in the
+  * per-pass values and signs the result, which produces the same token as rendering the whole pass again.
+  */
+final class GooglePassJwtTemplate private (
+  algorithmName: String,
+  encodedHeader: String,
+  payloadSegments: Vector[String],
+  payloadSlots: Vector[GooglePassJwtFields => String]
+) {
+
+  import GooglePassJwtTemplate.*
+
+  private val constantLength = payloadSegments.map(_.length).sum
+
+  def sign(fields: GooglePassJwtFields, algorithm: Algorithm): String = {
+    require(algorithm.getName == algorithmName, s"Template compiled for $algorithmName, not ${algorithm.getName}")
+
+    val payloadJson = new java.lang.StringBuilder(constantLength + SLOT_ALLOWANCE * payloadSlots.size)
+    payloadJson.append(payloadSegments.head)
+    payloadSlots.indices.foreach { i =>
+      payloadJson.append(payloadSlots(i)(fields)).append(payloadSegments(i + 1))
+    }
+
+    val encodedPayload = encoder.encodeToString(payloadJson.toString.getBytes(StandardCharsets.UTF_8))
+    val signature      = algorithm.sign(
+      encodedHeader.getBytes(StandardCharsets.UTF_8),
+      encodedPayload.getBytes(StandardCharsets.UTF_8)
+    )
+
+    s"$encodedHeader.$encodedPayload.${encoder.encodeToString(signature)}"
+  }
+}
+
+object GooglePassJwtTemplate {
+
+  val RS256 = "RS256"
+
+  // Room for the spliced-in values so the payload builder rarely has to grow
+  private val SLOT_ALLOWANCE = 48
+
+  private val encoder = Base64.getUrlEncoder.withoutPadding()
+  private val decoder = Base64.getUrlDecoder
+
+  // None of these need JSON escaping, so each appears in the rendered payload exactly as written here
+  private val ID_PLACEHOLDER           = "{{pass-object-id}}"
+  private val CLIENT_EMAIL_PLACEHOLDER = "{{client-email}}"
+  private val NAME_PLACEHOLDER         = "{{name}}"
+  private val NINO_PLACEHOLDER         = "{{nino}}"
+  private val PAYLOAD_PLACEHOLDER      = "{{payload}}"
+  private val EXPIRES_AT_PLACEHOLDER   = 4102444799L
+
+  /** Compiles a template from `renderPayload`, which writes the `payload` claim for the given fields, and `renderJwt`,
+    * which builds the JWT for the given fields with the given string standing in for the `payload` claim.
+    */
+  def compile(algorithmName: String)(
+    renderPayload: GooglePassJwtFields => String,
+    renderJwt: (GooglePassJwtFields, String, Algorithm) => String
+  ): GooglePassJwtTemplate = {
+    val placeholders = GooglePassJwtFields(
+      ID_PLACEHOLDER,
+      CLIENT_EMAIL_PLACEHOLDER,
+      NAME_PLACEHOLDER,
+      NINO_PLACEHOLDER,
+      new Date(EXPIRES_AT_PLACEHOLDER * 1000)
+    )
+
+    val rendered    = renderJwt(placeholders, PAYLOAD_PLACEHOLDER, new UnsignedAlgorithm(algorithmName)).split('.')
+    val claimsJson  = new String(decoder.decode(rendered(1)), StandardCharsets.UTF_8)
+    val payloadJson = claimsJson.replace("\"" + PAYLOAD_PLACEHOLDER + "\"", renderPayload(placeholders))
+
+    val slots: Seq[(String, GooglePassJwtFields => String)] = Seq(
+      ID_PLACEHOLDER                  -> (fields => escape(fields.id)),
+      CLIENT_EMAIL_PLACEHOLDER        -> (fields => escape(fields.clientEmail)),
+      NAME_PLACEHOLDER                -> (fields => escape(fields.name)),
+      NINO_PLACEHOLDER                -> (fields => escape(fields.nino)),
+      EXPIRES_AT_PLACEHOLDER.toString -> (fields => (fields.expiresAt.getTime / 1000).toString)
+    )
+
+    val positioned = slots
+      .map { case (placeholder, value) =>
+        val at = payloadJson.indexOf(placeholder)
+        if (at < 0 || payloadJson.indexOf(placeholder, at + 1) >= 0) {
+          throw new IllegalStateException(s"Expected $placeholder exactly once in the Google pass JWT payload")
+        }
+        (at, placeholder.length, value)
+      }
+      .sortBy(_._1)
+
+    val segmentStarts = 0 +: positioned.map { case (at, length, _) => at + length }
+    val segmentEnds   = positioned.map(_._1) :+ payloadJson.length
+    val segments      = segmentStarts.zip(segmentEnds).map { case (from, until) => payloadJson.substring(from, until) }
+
+    new GooglePassJwtTemplate(algorithmName, rendered(0), segments.toVector, positioned.map(_._3).toVector)
+  }
+
+  /** Escapes a string value the way Jackson does when java-jwt writes the payload: quotes, backslashes and control
+    * characters only, with the short forms for the common control characters.
+    */
+  private[googlepass] def escape(value: String): String =
+    if (!value.exists(c => c < 0x20 || c == '"' || c == '\\')) value
+    else {
+      val escaped = new java.lang.StringBuilder(value.length + 8)
+      value.foreach {
+        case '"'           => escaped.append("\\\"")
+        case '\\'          => escaped.append("\\\\")
+        case '\b'          => escaped.append("\\b")
+        case '\t'          => escaped.append("\\t")
+        case '\n'          => escaped.append("\\n")
+        case '\f'          => escaped.append("\\f")
+        case '\r'          => escaped.append("\\r")
+        case c if c < 0x20 => escaped.append("\\u%04X".format(c.toInt))
+        case c             => escaped.append(c)
+      }
+      escaped.toString
+    }
+
+  /** Stands in for the signing algorithm while the template is rendered, so no key is needed to compile it. */
+  private final class UnsignedAlgorithm(name: String) extends Algorithm(name, "Template rendering only") {
+
+    override def verify(jwt: DecodedJWT): Unit =
+      throw new SignatureVerificationException(this)
+
+    override def sign(contentBytes: Array[Byte]): Array[Byte] =
+      Array.emptyByteArray
+  }
+}
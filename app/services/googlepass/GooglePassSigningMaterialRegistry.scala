@@ -0,0 +1,95 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package services.googlepass
+
+import com.auth0.jwt.algorithms.Algorithm
+import com.google.auth.oauth2.ServiceAccountCredentials
+import config.AppConfig
+import play.api.Logging
+
+import java.io.ByteArrayInputStream
+import java.security.interfaces.RSAPrivateKey
+import java.util.Base64
+import java.util.concurrent.atomic.AtomicReference
+import javax.inject.{Inject, Singleton}
+import scala.util.{Failure, Success, Try}
+
+/** The Google service account used to sign pass JWTs, parsed once. The `Algorithm` holds no per-signature state, so one
+  * instance is shared by every pass.
+  */
+final case class GooglePassSigningMaterial(
+  credentials: ServiceAccountCredentials,
+  clientEmail: String,
+  privateKey: RSAPrivateKey,
+  algorithm: Algorithm
+)
+
+/** Holds the parsed signing material for the configured Google service account key. The key is parsed at startup and
+  * kept against the configured value, so a changed key is parsed once on next use and replaces the old material.
+  */
+@Singleton
+class GooglePassSigningMaterialRegistry @Inject() (config: AppConfig) extends Logging {
+
+  import GooglePassSigningMaterialRegistry.*
+
+  private val parsed: AtomicReference[Option[(String, Try[GooglePassSigningMaterial])]] = new AtomicReference(None)
+
+  def current: Try[GooglePassSigningMaterial] =
+    materialFor(config.googleKey)
+
+  def warmUp(): Unit = {
+    current
+    ()
+  }
+
+  private[googlepass] def materialFor(key: String): Try[GooglePassSigningMaterial] =
+    parsed.get() match {
+      case Some((parsedKey, material)) if parsedKey == key =>
+        material
+
+      case _ =>
+        val material = loadSigningMaterial(key)
+        material.failed.foreach(ex => logger.error("Unable to load Google pass signing material", ex))
+        parsed.set(Some(key -> material))
+        material
+    }
+}
+
+object GooglePassSigningMaterialRegistry {
+
+  /** Parses a Base64-encoded service account JSON key. */
+  def loadSigningMaterial(base64Key: String): Try[GooglePassSigningMaterial] =
+    Try {
+      val keyAsStream = new ByteArrayInputStream(Base64.getDecoder.decode(base64Key))
+      try ServiceAccountCredentials.fromStream(keyAsStream)
+      finally keyAsStream.close()
+    }.flatMap { credentials =>
+      credentials.getPrivateKey match {
+        case privateKey: RSAPrivateKey =>
+          Success(
+            GooglePassSigningMaterial(
+              credentials,
+              credentials.getClientEmail,
+              privateKey,
+              Algorithm.RSA256(null, privateKey)
+            )
+          )
+        case _                         =>
+          Failure(new IllegalStateException("Google pass service account key is not an RSA private key"))
+      }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package services.googlepass
+
+import com.google.common.cache.{Cache, CacheBuilder}
+import config.AppConfig
+
+import java.time.Duration
+import javax.inject.{Inject, Singleton}
+import scala.concurrent.{ExecutionContext, Future}
+
+/** Save URLs minted recently for each pass. A URL is reused until `refreshMarginInSeconds` before its JWT expires, so
+  * a URL handed out always has at least that long left to run. The mint is cached while it is still running, so
+  * concurrent fetches of the same pass share one signature; its age is counted from the start of the mint.
+  */
+@Singleton
+class GooglePassUrlCache @Inject() (config: AppConfig) {
+
+  private val reuseForSeconds: Long = config.googleJWTExpiry * 60L - config.googlePassUrlRefreshMarginInSeconds
+
+  // A margin as long as the JWT expiry turns the cache off rather than handing out URLs about to expire
+  private val mintedUrls: Cache[String, Future[String]] =
+    CacheBuilder
+      .newBuilder()
+      .maximumSize(if (reuseForSeconds > 0) config.googlePassUrlCacheMaxEntries else 0L)
+      .expireAfterWrite(Duration.ofSeconds(math.max(reuseForSeconds, 1L)))
+      .build[String, Future[String]]()
+
+  /** A failed mint is dropped before its failure is returned, so the next fetch mints again. */
+  def getOrMint(passId: String)(mint: => Future[String])(implicit ec: ExecutionContext): Future[String] = {
+    val url = mintedUrls.get(passId, () => mint)
+    url.transform { result =>
+      result.failed.foreach(_ => mintedUrls.asMap().remove(passId, url))
+      result
+    }
+  }
+}
@@ -16,30 +16,46 @@
 
 package services.googlepass
 
-import com.google.auth.oauth2.GoogleCredentials
 import config.AppConfig
 import models.google.{GooglePassCard, GooglePassTextRow}
 
-import java.util.UUID
-import javax.inject.Inject
+import javax.inject.{Inject, Singleton}
 
+@Singleton
 class GooglePassUtil @Inject() (config: AppConfig, createGenericPrivatePass: CreateGenericPrivatePass) {
 
   private val issuerId: String     = config.googleIssuerId
   private val expiry: Int          = config.googleJWTExpiry
   private val googleAddUrl: String = config.googleAddUrl
 
-  def createGooglePassWithCredentials(name: String, nino: String, googleCredentials: GoogleCredentials): String = {
-    val id = s"hmrc-${UUID.randomUUID()}"
+  // Only the pass id, name, NINO, issuer and expiry differ between passes, so the rest of the JWT is serialized once
+  private val jwtTemplate: GooglePassJwtTemplate =
+    createGenericPrivatePass.jwtTemplate(GooglePassJwtTemplate.RS256, issuerId)
 
-    val googlePassCardContent = createGooglePassCardContent(name, nino)
-    val jwt                   =
-      createGenericPrivatePass.createJwtWithCredentials(id, issuerId, googlePassCardContent, googleCredentials, expiry)
+  /** Mints a save URL for the pass. The Google object id is derived from the pass id, so URLs minted again for the same
+    * pass save the same object rather than adding another one to the wallet.
+    */
+  def createGooglePassWithCredentials(
+    passId: String,
+    name: String,
+    nino: String,
+    signingMaterial: GooglePassSigningMaterial
+  ): String = {
+    val fields = GooglePassJwtFields(
+      id = s"hmrc-$passId",
+      clientEmail = signingMaterial.clientEmail,
+      name = name,
+      nino = nino,
+      expiresAt = CreateGenericPrivatePass.expiresAt(expiry)
+    )
 
-    googleAddUrl + jwt
+    googleAddUrl + jwtTemplate.sign(fields, signingMaterial.algorithm)
   }
+}
+
+object GooglePassUtil {
 
-  private def createGooglePassCardContent(name: String, nino: String): GooglePassCard =
+  def createGooglePassCardContent(name: String, nino: String): GooglePassCard =
     GooglePassCard(
       header = "HM Revenue & Customs",
       title = "National Insurance number",
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package services.googlepass.payload
+
+import com.fasterxml.jackson.core.{JsonFactory, JsonGenerator}
+
+import java.io.StringWriter
+
+// Immutable counterparts of the reflective GenericJson pass models, holding only the fields a pass sets
+final case class TranslatedString(language: String, value: String)
+
+final case class LocalizedString(defaultValue: TranslatedString)
+
+final case class ImageUri(description: String, uri: String)
+
+final case class Image(sourceUri: ImageUri)
+
+final case class TextModuleData(body: String, header: String, id: String)
+
+final case class GenericPrivatePass(
+  header: LocalizedString,
+  headerLogo: Image,
+  hexBackgroundColor: String,
+  id: String,
+  textModulesData: Seq[TextModuleData],
+  title: LocalizedString,
+  `type`: String
+)
+
+/** Writes the JWT `payload` claim for Google passes straight to a Jackson generator.
+  *
+  * The output matches what java-jwt writes for the `GenericJson` models: the keys of each object in name order, which
+  * is how `GenericJson` iterates its `@Key` fields, and the same Jackson string escaping.
+  */
+object GooglePassPayload {
+
+  private val jsonFactory = new JsonFactory()
+
+  def json(genericPrivatePasses: Seq[GenericPrivatePass]): String = {
+    val out  = new StringWriter(4096)
+    val json = jsonFactory.createGenerator(out)
+    try {
+      json.writeStartObject()
+      json.writeFieldName("genericPrivatePasses")
+      json.writeStartArray()
+      genericPrivatePasses.foreach(writeGenericPrivatePass(json, _))
+      json.writeEndArray()
+      json.writeEndObject()
+    } finally json.close()
+    out.toString
+  }
+
+  private def writeGenericPrivatePass(json: JsonGenerator, pass: GenericPrivatePass): Unit = {
+    json.writeStartObject()
+    writeLocalizedString(json, "header", pass.header)
+    json.writeFieldName("headerLogo")
+    writeImage(json, pass.headerLogo)
+    json.writeStringField("hexBackgroundColor", pass.hexBackgroundColor)
+    json.writeStringField("id", pass.id)
+    json.writeFieldName("textModulesData")
+    json.writeStartArray()
+    pass.textModulesData.foreach(writeTextModuleData(json, _))
+    json.writeEndArray()
+    writeLocalizedString(json, "title", pass.title)
+    json.writeStringField("type", pass.`type`)
+    json.writeEndObject()
+  }
+
+  private def writeImage(json: JsonGenerator, image: Image): Unit = {
+    json.writeStartObject()
+    json.writeFieldName("sourceUri")
+    json.writeStartObject()
+    json.writeStringField("description", image.sourceUri.description)
+    json.writeStringField("uri", image.sourceUri.uri)
+    json.writeEndObject()
+    json.writeEndObject()
+  }
+
+  private def writeLocalizedString(json: JsonGenerator, fieldName: String, localized: LocalizedString): Unit = {
+    json.writeFieldName(fieldName)
+    json.writeStartObject()
+    json.writeFieldName("defaultValue")
+    json.writeStartObject()
+    json.writeStringField("language", localized.defaultValue.language)
+    json.writeStringField("value", localized.defaultValue.value)
+    json.writeEndObject()
+    json.writeEndObject()
+  }
+
+  private def writeTextModuleData(json: JsonGenerator, textModuleData: TextModuleData): Unit = {
+    json.writeStartObject()
+    json.writeStringField("body", textModuleData.body)
+    json.writeStringField("header", textModuleData.header)
+    json.writeStringField("id", textModuleData.id)
+    json.writeEndObject()
+  }
+}
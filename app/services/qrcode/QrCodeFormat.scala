@@ -0,0 +1,36 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package services.qrcode
+
+sealed trait QrCodeFormat {
+  def contentType: String
+}
+
+object QrCodeFormat {
+  case object Png extends QrCodeFormat {
+    val contentType = "image/png"
+  }
+
+  case object Svg extends QrCodeFormat {
+    val contentType = "image/svg+xml"
+  }
+
+  val values: Seq[QrCodeFormat] = Seq(Png, Svg)
+
+  def fromString(format: String): Option[QrCodeFormat] =
+    values.find(_.toString.equalsIgnoreCase(format))
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package services.qrcode
+
+import com.google.zxing.common.BitMatrix
+
+import java.io.ByteArrayOutputStream
+import java.nio.charset.StandardCharsets
+import java.util.zip.{CRC32, Deflater}
+
+/** Renders a zxing BitMatrix without going through AWT or ImageIO. The PNG is a 1-bit greyscale image written
+  * straight from the matrix bits; the SVG is a single path of horizontal runs. Both are deterministic for a given
+  * matrix.
+  */
+object QrCodeRenderer {
+
+  /** Part of the QR image ETag. Bump it whenever the bytes rendered for a given matrix change. */
+  val Version = "1"
+
+  private val PngSignature: Array[Byte] = Array(0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n').map(_.toByte)
+
+  private val BitDepth            = 1
+  private val ColourTypeGreyscale = 0
+  private val DeflateBufferSize   = 4096
+
+  def png(matrix: BitMatrix): Array[Byte] = {
+    val width        = matrix.getWidth
+    val height       = matrix.getHeight
+    val bytesPerLine = (width + 7) / 8 + 1 // leading filter-type byte, always 0 (None)
+    val scanlines    = new Array[Byte](bytesPerLine * height)
+
+    var y = 0
+    while (y < height) {
+      val lineStart = y * bytesPerLine + 1
+      var x         = 0
+      while (x < width) {
+        // In greyscale a set bit is white, so only the light modules are written
+        if (!matrix.get(x, y)) {
+          val index = lineStart + (x >> 3)
+          scanlines(index) = (scanlines(index) | (0x80 >>> (x & 7))).toByte
+        }
+        x += 1
+      }
+      y += 1
+    }
+
+    val header = new ByteArrayOutputStream(13)
+    writeInt(header, width)
+    writeInt(header, height)
+    header.write(BitDepth)
+    header.write(ColourTypeGreyscale)
+    header.write(0) // compression: deflate
+    header.write(0) // filter method: adaptive
+    header.write(0) // interlace: none
+
+    val out = new ByteArrayOutputStream(scanlines.length / 4 + 128)
+    out.writeBytes(PngSignature)
+    writeChunk(out, "IHDR", header.toByteArray)
+    writeChunk(out, "IDAT", deflate(scanlines))
+    writeChunk(out, "IEND", Array.emptyByteArray)
+    out.toByteArray
+  }
+
+  def svg(matrix: BitMatrix, imageSize: Int): Array[Byte] = {
+    val width  = matrix.getWidth
+    val height = matrix.getHeight
+    val path   = new java.lang.StringBuilder(width * height / 2)
+
+    var y = 0
+    while (y < height) {
+      var x = 0
+      while (x < width) {
+        if (matrix.get(x, y)) {
+          val runStart = x
+          while (x < width && matrix.get(x, y)) x += 1
+          val runLength = x - runStart
+          path.append('M').append(runStart).append(' ').append(y)
+          path.append('h').append(runLength).append("v1h-").append(runLength).append('z')
+        } else {
+          x += 1
+        }
+      }
+      y += 1
+    }
+
+    (s"""<svg xmlns="http://www.w3.org/2000/svg" width="$imageSize" height="$imageSize" """ +
+      s"""viewBox="0 0 $width $height" shape-rendering="crispEdges">""" +
+      s"""<rect width="$width" height="$height" fill="#ffffff"/>""" +
+      s"""<path fill="#000000" d="$path"/></svg>""").getBytes(StandardCharsets.UTF_8)
+  }
+
+  private def deflate(data: Array[Byte]): Array[Byte] = {
+    val deflater = new Deflater(Deflater.BEST_COMPRESSION)
+    try {
+      deflater.setInput(data)
+      deflater.finish()
+
+      val out   = new ByteArrayOutputStream(data.length / 4 + 64)
+      val chunk = new Array[Byte](DeflateBufferSize)
+      while (!deflater.finished()) {
+        val written = deflater.deflate(chunk)
+        out.write(chunk, 0, written)
+      }
+      out.toByteArray
+    } finally deflater.end()
+  }
+
+  private def writeChunk(out: ByteArrayOutputStream, chunkType: String, data: Array[Byte]): Unit = {
+    val typeBytes = chunkType.getBytes(StandardCharsets.US_ASCII)
+    val crc       = new CRC32()
+    crc.update(typeBytes)
+    crc.update(data)
+
+    writeInt(out, data.length)
+    out.writeBytes(typeBytes)
+    out.writeBytes(data)
+    writeInt(out, crc.getValue.toInt)
+  }
+
+  private def writeInt(out: ByteArrayOutputStream, value: Int): Unit = {
+    out.write(value >>> 24)
+    out.write(value >>> 16)
+    out.write(value >>> 8)
+    out.write(value)
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package services.qrcode
+
+import services.QrCodeService
+
+final case class QrCodeVariant(size: Int, format: QrCodeFormat)
+
+object QrCodeVariant {
+  val MIN_SIZE = 100
+  val MAX_SIZE = 1000
+
+  val Default: QrCodeVariant = QrCodeVariant(QrCodeService.DEFAULT_BARCODE_SIZE, QrCodeFormat.Png)
+
+  def fromRequest(size: Option[Int], format: Option[String]): Either[String, QrCodeVariant] = {
+    val validSize: Either[String, Int] = size match {
+      case Some(s) if s < MIN_SIZE || s > MAX_SIZE => Left(s"size must be between $MIN_SIZE and $MAX_SIZE")
+      case Some(s)                                 => Right(s)
+      case None                                    => Right(Default.size)
+    }
+
+    val validFormat: Either[String, QrCodeFormat] = format match {
+      case Some(name) => QrCodeFormat.fromString(name).toRight(s"unsupported format: $name")
+      case None       => Right(Default.format)
+    }
+
+    for {
+      s <- validSize
+      f <- validFormat
+    } yield QrCodeVariant(s, f)
+  }
+}
@@ -392,44 +392,41 @@ object IndividualDetails {
     case None          => code.toString
   }
 
-  private val readsPreferredNameDetails: Reads[JsObject] =
-    readsPreferredName.flatMap { preferredNameJsObject =>
-      (
-        (__ \ "title").json.put(
-          (preferredNameJsObject \ "titleType").asOpt[JsString](readsTitleType).getOrElse(JsNull)
+  private def preferredNameDetails(preferredNameJsObject: JsObject): Reads[JsObject] =
+    (
+      (__ \ "title").json.put(
+        (preferredNameJsObject \ "titleType").asOpt[JsString](readsTitleType).getOrElse(JsNull)
+      ) and
+        (__ \ "firstForename").json.put(
+          (preferredNameJsObject \ "firstForename").asOpt[JsString].getOrElse(JsNull)
         ) and
-          (__ \ "firstForename").json.put(
-            (preferredNameJsObject \ "firstForename").asOpt[JsString].getOrElse(JsNull)
-          ) and
-          (__ \ "surname").json.put((preferredNameJsObject \ "surname").asOpt[JsString].getOrElse(JsNull))
-      ).reduce
-        .pipe(addOptionalField(_, "honours", (preferredNameJsObject \ "honours").asOpt[String]))
-        .pipe(addOptionalField(_, "secondForename", (preferredNameJsObject \ "secondForename").asOpt[String]))
-    }
+        (__ \ "surname").json.put((preferredNameJsObject \ "surname").asOpt[JsString].getOrElse(JsNull))
+    ).reduce
+      .pipe(addOptionalField(_, "honours", (preferredNameJsObject \ "honours").asOpt[String]))
+      .pipe(addOptionalField(_, "secondForename", (preferredNameJsObject \ "secondForename").asOpt[String]))
 
-  private val readsPreferredAddressDetails: Reads[JsObject] =
-    readsPreferredAddress.map { preferredAddressJsObject =>
-      def addOptional(fieldName: String): JsObject =
-        (preferredAddressJsObject \ fieldName).asOpt[String].fold(Json.obj())(s => Json.obj(fieldName -> s))
+  private def preferredAddressDetails(preferredAddressJsObject: JsObject): JsObject = {
+    def addOptional(fieldName: String): JsObject =
+      (preferredAddressJsObject \ fieldName).asOpt[String].fold(Json.obj())(s => Json.obj(fieldName -> s))
 
-      val addr = if (preferredAddressJsObject.fields.isEmpty) {
-        JsNull
-      } else {
-        Json.obj(
-          "addressLine1"     -> (preferredAddressJsObject \ "addressLine1").as[String],
-          "addressLine2"     -> (preferredAddressJsObject \ "addressLine2").asOpt[String],
-          "addressStartDate" -> (preferredAddressJsObject \ "addressStartDate").as[String],
-          "addressCountry"   -> convertCodeToCountryName((preferredAddressJsObject \ "countryCode").as[Int]),
-          "addressType"      -> (preferredAddressJsObject \ "addressType").as[Int]
-        ) ++ addOptional("addressLine3")
-          ++ addOptional("addressLine4")
-          ++ addOptional("addressLine5")
-          ++ addOptional("addressPostcode")
-      }
+    val addr = if (preferredAddressJsObject.fields.isEmpty) {
+      JsNull
+    } else {
       Json.obj(
-        "address" -> addr
-      )
+        "addressLine1"     -> (preferredAddressJsObject \ "addressLine1").as[String],
+        "addressLine2"     -> (preferredAddressJsObject \ "addressLine2").asOpt[String],
+        "addressStartDate" -> (preferredAddressJsObject \ "addressStartDate").as[String],
+        "addressCountry"   -> convertCodeToCountryName((preferredAddressJsObject \ "countryCode").as[Int]),
+        "addressType"      -> (preferredAddressJsObject \ "addressType").as[Int]
+      ) ++ addOptional("addressLine3")
+        ++ addOptional("addressLine4")
+        ++ addOptional("addressLine5")
+        ++ addOptional("addressPostcode")
     }
+    Json.obj(
+      "address" -> addr
+    )
+  }
 
   private val readsNino: Reads[JsString] =
     (
@@ -437,12 +434,106 @@ object IndividualDetails {
         (__ \ "details" \ "ninoSuffix").readNullable[String]
     )((nino, ninoSuffix) => JsString(nino.getOrElse("") + ninoSuffix.getOrElse("")))
 
-  val reads: Reads[JsObject] =
+  private def readsProjection(preferredName: Reads[JsObject], preferredAddress: Reads[JsObject]): Reads[JsObject] =
     (
-      readsPreferredNameDetails and
+      preferredName.flatMap(preferredNameDetails) and
         (__ \ "dateOfBirth").json.copyFrom((__ \ "details" \ "dateOfBirth").json.pick) and
         (__ \ "nino").json.copyFrom(readsNino) and
-        readsPreferredAddressDetails and
+        preferredAddress.map(preferredAddressDetails) and
         (__ \ "crnIndicator").json.copyFrom((__ \ "details" \ "crnIndicator").read(readsCRNInd))
     ).reduce
+
+  val reads: Reads[JsObject] = readsProjection(readsPreferredName, readsPreferredAddress)
+
+  /** Walks one name or address list once, keeping the entry with the highest sequence number of the preferred type
+    * and of the fallback type, instead of copying every entry and filtering the copies twice. Entries are returned as
+    * they are rather than as copies, which is safe because only the copied fields are ever read from them.
+    *
+    * Returns None for any list that `reads` would reject or throw on, so that the caller can leave it to `reads`.
+    */
+  private def highestSequence(
+    entries: JsArray,
+    typeField: String,
+    sequenceField: String,
+    preferredType: Int,
+    fallbackType: Int,
+    requiredFields: Seq[String]
+  ): Option[JsObject] = {
+    var preferred: Option[JsObject] = None
+    var preferredSequence           = 0
+    var fallback: Option[JsObject]  = None
+    var fallbackSequence            = 0
+    var fallbackSequenceMissing     = false
+    var regular                     = true
+
+    val iterator = entries.value.iterator
+    while (regular && iterator.hasNext)
+      iterator.next() match {
+        case entry: JsObject if requiredFields.forall(entry.value.contains) =>
+          (entry \ typeField).asOpt[Int] match {
+            case Some(`preferredType`) =>
+              (entry \ sequenceField).asOpt[Int] match {
+                case Some(sequence) if preferred.isEmpty || sequence > preferredSequence =>
+                  preferred = Some(entry)
+                  preferredSequence = sequence
+                case Some(_)                                                            => ()
+                case None                                                               => regular = false
+              }
+            case Some(`fallbackType`)  =>
+              // Only looked at by `reads` when there is no entry of the preferred type
+              (entry \ sequenceField).asOpt[Int] match {
+                case Some(sequence) if fallback.isEmpty || sequence > fallbackSequence =>
+                  fallback = Some(entry)
+                  fallbackSequence = sequence
+                case Some(_)                                                          => ()
+                case None                                                             => fallbackSequenceMissing = true
+              }
+            case Some(_)               => ()
+            case None                  => regular = false
+          }
+        case _                                                              =>
+          regular = false
+      }
+
+    if (!regular || (preferred.isEmpty && fallbackSequenceMissing)) None
+    else Some(preferred.orElse(fallback).getOrElse(Json.obj()))
+  }
+
+  private def singlePass(
+    listPath: JsPath,
+    slowPath: Reads[JsObject]
+  )(highest: JsArray => Option[JsObject]): Reads[JsObject] =
+    Reads { json =>
+      listPath.asSingleJsResult(json) match {
+        case JsSuccess(entries: JsArray, _) => highest(entries).fold(slowPath.reads(json))(JsSuccess(_))
+        case _                              => slowPath.reads(json)
+      }
+    }
+
+  // The fields `readsAddress` picks without a fallback
+  private val RequiredAddressFields =
+    Seq("addressSequenceNumber", "countryCode", "addressType", "addressStartDate", "addressLine1")
+
+  private val singlePassPreferredName: Reads[JsObject] =
+    singlePass(__ \ "nameList" \ "name", readsPreferredName)(
+      highestSequence(_, "nameType", "nameSequenceNumber", NameTypeKnownAs, NameTypeReal, Seq.empty)
+    )
+
+  private val singlePassPreferredAddress: Reads[JsObject] =
+    singlePass(__ \ "addressList" \ "address", readsPreferredAddress)(
+      highestSequence(
+        _,
+        "addressType",
+        "addressSequenceNumber",
+        AddressTypeCorrespondance,
+        AddressTypeResidential,
+        RequiredAddressFields
+      )
+    )
+
+  /** Produces the same projection as `reads`, choosing the preferred name and address in a single pass over each list.
+    * Lists `reads` would reject or throw on are handed to `reads`, so failures are reported exactly as it reports
+    * them.
+    */
+  val singlePassReads: Reads[JsObject] = readsProjection(singlePassPreferredName, singlePassPreferredAddress)
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package util
+
+import java.io.OutputStream
+import java.util.Arrays
+import java.util.concurrent.ArrayBlockingQueue
+
+/** A bounded pool of byte arrays bucketed by size class. Requests larger than the biggest class are allocated and
+  * dropped as usual, and a full bucket simply lets released buffers go to the garbage collector.
+  */
+class SizeClassBufferPool(val sizeClasses: Seq[Int], maxPooledPerClass: Int) {
+
+  private val sortedSizeClasses: Array[Int] = sizeClasses.sorted.toArray
+
+  private val buckets: Array[ArrayBlockingQueue[Array[Byte]]] =
+    sortedSizeClasses.map(_ => new ArrayBlockingQueue[Array[Byte]](maxPooledPerClass))
+
+  def acquire(minimumSize: Int): Array[Byte] = {
+    val sizeClass = sortedSizeClasses.indexWhere(_ >= minimumSize)
+
+    if (sizeClass < 0) {
+      new Array[Byte](minimumSize)
+    } else {
+      Option(buckets(sizeClass).poll()).getOrElse(new Array[Byte](sortedSizeClasses(sizeClass)))
+    }
+  }
+
+  def release(buffer: Array[Byte]): Unit = {
+    val sizeClass = Arrays.binarySearch(sortedSizeClasses, buffer.length)
+
+    if (sizeClass >= 0) {
+      buckets(sizeClass).offer(buffer)
+      ()
+    }
+  }
+
+  def pooledCount: Int = buckets.map(_.size).sum
+}
+
+/** An output stream over a buffer drawn from a [[SizeClassBufferPool]], growing into the next size class as needed.
+  * The buffer goes back to the pool on [[release]], after which the stream must not be used again.
+  */
+class PooledByteArrayOutputStream(pool: SizeClassBufferPool, initialSize: Int) extends OutputStream {
+
+  private var buffer: Array[Byte] = pool.acquire(initialSize)
+  private var count: Int          = 0
+
+  override def write(b: Int): Unit = {
+    ensureCapacity(count + 1)
+    buffer(count) = b.toByte
+    count += 1
+  }
+
+  override def write(b: Array[Byte], off: Int, len: Int): Unit = {
+    ensureCapacity(count + len)
+    System.arraycopy(b, off, buffer, count, len)
+    count += len
+  }
+
+  def size: Int = count
+
+  def toByteArray: Array[Byte] = Arrays.copyOf(buffer, count)
+
+  def release(): Unit =
+    if (buffer != null) {
+      pool.release(buffer)
+      buffer = null
+    }
+
+  private def ensureCapacity(required: Int): Unit =
+    if (required > buffer.length) {
+      val grown = pool.acquire(math.max(required, buffer.length * 2))
+      System.arraycopy(buffer, 0, grown, 0, count)
+      pool.release(buffer)
+      buffer = grown
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks
+
+import java.lang.management.ManagementFactory
+
+/** Minimal warm-up-then-measure harness for the `*Benchmark` mains in this package. Numbers are indicative only;
+  * they are not a substitute for profiling under realistic load.
+  */
+object Benchmark {
+
+  private val threadMXBean =
+    ManagementFactory.getThreadMXBean.asInstanceOf[com.sun.management.ThreadMXBean]
+
+  def run(name: String, iterations: Int)(body: => Int): Unit = {
+    var sink = 0L
+    (1 to iterations).foreach(_ => sink += body)
+
+    val allocatedBefore = threadMXBean.getCurrentThreadAllocatedBytes
+    val start           = System.nanoTime()
+    (1 to iterations).foreach(_ => sink += body)
+    val elapsed         = System.nanoTime() - start
+    val allocated       = threadMXBean.getCurrentThreadAllocatedBytes - allocatedBefore
+
+    println(
+      f"$name%-28s ${elapsed / 1000.0 / iterations}%10.1f us/op ${allocated.toDouble / iterations}%12.0f B/op" +
+        f" (output ${sink / (2L * iterations)} bytes)"
+    )
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks
+
+import models.encryption.{EncryptedBinary, PassCrypto}
+import uk.gov.hmrc.crypto.{EncryptedValue, SymmetricCryptoFactory}
+
+import java.util.concurrent.ThreadLocalRandom
+
+/** Compares the stored size and encrypt/decrypt cost of a pass card in the binary envelope with the previous
+  * comma-separated string encoding.
+  *
+  * Run with `sbt "Test/runMain benchmarks.EncryptedBinaryBenchmark"`.
+  */
+object EncryptedBinaryBenchmark {
+
+  private val key        = "z4rWoRLf7a1OHTXLutSDJjhrUzZTBE3b"
+  private val crypto     = PassCrypto(key)
+  private val passId     = "30b90407-142f-43cd-bfe2-ed90d75de1c6"
+  private val iterations = 500
+
+  def main(args: Array[String]): Unit = {
+    // Roughly the size of a signed pkpass with icon and logo assets
+    val applePassCard = new Array[Byte](48 * 1024)
+    ThreadLocalRandom.current().nextBytes(applePassCard)
+
+    // Output column is the stored size of the pass card field
+    Benchmark.run("legacy encrypt", iterations)(legacyFieldSize(legacyEncrypt(applePassCard)))
+    Benchmark.run("legacy encrypt + decrypt", iterations)(legacyDecrypt(legacyEncrypt(applePassCard)).length)
+
+    Benchmark.run("envelope encrypt", iterations)(
+      envelopeFieldSize(EncryptedBinary.encrypt(applePassCard, passId, crypto))
+    )
+    Benchmark.run("envelope encrypt + decrypt", iterations)(
+      EncryptedBinary.decrypt(EncryptedBinary.encrypt(applePassCard, passId, crypto), passId, crypto).length
+    )
+  }
+
+  private def legacyEncrypt(applePassCard: Array[Byte]): EncryptedValue =
+    SymmetricCryptoFactory.aesGcmAdCrypto(key).encrypt(applePassCard.mkString(","), passId)
+
+  private def legacyDecrypt(value: EncryptedValue): Array[Byte] =
+    SymmetricCryptoFactory.aesGcmAdCrypto(key).decrypt(value, passId).split(",").map(_.toByte)
+
+  private def legacyFieldSize(value: EncryptedValue): Int =
+    value.value.length + value.nonce.length
+
+  private def envelopeFieldSize(field: EncryptedBinary): Int = field match {
+    case EncryptedBinary.Envelope(bytes) => bytes.length
+    case EncryptedBinary.Legacy(value)   => legacyFieldSize(value)
+  }
+}
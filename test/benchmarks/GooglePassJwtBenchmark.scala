@@ -0,0 +1,73 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks
+
+import com.auth0.jwt.algorithms.Algorithm
+import config.AppConfig
+import org.mockito.Mockito.when
+import org.scalatestplus.mockito.MockitoSugar.mock
+import services.googlepass.*
+
+/** Compares minting a Google pass JWT from the precompiled template with building and serializing the reflective
+  * `GenericJson` pass, both signed with RS256 and unsigned to show the serialization cost on its own. The hand-written
+  * payload writer is also timed on its own, as used when the template is compiled.
+  *
+  * Run with `sbt "Test/runMain benchmarks.GooglePassJwtBenchmark"`.
+  */
+object GooglePassJwtBenchmark {
+
+  private val iterations = 5000
+  private val issuerId   = "3388000000000000000"
+  private val origins    = "www.tax.service.gov.uk"
+
+  def main(args: Array[String]): Unit = {
+    val config = mock[AppConfig]
+    when(config.googleOrigins).thenReturn(origins)
+
+    val createGenericPrivatePass = new CreateGenericPrivatePass(config)
+    val signingMaterial          = GooglePassSigningMaterialRegistry
+      .loadSigningMaterial(GooglePassSigningMaterialRegistrySpec.serviceAccountKey("issuer@test"))
+      .get
+    val fields                   = GooglePassJwtFields(
+      "hmrc-30b90407-142f-43cd-bfe2-ed90d75de1c6",
+      signingMaterial.clientEmail,
+      "Firstname Surname",
+      "AB 12 34 56 C",
+      CreateGenericPrivatePass.expiresAt(10)
+    )
+
+    def renderPayload(passFields: GooglePassJwtFields): String =
+      createGenericPrivatePass.createPayloadJson(
+        passFields.id,
+        issuerId,
+        GooglePassUtil.createGooglePassCardContent(passFields.name, passFields.nino)
+      )
+
+    val rs256Template    = createGenericPrivatePass.jwtTemplate(GooglePassJwtTemplate.RS256, issuerId)
+    val unsignedTemplate = createGenericPrivatePass.jwtTemplate(Algorithm.none().getName, issuerId)
+
+    Benchmark.run("GenericJson, unsigned", iterations)(
+      GenericJsonGooglePassJwt.jwt(fields, issuerId, origins, Algorithm.none()).length
+    )
+    Benchmark.run("payload writer", iterations)(renderPayload(fields).length)
+    Benchmark.run("template, unsigned", iterations)(unsignedTemplate.sign(fields, Algorithm.none()).length)
+    Benchmark.run("GenericJson, RS256", iterations)(
+      GenericJsonGooglePassJwt.jwt(fields, issuerId, origins, signingMaterial.algorithm).length
+    )
+    Benchmark.run("template, RS256", iterations)(rs256Template.sign(fields, signingMaterial.algorithm).length)
+  }
+}
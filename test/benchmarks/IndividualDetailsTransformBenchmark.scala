@@ -0,0 +1,78 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks
+
+import play.api.libs.json.{JsArray, JsObject, Json, Reads}
+import transformations.IndividualDetails
+
+/** Compares projecting a DES individual details payload with the original `IndividualDetails.reads`, which copies
+  * every name and address before choosing the preferred ones, against `IndividualDetails.singlePassReads`.
+  *
+  * Run with `sbt "Test/runMain benchmarks.IndividualDetailsTransformBenchmark"`.
+  */
+object IndividualDetailsTransformBenchmark {
+
+  private val iterations = 2000
+
+  def main(args: Array[String]): Unit =
+    Seq(5, 50, 500).foreach { historySize =>
+      val payload = desPayload(historySize)
+
+      // Output column is the size of the projection
+      Benchmark.run(s"reads ($historySize)", iterations)(project(payload, IndividualDetails.reads))
+      Benchmark.run(s"singlePassReads ($historySize)", iterations)(project(payload, IndividualDetails.singlePassReads))
+    }
+
+  private def project(payload: JsObject, reads: Reads[JsObject]): Int =
+    Json.stringify(payload.as[JsObject](reads)).length
+
+  // A record with a long history of names and addresses, the latest of each type last
+  private def desPayload(historySize: Int): JsObject = {
+    val names = (1 to historySize).map { seqNo =>
+      Json.obj(
+        "nameSequenceNumber" -> seqNo,
+        "nameType"           -> (1 + seqNo % 2),
+        "titleType"          -> 1,
+        "firstForename"      -> s"forename$seqNo",
+        "secondForename"     -> s"second$seqNo",
+        "surname"            -> s"surname$seqNo"
+      )
+    }
+    val addresses = (1 to historySize).map { seqNo =>
+      Json.obj(
+        "addressSequenceNumber" -> seqNo,
+        "countryCode"           -> 1,
+        "addressType"           -> (1 + seqNo % 2),
+        "addressStartDate"      -> "2018-03-10",
+        "addressLine1"          -> s"$seqNo High Street",
+        "addressLine2"          -> "Town",
+        "addressPostcode"       -> "AA1 1AA"
+      )
+    }
+
+    Json.obj(
+      "details"     -> Json.obj(
+        "nino"         -> "AA000003",
+        "ninoSuffix"   -> "B",
+        "dateOfBirth"  -> "1990-07-20",
+        "crnIndicator" -> 0
+      ),
+      "nameList"    -> Json.obj("name" -> JsArray(names)),
+      "addressList" -> Json.obj("address" -> JsArray(addresses))
+    )
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks
+
+import com.codahale.metrics.MetricRegistry
+import models.apple.ApplePassCard
+import play.api.libs.json.Json
+import services.FileService.*
+import services.{FileAsBytes, FileService, PassAssetBundle}
+
+import java.io.ByteArrayOutputStream
+import java.nio.charset.StandardCharsets
+import java.util.zip.{ZipEntry, ZipOutputStream}
+import scala.util.Using
+
+/** Compares building a pkpass with [[services.PkPassWriter]] against the previous pipeline, which read the images for
+  * every pass, collected the files into a `List[FileAsBytes]` and zipped them into a growing `ByteArrayOutputStream`.
+  * Both archives hold the same files and a signature of typical size; B/op is the figure to compare.
+  *
+  * Run with `sbt "Test/runMain benchmarks.PkPassWriterBenchmark"`.
+  */
+object PkPassWriterBenchmark {
+
+  private val iterations = 5000
+  private val pass       = ApplePassCard("Firstname Surname", "AB 12 34 56 C", "30b90407-142f-43cd-bfe2-ed90d75de1c6")
+  private val signature  = FileAsBytes("signature", Array.fill(3500)(1.toByte))
+
+  def main(args: Array[String]): Unit = {
+    val fileService = new FileService(new PassAssetBundle(), new MetricRegistry())
+
+    Benchmark.run("List + ZipOutputStream", iterations)(listAndZip(pass, signature).length)
+    Benchmark.run("PkPassWriter", iterations)(
+      Using.resource(fileService.newPkPassWriter()) { writer =>
+        writer.writePassContent(pass).flatMap(_ => writer.finish(signature)).map(_.length).getOrElse(0)
+      }
+    )
+  }
+
+  private def listAndZip(pass: ApplePassCard, signatureContent: FileAsBytes): Array[Byte] = {
+    val filePass = FileAsBytes(PASS_FILE_NAME, Json.toJson(pass).toString().getBytes(StandardCharsets.UTF_8))
+    val images   = (PassAssetBundle.RequiredAssets ++ PassAssetBundle.OptionalAssets).flatMap { filename =>
+      Option(getClass.getResourceAsStream(s"$PASS_RESOURCE_DIRECTORY/$filename")).map { stream =>
+        FileAsBytes(filename, Using.resource(stream)(_.readAllBytes()))
+      }
+    }
+    val files    = filePass :: images
+    val digests  = files.map(file => (file.filename, PassAssetBundle.sha1Hex(file.content))).toMap
+    val manifest =
+      FileAsBytes(MANIFEST_JSON_FILE_NAME, Json.toJson(digests).toString().getBytes(StandardCharsets.UTF_8))
+
+    val byteArrayOStream = new ByteArrayOutputStream()
+    val zip              = new ZipOutputStream(byteArrayOStream)
+    (files :+ manifest).foreach { file =>
+      zip.putNextEntry(new ZipEntry(file.filename))
+      zip.write(file.content)
+      zip.closeEntry()
+    }
+    zip.putNextEntry(new ZipEntry(signatureContent.filename))
+    zip.write(signatureContent.content)
+    zip.close()
+    byteArrayOStream.toByteArray
+  }
+}
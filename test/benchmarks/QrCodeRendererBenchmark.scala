@@ -0,0 +1,76 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks
+
+import com.google.zxing.qrcode.QRCodeWriter
+import com.google.zxing.{BarcodeFormat, EncodeHintType}
+import services.QrCodeService
+import services.qrcode.QrCodeFormat
+
+import java.awt.Color
+import java.awt.image.BufferedImage
+import java.io.ByteArrayOutputStream
+import java.util.Hashtable
+import javax.imageio.ImageIO
+
+/** Compares the direct PNG/SVG renderers with the previous AWT/ImageIO rendering.
+  *
+  * Run with `sbt "Test/runMain benchmarks.QrCodeRendererBenchmark"`.
+  */
+object QrCodeRendererBenchmark {
+
+  private val qrText     = "https://www.tax.service.gov.uk/save-your-national-insurance-number/get-pass-card?passId=" +
+    "30b90407-142f-43cd-bfe2-ed90d75de1c6&qr-code=true"
+  private val iterations = 2000
+
+  def main(args: Array[String]): Unit = {
+    val qrCodeService = new QrCodeService()
+
+    Benchmark.run("AWT + ImageIO png", iterations)(awtPng(qrText).length)
+    Benchmark.run("direct png", iterations)(qrCodeService.createQRCode(qrText).map(_.length).getOrElse(0))
+    Benchmark.run("direct svg", iterations)(
+      qrCodeService
+        .createQRCode(qrText, QrCodeService.DEFAULT_BARCODE_SIZE, QrCodeFormat.Svg)
+        .map(_.length)
+        .getOrElse(0)
+    )
+  }
+
+  private def awtPng(qrText: String): Array[Byte] = {
+    val hintMap = new Hashtable[EncodeHintType, Any]
+    hintMap.put(EncodeHintType.CHARACTER_SET, QrCodeService.UTF_8)
+    hintMap.put(EncodeHintType.MARGIN, QrCodeService.MARGIN)
+
+    val size       = QrCodeService.DEFAULT_BARCODE_SIZE
+    val byteMatrix = new QRCodeWriter().encode(qrText, BarcodeFormat.QR_CODE, size, size, hintMap)
+    val width      = byteMatrix.getWidth
+    val image      = new BufferedImage(width, width, BufferedImage.TYPE_INT_RGB)
+    val graphics   = image.createGraphics()
+
+    graphics.setColor(Color.WHITE)
+    graphics.fillRect(0, 0, width, width)
+    graphics.setColor(Color.BLACK)
+    for (i <- 0 until width)
+      for (j <- 0 until width)
+        if (byteMatrix.get(i, j)) graphics.fillRect(i, j, 1, 1)
+
+    val out = new ByteArrayOutputStream()
+    ImageIO.write(image, "png", out)
+    graphics.dispose()
+    out.toByteArray
+  }
+}
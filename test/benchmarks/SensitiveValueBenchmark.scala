@@ -0,0 +1,59 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks
+
+import helper.ApiPayloadHelper
+import models.encryption.EncryptedJsValue
+import play.api.libs.json.{JsValue, Json}
+import uk.gov.hmrc.crypto.{Crypted, PlainText, SymmetricCryptoFactory}
+
+/** Compares the stored size and encode/decode cost of an individual details payload in the session cache as a
+  * compressed binary envelope with the previous encoding, the JSON text encrypted as a string.
+  *
+  * Run with `sbt "Test/runMain benchmarks.SensitiveValueBenchmark"`.
+  */
+object SensitiveValueBenchmark extends ApiPayloadHelper {
+
+  private val crypto     = SymmetricCryptoFactory.aesCrypto("z4rWoRLf7a1OHTXLutSDJjhrUzZTBE3b")
+  private val iterations = 2000
+
+  def main(args: Array[String]): Unit = {
+    val payload: JsValue = apiIndividualDetailsJsonThreeNamesThreeAddresses
+
+    // Output column is the stored size of the value
+    Benchmark.run("string encode", iterations)(legacyEncode(payload).length)
+    Benchmark.run("string encode + decode", iterations)(Json.stringify(legacyDecode(legacyEncode(payload))).length)
+
+    Benchmark.run("envelope encode", iterations)(envelopeSize(EncryptedJsValue.encrypt(payload, crypto)))
+    Benchmark.run("envelope encode + decode", iterations)(
+      Json.stringify(EncryptedJsValue.decrypt(envelope(EncryptedJsValue.encrypt(payload, crypto)), crypto)).length
+    )
+  }
+
+  private def legacyEncode(value: JsValue): String =
+    crypto.encrypt(PlainText(Json.stringify(value))).value
+
+  private def legacyDecode(value: String): JsValue =
+    Json.parse(crypto.decrypt(Crypted(value)).value)
+
+  private def envelope(stored: JsValue): Array[Byte] = stored match {
+    case EncryptedJsValue(bytes) => bytes
+    case other                   => throw new IllegalStateException(s"Not an encrypted envelope: $other")
+  }
+
+  private def envelopeSize(stored: JsValue): Int = envelope(stored).length
+}
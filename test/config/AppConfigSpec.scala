@@ -20,7 +20,7 @@ import _root_.util.SpecBase
 import models.admin.ApplePassCertificates2
 import org.mockito.ArgumentMatchers
 import org.mockito.Mockito.{reset, when}
-import play.api.Application
+import play.api.{Application, Configuration, PlayException}
 import play.api.inject.bind
 import repositories.{ApplePassRepoTrait, ApplePassRepository, GooglePassRepoTrait, GooglePassRepository}
 import uk.gov.hmrc.auth.core.AuthConnector
@@ -91,4 +91,23 @@ class AppConfigSpec extends SpecBase {
       sut.applePassSigningEnabled mustBe false
     }
   }
+
+  "passBatchChunkSize" must {
+    "read the configured chunk size" in {
+      sut.passBatchChunkSize mustBe 32
+    }
+
+    "reject a chunk size that is not positive" in {
+      intercept[PlayException](withConfig("passBatch.chunkSize" -> 0).passBatchChunkSize)
+    }
+
+    "reject a chunk size that would take more than half of the pass build queue" in {
+      intercept[PlayException] {
+        withConfig("passBatch.chunkSize" -> 50, "passBuild.queueDepth" -> 64).passBatchChunkSize
+      }
+    }
+  }
+
+  private def withConfig(settings: (String, Any)*): AppConfig =
+    new AppConfig(Configuration(settings*).withFallback(app.configuration), mockFeatureFlagService)
 }
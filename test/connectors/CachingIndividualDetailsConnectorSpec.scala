@@ -17,13 +17,17 @@
 package connectors
 
 import cats.data.EitherT
-import org.mockito.ArgumentMatchers.{any, eq as eqTo}
+import connectors.CachingIndividualDetailsConnector.{CachedIndividualDetails, ProjectionSchemaVersion}
+import helper.ApiPayloadHelper
+import org.mockito.ArgumentMatchers.{any, argThat, eq as eqTo}
 import org.mockito.Mockito.{reset, times, verify, when}
 import org.scalatest.BeforeAndAfterEach
+import org.scalatest.concurrent.Eventually
 import org.scalatest.time.{Seconds, Span}
 import play.api.Application
 import play.api.inject.bind
 import play.api.libs.json.{Format, JsValue, Json}
+import play.api.http.Status.INTERNAL_SERVER_ERROR
 import play.api.mvc.AnyContentAsEmpty
 import play.api.test.FakeRequest
 import repositories.cache.FMNSessionCacheRepository
@@ -31,12 +35,19 @@ import services.SensitiveFormatService
 import uk.gov.hmrc.auth.core.retrieve.Credentials
 import uk.gov.hmrc.domain.{Generator, Nino}
 import uk.gov.hmrc.http.{HeaderCarrier, SessionId, UpstreamErrorResponse}
+import uk.gov.hmrc.mongo.cache.DataKey
 import util.{SpecBase, WireMockHelper}
 
-import scala.concurrent.{ExecutionContext, Future}
+import java.time.Instant
+import scala.concurrent.{ExecutionContext, Future, Promise}
 import scala.util.Random
 
-class CachingIndividualDetailsConnectorSpec extends SpecBase with WireMockHelper with BeforeAndAfterEach {
+class CachingIndividualDetailsConnectorSpec
+    extends SpecBase
+    with WireMockHelper
+    with BeforeAndAfterEach
+    with Eventually
+    with ApiPayloadHelper {
   implicit override val patienceConfig: PatienceConfig = PatienceConfig(timeout = Span(20, Seconds))
 
   private val mockUnderlying: DefaultIndividualDetailsConnector = mock[DefaultIndividualDetailsConnector]
@@ -55,10 +66,17 @@ class CachingIndividualDetailsConnectorSpec extends SpecBase with WireMockHelper
     )
     .build()
 
-  private val nino                = Nino(new Generator(new Random()).nextNino.nino).nino
-  private val credentials         = Credentials("providerId", "providerType")
-  private val resolveMerge        = ""
-  private val jsonResult: JsValue = Json.obj("person" -> "test")
+  private val nino                     = Nino(new Generator(new Random()).nextNino.nino).nino
+  private val credentials              = Credentials("providerId", "providerType")
+  private val resolveMerge             = ""
+  private lazy val jsonResult: JsValue = apiIndividualDetailsJsonOneNameOneAddress
+  private lazy val projection: JsValue = apiTransformedIndividualDetailsJsonOneNameOneAddress
+
+  private def cacheKey: DataKey[CachedIndividualDetails] = DataKey(s"individual-details-v2-nino-$nino")
+  private def legacyCacheKey: DataKey[JsValue]           = DataKey(s"individual-details-nino-$nino")
+
+  private def cachedProjection(fetchedAt: Instant): CachedIndividualDetails =
+    CachedIndividualDetails(projection, fetchedAt, Some(ProjectionSchemaVersion))
 
   private def connector: CachingIndividualDetailsConnector = app.injector.instanceOf[CachingIndividualDetailsConnector]
 
@@ -74,18 +92,18 @@ class CachingIndividualDetailsConnectorSpec extends SpecBase with WireMockHelper
   "getIndividualDetails" should {
 
     "return cached value if present in session cache with correct key value" in {
-      when(mockCacheRepo.getFromSession[JsValue](any(), any())(any()))
-        .thenReturn(Future.successful(Some(jsonResult)))
+      when(mockCacheRepo.getFromSession[CachedIndividualDetails](any(), any())(any()))
+        .thenReturn(Future.successful(Some(cachedProjection(Instant.now()))))
 
       val result = connector.getIndividualDetails(nino, credentials, resolveMerge).value.futureValue
 
-      result mustBe Right(jsonResult)
+      result mustBe Right(projection)
       verify(mockCacheRepo).getFromSession(any(), eqTo(Nino(nino)))(any())
       verify(mockUnderlying, times(0)).getIndividualDetails(any(), any(), any())(any(), any())
     }
 
     "fetch person details and cache result if not present in session cache" in {
-      when(mockCacheRepo.getFromSession[JsValue](any(), any())(any()))
+      when(mockCacheRepo.getFromSession[CachedIndividualDetails](any(), any())(any()))
         .thenReturn(Future.successful(None))
 
       when(mockUnderlying.getIndividualDetails(eqTo(nino), eqTo(credentials), eqTo(resolveMerge))(any(), any()))
@@ -97,15 +115,15 @@ class CachingIndividualDetailsConnectorSpec extends SpecBase with WireMockHelper
 
       val result = connector.getIndividualDetails(nino, credentials, resolveMerge).value.futureValue
 
-      result mustBe Right(jsonResult)
+      result mustBe Right(projection)
       verify(mockUnderlying, times(1))
         .getIndividualDetails(eqTo(nino), eqTo(credentials), eqTo(resolveMerge))(any(), any())
       verify(mockCacheRepo).putSession(
-        any(),
+        eqTo(cacheKey),
         any(),
         eqTo(Nino(nino))
       )(
-        any[Format[JsValue]],
+        any[Format[CachedIndividualDetails]],
         any[ExecutionContext]
       )
     }
@@ -113,7 +131,7 @@ class CachingIndividualDetailsConnectorSpec extends SpecBase with WireMockHelper
     "return error if connector fails and nothing in cache" in {
       val error = UpstreamErrorResponse("Something went wrong", 500)
 
-      when(mockCacheRepo.getFromSession[JsValue](any(), any())(any()))
+      when(mockCacheRepo.getFromSession[CachedIndividualDetails](any(), any())(any()))
         .thenReturn(Future.successful(None))
 
       when(mockUnderlying.getIndividualDetails(eqTo(nino), eqTo(credentials), eqTo(resolveMerge))(any(), any()))
@@ -121,7 +139,193 @@ class CachingIndividualDetailsConnectorSpec extends SpecBase with WireMockHelper
       val result = connector.getIndividualDetails(nino, credentials, resolveMerge).value.futureValue
 
       result mustBe Left(error)
-      verify(mockCacheRepo).getFromSession(any(), eqTo(Nino(nino)))(any())
+      verify(mockCacheRepo).getFromSession(eqTo(cacheKey), eqTo(Nino(nino)))(any())
+    }
+
+    "share one lookup between concurrent callers for the same nino" in {
+      val cacheRead = Promise[Option[CachedIndividualDetails]]()
+
+      when(mockCacheRepo.getFromSession[CachedIndividualDetails](any(), any())(any()))
+        .thenReturn(cacheRead.future)
+
+      when(mockUnderlying.getIndividualDetails(eqTo(nino), eqTo(credentials), eqTo(resolveMerge))(any(), any()))
+        .thenReturn(EitherT.rightT[Future, UpstreamErrorResponse](jsonResult))
+
+      when(
+        mockCacheRepo.putSession(any(), any(), any())(any(), any())
+      ).thenReturn(Future.successful("nino" -> "updated"))
+
+      val first  = connector.getIndividualDetails(nino, credentials, resolveMerge).value
+      val second = connector.getIndividualDetails(nino, credentials, resolveMerge).value
+      cacheRead.success(None)
+
+      first.futureValue mustBe Right(projection)
+      second.futureValue mustBe Right(projection)
+      verify(mockCacheRepo, times(1)).getFromSession(eqTo(cacheKey), eqTo(Nino(nino)))(any())
+      verify(mockUnderlying, times(1))
+        .getIndividualDetails(eqTo(nino), eqTo(credentials), eqTo(resolveMerge))(any(), any())
+      verify(mockCacheRepo, times(1))
+        .putSession(any(), any(), eqTo(Nino(nino)))(any[Format[CachedIndividualDetails]], any())
+    }
+
+    "start a new lookup once the previous one has finished" in {
+      val error = UpstreamErrorResponse("Something went wrong", 500)
+
+      when(mockCacheRepo.getFromSession[CachedIndividualDetails](any(), any())(any()))
+        .thenReturn(Future.successful(None))
+
+      when(mockUnderlying.getIndividualDetails(eqTo(nino), eqTo(credentials), eqTo(resolveMerge))(any(), any()))
+        .thenReturn(EitherT.leftT[Future, JsValue](error))
+
+      connector.getIndividualDetails(nino, credentials, resolveMerge).value.futureValue mustBe Left(error)
+      connector.getIndividualDetails(nino, credentials, resolveMerge).value.futureValue mustBe Left(error)
+
+      verify(mockUnderlying, times(2))
+        .getIndividualDetails(eqTo(nino), eqTo(credentials), eqTo(resolveMerge))(any(), any())
+    }
+
+    "cache the projection with its schema version" in {
+      when(mockCacheRepo.getFromSession[CachedIndividualDetails](any(), any())(any()))
+        .thenReturn(Future.successful(None))
+
+      when(mockUnderlying.getIndividualDetails(eqTo(nino), eqTo(credentials), eqTo(resolveMerge))(any(), any()))
+        .thenReturn(EitherT.rightT[Future, UpstreamErrorResponse](jsonResult))
+
+      when(
+        mockCacheRepo.putSession(any(), any(), any())(any(), any())
+      ).thenReturn(Future.successful("nino" -> "updated"))
+
+      connector.getIndividualDetails(nino, credentials, resolveMerge).value.futureValue mustBe Right(projection)
+      verify(mockCacheRepo).putSession(
+        any(),
+        argThat[CachedIndividualDetails](cached =>
+          cached.details == projection && cached.schemaVersion.contains(ProjectionSchemaVersion)
+        ),
+        eqTo(Nino(nino))
+      )(any[Format[CachedIndividualDetails]], any())
+    }
+
+    "project a cached DES payload again rather than fetching it" in {
+      when(mockCacheRepo.getFromSession[CachedIndividualDetails](any(), any())(any()))
+        .thenReturn(Future.successful(Some(CachedIndividualDetails(jsonResult, Instant.now(), None))))
+
+      connector.getIndividualDetails(nino, credentials, resolveMerge).value.futureValue mustBe Right(projection)
+      verify(mockUnderlying, times(0)).getIndividualDetails(any(), any(), any())(any(), any())
+    }
+
+    "fetch again when the cached projection has another schema version" in {
+      when(mockCacheRepo.getFromSession[CachedIndividualDetails](any(), any())(any()))
+        .thenReturn(
+          Future.successful(Some(CachedIndividualDetails(Json.obj(), Instant.now(), Some(ProjectionSchemaVersion + 1))))
+        )
+
+      when(mockUnderlying.getIndividualDetails(eqTo(nino), eqTo(credentials), eqTo(resolveMerge))(any(), any()))
+        .thenReturn(EitherT.rightT[Future, UpstreamErrorResponse](jsonResult))
+
+      when(
+        mockCacheRepo.putSession(any(), any(), any())(any(), any())
+      ).thenReturn(Future.successful("nino" -> "updated"))
+
+      connector.getIndividualDetails(nino, credentials, resolveMerge).value.futureValue mustBe Right(projection)
+      verify(mockUnderlying).getIndividualDetails(eqTo(nino), eqTo(credentials), eqTo(resolveMerge))(any(), any())
+    }
+
+    "return an internal server error and cache nothing when the DES payload cannot be projected" in {
+      when(mockCacheRepo.getFromSession[CachedIndividualDetails](any(), any())(any()))
+        .thenReturn(Future.successful(None))
+
+      when(mockUnderlying.getIndividualDetails(eqTo(nino), eqTo(credentials), eqTo(resolveMerge))(any(), any()))
+        .thenReturn(EitherT.rightT[Future, UpstreamErrorResponse](Json.obj()))
+
+      val result = connector.getIndividualDetails(nino, credentials, resolveMerge).value.futureValue
+
+      result.left.map(_.statusCode) mustBe Left(INTERNAL_SERVER_ERROR)
+      verify(mockCacheRepo, times(0)).putSession(any(), any(), any())(any(), any())
+    }
+
+    "serve details past the soft age at once and refresh them in the background" in {
+      val refreshed = apiIndividualDetailsMinimalFields
+      val stale     = cachedProjection(Instant.now().minusSeconds(600))
+
+      when(mockCacheRepo.getFromSession[CachedIndividualDetails](any(), any())(any()))
+        .thenReturn(Future.successful(Some(stale)))
+
+      when(mockUnderlying.getIndividualDetails(eqTo(nino), eqTo(credentials), eqTo(resolveMerge))(any(), any()))
+        .thenReturn(EitherT.rightT[Future, UpstreamErrorResponse](refreshed))
+
+      when(
+        mockCacheRepo.putSession(any(), any(), any())(any(), any())
+      ).thenReturn(Future.successful("nino" -> "updated"))
+
+      val result = connector.getIndividualDetails(nino, credentials, resolveMerge).value.futureValue
+
+      result mustBe Right(projection)
+      eventually {
+        verify(mockCacheRepo).putSession(
+          any(),
+          argThat[CachedIndividualDetails](_.details == apiTransformedIndividualDetailsJsonMinimalFields),
+          eqTo(Nino(nino))
+        )(any[Format[CachedIndividualDetails]], any())
+      }
+    }
+
+    "keep serving details past the soft age when the background refresh fails" in {
+      val error = UpstreamErrorResponse("Something went wrong", 500)
+      val stale = cachedProjection(Instant.now().minusSeconds(600))
+
+      when(mockCacheRepo.getFromSession[CachedIndividualDetails](any(), any())(any()))
+        .thenReturn(Future.successful(Some(stale)))
+
+      when(mockUnderlying.getIndividualDetails(eqTo(nino), eqTo(credentials), eqTo(resolveMerge))(any(), any()))
+        .thenReturn(EitherT.leftT[Future, JsValue](error))
+
+      connector.getIndividualDetails(nino, credentials, resolveMerge).value.futureValue mustBe Right(projection)
+      eventually {
+        verify(mockUnderlying).getIndividualDetails(eqTo(nino), eqTo(credentials), eqTo(resolveMerge))(any(), any())
+      }
+      connector.getIndividualDetails(nino, credentials, resolveMerge).value.futureValue mustBe Right(projection)
+      verify(mockCacheRepo, times(0)).putSession(any(), any(), any())(any(), any())
+    }
+
+    "serve details cached by an earlier release at once and refresh them under the versioned key" in {
+      when(mockCacheRepo.getFromSession[CachedIndividualDetails](eqTo(cacheKey), any())(any()))
+        .thenReturn(Future.successful(None))
+      when(mockCacheRepo.getFromSession[JsValue](eqTo(legacyCacheKey), any())(any()))
+        .thenReturn(Future.successful(Some(jsonResult)))
+
+      when(mockUnderlying.getIndividualDetails(eqTo(nino), eqTo(credentials), eqTo(resolveMerge))(any(), any()))
+        .thenReturn(EitherT.rightT[Future, UpstreamErrorResponse](jsonResult))
+
+      when(
+        mockCacheRepo.putSession(any(), any(), any())(any(), any())
+      ).thenReturn(Future.successful("nino" -> "updated"))
+
+      connector.getIndividualDetails(nino, credentials, resolveMerge).value.futureValue mustBe Right(projection)
+      eventually {
+        verify(mockCacheRepo).putSession(eqTo(cacheKey), any(), eqTo(Nino(nino)))(
+          any[Format[CachedIndividualDetails]],
+          any()
+        )
+      }
+      verify(mockCacheRepo, times(0)).putSession(eqTo(legacyCacheKey), any(), any())(any(), any())
+    }
+
+    "fetch details past the hard age before replying" in {
+      val refreshed = apiIndividualDetailsMinimalFields
+      val expired   = cachedProjection(Instant.now().minusSeconds(3000))
+
+      when(mockCacheRepo.getFromSession[CachedIndividualDetails](any(), any())(any()))
+        .thenReturn(Future.successful(Some(expired)))
+
+      when(mockUnderlying.getIndividualDetails(eqTo(nino), eqTo(credentials), eqTo(resolveMerge))(any(), any()))
+        .thenReturn(EitherT.rightT[Future, UpstreamErrorResponse](refreshed))
+
+      when(
+        mockCacheRepo.putSession(any(), any(), any())(any(), any())
+      ).thenReturn(Future.successful("nino" -> "updated"))
+
+      connector.getIndividualDetails(nino, credentials, resolveMerge).value.futureValue mustBe
+        Right(apiTransformedIndividualDetailsJsonMinimalFields)
     }
   }
 
@@ -134,7 +338,56 @@ class CachingIndividualDetailsConnectorSpec extends SpecBase with WireMockHelper
       val result = connector.deleteIndividualDetailsIfCached(nino, credentials).value.futureValue
 
       result mustBe Right((): Unit)
-      verify(mockCacheRepo).deleteFromSession(any(), eqTo(Nino(nino)))
+      verify(mockCacheRepo).deleteFromSession(eqTo(cacheKey), eqTo(Nino(nino)))
+      verify(mockCacheRepo).deleteFromSession(eqTo(legacyCacheKey), eqTo(Nino(nino)))
+    }
+
+    "not let a lookup that started before the delete write the details back" in {
+      val desCall = Promise[Either[UpstreamErrorResponse, JsValue]]()
+
+      when(mockCacheRepo.getFromSession[CachedIndividualDetails](any(), any())(any()))
+        .thenReturn(Future.successful(None))
+      when(mockUnderlying.getIndividualDetails(eqTo(nino), eqTo(credentials), eqTo(resolveMerge))(any(), any()))
+        .thenReturn(EitherT(desCall.future))
+      when(mockCacheRepo.deleteFromSession[JsValue](any(), any()))
+        .thenReturn(Future.successful((): Unit))
+
+      val lookup = connector.getIndividualDetails(nino, credentials, resolveMerge).value
+      eventually {
+        verify(mockUnderlying).getIndividualDetails(eqTo(nino), eqTo(credentials), eqTo(resolveMerge))(any(), any())
+      }
+
+      val delete = connector.deleteIndividualDetailsIfCached(nino, credentials).value
+      delete.isCompleted mustBe false
+
+      desCall.success(Right(jsonResult))
+
+      lookup.futureValue mustBe Right(projection)
+      delete.futureValue mustBe Right((): Unit)
+      verify(mockCacheRepo, times(0)).putSession(any(), any(), any())(any(), any())
+      verify(mockCacheRepo).deleteFromSession(eqTo(cacheKey), eqTo(Nino(nino)))
+    }
+
+    "not let a background refresh that started before the delete write the details back" in {
+      val desCall = Promise[Either[UpstreamErrorResponse, JsValue]]()
+
+      when(mockCacheRepo.getFromSession[CachedIndividualDetails](any(), any())(any()))
+        .thenReturn(Future.successful(Some(cachedProjection(Instant.now().minusSeconds(600)))))
+      when(mockUnderlying.getIndividualDetails(eqTo(nino), eqTo(credentials), eqTo(resolveMerge))(any(), any()))
+        .thenReturn(EitherT(desCall.future))
+      when(mockCacheRepo.deleteFromSession[JsValue](any(), any()))
+        .thenReturn(Future.successful((): Unit))
+
+      connector.getIndividualDetails(nino, credentials, resolveMerge).value.futureValue mustBe Right(projection)
+      eventually {
+        verify(mockUnderlying).getIndividualDetails(eqTo(nino), eqTo(credentials), eqTo(resolveMerge))(any(), any())
+      }
+
+      val delete = connector.deleteIndividualDetailsIfCached(nino, credentials).value
+      desCall.success(Right(apiIndividualDetailsMinimalFields))
+
+      delete.futureValue mustBe Right((): Unit)
+      verify(mockCacheRepo, times(0)).putSession(any(), any(), any())(any(), any())
     }
   }
 
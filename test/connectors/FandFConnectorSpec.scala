@@ -25,7 +25,7 @@ import org.scalatestplus.play.PlaySpec
 import org.scalatestplus.play.guice.GuiceOneAppPerSuite
 import play.api.Application
 import play.api.inject.guice.GuiceApplicationBuilder
-import uk.gov.hmrc.http.HeaderCarrier
+import uk.gov.hmrc.http.{Authorization, HeaderCarrier, SessionId}
 import util.WireMockHelper
 
 import scala.concurrent.Await
@@ -118,4 +118,88 @@ class FandFConnectorSpec
     }
 
   }
+
+  "Calling FandFConnector.getTrustedHelper for a session" must {
+
+    def sessionCarrier(session: String): HeaderCarrier =
+      HeaderCarrier(authorization = Some(Authorization(s"Bearer $session")), sessionId = Some(SessionId(session)))
+
+    "ask fandf once for repeated lookups in the same session" in {
+      server.stubFor(
+        WireMock.get(urlEqualTo("/delegation/get")).willReturn(ok(fandfTrustedHelperResponse))
+      )
+      val sessionHc = sessionCarrier("repeated")
+
+      Await.result(connector.getTrustedHelper()(sessionHc), Duration.Inf) mustBe Some(trustedHelper)
+      Await.result(connector.getTrustedHelper()(sessionHc), Duration.Inf) mustBe Some(trustedHelper)
+
+      server.verify(1, getRequestedFor(urlEqualTo("/delegation/get")))
+    }
+
+    "cache a not found response" in {
+      server.stubFor(
+        WireMock.get(urlEqualTo("/delegation/get")).willReturn(notFound())
+      )
+      val sessionHc = sessionCarrier("not-found")
+
+      Await.result(connector.getTrustedHelper()(sessionHc), Duration.Inf) mustBe None
+      Await.result(connector.getTrustedHelper()(sessionHc), Duration.Inf) mustBe None
+
+      server.verify(1, getRequestedFor(urlEqualTo("/delegation/get")))
+    }
+
+    "not cache a failed lookup" in {
+      server.stubFor(
+        WireMock.get(urlEqualTo("/delegation/get")).willReturn(serverError())
+      )
+      val sessionHc = sessionCarrier("failed")
+
+      Await.result(connector.getTrustedHelper()(sessionHc), Duration.Inf) mustBe None
+      Await.result(connector.getTrustedHelper()(sessionHc), Duration.Inf) mustBe None
+
+      server.verify(2, getRequestedFor(urlEqualTo("/delegation/get")))
+    }
+
+    "share one call between concurrent lookups in the same session" in {
+      server.stubFor(
+        WireMock
+          .get(urlEqualTo("/delegation/get"))
+          .willReturn(ok(fandfTrustedHelperResponse).withFixedDelay(200))
+      )
+      val sessionHc = sessionCarrier("concurrent")
+
+      val lookups = (1 to 5).map(_ => connector.getTrustedHelper()(sessionHc))
+
+      lookups.map(Await.result(_, Duration.Inf)) mustBe Seq.fill(5)(Some(trustedHelper))
+      server.verify(1, getRequestedFor(urlEqualTo("/delegation/get")))
+    }
+
+    "look up each session separately" in {
+      server.stubFor(
+        WireMock.get(urlEqualTo("/delegation/get")).willReturn(ok(fandfTrustedHelperResponse))
+      )
+
+      Await.result(connector.getTrustedHelper()(sessionCarrier("first")), Duration.Inf) mustBe Some(trustedHelper)
+      Await.result(connector.getTrustedHelper()(sessionCarrier("second")), Duration.Inf) mustBe Some(trustedHelper)
+
+      server.verify(2, getRequestedFor(urlEqualTo("/delegation/get")))
+    }
+
+    "ask fandf again once the session has been invalidated" in {
+      server.stubFor(
+        WireMock.get(urlEqualTo("/delegation/get")).willReturn(notFound())
+      )
+      val sessionHc = sessionCarrier("invalidated")
+
+      Await.result(connector.getTrustedHelper()(sessionHc), Duration.Inf) mustBe None
+      connector.invalidateTrustedHelper()(sessionHc)
+
+      server.stubFor(
+        WireMock.get(urlEqualTo("/delegation/get")).willReturn(ok(fandfTrustedHelperResponse))
+      )
+      Await.result(connector.getTrustedHelper()(sessionHc), Duration.Inf) mustBe Some(trustedHelper)
+
+      server.verify(2, getRequestedFor(urlEqualTo("/delegation/get")))
+    }
+  }
 }
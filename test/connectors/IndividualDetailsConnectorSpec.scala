@@ -16,7 +16,9 @@
 
 package connectors
 
+import com.codahale.metrics.MetricRegistry
 import config.AppConfig
+import org.apache.pekko.actor.ActorSystem
 import org.mockito.ArgumentMatchers.{any, eq as eqTo}
 import org.mockito.Mockito.when
 import org.scalatestplus.mockito.MockitoSugar
@@ -39,7 +41,10 @@ class IndividualDetailsConnectorSpec extends PlaySpec with MockitoSugar {
       val mockHttpClientV2                                              = mock[HttpClientV2]
       val mockConfig                                                    = mock[AppConfig]
       val requestBuilder: RequestBuilder                                = mock[RequestBuilder]
-      val connector                                                     = new DefaultIndividualDetailsConnector(mockHttpClientV2, mockConfig)
+      val resilience                                                    =
+        new IndividualDetailsResilience(mockConfig, mock[ActorSystem], new MetricRegistry())
+      val connector                                                     =
+        new DefaultIndividualDetailsConnector(mockHttpClientV2, mockConfig, resilience)
       val nino                                                          = "AB123456C"
       val credentials                                                   = Credentials("providerId", "providerType")
       val resolveMerge                                                  = "Y"
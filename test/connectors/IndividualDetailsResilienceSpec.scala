@@ -0,0 +1,196 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package connectors
+
+import com.codahale.metrics.MetricRegistry
+import com.github.tomakehurst.wiremock.client.WireMock.*
+import com.github.tomakehurst.wiremock.stubbing.Scenario
+import org.scalatest.concurrent.Eventually
+import org.scalatest.time.{Millis, Seconds, Span}
+import org.scalatestplus.play.PlaySpec
+import play.api.inject.bind
+import play.api.inject.guice.GuiceApplicationBuilder
+import play.api.libs.json.{JsValue, Json}
+import play.api.test.Helpers.running
+import uk.gov.hmrc.auth.core.retrieve.Credentials
+import uk.gov.hmrc.http.{HeaderCarrier, UpstreamErrorResponse}
+import util.WireMockHelper
+
+import scala.concurrent.duration.*
+import scala.concurrent.{Await, ExecutionContext}
+
+class IndividualDetailsResilienceSpec extends PlaySpec with WireMockHelper with Eventually {
+  import IndividualDetailsResilienceSpec.*
+
+  implicit val hc: HeaderCarrier    = HeaderCarrier()
+  implicit val ec: ExecutionContext = ExecutionContext.global
+
+  override implicit val patienceConfig: PatienceConfig =
+    PatienceConfig(timeout = Span(5, Seconds), interval = Span(100, Millis))
+
+  // A fresh application per test, so the circuit breaker and the metrics start from nothing
+  private def withConnector[T](config: (String, Any)*)(
+    test: (DefaultIndividualDetailsConnector, MetricRegistry) => T
+  ): T = {
+    val metricRegistry = new MetricRegistry()
+    val app            = new GuiceApplicationBuilder()
+      .configure(
+        Map[String, Any](
+          "metrics.enabled"                                         -> false,
+          "auditing.enabled"                                        -> false,
+          "external-url.individual-details.host"                    -> wireHost,
+          "external-url.individual-details.port"                    -> wirePort.toString,
+          "individualDetails.resilience.enabled"                    -> true,
+          "individualDetails.resilience.hedge.initialDelayInMillis" -> 100
+        ) ++ config
+      )
+      .overrides(bind[MetricRegistry].toInstance(metricRegistry))
+      .build()
+
+    running(app)(test(app.injector.instanceOf[DefaultIndividualDetailsConnector], metricRegistry))
+  }
+
+  private def getIndividualDetails(
+    connector: DefaultIndividualDetailsConnector
+  ): Either[UpstreamErrorResponse, JsValue] =
+    Await.result(connector.getIndividualDetails(nino, credentials, "Y").value, 1.second)
+
+  private def stubSlowThenFast(firstDelay: Int, secondDelay: Int): Unit = {
+    server.stubFor(
+      get(urlPathEqualTo(desPath))
+        .inScenario("hedge")
+        .whenScenarioStateIs(Scenario.STARTED)
+        .willSetStateTo("hedged")
+        .willReturn(okJson(desBody).withFixedDelay(firstDelay))
+    )
+    server.stubFor(
+      get(urlPathEqualTo(desPath))
+        .inScenario("hedge")
+        .whenScenarioStateIs("hedged")
+        .willReturn(okJson(desBody).withFixedDelay(secondDelay))
+    )
+    ()
+  }
+
+  private def count(metricRegistry: MetricRegistry, name: String): Long =
+    metricRegistry.counter(name).getCount
+
+  "IndividualDetailsResilience" must {
+
+    "make a single call to DES when it is turned off" in
+      withConnector("individualDetails.resilience.enabled" -> false) { (connector, _) =>
+        server.stubFor(get(urlPathEqualTo(desPath)).willReturn(okJson(desBody).withFixedDelay(300)))
+
+        getIndividualDetails(connector) mustBe Right(Json.parse(desBody))
+
+        server.verify(1, getRequestedFor(urlPathEqualTo(desPath)))
+      }
+
+    "not hedge a call that answers within the hedge delay" in withConnector() { (connector, metricRegistry) =>
+      server.stubFor(get(urlPathEqualTo(desPath)).willReturn(okJson(desBody)))
+
+      getIndividualDetails(connector) mustBe Right(Json.parse(desBody))
+
+      server.verify(1, getRequestedFor(urlPathEqualTo(desPath)))
+      count(metricRegistry, "individual-details.hedges.fired") mustBe 0
+    }
+
+    "hedge a slow call and answer with the hedge" in withConnector() { (connector, metricRegistry) =>
+      stubSlowThenFast(firstDelay = 3000, secondDelay = 0)
+
+      getIndividualDetails(connector) mustBe Right(Json.parse(desBody))
+
+      server.verify(2, getRequestedFor(urlPathEqualTo(desPath)))
+      count(metricRegistry, "individual-details.hedges.fired") mustBe 1
+      eventually(count(metricRegistry, "individual-details.hedges.won") mustBe 1)
+      count(metricRegistry, "individual-details.hedges.wasted") mustBe 0
+    }
+
+    "count the hedge as wasted when the first call answers first" in withConnector() { (connector, metricRegistry) =>
+      stubSlowThenFast(firstDelay = 400, secondDelay = 3000)
+
+      getIndividualDetails(connector) mustBe Right(Json.parse(desBody))
+
+      count(metricRegistry, "individual-details.hedges.fired") mustBe 1
+      eventually(count(metricRegistry, "individual-details.hedges.wasted") mustBe 1)
+      count(metricRegistry, "individual-details.hedges.won") mustBe 0
+    }
+
+    "answer with a 504 when an attempt takes longer than the attempt timeout" in
+      withConnector(
+        "individualDetails.resilience.hedge.enabled"          -> false,
+        "individualDetails.resilience.attemptTimeoutInMillis" -> 200
+      ) { (connector, _) =>
+        server.stubFor(get(urlPathEqualTo(desPath)).willReturn(okJson(desBody).withFixedDelay(3000)))
+
+        getIndividualDetails(connector).left.map(_.statusCode) mustBe Left(504)
+      }
+
+    "open the circuit after repeated failures and answer with a 503 without calling DES" in
+      withConnector(
+        "individualDetails.resilience.hedge.enabled"              -> false,
+        "individualDetails.resilience.circuitBreaker.maxFailures" -> 2
+      ) { (connector, metricRegistry) =>
+        server.stubFor(get(urlPathEqualTo(desPath)).willReturn(serverError()))
+
+        getIndividualDetails(connector).left.map(_.statusCode) mustBe Left(500)
+        getIndividualDetails(connector).left.map(_.statusCode) mustBe Left(500)
+        getIndividualDetails(connector).left.map(_.statusCode) mustBe Left(503)
+
+        server.verify(2, getRequestedFor(urlPathEqualTo(desPath)))
+        count(metricRegistry, "individual-details.circuit-breaker.opened") mustBe 1
+      }
+
+    "not open the circuit for 4xx answers" in
+      withConnector(
+        "individualDetails.resilience.hedge.enabled"              -> false,
+        "individualDetails.resilience.circuitBreaker.maxFailures" -> 1
+      ) { (connector, _) =>
+        server.stubFor(get(urlPathEqualTo(desPath)).willReturn(notFound()))
+
+        getIndividualDetails(connector).left.map(_.statusCode) mustBe Left(404)
+        getIndividualDetails(connector).left.map(_.statusCode) mustBe Left(404)
+
+        server.verify(2, getRequestedFor(urlPathEqualTo(desPath)))
+      }
+
+    "close the circuit again once a probe call succeeds" in
+      withConnector(
+        "individualDetails.resilience.hedge.enabled"                        -> false,
+        "individualDetails.resilience.circuitBreaker.maxFailures"           -> 1,
+        "individualDetails.resilience.circuitBreaker.resetTimeoutInSeconds" -> 1
+      ) { (connector, _) =>
+        server.stubFor(get(urlPathEqualTo(desPath)).willReturn(serverError()))
+
+        getIndividualDetails(connector).left.map(_.statusCode) mustBe Left(500)
+        getIndividualDetails(connector).left.map(_.statusCode) mustBe Left(503)
+
+        server.resetAll()
+        server.stubFor(get(urlPathEqualTo(desPath)).willReturn(okJson(desBody)))
+
+        eventually(getIndividualDetails(connector) mustBe Right(Json.parse(desBody)))
+        getIndividualDetails(connector) mustBe Right(Json.parse(desBody))
+      }
+  }
+}
+
+object IndividualDetailsResilienceSpec {
+  private val nino        = "AB123456C"
+  private val credentials = Credentials("providerId", "providerType")
+  private val desPath     = s"/individuals/details/NINO/${nino.take(8)}"
+  private val desBody     = """{"nameList":{"name":[]}}"""
+}
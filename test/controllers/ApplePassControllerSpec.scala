@@ -18,9 +18,10 @@ package controllers
 
 import cats.data.EitherT
 import cats.implicits.*
+import config.AppConfig
 import connectors.FandFConnector
 import org.mockito.ArgumentMatchers.{any, eq as eqTo}
-import org.mockito.Mockito.{reset, when}
+import org.mockito.Mockito.{never, reset, verify, when}
 import org.scalatest.BeforeAndAfter
 import org.scalatest.concurrent.ScalaFutures.whenReady
 import org.scalatest.matchers.must.Matchers
@@ -34,7 +35,8 @@ import play.api.inject.guice.{GuiceApplicationBuilder, GuiceableModule}
 import play.api.libs.json.{JsObject, Json}
 import play.api.test.FakeRequest
 import play.api.test.Helpers.*
-import services.ApplePassService
+import services.{ApplePassService, PassBuildRejectedException, PassQrCodeService}
+import services.qrcode.{QrCodeFormat, QrCodeRenderer, QrCodeVariant}
 import uk.gov.hmrc.auth.core.*
 import uk.gov.hmrc.auth.core.retrieve.{Credentials, Retrieval, ~}
 import uk.gov.hmrc.http.HeaderCarrier
@@ -60,9 +62,21 @@ class ApplePassControllerSpec extends AnyWordSpec with Matchers with MockitoSuga
       )(any[HeaderCarrier], any[ExecutionContext])
     ).thenReturn(retrievalResult)
 
+    stubPrivilegedAuthorisation(Future.unit)
+
     when(mockFandFConnector.getTrustedHelper()(any())).thenReturn(Future.successful(None))
   }
 
+  private def stubPrivilegedAuthorisation(result: Future[Unit]): Unit = {
+    when(
+      mockAuthConnector.authorise[Unit](eqTo(privilegedApplication), any[Retrieval[Unit]])(
+        any[HeaderCarrier],
+        any[ExecutionContext]
+      )
+    ).thenReturn(result)
+    ()
+  }
+
   "createPass" must {
 
     "return OK with the uuid of the pass" in {
@@ -94,6 +108,16 @@ class ApplePassControllerSpec extends AnyWordSpec with Matchers with MockitoSuga
       }
     }
 
+    "return ServiceUnavailable with Retry-After when the pass build pool is saturated" in {
+      when(mockApplePassService.createPass(eqTo("TestName TestSurname"), eqTo("AB 12 34 56 Q"))(any()))
+        .thenReturn(EitherT(Future.failed[Either[Exception, String]](new PassBuildRejectedException(2L))))
+
+      val result = controller.createPass()(fakeRequestWithAuth.withJsonBody(createPassRequest))
+
+      status(result) mustBe SERVICE_UNAVAILABLE
+      header(RETRY_AFTER, result) mustBe Some("2")
+    }
+
     "return InternalServerError when there is an error in creating pass" in {
       when(mockApplePassService.createPass(eqTo("TestName TestSurname"), eqTo("AB 12 34 56 Q"))(any()))
         .thenReturn(EitherT.leftT[Future, String](new Exception("SomeError")))
@@ -106,6 +130,50 @@ class ApplePassControllerSpec extends AnyWordSpec with Matchers with MockitoSuga
     }
   }
 
+  "createPasses" must {
+
+    "return OK with the result of each pass in request order" in {
+      val storeError = new Exception("Problem occurred while storing Apple Pass.")
+      when(mockApplePassService.createPasses(any())(any()))
+        .thenReturn(Future.successful(Seq(Right(passId), Left(storeError))))
+
+      val result = controller.createPasses()(
+        fakeRequestWithAuth.withJsonBody(Json.arr(createPassRequest, createPassRequest))
+      )
+
+      status(result) mustBe OK
+      contentAsJson(result) mustBe Json.arr(
+        Json.obj("passId" -> passId),
+        Json.obj("error"  -> "Problem occurred while storing Apple Pass.")
+      )
+    }
+
+    "return Unauthorized without creating any passes when the caller is not a privileged application" in {
+      stubPrivilegedAuthorisation(Future.failed(UnsupportedAuthProvider()))
+
+      val result = controller.createPasses()(fakeRequestWithAuth.withJsonBody(Json.arr(createPassRequest)))
+
+      status(result) mustBe UNAUTHORIZED
+      verify(mockApplePassService, never).createPasses(any())(any())
+      verify(mockFandFConnector, never).getTrustedHelper()(any())
+    }
+
+    "return BadRequest when the batch is larger than allowed" in {
+      val result = controller.createPasses()(
+        fakeRequestWithAuth.withJsonBody(Json.toJson(Seq.fill(501)(createPassRequest)))
+      )
+
+      status(result) mustBe BAD_REQUEST
+      verify(mockApplePassService, never).createPasses(any())(any())
+    }
+
+    "return BadRequest when request body is not a JSON array of pass details" in {
+      val result = controller.createPasses()(fakeRequestWithAuth.withJsonBody(createPassRequest))
+
+      status(result) mustBe BAD_REQUEST
+    }
+  }
+
   "getPassCardByPassId" must {
 
     "return OK with the byte data of pass" in {
@@ -153,12 +221,86 @@ class ApplePassControllerSpec extends AnyWordSpec with Matchers with MockitoSuga
     }
   }
 
+  "getPassCardFileByPassId" must {
+
+    "return the pass bytes as a pkpass with an ETag and immutable caching" in {
+      val passCard = "SomePassCodeData".getBytes()
+      when(mockApplePassService.getPassCardByPassIdAndNINO(eqTo(passId), eqTo("AB123456Q"))(any()))
+        .thenReturn(Future.successful(Some(passCard)))
+
+      val result = controller.getPassCardFileByPassId(passId)(fakeRequestWithAuth)
+
+      status(result) mustBe OK
+      contentType(result) mustBe Some(PassContentResults.PKPASS_CONTENT_TYPE)
+      contentAsBytes(result).toArray mustBe passCard
+      header(ETAG, result) mustBe Some(PassContentResults.etag(passId))
+      header(CACHE_CONTROL, result) mustBe Some(PassContentResults.IMMUTABLE_CACHE_CONTROL)
+    }
+
+    "return NotModified without loading the pass when the ETag matches" in {
+      when(mockApplePassService.isPassOwnedBy(eqTo(passId), eqTo("AB123456Q"))(any()))
+        .thenReturn(Future.successful(true))
+
+      val result = controller.getPassCardFileByPassId(passId)(
+        fakeRequestWithAuth.withHeaders(IF_NONE_MATCH -> PassContentResults.etag(passId))
+      )
+
+      status(result) mustBe NOT_MODIFIED
+      header(ETAG, result) mustBe Some(PassContentResults.etag(passId))
+      verify(mockApplePassService, never).getPassCardByPassIdAndNINO(any(), any())(any())
+    }
+
+    "return NotFound for a matching ETag when the pass belongs to someone else" in {
+      when(mockApplePassService.isPassOwnedBy(eqTo(passId), eqTo("AB123456Q"))(any()))
+        .thenReturn(Future.successful(false))
+
+      val result = controller.getPassCardFileByPassId(passId)(
+        fakeRequestWithAuth.withHeaders(IF_NONE_MATCH -> PassContentResults.etag(passId))
+      )
+
+      status(result) mustBe NOT_FOUND
+    }
+
+    "return NotFound when there is no record for given passId" in {
+      when(mockApplePassService.getPassCardByPassIdAndNINO(eqTo(passId), eqTo("AB123456Q"))(any()))
+        .thenReturn(Future.successful(None))
+
+      val result = controller.getPassCardFileByPassId(passId)(fakeRequestWithAuth)
+
+      status(result) mustBe NOT_FOUND
+    }
+  }
+
   "getQrCodeByPassId" must {
+    "pass the requested size and format through to the service" in {
+      when(
+        mockApplePassService.getQrCodeByPassIdAndNINO(
+          eqTo(passId),
+          eqTo("AB123456Q"),
+          eqTo(QrCodeVariant(300, QrCodeFormat.Svg))
+        )(any())
+      ).thenReturn(Future.successful(Some("<svg/>".getBytes())))
+
+      val result = controller.getQrCodeByPassId(passId, Some(300), Some("svg"))(fakeRequestWithAuth)
+
+      whenReady(result) { _ =>
+        status(result) mustBe OK
+      }
+    }
+
+    "return BadRequest for an unsupported format or size" in {
+      val badFormat = controller.getQrCodeByPassId(passId, None, Some("gif"))(fakeRequestWithAuth)
+      val badSize   = controller.getQrCodeByPassId(passId, Some(QrCodeVariant.MAX_SIZE + 1), None)(fakeRequestWithAuth)
+
+      status(badFormat) mustBe BAD_REQUEST
+      status(badSize) mustBe BAD_REQUEST
+    }
+
     "return OK with the byte data of qr code" in {
-      when(mockApplePassService.getQrCodeByPassIdAndNINO(eqTo(passId), eqTo("AB123456Q"))(any()))
+      when(mockApplePassService.getQrCodeByPassIdAndNINO(eqTo(passId), eqTo("AB123456Q"), eqTo(defaultVariant))(any()))
         .thenReturn(Future.successful(Some("SomeQrCodeData".getBytes())))
 
-      val result = controller.getQrCodeByPassId(passId)(fakeRequestWithAuth)
+      val result = controller.getQrCodeByPassId(passId, None, None)(fakeRequestWithAuth)
 
       whenReady(result) { _ =>
         status(result) mustBe OK
@@ -167,22 +309,88 @@ class ApplePassControllerSpec extends AnyWordSpec with Matchers with MockitoSuga
     }
 
     "return NotFound when there is no record for given passId" in {
-      when(mockApplePassService.getQrCodeByPassIdAndNINO(eqTo(passId), eqTo("AB123456Q"))(any()))
+      when(mockApplePassService.getQrCodeByPassIdAndNINO(eqTo(passId), eqTo("AB123456Q"), eqTo(defaultVariant))(any()))
         .thenReturn(Future.successful(None))
 
-      val result = controller.getQrCodeByPassId(passId)(fakeRequestWithAuth)
+      val result = controller.getQrCodeByPassId(passId, None, None)(fakeRequestWithAuth)
 
       whenReady(result) { _ =>
         status(result) mustBe NOT_FOUND
       }
     }
   }
+
+  "getQrCodeImageByPassId" must {
+
+    "return the image bytes with the content type of the requested format" in {
+      val svg = "<svg/>".getBytes()
+      when(
+        mockApplePassService.getQrCodeByPassIdAndNINO(
+          eqTo(passId),
+          eqTo("AB123456Q"),
+          eqTo(QrCodeVariant(300, QrCodeFormat.Svg))
+        )(any())
+      ).thenReturn(Future.successful(Some(svg)))
+
+      val result = controller.getQrCodeImageByPassId(passId, Some(300), Some("svg"))(fakeRequestWithAuth)
+
+      status(result) mustBe OK
+      contentType(result) mustBe Some("image/svg+xml")
+      contentAsBytes(result).toArray mustBe svg
+      header(ETAG, result) mustBe Some(qrCodeEtag(QrCodeVariant(300, QrCodeFormat.Svg)))
+      header(CACHE_CONTROL, result) mustBe Some(PassContentResults.QR_CODE_CACHE_CONTROL)
+    }
+
+    "use a different ETag for each size and format" in {
+      when(mockApplePassService.getQrCodeByPassIdAndNINO(eqTo(passId), eqTo("AB123456Q"), eqTo(defaultVariant))(any()))
+        .thenReturn(Future.successful(Some("SomeQrCodeData".getBytes())))
+
+      val png = controller.getQrCodeImageByPassId(passId, None, None)(
+        fakeRequestWithAuth.withHeaders(IF_NONE_MATCH -> qrCodeEtag(QrCodeVariant(300, QrCodeFormat.Svg)))
+      )
+
+      status(png) mustBe OK
+      contentType(png) mustBe Some("image/png")
+    }
+
+    "return NotModified without rendering when the ETag matches" in {
+      when(mockApplePassService.isPassOwnedBy(eqTo(passId), eqTo("AB123456Q"))(any()))
+        .thenReturn(Future.successful(true))
+
+      val result = controller.getQrCodeImageByPassId(passId, None, None)(
+        fakeRequestWithAuth.withHeaders(IF_NONE_MATCH -> qrCodeEtag(defaultVariant))
+      )
+
+      status(result) mustBe NOT_MODIFIED
+      verify(mockApplePassService, never).getQrCodeByPassIdAndNINO(any(), any(), any())(any())
+    }
+
+    "render again for an ETag that does not cover the QR text" in {
+      when(mockApplePassService.getQrCodeByPassIdAndNINO(eqTo(passId), eqTo("AB123456Q"), eqTo(defaultVariant))(any()))
+        .thenReturn(Future.successful(Some("SomeQrCodeData".getBytes())))
+
+      val result = controller.getQrCodeImageByPassId(passId, None, None)(
+        fakeRequestWithAuth.withHeaders(IF_NONE_MATCH -> PassContentResults.etag(passId, "200", "Png"))
+      )
+
+      status(result) mustBe OK
+      header(ETAG, result) mustBe Some(qrCodeEtag(defaultVariant))
+    }
+
+    "return BadRequest for an unsupported format" in {
+      val result = controller.getQrCodeImageByPassId(passId, None, Some("gif"))(fakeRequestWithAuth)
+
+      status(result) mustBe BAD_REQUEST
+    }
+  }
 }
 
 object ApplePassControllerSpec {
   implicit val hc: HeaderCarrier          = HeaderCarrier()
   private val passId                      = UUID.randomUUID().toString
+  private val defaultVariant              = QrCodeVariant.Default
   private val credentials                 = Credentials("providerId", "providerType")
+  private val privilegedApplication       = AuthProviders(AuthProvider.PrivilegedApplication)
   private val createPassRequest: JsObject = Json.obj("fullName" -> "TestName TestSurname", "nino" -> "AB 12 34 56 Q")
 
   private val fakeRequestWithAuth =
@@ -205,4 +413,12 @@ object ApplePassControllerSpec {
     .build()
 
   private val controller = application.injector.instanceOf[ApplePassController]
+
+  private def qrCodeEtag(variant: QrCodeVariant): String =
+    PassContentResults.etag(
+      PassQrCodeService.applePassQrText(application.injector.instanceOf[AppConfig].frontendServiceUrl, passId),
+      QrCodeRenderer.Version,
+      variant.size.toString,
+      variant.format.toString
+    )
 }
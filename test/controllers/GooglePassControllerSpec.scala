@@ -16,8 +16,9 @@
 
 package controllers
 
+import config.AppConfig
 import org.mockito.ArgumentMatchers.{any, eq as eqTo}
-import org.mockito.Mockito.{reset, when}
+import org.mockito.Mockito.{never, reset, verify, when}
 import org.scalatest.BeforeAndAfter
 import org.scalatest.concurrent.PatienceConfiguration.Timeout
 import org.scalatest.concurrent.ScalaFutures.whenReady
@@ -32,7 +33,8 @@ import play.api.inject.guice.{GuiceApplicationBuilder, GuiceableModule}
 import play.api.libs.json.Json
 import play.api.test.FakeRequest
 import play.api.test.Helpers.*
-import services.GooglePassService
+import services.{GooglePassService, PassBuildRejectedException, PassQrCodeService}
+import services.qrcode.{QrCodeFormat, QrCodeRenderer, QrCodeVariant}
 import uk.gov.hmrc.auth.core.*
 import uk.gov.hmrc.auth.core.authorise.Predicate
 import uk.gov.hmrc.auth.core.retrieve.{Credentials, Retrieval, ~}
@@ -58,6 +60,18 @@ class GooglePassControllerSpec extends AnyWordSpec with Matchers with MockitoSug
         any[Retrieval[Option[String] ~ Option[CredentialRole] ~ Option[String] ~ Option[Credentials]]]
       )(any[HeaderCarrier], any[ExecutionContext])
     ).thenReturn(retrievalResult)
+
+    stubPrivilegedAuthorisation(Future.unit)
+  }
+
+  private def stubPrivilegedAuthorisation(result: Future[Unit]): Unit = {
+    when(
+      mockAuthConnector.authorise[Unit](eqTo(privilegedApplication), any[Retrieval[Unit]])(
+        any[HeaderCarrier],
+        any[ExecutionContext]
+      )
+    ).thenReturn(result)
+    ()
   }
 
   "getPassUrlByPassId" must {
@@ -83,14 +97,48 @@ class GooglePassControllerSpec extends AnyWordSpec with Matchers with MockitoSug
         status(result) mustBe NOT_FOUND
       }
     }
+
+    "return ServiceUnavailable with Retry-After when the pass build pool is saturated" in {
+      when(mockGooglePassService.getPassUrlByPassIdAndNINO(eqTo(passId), eqTo("AB123456Q"))(any()))
+        .thenReturn(Future.failed(new PassBuildRejectedException(2L)))
+
+      val result = controller.getPassUrlByPassId(passId)(fakeRequestWithAuth)
+
+      status(result) mustBe SERVICE_UNAVAILABLE
+      header(RETRY_AFTER, result) mustBe Some("2")
+    }
   }
 
   "getQrCodeByPassId" must {
+    "pass the requested size and format through to the service" in {
+      when(
+        mockGooglePassService.getQrCodeByPassIdAndNINO(
+          eqTo(passId),
+          eqTo("AB123456Q"),
+          eqTo(QrCodeVariant(300, QrCodeFormat.Svg))
+        )(any())
+      ).thenReturn(Future.successful(Some("<svg/>".getBytes())))
+
+      val result = controller.getQrCodeByPassId(passId, Some(300), Some("svg"))(fakeRequestWithAuth)
+
+      whenReady(result) { _ =>
+        status(result) mustBe OK
+      }
+    }
+
+    "return BadRequest for an unsupported format or size" in {
+      val badFormat = controller.getQrCodeByPassId(passId, None, Some("gif"))(fakeRequestWithAuth)
+      val badSize   = controller.getQrCodeByPassId(passId, Some(QrCodeVariant.MAX_SIZE + 1), None)(fakeRequestWithAuth)
+
+      status(badFormat) mustBe BAD_REQUEST
+      status(badSize) mustBe BAD_REQUEST
+    }
+
     "return OK with the byte data of qr code" in {
-      when(mockGooglePassService.getQrCodeByPassIdAndNINO(eqTo(passId), eqTo("AB123456Q"))(any()))
+      when(mockGooglePassService.getQrCodeByPassIdAndNINO(eqTo(passId), eqTo("AB123456Q"), eqTo(defaultVariant))(any()))
         .thenReturn(Future.successful(Some("SomeQrCodeData".getBytes())))
 
-      val result = controller.getQrCodeByPassId(passId)(fakeRequestWithAuth)
+      val result = controller.getQrCodeByPassId(passId, None, None)(fakeRequestWithAuth)
 
       whenReady(result) { _ =>
         status(result) mustBe OK
@@ -110,10 +158,10 @@ class GooglePassControllerSpec extends AnyWordSpec with Matchers with MockitoSug
         )(any[HeaderCarrier], any[ExecutionContext])
       ).thenReturn(retrievalResult)
 
-      when(mockGooglePassService.getQrCodeByPassIdAndNINO(eqTo(passId), eqTo("AB123456Q"))(any()))
+      when(mockGooglePassService.getQrCodeByPassIdAndNINO(eqTo(passId), eqTo("AB123456Q"), eqTo(defaultVariant))(any()))
         .thenReturn(Future.successful(Some("SomeQrCodeData".getBytes())))
 
-      val result = controller.getQrCodeByPassId(passId)(fakeRequestWithAuth)
+      val result = controller.getQrCodeByPassId(passId, None, None)(fakeRequestWithAuth)
 
       whenReady(result) { _ =>
         status(result) mustBe UNAUTHORIZED
@@ -121,10 +169,10 @@ class GooglePassControllerSpec extends AnyWordSpec with Matchers with MockitoSug
     }
 
     "return NotFound when there is no record for given passId" in {
-      when(mockGooglePassService.getQrCodeByPassIdAndNINO(eqTo(passId), eqTo("AB123456Q"))(any()))
+      when(mockGooglePassService.getQrCodeByPassIdAndNINO(eqTo(passId), eqTo("AB123456Q"), eqTo(defaultVariant))(any()))
         .thenReturn(Future.successful(None))
 
-      val result = controller.getQrCodeByPassId(passId)(fakeRequestWithAuth)
+      val result = controller.getQrCodeByPassId(passId, None, None)(fakeRequestWithAuth)
 
       whenReady(result) { _ =>
         status(result) mustBe NOT_FOUND
@@ -132,6 +180,46 @@ class GooglePassControllerSpec extends AnyWordSpec with Matchers with MockitoSug
     }
   }
 
+  "getQrCodeImageByPassId" must {
+
+    "return the image bytes with an ETag and a day of private caching" in {
+      val png = "SomeQrCodeData".getBytes()
+      when(mockGooglePassService.getQrCodeByPassIdAndNINO(eqTo(passId), eqTo("AB123456Q"), eqTo(defaultVariant))(any()))
+        .thenReturn(Future.successful(Some(png)))
+
+      val result = controller.getQrCodeImageByPassId(passId, None, None)(fakeRequestWithAuth)
+
+      status(result) mustBe OK
+      contentType(result) mustBe Some("image/png")
+      contentAsBytes(result).toArray mustBe png
+      header(ETAG, result) mustBe Some(qrCodeEtag(defaultVariant))
+      header(CACHE_CONTROL, result) mustBe Some(PassContentResults.QR_CODE_CACHE_CONTROL)
+    }
+
+    "return NotModified without rendering when the ETag matches" in {
+      when(mockGooglePassService.isPassOwnedBy(eqTo(passId), eqTo("AB123456Q"))(any()))
+        .thenReturn(Future.successful(true))
+
+      val result = controller.getQrCodeImageByPassId(passId, None, None)(
+        fakeRequestWithAuth.withHeaders(IF_NONE_MATCH -> qrCodeEtag(defaultVariant))
+      )
+
+      status(result) mustBe NOT_MODIFIED
+      verify(mockGooglePassService, never).getQrCodeByPassIdAndNINO(any(), any(), any())(any())
+    }
+
+    "return NotFound for a matching ETag when the pass belongs to someone else" in {
+      when(mockGooglePassService.isPassOwnedBy(eqTo(passId), eqTo("AB123456Q"))(any()))
+        .thenReturn(Future.successful(false))
+
+      val result = controller.getQrCodeImageByPassId(passId, None, None)(
+        fakeRequestWithAuth.withHeaders(IF_NONE_MATCH -> qrCodeEtag(defaultVariant))
+      )
+
+      status(result) mustBe NOT_FOUND
+    }
+  }
+
   "createPassWithCredentials" must {
     "return BadRequest when request body is not JSON" in {
       val result = controller.createPassWithCredentials()(fakeRequestWithAuth)
@@ -142,7 +230,7 @@ class GooglePassControllerSpec extends AnyWordSpec with Matchers with MockitoSug
     }
 
     "return OK with the uuid of the pass" ignore {
-      when(mockGooglePassService.createPassWithCredentials(any(), any(), any(), any())(any()))
+      when(mockGooglePassService.createPassWithCredentials(any(), any(), any())(any()))
         .thenReturn(Right(passId))
 
       val result = controller.createPassWithCredentials()(
@@ -158,7 +246,7 @@ class GooglePassControllerSpec extends AnyWordSpec with Matchers with MockitoSug
     }
 
     "return InternalServerError when request body is invalid" ignore {
-      when(mockGooglePassService.createPassWithCredentials(any(), any(), any(), any())(any()))
+      when(mockGooglePassService.createPassWithCredentials(any(), any(), any())(any()))
         .thenReturn(Left(new Exception("SomeError")))
 
       val result = controller.createPassWithCredentials()(
@@ -172,13 +260,66 @@ class GooglePassControllerSpec extends AnyWordSpec with Matchers with MockitoSug
       }
     }
   }
+
+  "createPassesWithCredentials" must {
+    "return OK with the result of each pass in request order" in {
+      val storeError = new Exception("Problem occurred while storing Google Pass.")
+      when(mockGooglePassService.createPassesWithCredentials(any(), any())(any()))
+        .thenReturn(Future.successful(Seq(Right(passId), Left(storeError))))
+
+      val result = controller.createPassesWithCredentials()(
+        fakeRequestWithAuth.withJsonBody(Json.arr(createPassRequest, createPassRequest))
+      )
+
+      status(result) mustBe OK
+      contentAsJson(result) mustBe Json.arr(
+        Json.obj("passId" -> passId),
+        Json.obj("error"  -> "Problem occurred while storing Google Pass.")
+      )
+    }
+
+    "return Unauthorized without creating any passes when the caller is not a privileged application" in {
+      stubPrivilegedAuthorisation(Future.failed(UnsupportedAuthProvider()))
+
+      val result = controller.createPassesWithCredentials()(
+        fakeRequestWithAuth.withJsonBody(Json.arr(createPassRequest))
+      )
+
+      status(result) mustBe UNAUTHORIZED
+      verify(mockGooglePassService, never).createPassesWithCredentials(any(), any())(any())
+    }
+
+    "return BadRequest when the batch is larger than allowed" in {
+      val result = controller.createPassesWithCredentials()(
+        fakeRequestWithAuth.withJsonBody(Json.toJson(Seq.fill(501)(createPassRequest)))
+      )
+
+      status(result) mustBe BAD_REQUEST
+      verify(mockGooglePassService, never).createPassesWithCredentials(any(), any())(any())
+    }
+
+    "return BadRequest when request body is not a JSON array of pass details" in {
+      val result = controller.createPassesWithCredentials()(fakeRequestWithAuth.withJsonBody(createPassRequest))
+
+      status(result) mustBe BAD_REQUEST
+    }
+
+    "return BadRequest when request body is not JSON" in {
+      val result = controller.createPassesWithCredentials()(fakeRequestWithAuth)
+
+      status(result) mustBe BAD_REQUEST
+    }
+  }
 }
 
 object GooglePassControllerSpec {
-  implicit val hc: HeaderCarrier  = HeaderCarrier()
-  private val passId              = UUID.randomUUID().toString
-  private val credentials         = Credentials("providerId", "providerType")
-  private val fakeRequestWithAuth =
+  implicit val hc: HeaderCarrier    = HeaderCarrier()
+  private val passId                = UUID.randomUUID().toString
+  private val defaultVariant        = QrCodeVariant.Default
+  private val credentials           = Credentials("providerId", "providerType")
+  private val createPassRequest     = Json.obj("fullName" -> "TestName TestSurname", "nino" -> "AB 12 34 56 Q")
+  private val privilegedApplication = AuthProviders(AuthProvider.PrivilegedApplication)
+  private val fakeRequestWithAuth   =
     FakeRequest("GET", "/").withHeaders("Content-Type" -> "application/json", "Authorization" -> "Bearer 123")
 
   private val mockGooglePassService = mock[GooglePassService]
@@ -195,4 +336,12 @@ object GooglePassControllerSpec {
     .overrides(modules: _*)
     .build()
   private val controller       = application.injector.instanceOf[GooglePassController]
+
+  private def qrCodeEtag(variant: QrCodeVariant): String =
+    PassContentResults.etag(
+      PassQrCodeService.googlePassQrText(application.injector.instanceOf[AppConfig].frontendServiceUrl, passId),
+      QrCodeRenderer.Version,
+      variant.size.toString,
+      variant.format.toString
+    )
 }
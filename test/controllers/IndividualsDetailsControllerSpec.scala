@@ -17,11 +17,12 @@
 package controllers
 
 import cats.data.EitherT
+import com.codahale.metrics.MetricRegistry
 import connectors.FandFConnector
 import helper.ApiPayloadHelper
 import models.TrustedHelper
 import org.mockito.ArgumentMatchers.{any, eq as eqTo}
-import org.mockito.Mockito.{reset, when}
+import org.mockito.Mockito.{never, reset, verify, when}
 import org.scalatest.BeforeAndAfterEach
 import org.scalatestplus.mockito.MockitoSugar
 import org.scalatestplus.play.*
@@ -39,7 +40,7 @@ import uk.gov.hmrc.auth.core.retrieve.{Credentials, Retrieval, ~}
 import uk.gov.hmrc.http.{HeaderCarrier, UpstreamErrorResponse}
 
 import scala.concurrent.ExecutionContext.global
-import scala.concurrent.{ExecutionContext, Future}
+import scala.concurrent.{ExecutionContext, Future, Promise}
 
 class IndividualsDetailsControllerSpec
     extends PlaySpec
@@ -54,13 +55,15 @@ class IndividualsDetailsControllerSpec
   implicit val env: Environment                 = mock[Environment]
   implicit val cc: MessagesControllerComponents = mock[MessagesControllerComponents]
 
-  private val testNino     = "AB123456Q"
-  private val credentials  = Credentials("providerId", "providerType")
-  private val resolveMerge = "Y"
+  private val testNino               = "AB123456Q"
+  private val credentials            = Credentials("providerId", "providerType")
+  private val resolveMerge           = "Y"
+  private val requestWithBearerToken = FakeRequest().withHeaders("Authorization" -> "Bearer 123")
 
   private val mockAuthConnector            = mock[AuthConnector]
   private val mockIndividualDetailsService = mock[IndividualDetailsService]
   private val mockFandFConnector           = mock[FandFConnector]
+  private val metricRegistry               = new MetricRegistry()
 
   val actionBuilder: ActionBuilder[Request, AnyContent] = DefaultActionBuilder(
     stubControllerComponents().parsers.defaultBodyParser
@@ -95,18 +98,23 @@ class IndividualsDetailsControllerSpec
   }
 
   private val validApiResponse: EitherT[Future, UpstreamErrorResponse, JsValue] = EitherT(
-    Future.successful(Right(apiIndividualDetailsJsonOneNameOneAddress))
+    Future.successful(Right(apiTransformedIndividualDetailsJsonOneNameOneAddress))
   )
 
   private val apiResponseNoNameAddress: EitherT[Future, UpstreamErrorResponse, JsValue] = EitherT(
-    Future.successful(Right(apiIndividualDetailsMinimalFields))
+    Future.successful(Right(apiTransformedIndividualDetailsJsonMinimalFields))
   )
 
   "IndividualsDetailsController" must {
 
     "return OK for getIndividualDetails" in {
       val controller             =
-        new IndividualsDetailsController(mockAuthConnector, mockFandFConnector, mockIndividualDetailsService)
+        new IndividualsDetailsController(
+          mockAuthConnector,
+          mockFandFConnector,
+          metricRegistry,
+          mockIndividualDetailsService
+        )
       when(mockIndividualDetailsService.getIndividualDetails(any, any, any)(any)).thenReturn(validApiResponse)
       val result: Future[Result] = controller.getIndividualDetails(testNino, resolveMerge).apply(FakeRequest())
       status(result) mustBe OK
@@ -116,7 +124,12 @@ class IndividualsDetailsControllerSpec
     "return OK for getIndividualDetails when trusted helper user calls using helpee nino" in {
 
       val controller    =
-        new IndividualsDetailsController(mockAuthConnector, mockFandFConnector, mockIndividualDetailsService)
+        new IndividualsDetailsController(
+          mockAuthConnector,
+          mockFandFConnector,
+          metricRegistry,
+          mockIndividualDetailsService
+        )
       val trustedHelper = TrustedHelper("PrincipalName", "AttorneyName", "ReturnLink", Some("PrincipalNino"))
 
       when(mockFandFConnector.getTrustedHelper()(any())).thenReturn(Future.successful(Some(trustedHelper)))
@@ -124,14 +137,68 @@ class IndividualsDetailsControllerSpec
       when(mockIndividualDetailsService.getIndividualDetails(any, any, any)(any)).thenReturn(validApiResponse)
 
       val result: Future[Result] =
-        controller.getIndividualDetails(trustedHelper.principalNino.get, resolveMerge).apply(FakeRequest())
+        controller.getIndividualDetails(trustedHelper.principalNino.get, resolveMerge).apply(requestWithBearerToken)
       status(result) mustBe OK
       Json.parse(contentAsString(result)) mustBe apiTransformedIndividualDetailsJsonOneNameOneAddress
     }
 
+    "look up the trusted helper while the auth call is still in flight" in {
+      val controller   =
+        new IndividualsDetailsController(
+          mockAuthConnector,
+          mockFandFConnector,
+          metricRegistry,
+          mockIndividualDetailsService
+        )
+      val authResponse =
+        Promise[Option[String] ~ Option[CredentialRole] ~ Option[String] ~ Option[Credentials]]()
+
+      when(
+        mockAuthConnector.authorise[Option[String] ~ Option[CredentialRole] ~ Option[String] ~ Option[Credentials]](
+          any[Predicate],
+          any[Retrieval[Option[String] ~ Option[CredentialRole] ~ Option[String] ~ Option[Credentials]]]
+        )(any[HeaderCarrier], any[ExecutionContext])
+      ).thenReturn(authResponse.future)
+      when(mockIndividualDetailsService.getIndividualDetails(any, any, any)(any)).thenReturn(validApiResponse)
+
+      val result: Future[Result] =
+        controller.getIndividualDetails(testNino, resolveMerge).apply(requestWithBearerToken)
+
+      verify(mockFandFConnector).getTrustedHelper()(any())
+      authResponse.completeWith(retrievalResult)
+      status(result) mustBe OK
+    }
+
+    "not look up the trusted helper when the request has no bearer token" in {
+      val controller =
+        new IndividualsDetailsController(
+          mockAuthConnector,
+          mockFandFConnector,
+          metricRegistry,
+          mockIndividualDetailsService
+        )
+
+      when(
+        mockAuthConnector.authorise[Option[String] ~ Option[CredentialRole] ~ Option[String] ~ Option[Credentials]](
+          any[Predicate],
+          any[Retrieval[Option[String] ~ Option[CredentialRole] ~ Option[String] ~ Option[Credentials]]]
+        )(any[HeaderCarrier], any[ExecutionContext])
+      ).thenReturn(Future.failed(MissingBearerToken()))
+
+      val result: Future[Result] = controller.getIndividualDetails(testNino, resolveMerge).apply(FakeRequest())
+
+      status(result) mustBe UNAUTHORIZED
+      verify(mockFandFConnector, never).getTrustedHelper()(any())
+    }
+
     "return OK when name fields and address are null/missing" in {
       val controller =
-        new IndividualsDetailsController(mockAuthConnector, mockFandFConnector, mockIndividualDetailsService)
+        new IndividualsDetailsController(
+          mockAuthConnector,
+          mockFandFConnector,
+          metricRegistry,
+          mockIndividualDetailsService
+        )
 
       when(mockIndividualDetailsService.getIndividualDetails(any, any, any)(any)).thenReturn(apiResponseNoNameAddress)
 
@@ -143,7 +210,12 @@ class IndividualsDetailsControllerSpec
     "return Unauthorized for getIndividualDetails when user is not authorized" in {
 
       val controller =
-        new IndividualsDetailsController(mockAuthConnector, mockFandFConnector, mockIndividualDetailsService)
+        new IndividualsDetailsController(
+          mockAuthConnector,
+          mockFandFConnector,
+          metricRegistry,
+          mockIndividualDetailsService
+        )
 
       when(
         mockAuthConnector.authorise[Option[String] ~ Option[CredentialRole] ~ Option[String]](
@@ -160,7 +232,12 @@ class IndividualsDetailsControllerSpec
     "return Unauthorized when NINO in authContext does not match the NINO in the request" in {
       val differentNino = "CD123456Q"
       val controller    =
-        new IndividualsDetailsController(mockAuthConnector, mockFandFConnector, mockIndividualDetailsService)
+        new IndividualsDetailsController(
+          mockAuthConnector,
+          mockFandFConnector,
+          metricRegistry,
+          mockIndividualDetailsService
+        )
 
       when(
         mockAuthConnector.authorise[Option[String] ~ Option[CredentialRole] ~ Option[String]](
@@ -177,7 +254,12 @@ class IndividualsDetailsControllerSpec
 
   "return BAD_REQUEST for getIndividualDetails" in {
     val controller =
-      new IndividualsDetailsController(mockAuthConnector, mockFandFConnector, mockIndividualDetailsService)
+      new IndividualsDetailsController(
+          mockAuthConnector,
+          mockFandFConnector,
+          metricRegistry,
+          mockIndividualDetailsService
+        )
 
     val invalidApiResponse: EitherT[Future, UpstreamErrorResponse, JsValue] =
       EitherT(Future.successful(Left(UpstreamErrorResponse("", BAD_REQUEST))))
@@ -190,7 +272,12 @@ class IndividualsDetailsControllerSpec
   }
   "return UNAUTHORIZED for getIndividualDetails" in {
     val controller =
-      new IndividualsDetailsController(mockAuthConnector, mockFandFConnector, mockIndividualDetailsService)
+      new IndividualsDetailsController(
+          mockAuthConnector,
+          mockFandFConnector,
+          metricRegistry,
+          mockIndividualDetailsService
+        )
 
     val invalidApiResponse: EitherT[Future, UpstreamErrorResponse, JsValue] =
       EitherT(Future.successful(Left(UpstreamErrorResponse("", UNAUTHORIZED))))
@@ -203,7 +290,12 @@ class IndividualsDetailsControllerSpec
   }
   "return NOT_FOUND for getIndividualDetails" in {
     val controller =
-      new IndividualsDetailsController(mockAuthConnector, mockFandFConnector, mockIndividualDetailsService)
+      new IndividualsDetailsController(
+          mockAuthConnector,
+          mockFandFConnector,
+          metricRegistry,
+          mockIndividualDetailsService
+        )
 
     val invalidApiResponse: EitherT[Future, UpstreamErrorResponse, JsValue] =
       EitherT(Future.successful(Left(UpstreamErrorResponse("", NOT_FOUND))))
@@ -216,7 +308,12 @@ class IndividualsDetailsControllerSpec
   }
   "return INTERNAL_SERVER_ERROR for getIndividualDetails" in {
     val controller =
-      new IndividualsDetailsController(mockAuthConnector, mockFandFConnector, mockIndividualDetailsService)
+      new IndividualsDetailsController(
+          mockAuthConnector,
+          mockFandFConnector,
+          metricRegistry,
+          mockIndividualDetailsService
+        )
 
     val invalidApiResponse: EitherT[Future, UpstreamErrorResponse, JsValue] =
       EitherT(Future.successful(Left(UpstreamErrorResponse("", INTERNAL_SERVER_ERROR))))
@@ -229,7 +326,12 @@ class IndividualsDetailsControllerSpec
   }
   "return NOT_IMPLEMENTED for getIndividualDetails" in {
     val controller =
-      new IndividualsDetailsController(mockAuthConnector, mockFandFConnector, mockIndividualDetailsService)
+      new IndividualsDetailsController(
+          mockAuthConnector,
+          mockFandFConnector,
+          metricRegistry,
+          mockIndividualDetailsService
+        )
 
     val invalidApiResponse: EitherT[Future, UpstreamErrorResponse, JsValue] =
       EitherT(Future.successful(Left(UpstreamErrorResponse("", NOT_IMPLEMENTED))))
@@ -242,7 +344,12 @@ class IndividualsDetailsControllerSpec
   }
   "return other status for getIndividualDetails" in {
     val controller =
-      new IndividualsDetailsController(mockAuthConnector, mockFandFConnector, mockIndividualDetailsService)
+      new IndividualsDetailsController(
+          mockAuthConnector,
+          mockFandFConnector,
+          metricRegistry,
+          mockIndividualDetailsService
+        )
 
     val invalidApiResponse: EitherT[Future, UpstreamErrorResponse, JsValue] =
       EitherT(Future.successful(Left(UpstreamErrorResponse("", IM_A_TEAPOT))))
@@ -17,6 +17,7 @@
 package repositories
 
 import config.AppConfig
+import models.PassOwner
 import models.apple.ApplePass
 import org.mockito.Mockito.when
 import org.scalatestplus.mockito.MockitoSugar
@@ -52,11 +53,11 @@ class ApplePassRepositorySpec
     "save a new Apple Pass in Mongo collection when collection is empty" in {
 
       val passId  = "test-pass-id-001"
-      val record  = (passId, "Name Surname", "AB 12 34 56 Q", Array[Byte](10), Array[Byte](10))
+      val record  = (passId, "Name Surname", "AB 12 34 56 Q", Array[Byte](10))
       val filters = Filters.eq("passId", passId)
 
       val documentsInDB = for {
-        _             <- repository.insert(record._1, record._2, record._3, record._4, record._5)
+        _             <- repository.insert(record._1, record._2, record._3, record._4)
         documentsInDB <- repository.collection.find[ApplePass](filters).toFuture()
       } yield documentsInDB
 
@@ -66,14 +67,49 @@ class ApplePassRepositorySpec
     }
   }
 
+  "insertMany" must {
+    "save every pass in one call and return their pass ids" in {
+
+      val applePasses = Seq("test-pass-id-020", "test-pass-id-021").map { passId =>
+        ApplePass(passId, "Name Surname", "AB 12 34 56 Q", Array[Byte](10))
+      }
+
+      val result = for {
+        inserted      <- repository.insertMany(applePasses)
+        documentsInDB <-
+          repository.collection.find[ApplePass](Filters.in("passId", applePasses.map(_.passId)*)).toFuture()
+      } yield (inserted, documentsInDB)
+
+      whenReady(result, timeout = Timeout(Span(500L, Milliseconds))) { case (inserted, documentsInDB) =>
+        inserted mustBe applePasses.map(_.passId).toSet
+        documentsInDB.size mustBe 2
+      }
+    }
+
+    "still save the rest of the batch when one pass cannot be stored" in {
+
+      val existing    = ApplePass("test-pass-id-022", "Name Surname", "AB 12 34 56 Q", Array[Byte](10))
+      val applePasses = Seq(existing, existing.copy(passId = "test-pass-id-023"))
+
+      val inserted = for {
+        _        <- repository.insert(existing.passId, existing.fullName, existing.nino, existing.applePassCard)
+        inserted <- repository.insertMany(applePasses)
+      } yield inserted
+
+      whenReady(inserted, timeout = Timeout(Span(500L, Milliseconds))) { inserted =>
+        inserted mustBe Set("test-pass-id-023")
+      }
+    }
+  }
+
   "findByPassId" must {
     "retrieve existing Apple Pass in Mongo collection" in {
 
       val passId = "test-pass-id-002"
-      val record = (passId, "Name Surname", "AB 12 34 56 Q", Array[Byte](10), Array[Byte](10))
+      val record = (passId, "Name Surname", "AB 12 34 56 Q", Array[Byte](10))
 
       val documentsInDB = for {
-        _             <- repository.insert(record._1, record._2, record._3, record._4, record._5)
+        _             <- repository.insert(record._1, record._2, record._3, record._4)
         documentsInDB <- repository.findByPassId(passId)
       } yield documentsInDB
 
@@ -82,4 +118,26 @@ class ApplePassRepositorySpec
       }
     }
   }
+
+  "findOwnerByPassId" must {
+    "retrieve only the pass id and NINO of an existing pass" in {
+
+      val passId = "test-pass-id-010"
+
+      val owner = for {
+        _     <- repository.insert(passId, "Name Surname", "AB 12 34 56 Q", Array[Byte](10))
+        owner <- repository.findOwnerByPassId(passId)
+      } yield owner
+
+      whenReady(owner, timeout = Timeout(Span(500L, Milliseconds))) { owner =>
+        owner mustBe Some(PassOwner(passId, "AB 12 34 56 Q"))
+      }
+    }
+
+    "return None when there is no pass for the pass id" in {
+      whenReady(repository.findOwnerByPassId("unknown-pass-id"), timeout = Timeout(Span(500L, Milliseconds))) {
+        _ mustBe None
+      }
+    }
+  }
 }
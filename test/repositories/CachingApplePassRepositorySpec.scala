@@ -0,0 +1,151 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package repositories
+
+import com.codahale.metrics.MetricRegistry
+import models.PassOwner
+import models.apple.ApplePass
+import org.mockito.ArgumentMatchers.{any, eq as eqTo}
+import org.mockito.Mockito.{never, reset, times, verify, when}
+import org.scalatest.BeforeAndAfterEach
+import org.scalatest.matchers.must.Matchers
+import org.scalatest.wordspec.AsyncWordSpec
+import org.scalatestplus.mockito.MockitoSugar
+import org.scalatestplus.mockito.MockitoSugar.mock
+import repositories.cache.PassReadCache
+
+import java.time.{Duration, Instant}
+import scala.concurrent.Future
+
+class CachingApplePassRepositorySpec extends AsyncWordSpec with Matchers with MockitoSugar with BeforeAndAfterEach {
+
+  import CachingApplePassRepositorySpec.*
+
+  override def beforeEach(): Unit =
+    reset(mockUnderlying)
+
+  "insert" must {
+    "cache the new pass so the first read does not go to Mongo" in {
+      when(mockUnderlying.insertMany(any())(any())).thenReturn(Future.successful(Set(passId)))
+
+      val repository = newRepository()
+
+      for {
+        _         <- repository.insert(passId, "Name Surname", nino, applePassCard)
+        applePass <- repository.findByPassId(passId)
+        owner     <- repository.findOwnerByPassId(passId)
+      } yield {
+        verify(mockUnderlying, never).findByPassId(any())(any())
+        verify(mockUnderlying, never).findOwnerByPassId(any())(any())
+        applePass.map(_.applePassCard) mustBe Some(applePassCard)
+        owner mustBe Some(PassOwner(passId, nino))
+      }
+    }
+
+    "not cache the pass when the write was not confirmed" in {
+      when(mockUnderlying.insertMany(any())(any())).thenReturn(Future.successful(Set.empty[String]))
+      when(mockUnderlying.findByPassId(eqTo(passId))(any())).thenReturn(Future.successful(None))
+
+      val repository = newRepository()
+
+      for {
+        _         <- repository.insert(passId, "Name Surname", nino, applePassCard)
+        applePass <- repository.findByPassId(passId)
+      } yield {
+        verify(mockUnderlying, times(1)).findByPassId(eqTo(passId))(any())
+        applePass mustBe None
+      }
+    }
+
+    "not cache the pass when the insert fails" in {
+      when(mockUnderlying.insertMany(any())(any()))
+        .thenReturn(Future.failed(new RuntimeException("insert failed")))
+      when(mockUnderlying.findByPassId(eqTo(passId))(any())).thenReturn(Future.successful(None))
+
+      val repository = newRepository()
+
+      recoverToSucceededIf[RuntimeException](repository.insert(passId, "Name Surname", nino, applePassCard))
+        .flatMap(_ => repository.findByPassId(passId))
+        .map(_ mustBe None)
+    }
+  }
+
+  "findByPassId" must {
+    "read through to the repository once and then serve from the cache" in {
+      val stored = ApplePass(passId, "Name Surname", nino, applePassCard, Instant.now())
+      when(mockUnderlying.findByPassId(eqTo(passId))(any())).thenReturn(Future.successful(Some(stored)))
+
+      val repository = newRepository()
+
+      for {
+        first  <- repository.findByPassId(passId)
+        second <- repository.findByPassId(passId)
+      } yield {
+        verify(mockUnderlying, times(1)).findByPassId(eqTo(passId))(any())
+        first mustBe Some(stored)
+        second mustBe Some(stored)
+      }
+    }
+
+    "not cache a missing pass" in {
+      when(mockUnderlying.findByPassId(eqTo(passId))(any())).thenReturn(Future.successful(None))
+
+      val repository = newRepository()
+
+      for {
+        _ <- repository.findByPassId(passId)
+        _ <- repository.findByPassId(passId)
+      } yield {
+        verify(mockUnderlying, times(2)).findByPassId(eqTo(passId))(any())
+        succeed
+      }
+    }
+  }
+
+  "findOwnerByPassId" must {
+    "use the repository projection when the pass is not cached" in {
+      when(mockUnderlying.findOwnerByPassId(eqTo(passId))(any()))
+        .thenReturn(Future.successful(Some(PassOwner(passId, nino))))
+
+      newRepository().findOwnerByPassId(passId).map { owner =>
+        verify(mockUnderlying, never).findByPassId(any())(any())
+        owner mustBe Some(PassOwner(passId, nino))
+      }
+    }
+  }
+}
+
+object CachingApplePassRepositorySpec {
+  private val mockUnderlying = mock[ApplePassRepoTrait]
+
+  private val passId        = "test-pass-id-001"
+  private val nino          = "AB 12 34 56 Q"
+  private val applePassCard = Array.fill[Byte](2048)(1)
+
+  private def newRepository(): CachingApplePassRepository =
+    new CachingApplePassRepository(
+      mockUnderlying,
+      new PassReadCache[ApplePass](
+        "apple-pass",
+        1024 * 1024,
+        Duration.ofSeconds(900),
+        CachingApplePassRepository.sizeOf,
+        _.lastUpdated,
+        new MetricRegistry()
+      )
+    )
+}
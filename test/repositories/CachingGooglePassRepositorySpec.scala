@@ -0,0 +1,125 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package repositories
+
+import com.codahale.metrics.MetricRegistry
+import models.PassOwner
+import models.google.GooglePass
+import org.mockito.ArgumentMatchers.{any, eq as eqTo}
+import org.mockito.Mockito.{never, reset, times, verify, when}
+import org.scalatest.BeforeAndAfterEach
+import org.scalatest.matchers.must.Matchers
+import org.scalatest.wordspec.AsyncWordSpec
+import org.scalatestplus.mockito.MockitoSugar
+import org.scalatestplus.mockito.MockitoSugar.mock
+import repositories.cache.PassReadCache
+
+import java.time.{Duration, Instant}
+import scala.concurrent.Future
+
+class CachingGooglePassRepositorySpec extends AsyncWordSpec with Matchers with MockitoSugar with BeforeAndAfterEach {
+
+  import CachingGooglePassRepositorySpec.*
+
+  override def beforeEach(): Unit =
+    reset(mockUnderlying)
+
+  "insert" must {
+    "cache the new pass so the first read does not go to Mongo" in {
+      when(mockUnderlying.insertMany(any())(any())).thenReturn(Future.successful(Set(passId)))
+
+      val repository = newRepository()
+
+      for {
+        _          <- repository.insert(passId, "Name Surname", nino, expirationDate)
+        googlePass <- repository.findByPassId(passId)
+        owner      <- repository.findOwnerByPassId(passId)
+      } yield {
+        verify(mockUnderlying, never).findByPassId(any())(any())
+        verify(mockUnderlying, never).findOwnerByPassId(any())(any())
+        googlePass.map(_.fullName) mustBe Some("Name Surname")
+        owner mustBe Some(PassOwner(passId, nino))
+      }
+    }
+
+    "not cache the pass when the write was not confirmed" in {
+      when(mockUnderlying.insertMany(any())(any())).thenReturn(Future.successful(Set.empty[String]))
+      when(mockUnderlying.findByPassId(eqTo(passId))(any())).thenReturn(Future.successful(None))
+
+      val repository = newRepository()
+
+      for {
+        _          <- repository.insert(passId, "Name Surname", nino, expirationDate)
+        googlePass <- repository.findByPassId(passId)
+      } yield {
+        verify(mockUnderlying, times(1)).findByPassId(eqTo(passId))(any())
+        googlePass mustBe None
+      }
+    }
+  }
+
+  "findByPassId" must {
+    "read through to the repository once and then serve from the cache" in {
+      val stored = GooglePass(passId, "Name Surname", nino, expirationDate, Instant.now())
+      when(mockUnderlying.findByPassId(eqTo(passId))(any())).thenReturn(Future.successful(Some(stored)))
+
+      val repository = newRepository()
+
+      for {
+        first  <- repository.findByPassId(passId)
+        second <- repository.findByPassId(passId)
+      } yield {
+        verify(mockUnderlying, times(1)).findByPassId(eqTo(passId))(any())
+        first mustBe Some(stored)
+        second mustBe Some(stored)
+      }
+    }
+  }
+
+  "findOwnerByPassId" must {
+    "use the repository projection when the pass is not cached" in {
+      when(mockUnderlying.findOwnerByPassId(eqTo(passId))(any()))
+        .thenReturn(Future.successful(Some(PassOwner(passId, nino))))
+
+      newRepository().findOwnerByPassId(passId).map { owner =>
+        verify(mockUnderlying, never).findByPassId(any())(any())
+        owner mustBe Some(PassOwner(passId, nino))
+      }
+    }
+  }
+}
+
+object CachingGooglePassRepositorySpec {
+  private val mockUnderlying = mock[GooglePassRepoTrait]
+
+  private val passId         = "test-pass-id-001"
+  private val nino           = "AB 12 34 56 Q"
+  private val expirationDate = "2125-01-01T00:00Z[UTC]"
+
+  private def newRepository(): CachingGooglePassRepository =
+    new CachingGooglePassRepository(
+      mockUnderlying,
+      new PassReadCache[GooglePass](
+        "google-pass",
+        1024 * 1024,
+        Duration.ofSeconds(900),
+        CachingGooglePassRepository.sizeOf,
+        _.lastUpdated,
+        new MetricRegistry()
+      )
+    )
+}
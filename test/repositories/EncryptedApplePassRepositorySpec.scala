@@ -17,7 +17,8 @@
 package repositories
 
 import config.AppConfig
-import models.encryption.EncryptedApplePass
+import models.PassOwner
+import models.encryption.{EncryptedApplePass, EncryptedBinary}
 import org.mockito.Mockito.when
 import org.scalatestplus.mockito.MockitoSugar
 import org.mongodb.scala.model.Filters
@@ -28,8 +29,10 @@ import org.scalatest.concurrent.{IntegrationPatience, ScalaFutures}
 import org.scalatest.matchers.must.Matchers
 import org.scalatest.time.{Milliseconds, Span}
 import org.scalatest.wordspec.AnyWordSpec
+import uk.gov.hmrc.crypto.SymmetricCryptoFactory
 import uk.gov.hmrc.mongo.test.DefaultPlayMongoRepositorySupport
 
+import java.time.Instant
 import scala.concurrent.ExecutionContext.Implicits.global
 
 class EncryptedApplePassRepositorySpec
@@ -44,7 +47,9 @@ class EncryptedApplePassRepositorySpec
   private val mockAppConfig = mock[AppConfig]
 
   when(mockAppConfig.cacheTtl) thenReturn 1L
-  when(mockAppConfig.encryptionKey) thenReturn "z4rWoRLf7a1OHTXLutSDJjhrUzZTBE3b"
+  private val encryptionKey = "z4rWoRLf7a1OHTXLutSDJjhrUzZTBE3b"
+
+  when(mockAppConfig.encryptionKey) thenReturn encryptionKey
 
   override protected val repository: EncryptedApplePassRepository =
     new EncryptedApplePassRepository(mongoComponent, mockAppConfig)
@@ -53,11 +58,11 @@ class EncryptedApplePassRepositorySpec
     "save a new Apple Pass in Mongo collection when collection is empty" in {
 
       val passId  = "test-pass-id-001"
-      val record  = (passId, "Name Surname", "AB 12 34 56 Q", Array[Byte](10), Array[Byte](10))
+      val record  = (passId, "Name Surname", "AB 12 34 56 Q", Array[Byte](10))
       val filters = Filters.eq("passId", passId)
 
       val documentsInDB = for {
-        _             <- repository.insert(record._1, record._2, record._3, record._4, record._5)
+        _             <- repository.insert(record._1, record._2, record._3, record._4)
         documentsInDB <- repository.collection.find[EncryptedApplePass](filters).toFuture()
       } yield documentsInDB
 
@@ -65,16 +70,32 @@ class EncryptedApplePassRepositorySpec
         documentsInDB.size mustBe 1
       }
     }
+
+    "store the pass card as BSON binary rather than an encrypted string" in {
+
+      val passId  = "test-pass-id-003"
+      val filters = Filters.eq("passId", passId)
+
+      val storedCard = for {
+        _        <- repository.insert(passId, "Name Surname", "AB 12 34 56 Q", Array.fill[Byte](1024)(7))
+        document <- mongoComponent.database.getCollection("apple-pass").find(filters).toFuture()
+      } yield document.head.get("applePassCard")
+
+      whenReady(storedCard, timeout = Timeout(Span(500L, Milliseconds))) { storedCard =>
+        storedCard.value.isBinary mustBe true
+        storedCard.value.asBinary().getData.length mustBe 1 + 12 + 1024 + 16
+      }
+    }
   }
 
   "findByPassId" must {
     "retrieve existing Apple Pass in Mongo collection" in {
 
       val passId = "test-pass-id-002"
-      val record = (passId, "Name Surname", "AB 12 34 56 Q", Array[Byte](10), Array[Byte](10))
+      val record = (passId, "Name Surname", "AB 12 34 56 Q", Array[Byte](10))
 
       val documentsInDB = for {
-        _             <- repository.insert(record._1, record._2, record._3, record._4, record._5)
+        _             <- repository.insert(record._1, record._2, record._3, record._4)
         documentsInDB <- repository.findByPassId(passId)
       } yield documentsInDB
 
@@ -82,5 +103,66 @@ class EncryptedApplePassRepositorySpec
         documentsInDB.isDefined mustBe true
       }
     }
+
+    "decrypt the pass card it stored" in {
+
+      val passId        = "test-pass-id-004"
+      val applePassCard = Array.tabulate[Byte](512)(_.toByte)
+
+      val documentsInDB = for {
+        _             <- repository.insert(passId, "Name Surname", "AB 12 34 56 Q", applePassCard)
+        documentsInDB <- repository.findByPassId(passId)
+      } yield documentsInDB
+
+      whenReady(documentsInDB, timeout = Timeout(Span(500L, Milliseconds))) { documentsInDB =>
+        documentsInDB.value.applePassCard mustBe applePassCard
+      }
+    }
+
+    "read a pass card stored in the comma-separated string format" in {
+
+      val passId        = "test-pass-id-005"
+      val applePassCard = Array[Byte](-1, 0, 1, 127)
+      val crypto        = SymmetricCryptoFactory.aesGcmAdCrypto(encryptionKey)
+      val legacyPass    = EncryptedApplePass(
+        passId,
+        crypto.encrypt("Name Surname", passId),
+        crypto.encrypt("AB 12 34 56 Q", passId),
+        EncryptedBinary.Legacy(crypto.encrypt(applePassCard.mkString(","), passId)),
+        Instant.now()
+      )
+
+      val documentsInDB = for {
+        _             <- repository.collection.insertOne(legacyPass).toFuture()
+        documentsInDB <- repository.findByPassId(passId)
+      } yield documentsInDB
+
+      whenReady(documentsInDB, timeout = Timeout(Span(500L, Milliseconds))) { documentsInDB =>
+        documentsInDB.value.nino mustBe "AB 12 34 56 Q"
+        documentsInDB.value.applePassCard mustBe applePassCard
+      }
+    }
+  }
+
+  "findOwnerByPassId" must {
+    "retrieve only the pass id and NINO of an existing pass" in {
+
+      val passId = "test-pass-id-010"
+
+      val owner = for {
+        _     <- repository.insert(passId, "Name Surname", "AB 12 34 56 Q", Array[Byte](10))
+        owner <- repository.findOwnerByPassId(passId)
+      } yield owner
+
+      whenReady(owner, timeout = Timeout(Span(500L, Milliseconds))) { owner =>
+        owner mustBe Some(PassOwner(passId, "AB 12 34 56 Q"))
+      }
+    }
+
+    "return None when there is no pass for the pass id" in {
+      whenReady(repository.findOwnerByPassId("unknown-pass-id"), timeout = Timeout(Span(500L, Milliseconds))) {
+        _ mustBe None
+      }
+    }
   }
 }
@@ -17,6 +17,7 @@
 package repositories
 
 import config.AppConfig
+import models.PassOwner
 import models.encryption.EncryptedGooglePass
 import org.mockito.Mockito.when
 import org.scalatestplus.mockito.MockitoSugar
@@ -58,14 +59,12 @@ class EncryptedGooglePassRepositorySpec
         passId,
         "Name Surname",
         "AB 12 34 56 Q",
-        ZonedDateTime.now(ZoneId.of("UTC")).plusYears(DEFAULT_EXPIRATION_YEARS).toString,
-        "http://test.com/test",
-        Array[Byte](10)
+        ZonedDateTime.now(ZoneId.of("UTC")).plusYears(DEFAULT_EXPIRATION_YEARS).toString
       )
       val filters = Filters.eq("passId", passId)
 
       val documentsInDB = for {
-        _             <- repository.insert(record._1, record._2, record._3, record._4, record._5, record._6)
+        _             <- repository.insert(record._1, record._2, record._3, record._4)
         documentsInDB <- repository.collection.find[EncryptedGooglePass](filters).toFuture()
       } yield documentsInDB
 
@@ -83,13 +82,11 @@ class EncryptedGooglePassRepositorySpec
         passId,
         "Name Surname",
         "AB 12 34 56 Q",
-        ZonedDateTime.now(ZoneId.of("UTC")).plusYears(DEFAULT_EXPIRATION_YEARS).toString(),
-        "http://test.com/test",
-        Array[Byte](10)
+        ZonedDateTime.now(ZoneId.of("UTC")).plusYears(DEFAULT_EXPIRATION_YEARS).toString()
       )
 
       val documentsInDB = for {
-        _             <- repository.insert(record._1, record._2, record._3, record._4, record._5, record._6)
+        _             <- repository.insert(record._1, record._2, record._3, record._4)
         documentsInDB <- repository.findByPassId(passId)
       } yield documentsInDB
 
@@ -98,4 +95,26 @@ class EncryptedGooglePassRepositorySpec
       }
     }
   }
+
+  "findOwnerByPassId" must {
+    "retrieve only the pass id and NINO of an existing pass" in {
+
+      val passId = "test-pass-id-010"
+
+      val owner = for {
+        _     <- repository.insert(passId, "Name Surname", "AB 12 34 56 Q", "2125-01-01T00:00Z[UTC]")
+        owner <- repository.findOwnerByPassId(passId)
+      } yield owner
+
+      whenReady(owner, timeout = Timeout(Span(500L, Milliseconds))) { owner =>
+        owner mustBe Some(PassOwner(passId, "AB 12 34 56 Q"))
+      }
+    }
+
+    "return None when there is no pass for the pass id" in {
+      whenReady(repository.findOwnerByPassId("unknown-pass-id"), timeout = Timeout(Span(500L, Milliseconds))) {
+        _ mustBe None
+      }
+    }
+  }
 }
@@ -17,6 +17,7 @@
 package repositories
 
 import config.AppConfig
+import models.PassOwner
 import models.google.GooglePass
 import org.mockito.Mockito.when
 import java.time.{ZoneId, ZonedDateTime}
@@ -57,14 +58,12 @@ class GooglePassRepositorySpec
         passId,
         "Name Surname",
         "AB 12 34 56 Q",
-        ZonedDateTime.now(ZoneId.of("UTC")).plusYears(DEFAULT_EXPIRATION_YEARS).toString,
-        "http://test.com/test",
-        Array[Byte](10)
+        ZonedDateTime.now(ZoneId.of("UTC")).plusYears(DEFAULT_EXPIRATION_YEARS).toString
       )
       val filters = Filters.eq("passId", passId)
 
       val documentsInDB = for {
-        _             <- repository.insert(record._1, record._2, record._3, record._4, record._5, record._6)
+        _             <- repository.insert(record._1, record._2, record._3, record._4)
         documentsInDB <- repository.collection.find[GooglePass](filters).toFuture()
       } yield documentsInDB
 
@@ -74,6 +73,26 @@ class GooglePassRepositorySpec
     }
   }
 
+  "insertMany" must {
+    "save every pass in one call and return their pass ids" in {
+
+      val googlePasses = Seq("test-pass-id-020", "test-pass-id-021").map { passId =>
+        GooglePass(passId, "Name Surname", "AB 12 34 56 Q", "2125-01-01T00:00Z[UTC]")
+      }
+
+      val result = for {
+        inserted      <- repository.insertMany(googlePasses)
+        documentsInDB <-
+          repository.collection.find[GooglePass](Filters.in("passId", googlePasses.map(_.passId)*)).toFuture()
+      } yield (inserted, documentsInDB)
+
+      whenReady(result, timeout = Timeout(Span(500L, Milliseconds))) { case (inserted, documentsInDB) =>
+        inserted mustBe googlePasses.map(_.passId).toSet
+        documentsInDB.size mustBe 2
+      }
+    }
+  }
+
   "findByPassId" must {
     "retrieve existing Google Pass in Mongo collection" in {
 
@@ -82,13 +101,11 @@ class GooglePassRepositorySpec
         passId,
         "Name Surname",
         "AB 12 34 56 Q",
-        ZonedDateTime.now(ZoneId.of("UTC")).plusYears(DEFAULT_EXPIRATION_YEARS).toString,
-        "http://test.com/test",
-        Array[Byte](10)
+        ZonedDateTime.now(ZoneId.of("UTC")).plusYears(DEFAULT_EXPIRATION_YEARS).toString
       )
 
       val documentsInDB = for {
-        _             <- repository.insert(record._1, record._2, record._3, record._4, record._5, record._6)
+        _             <- repository.insert(record._1, record._2, record._3, record._4)
         documentsInDB <- repository.findByPassId(passId)
       } yield documentsInDB
 
@@ -97,4 +114,26 @@ class GooglePassRepositorySpec
       }
     }
   }
+
+  "findOwnerByPassId" must {
+    "retrieve only the pass id and NINO of an existing pass" in {
+
+      val passId = "test-pass-id-010"
+
+      val owner = for {
+        _     <- repository.insert(passId, "Name Surname", "AB 12 34 56 Q", "2125-01-01T00:00Z[UTC]")
+        owner <- repository.findOwnerByPassId(passId)
+      } yield owner
+
+      whenReady(owner, timeout = Timeout(Span(500L, Milliseconds))) { owner =>
+        owner mustBe Some(PassOwner(passId, "AB 12 34 56 Q"))
+      }
+    }
+
+    "return None when there is no pass for the pass id" in {
+      whenReady(repository.findOwnerByPassId("unknown-pass-id"), timeout = Timeout(Span(500L, Milliseconds))) {
+        _ mustBe None
+      }
+    }
+  }
 }
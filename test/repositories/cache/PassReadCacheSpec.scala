@@ -0,0 +1,92 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package repositories.cache
+
+import com.codahale.metrics.MetricRegistry
+import org.scalatest.matchers.must.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+import java.time.{Clock, Duration, Instant, ZoneOffset}
+
+class PassReadCacheSpec extends AnyWordSpec with Matchers {
+
+  import PassReadCacheSpec.*
+
+  "get" must {
+    "return a cached pass and count the hit" in {
+      val metricRegistry = new MetricRegistry()
+      val passCache      = newCache(metricRegistry)
+
+      passCache.put("pass-1", TestPass("pass-1", now))
+
+      passCache.get("pass-1") mustBe Some(TestPass("pass-1", now))
+      metricRegistry.counter("pass-cache.test-pass.hits").getCount mustBe 1
+    }
+
+    "count a miss for an unknown pass" in {
+      val metricRegistry = new MetricRegistry()
+
+      newCache(metricRegistry).get("pass-1") mustBe None
+      metricRegistry.counter("pass-cache.test-pass.misses").getCount mustBe 1
+    }
+
+    "not return a pass whose stored document has reached the Mongo TTL" in {
+      val passCache = newCache(new MetricRegistry())
+
+      passCache.put("pass-1", TestPass("pass-1", now.minus(timeToLive).plusSeconds(1)))
+      passCache.get("pass-1") mustBe defined
+
+      val later = newCache(new MetricRegistry(), Clock.fixed(now.plusSeconds(1), ZoneOffset.UTC))
+      later.put("pass-1", TestPass("pass-1", now.minus(timeToLive).plusSeconds(1)))
+      later.get("pass-1") mustBe None
+    }
+  }
+
+  "put" must {
+    "evict passes once the size limit is reached and count the evictions" in {
+      val metricRegistry = new MetricRegistry()
+      val passCache      = newCache(metricRegistry, maxSizeInBytes = 3 * 1024)
+
+      (1 to 10).foreach(i => passCache.put(s"pass-$i", TestPass(s"pass-$i", now)))
+
+      (1 to 10).count(i => passCache.get(s"pass-$i").isDefined) must be < 10
+      metricRegistry.counter("pass-cache.test-pass.evictions").getCount must be > 0L
+    }
+  }
+}
+
+object PassReadCacheSpec {
+  final case class TestPass(passId: String, lastUpdated: Instant)
+
+  private val now        = Instant.parse("2025-01-01T12:00:00Z")
+  private val timeToLive = Duration.ofSeconds(900)
+
+  private def newCache(
+    metricRegistry: MetricRegistry,
+    clock: Clock = Clock.fixed(now, ZoneOffset.UTC),
+    maxSizeInBytes: Long = 1024 * 1024
+  ): PassReadCache[TestPass] =
+    new PassReadCache[TestPass](
+      "test-pass",
+      maxSizeInBytes,
+      timeToLive,
+      _ => 1000,
+      _.lastUpdated,
+      metricRegistry,
+      clock
+    )
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package repositories.cache
+
+import com.codahale.metrics.MetricRegistry
+import org.scalatest.matchers.must.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+import play.api.libs.json.{JsObject, Json}
+import uk.gov.hmrc.mongo.cache.CacheItem
+
+import java.time.{Clock, Duration, Instant, ZoneId, ZoneOffset}
+
+class SessionReadCacheSpec extends AnyWordSpec with Matchers {
+
+  import SessionReadCacheSpec.*
+
+  "get" must {
+    "return a cached document and count the hit" in {
+      val metricRegistry = new MetricRegistry()
+      val sessionCache   = newCache(metricRegistry)
+
+      sessionCache.put(nino, cacheItem(now), sessionCache.currentGeneration)
+
+      sessionCache.get(nino) mustBe Some(data)
+      metricRegistry.counter("session-cache.l1.hits").getCount mustBe 1
+    }
+
+    "count a miss for an unknown nino" in {
+      val metricRegistry = new MetricRegistry()
+
+      newCache(metricRegistry).get(nino) mustBe None
+      metricRegistry.counter("session-cache.l1.misses").getCount mustBe 1
+    }
+
+    "not return a document that has reached the Mongo TTL" in {
+      val sessionCache = newCache(new MetricRegistry(), Clock.fixed(now.plusSeconds(1), ZoneOffset.UTC))
+
+      sessionCache.put(nino, cacheItem(now.minus(timeToLive)), sessionCache.currentGeneration)
+
+      sessionCache.get(nino) mustBe None
+    }
+
+    "not return a document held for longer than the maximum entry age" in {
+      val clock        = new MovableClock(now)
+      val sessionCache = newCache(new MetricRegistry(), clock)
+
+      sessionCache.put(nino, cacheItem(now), sessionCache.currentGeneration)
+      clock.current = now.plus(maxEntryAge)
+
+      sessionCache.get(nino) mustBe None
+    }
+
+    "not return anything once disabled" in {
+      val sessionCache = newCache(new MetricRegistry())
+
+      sessionCache.put(nino, cacheItem(now), sessionCache.currentGeneration)
+      sessionCache.disable()
+
+      sessionCache.isEnabled mustBe false
+      sessionCache.get(nino) mustBe None
+    }
+  }
+
+  "put" must {
+    "not cache a document read before an invalidation" in {
+      val sessionCache = newCache(new MetricRegistry())
+
+      val generation = sessionCache.currentGeneration
+      sessionCache.invalidate(nino)
+      sessionCache.put(nino, cacheItem(now), generation)
+
+      sessionCache.get(nino) mustBe None
+    }
+
+    "not cache anything until enabled" in {
+      val sessionCache = new SessionReadCache(1024L * 1024, timeToLive, maxEntryAge, new MetricRegistry(), fixedClock)
+
+      sessionCache.put(nino, cacheItem(now), sessionCache.currentGeneration)
+      sessionCache.enable()
+
+      sessionCache.get(nino) mustBe None
+    }
+
+    "not cache a document read before the cache was enabled" in {
+      val sessionCache = new SessionReadCache(1024L * 1024, timeToLive, maxEntryAge, new MetricRegistry(), fixedClock)
+
+      val generation = sessionCache.currentGeneration
+      sessionCache.enable()
+      sessionCache.put(nino, cacheItem(now), generation)
+
+      sessionCache.get(nino) mustBe None
+    }
+
+    "evict documents once the size limit is reached and count the evictions" in {
+      val metricRegistry = new MetricRegistry()
+      val sessionCache   = newCache(metricRegistry, maxSizeInBytes = 2 * 1024)
+
+      (1 to 10).foreach(i => sessionCache.put(s"AA00000${i}A", cacheItem(now), sessionCache.currentGeneration))
+
+      (1 to 10).count(i => sessionCache.get(s"AA00000${i}A").isDefined) must be < 10
+      metricRegistry.counter("session-cache.l1.evictions").getCount must be > 0L
+    }
+  }
+
+  "invalidate" must {
+    "drop the cached document for the nino only" in {
+      val sessionCache = newCache(new MetricRegistry())
+
+      sessionCache.put(nino, cacheItem(now), sessionCache.currentGeneration)
+      sessionCache.put("AB123456C", cacheItem(now), sessionCache.currentGeneration)
+      sessionCache.invalidate(nino)
+
+      sessionCache.get(nino) mustBe None
+      sessionCache.get("AB123456C") mustBe Some(data)
+    }
+  }
+}
+
+object SessionReadCacheSpec {
+  private val nino           = "AA123456A"
+  private val now            = Instant.parse("2025-01-01T12:00:00Z")
+  private val timeToLive     = Duration.ofSeconds(3600)
+  private val maxEntryAge    = Duration.ofSeconds(30)
+  private val fixedClock     = Clock.fixed(now, ZoneOffset.UTC)
+  private val data: JsObject = Json.obj("individual-details-nino-AA123456A" -> Json.obj("encrypted" -> "x" * 100))
+
+  private final class MovableClock(@volatile var current: Instant) extends Clock {
+    override def instant(): Instant            = current
+    override def getZone: ZoneId               = ZoneOffset.UTC
+    override def withZone(zone: ZoneId): Clock = this
+  }
+
+  private def cacheItem(modifiedAt: Instant): CacheItem = CacheItem(nino, data, modifiedAt, modifiedAt)
+
+  private def newCache(
+    metricRegistry: MetricRegistry,
+    clock: Clock = fixedClock,
+    maxSizeInBytes: Long = 1024L * 1024
+  ): SessionReadCache = {
+    val sessionCache = new SessionReadCache(maxSizeInBytes, timeToLive, maxEntryAge, metricRegistry, clock)
+    sessionCache.enable()
+    sessionCache
+  }
+}
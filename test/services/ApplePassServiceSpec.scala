@@ -16,16 +16,22 @@
 
 package services
 
+import com.codahale.metrics.MetricRegistry
 import config.AppConfig
-import models.apple.ApplePass
+import models.PassOwner
+import models.apple.{ApplePass, ApplePassDetails}
 import org.mockito.ArgumentMatchers.{any, anyString, eq as eqTo}
 import org.mockito.Mockito.*
 import org.scalatestplus.mockito.MockitoSugar.mock
+import play.api.inject.ApplicationLifecycle
 import repositories.ApplePassRepository
+import services.qrcode.QrCodeVariant
 import util.SpecBase
 
 import java.time.Instant
+import java.util.concurrent.{ConcurrentLinkedQueue, CountDownLatch, TimeUnit}
 import scala.concurrent.Future
+import scala.jdk.CollectionConverters.*
 
 class ApplePassServiceSpec extends SpecBase {
 
@@ -33,31 +39,83 @@ class ApplePassServiceSpec extends SpecBase {
 
   override def beforeEach(): Unit = {
     super.beforeEach()
-    reset(mockApplePassRepository, mockFileService, mockSignatureService, mockQrCodeService, mockAppConfig)
+    reset(
+      mockApplePassRepository,
+      mockFileService,
+      mockPkPassWriter,
+      mockSignatureService,
+      mockSigningMaterialRegistry,
+      mockPassQrCodeService,
+      mockAppConfig
+    )
+  }
+
+  "isPassOwnedBy" must {
+    "use the owner projection and match the session NINO" in {
+      when(mockApplePassRepository.findOwnerByPassId(eqTo(passId))(any()))
+        .thenReturn(Future.successful(Some(PassOwner(passId, "AB 12 34 56 Q"))))
+
+      applePassService(signingEnabled = true).isPassOwnedBy(passId, "AB123456Q")(implicitly).map { result =>
+        verify(mockApplePassRepository, never).findByPassId(any())(any())
+        result mustBe true
+      }
+    }
+
+    "return false when the NINO does not match" in {
+      when(mockApplePassRepository.findOwnerByPassId(eqTo(passId))(any()))
+        .thenReturn(Future.successful(Some(PassOwner(passId, "AB 12 34 56 Q"))))
+
+      applePassService(signingEnabled = true).isPassOwnedBy(passId, "AB123456N")(implicitly).map { result =>
+        result mustBe false
+      }
+    }
+
+    "return false when pass id NOT exist" in {
+      when(mockApplePassRepository.findOwnerByPassId(eqTo(passId))(any()))
+        .thenReturn(Future.successful(None))
+
+      applePassService(signingEnabled = true).isPassOwnedBy(passId, "AB123456Q")(implicitly).map { result =>
+        result mustBe false
+      }
+    }
   }
 
   "findQrCodeByPassId" must {
     "return the QR Code when pass id exist" in {
-      val qrCode        = "QRCodeData".getBytes()
-      val applePassCard = "ApplePassCard".getBytes()
-      val pass          = new ApplePass(passId, "Test Name", "AB 12 34 56 Q", applePassCard, qrCode, Instant.now())
+      val qrCode = "QRCodeData".getBytes()
 
-      when(mockApplePassRepository.findByPassId(eqTo(passId))(any()))
-        .thenReturn(Future.successful(Some(pass)))
+      when(mockApplePassRepository.findOwnerByPassId(eqTo(passId))(any()))
+        .thenReturn(Future.successful(Some(PassOwner(passId, "AB 12 34 56 Q"))))
+
+      when(mockPassQrCodeService.applePassQrCode(eqTo(passId), eqTo(QrCodeVariant.Default)))
+        .thenReturn(Some(qrCode))
 
       applePassService(signingEnabled = true)
-        .getQrCodeByPassIdAndNINO(passId, "AB123456Q")(implicitly)
+        .getQrCodeByPassIdAndNINO(passId, "AB123456Q", QrCodeVariant.Default)(implicitly)
         .map { result =>
+          verify(mockApplePassRepository, never).findByPassId(any())(any())
           result mustBe Some(qrCode)
         }
     }
 
+    "return None without rendering when the NINO does not match" in {
+      when(mockApplePassRepository.findOwnerByPassId(eqTo(passId))(any()))
+        .thenReturn(Future.successful(Some(PassOwner(passId, "AB 12 34 56 Q"))))
+
+      applePassService(signingEnabled = true)
+        .getQrCodeByPassIdAndNINO(passId, "AB123456N", QrCodeVariant.Default)(implicitly)
+        .map { result =>
+          verify(mockPassQrCodeService, never).applePassQrCode(any(), any())
+          result mustBe None
+        }
+    }
+
     "return None when pass id NOT exist" in {
-      when(mockApplePassRepository.findByPassId(eqTo(passId))(any()))
+      when(mockApplePassRepository.findOwnerByPassId(eqTo(passId))(any()))
         .thenReturn(Future.successful(None))
 
       applePassService(signingEnabled = true)
-        .getQrCodeByPassIdAndNINO(passId, "AB123456Q")(implicitly)
+        .getQrCodeByPassIdAndNINO(passId, "AB123456Q", QrCodeVariant.Default)(implicitly)
         .map { result =>
           result mustBe None
         }
@@ -66,9 +124,8 @@ class ApplePassServiceSpec extends SpecBase {
 
   "findApplePassByPassId" must {
     "return the Apple Pass when pass id exist" in {
-      val qrCode        = "QRCodeData".getBytes()
       val applePassCard = "ApplePassCard".getBytes()
-      val pass          = new ApplePass(passId, "Test Name", "AB 12 34 56 Q", applePassCard, qrCode, Instant.now())
+      val pass          = new ApplePass(passId, "Test Name", "AB 12 34 56 Q", applePassCard, Instant.now())
 
       when(mockApplePassRepository.findByPassId(eqTo(passId))(any()))
         .thenReturn(Future.successful(Some(pass)))
@@ -94,12 +151,12 @@ class ApplePassServiceSpec extends SpecBase {
 
   "createPass" must {
 
-    val passFilesGenerated = List(FileAsBytes("manifest.json", "manifest".getBytes()))
-    val blankSignature     = FileAsBytes(SignatureService.SIGNATURE_FILE_NAME, Array.emptyByteArray)
+    val manifest       = "manifest".getBytes()
+    val blankSignature = FileAsBytes(SignatureService.SIGNATURE_FILE_NAME, Array.emptyByteArray)
 
     "should not return an uuid when 'Create File in Bytes for Pass' has failed" in {
-      when(mockFileService.createFileBytesForPass(any()))
-        .thenReturn(List.empty)
+      when(mockPkPassWriter.writePassContent(any()))
+        .thenReturn(None)
 
       val eitherResult =
         applePassService(signingEnabled = true)
@@ -112,24 +169,22 @@ class ApplePassServiceSpec extends SpecBase {
         case Right(_)                   =>
           fail("Should not return an uuid when 'Create File in Bytes for Pass' has failed")
         case Left(exception: Exception) =>
-          verify(mockFileService, never).createPkPassZipForPass(any(), any())
-          verify(mockQrCodeService, never).createQRCode(any(), any())
-          verify(mockApplePassRepository, never)
-            .insert(anyString(), eqTo("TestName TestSurname"), eqTo("AB 12 34 56 Q"), any(), any())(any())
-          verify(mockSignatureService, never).createSignatureForPass(any(), any(), any(), any())
-          verify(mockAppConfig, never).appleCerts
+          verify(mockPkPassWriter, never).finish(any())
+                    verify(mockApplePassRepository, never)
+            .insert(anyString(), eqTo("TestName TestSurname"), eqTo("AB 12 34 56 Q"), any())(any())
+          verify(mockSignatureService, never).createSignatureForPass(any(), any[ApplePassSigningMaterial]())
           exception.getMessage mustBe
             "Problem occurred while creating Apple Pass. Pass files generated: false"
       }
     }
 
     "should not return an uuid when 'Create Signature' failed (signing enabled)" in {
-      when(mockFileService.createFileBytesForPass(any()))
-        .thenReturn(passFilesGenerated)
+      when(mockPkPassWriter.writePassContent(any()))
+        .thenReturn(Some(manifest))
 
-      when(mockAppConfig.appleCerts).thenReturn(Future.successful(AppConfig.AppleCerts("wwdrca", "p12", "pwd")))
+      when(mockSigningMaterialRegistry.current(any())).thenReturn(Future.successful(mockSigningMaterial))
 
-      when(mockSignatureService.createSignatureForPass(any(), any(), any(), any()))
+      when(mockSignatureService.createSignatureForPass(any(), any[ApplePassSigningMaterial]()))
         .thenReturn(blankSignature)
 
       val eitherResult =
@@ -143,26 +198,22 @@ class ApplePassServiceSpec extends SpecBase {
         case Right(_)                   =>
           fail("Should not return an uuid when 'Create Signature' failed")
         case Left(exception: Exception) =>
-          verify(mockFileService, never).createPkPassZipForPass(any(), any())
-          verify(mockQrCodeService, never).createQRCode(any(), any())
-          verify(mockApplePassRepository, never)
-            .insert(anyString(), eqTo("TestName TestSurname"), eqTo("AB 12 34 56 Q"), any(), any())(any())
+          verify(mockPkPassWriter, never).finish(any())
+                    verify(mockApplePassRepository, never)
+            .insert(anyString(), eqTo("TestName TestSurname"), eqTo("AB 12 34 56 Q"), any())(any())
           exception.getMessage mustBe
             "Problem occurred while creating Apple Pass. Pass files generated: true, Pass files signed: false"
       }
     }
 
     "return an uuid when signing is disabled and signature is empty" in {
-      when(mockFileService.createFileBytesForPass(any()))
-        .thenReturn(passFilesGenerated)
-
-      when(mockQrCodeService.createQRCode(any(), any()))
-        .thenReturn(Some("SomeQrCode".getBytes()))
+      when(mockPkPassWriter.writePassContent(any()))
+        .thenReturn(Some(manifest))
 
-      when(mockFileService.createPkPassZipForPass(any(), any()))
+      when(mockPkPassWriter.finish(any()))
         .thenReturn(Some("SomeZipFile".getBytes()))
 
-      when(mockApplePassRepository.insert(anyString(), anyString(), anyString(), any(), any())(any()))
+      when(mockApplePassRepository.insert(anyString(), anyString(), anyString(), any())(any()))
         .thenReturn(Future.successful(()))
 
       val eitherResult =
@@ -174,34 +225,69 @@ class ApplePassServiceSpec extends SpecBase {
       eitherResult.isLeft mustBe false
       eitherResult match {
         case Right(uuid) =>
-          verify(mockAppConfig, never).appleCerts
-          verify(mockSignatureService, never).createSignatureForPass(any(), any(), any(), any())
-          verify(mockFileService, times(1)).createPkPassZipForPass(any(), any())
-          verify(mockQrCodeService, times(1)).createQRCode(any(), any())
+          verify(mockSigningMaterialRegistry, never).current(any())
+          verify(mockSignatureService, never).createSignatureForPass(any(), any[ApplePassSigningMaterial]())
+          verify(mockPkPassWriter, times(1)).finish(any())
+          verifyNoInteractions(mockPassQrCodeService)
           verify(mockApplePassRepository, times(1))
-            .insert(anyString(), eqTo("TestName TestSurname"), eqTo("AB 12 34 56 Q"), any(), any())(any())
+            .insert(anyString(), eqTo("TestName TestSurname"), eqTo("AB 12 34 56 Q"), any())(any())
           uuid.length mustBe 36
         case Left(_)     =>
           fail("Should return an uuid when signing is disabled")
       }
     }
 
-    "return an uuid when success (signing enabled)" in {
-      when(mockFileService.createFileBytesForPass(any()))
-        .thenReturn(passFilesGenerated)
+    "resolve the signing material while the pass files are being written" in {
+      val signingMaterialRequested = new CountDownLatch(1)
 
-      when(mockAppConfig.appleCerts).thenReturn(Future.successful(AppConfig.AppleCerts("wwdrca", "p12", "pwd")))
+      when(mockSigningMaterialRegistry.current(any())).thenAnswer { _ =>
+        signingMaterialRequested.countDown()
+        Future.successful(mockSigningMaterial)
+      }
 
-      when(mockSignatureService.createSignatureForPass(any(), any(), any(), any()))
+      // Only completes if the signing material lookup has already started
+      when(mockPkPassWriter.writePassContent(any())).thenAnswer { _ =>
+        if (signingMaterialRequested.await(5, TimeUnit.SECONDS)) Some(manifest) else None
+      }
+
+      when(mockSignatureService.createSignatureForPass(any(), any[ApplePassSigningMaterial]()))
         .thenReturn(FileAsBytes(SignatureService.SIGNATURE_FILE_NAME, "sig".getBytes()))
 
-      when(mockQrCodeService.createQRCode(any(), any()))
-        .thenReturn(Some("SomeQrCode".getBytes()))
+      when(mockPkPassWriter.finish(any()))
+        .thenReturn(Some("SomeZipFile".getBytes()))
+
+      when(mockApplePassRepository.insert(anyString(), anyString(), anyString(), any())(any()))
+        .thenReturn(Future.successful(()))
+
+      val stagesBefore = Seq("pass-files", "signing-material", "sign-and-zip", "store").map { stage =>
+        metricRegistry.timer(s"apple-pass.create.$stage").getCount
+      }
+
+      val eitherResult =
+        applePassService(signingEnabled = true)
+          .createPass("TestName TestSurname", "AB 12 34 56 Q")
+          .value
+          .futureValue
 
-      when(mockFileService.createPkPassZipForPass(any(), any()))
+      eitherResult.isRight mustBe true
+      Seq("pass-files", "signing-material", "sign-and-zip", "store").map { stage =>
+        metricRegistry.timer(s"apple-pass.create.$stage").getCount
+      } mustBe stagesBefore.map(_ + 1)
+    }
+
+    "return an uuid when success (signing enabled)" in {
+      when(mockPkPassWriter.writePassContent(any()))
+        .thenReturn(Some(manifest))
+
+      when(mockSigningMaterialRegistry.current(any())).thenReturn(Future.successful(mockSigningMaterial))
+
+      when(mockSignatureService.createSignatureForPass(any(), any[ApplePassSigningMaterial]()))
+        .thenReturn(FileAsBytes(SignatureService.SIGNATURE_FILE_NAME, "sig".getBytes()))
+
+      when(mockPkPassWriter.finish(any()))
         .thenReturn(Some("SomeZipFile".getBytes()))
 
-      when(mockApplePassRepository.insert(anyString(), anyString(), anyString(), any(), any())(any()))
+      when(mockApplePassRepository.insert(anyString(), anyString(), anyString(), any())(any()))
         .thenReturn(Future.successful(()))
 
       val eitherResult =
@@ -213,38 +299,116 @@ class ApplePassServiceSpec extends SpecBase {
       eitherResult.isLeft mustBe false
       eitherResult match {
         case Right(uuid) =>
-          verify(mockAppConfig, times(1)).appleCerts
-          verify(mockSignatureService, times(1)).createSignatureForPass(any(), any(), any(), any())
-          verify(mockFileService, times(1)).createPkPassZipForPass(any(), any())
-          verify(mockQrCodeService, times(1)).createQRCode(any(), any())
+          verify(mockSigningMaterialRegistry, times(1)).current(any())
+          verify(mockSignatureService, times(1)).createSignatureForPass(any(), any[ApplePassSigningMaterial]())
+          verify(mockPkPassWriter, times(1)).finish(any())
+          verifyNoInteractions(mockPassQrCodeService)
           verify(mockApplePassRepository, times(1))
-            .insert(anyString(), eqTo("TestName TestSurname"), eqTo("AB 12 34 56 Q"), any(), any())(any())
+            .insert(anyString(), eqTo("TestName TestSurname"), eqTo("AB 12 34 56 Q"), any())(any())
           uuid.length mustBe 36
         case Left(_)     =>
           fail("Should return an uuid when success")
       }
     }
   }
+
+  "createPasses" must {
+
+    val manifest     = "manifest".getBytes()
+    val passDetails  = Seq(
+      ApplePassDetails("TestName One", "AB 12 34 56 Q"),
+      ApplePassDetails("TestName Two", "AB 12 34 56 R"),
+      ApplePassDetails("TestName Three", "AB 12 34 56 S")
+    )
+    val storedPasses = new ConcurrentLinkedQueue[ApplePass]()
+
+    def insertAllBut(nino: String): Unit = {
+      storedPasses.clear()
+      when(mockApplePassRepository.insertMany(any())(any())).thenAnswer { invocation =>
+        val applePasses = invocation.getArgument[Seq[ApplePass]](0)
+        applePasses.foreach(storedPasses.add)
+        Future.successful(applePasses.filterNot(_.nino == nino).map(_.passId).toSet)
+      }
+      ()
+    }
+
+    "build and insert every pass, signing with material resolved once for the batch" in {
+      insertAllBut(nino = "none")
+      when(mockPkPassWriter.writePassContent(any())).thenReturn(Some(manifest))
+      when(mockSigningMaterialRegistry.current(any())).thenReturn(Future.successful(mockSigningMaterial))
+      when(mockSignatureService.createSignatureForPass(any(), any[ApplePassSigningMaterial]()))
+        .thenReturn(FileAsBytes(SignatureService.SIGNATURE_FILE_NAME, "sig".getBytes()))
+      when(mockPkPassWriter.finish(any())).thenReturn(Some("SomeZipFile".getBytes()))
+
+      val results = applePassService(signingEnabled = true).createPasses(passDetails).futureValue
+
+      verify(mockSigningMaterialRegistry, times(1)).current(any())
+      verify(mockApplePassRepository, times(2)).insertMany(any())(any())
+      verify(mockApplePassRepository, never).insert(anyString(), anyString(), anyString(), any())(any())
+      val storedNinos = storedPasses.asScala.map(applePass => applePass.passId -> applePass.nino).toMap
+      results.map(_.map(storedNinos)) mustBe passDetails.map(details => Right(details.nino))
+    }
+
+    "report the passes the repository did not store" in {
+      insertAllBut(nino = "AB 12 34 56 R")
+      when(mockPkPassWriter.writePassContent(any())).thenReturn(Some(manifest))
+      when(mockPkPassWriter.finish(any())).thenReturn(Some("SomeZipFile".getBytes()))
+
+      val results = applePassService(signingEnabled = false).createPasses(passDetails).futureValue
+
+      results.map(_.isRight) mustBe Seq(true, false, true)
+      results(1).left.map(_.getMessage) mustBe Left("Problem occurred while storing Apple Pass.")
+    }
+
+    "fail every pass without storing any when signing material is unavailable" in {
+      insertAllBut(nino = "none")
+      when(mockPkPassWriter.writePassContent(any())).thenReturn(Some(manifest))
+      when(mockSigningMaterialRegistry.current(any())).thenReturn(Future.failed(new RuntimeException("no certs")))
+
+      val results = applePassService(signingEnabled = true).createPasses(passDetails).futureValue
+
+      verify(mockPkPassWriter, never).finish(any())
+      storedPasses.isEmpty mustBe true
+      results.map(_.left.map(_.getMessage)) mustBe Seq.fill(3)(
+        Left("Problem occurred while creating Apple Pass. Pass files generated: true, Pass files signed: false")
+      )
+    }
+  }
 }
 
 object ApplePassServiceSpec {
   val passId: String = "test-pass-id-001"
 
-  private val mockApplePassRepository = mock[ApplePassRepository]
-  private val mockFileService         = mock[FileService]
-  private val mockSignatureService    = mock[SignatureService]
-  private val mockQrCodeService       = mock[QrCodeService]
-  private val mockAppConfig           = mock[AppConfig]
+  private val mockApplePassRepository     = mock[ApplePassRepository]
+  private val mockFileService             = mock[FileService]
+  private val mockPkPassWriter            = mock[PkPassWriter]
+  private val mockSignatureService        = mock[SignatureService]
+  private val mockSigningMaterialRegistry = mock[ApplePassSigningMaterialRegistry]
+  private val mockSigningMaterial         = mock[ApplePassSigningMaterial]
+  private val mockPassQrCodeService       = mock[PassQrCodeService]
+  private val mockAppConfig               = mock[AppConfig]
+  private val mockPoolConfig              = mock[AppConfig]
+
+  when(mockPoolConfig.passBuildParallelism).thenReturn(2)
+  when(mockPoolConfig.passBatchChunkSize).thenReturn(2)
+  when(mockPoolConfig.passBuildQueueDepth).thenReturn(16)
+
+  private val metricRegistry = new MetricRegistry()
+  private val passBuildPool  = new PassBuildPool(mockPoolConfig, metricRegistry, mock[ApplicationLifecycle])
 
   private def applePassService(signingEnabled: Boolean): ApplePassService = {
     when(mockAppConfig.applePassSigningEnabled).thenReturn(signingEnabled)
+    when(mockFileService.newPkPassWriter()).thenReturn(mockPkPassWriter)
 
     new ApplePassService(
       mockAppConfig,
       mockApplePassRepository,
       mockFileService,
       mockSignatureService,
-      mockQrCodeService
+      mockSigningMaterialRegistry,
+      mockPassQrCodeService,
+      passBuildPool,
+      metricRegistry
     )
   }
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package services
+
+import config.AppConfig
+import config.AppConfig.AppleCerts
+import org.mockito.Mockito.{reset, when}
+import org.scalatest.BeforeAndAfterEach
+import org.scalatest.matchers.must.Matchers
+import org.scalatest.wordspec.AsyncWordSpec
+import org.scalatestplus.mockito.MockitoSugar
+import org.scalatestplus.mockito.MockitoSugar.mock
+
+import scala.concurrent.Future
+
+class ApplePassSigningMaterialRegistrySpec
+    extends AsyncWordSpec
+    with Matchers
+    with MockitoSugar
+    with BeforeAndAfterEach {
+
+  import ApplePassSigningMaterialRegistrySpec.*
+
+  override def beforeEach(): Unit =
+    reset(mockAppConfig)
+
+  "materialFor" must {
+    "parse a certificate set only once" in {
+      val registry = new ApplePassSigningMaterialRegistry(mockAppConfig)
+
+      val first  = registry.materialFor(invalidCerts)
+      val second = registry.materialFor(invalidCerts)
+
+      first.isFailure mustBe true
+      second must be theSameInstanceAs first
+    }
+
+    "parse a changed certificate set again" in {
+      val registry = new ApplePassSigningMaterialRegistry(mockAppConfig)
+
+      val first  = registry.materialFor(invalidCerts)
+      val second = registry.materialFor(invalidCerts.copy(privateCertPassword = "changed"))
+
+      second must not be theSameInstanceAs(first)
+    }
+  }
+
+  "current" must {
+    "fail when the active certificate set cannot be parsed" in {
+      when(mockAppConfig.appleCerts).thenReturn(Future.successful(invalidCerts))
+
+      val registry = new ApplePassSigningMaterialRegistry(mockAppConfig)
+
+      recoverToSucceededIf[Exception](registry.current)
+    }
+  }
+}
+
+object ApplePassSigningMaterialRegistrySpec {
+  private val mockAppConfig = mock[AppConfig]
+
+  private val invalidCerts = AppleCerts("RFVNTVlfQ0VSVElGSUNBVEU=", "RFVNTVlfQ0VSVElGSUNBVEU=", "ZHVtbXk=")
+}
@@ -16,6 +16,7 @@
 
 package services
 
+import com.codahale.metrics.MetricRegistry
 import models.apple.{ApplePassCard, ApplePassField, ApplePassGeneric}
 import org.scalatestplus.mockito.MockitoSugar
 import org.scalatest.matchers.must.Matchers
@@ -23,7 +24,10 @@ import org.scalatest.matchers.should.Matchers.should
 import org.scalatest.wordspec.AsyncWordSpec
 import play.api.libs.json.{Json, OFormat}
 
+import java.io.ByteArrayInputStream
 import java.util.UUID
+import java.util.zip.{ZipEntry, ZipInputStream}
+import scala.util.Using
 
 class FileServiceSpec extends AsyncWordSpec with Matchers with MockitoSugar {
   import services.FileServiceSpec._
@@ -31,6 +35,7 @@ class FileServiceSpec extends AsyncWordSpec with Matchers with MockitoSugar {
   val PASS_FILE_NAME          = "pass.json"
   val ICON_FILE_NAME          = "icon.png"
   val LOGO_FILE_NAME          = "logo.png" // top of the card logo
+  val LOGO_2X_FILE_NAME       = "logo@2x.png"
   val MANIFEST_JSON_FILE_NAME = "manifest.json"
   val privateKey              =
     "MIIJTwIBAzCCCQgGCSqGSIb3DQEHAaCCCPkEggj1MIII8TCCA0gGCSqGSIb3DQEHAaCCAzkEggM1MIIDMTCCAy0GCyqGSIb3DQEMCgECoIIC4DCCAtwwZgYJKoZIhvcNAQUNMFkwOAYJKoZIhvcNAQUMMCsEFKRBzvksQQnzwogCh3s4f7juxZVtAgInEAIBIDAMBggqhkiG9w0CCQUAMB0GCWCGSAFlAwQBKgQQcnq18qMFvm2L/a/KPZS41QSCAnB1bYG9Zs9+9BSHM3F2lbatZic6aDVcukNQ8GewQurIlUglSIBl2TIiAgcam/7nYHcpiaQImvg5jh4RvrkcEUS+KIiKjTTdSlb0+92k3tra1tGAYGKw8PgmZ9aXIeBhWZqnM0kC+u1eLsxbwyAO2Z6v+mKQ4NELWzYbCQy1rHVP6rwTRAAxdM+db6WZEdtro7QRe1U0+04/Pmi2p16ECi3qOwxe4Njgv1kvAMCKRdwyMqFHpvfn8nDFnfIfqYh/BNhrHYdROkGsVoOAyIVeeTNwyRa16VY7CHoF8Se1enJWxmkfHPyBzHfGF1+Vdq9nlEkix9ZyhnXNxVMv6tQXwzJi6qCruAUbq8JF2ikSnDgZpQ/NlMh2LqHM2WtzIA4QACiJIIOW1CAP7suLjetildtpleI1qH757uPbr6QDav0Jo01fBm828xiiKsFpiYZMFw5oJlGibys3zAkcaKLvLgJgIhqc7bdmtesj7Xwrf2EloGjyjePbmuN6E4XB4BdPZUU1rY0Wa5EGZYD2KBnQIFtJTtvftKWU5WH4PWohjgfCoa02JawOgjmAAqHu9Mdy9byrMGBRdrW+MbmFVhXJSdBoLAXwy4iB5xxQ2JF1nYavq1xcFjW8HDkn0x+PxGkPOeC2ol///idqtRzcSqKypBnvVJqdpVMwLTHsgAtgRdPJOqaypo2opnKFTRCCctqeoRDTmdwfNZ3w63J14vnp/ROyLx/OBfEYNpu5ZOU60x1IjN9HCxBZu2zAJAlJGXFnk/rI8shi48c6Lqb57c9thVePBYAsZAqt7u1olB3WJsut99vx8IrYAhag9AVxngrjMegxOjAVBgkqhkiG9w0BCRQxCB4GAGYAbwBvMCEGCSqGSIb3DQEJFTEUBBJUaW1lIDE2NzU0MTc4NDI3OTYwggWhBgkqhkiG9w0BBwagggWSMIIFjgIBADCCBYcGCSqGSIb3DQEHATBmBgkqhkiG9w0BBQ0wWTA4BgkqhkiG9w0BBQwwKwQUYtOysBlzLaHwiBr9OPePQMX5DDQCAicQAgEgMAwGCCqGSIb3DQIJBQAwHQYJYIZIAWUDBAEqBBAIj1bXcFFdGWLH88CYkRctgIIFEKTbYkXw2VTkq20RY3lQqganOdbI886aNgmakmezAULQFjrTz94V8CVB0dq2knSADFZXpyzul9x0XMvxMQeFnzbmWt5BxExxGxY171v44URS/1rKqs8f2pIj+ew7I1/8aK1xLAIy5UU9dMUvAndZxfeT4JzPuKrzlE2SI/K9cbC8zrX7j1T4sGAKpz0d7bGHaqAEBb5pqLeub/Bp/Myodx11NkewIPhunRthlMgqQNepB2PtJEzU52VrMULf7vIYaK1lh9GHbIf0g8kq/GGQ11VKvm3/UU55BLMXKdJSyY4yCsq/aK1sBOXPw3/A1Wzde6/d+3r9EOXQpOGH95wq0J75fYcRxfbuaJjFSsExAoGEZZw9ap9h1Qe0cnMULLzEE1m438coGv1h8D8dMshyxaLyOH3n0cM6VJ3xCYMl4GbDAksQ5ryPkuhZ1wQcvuSVtKd29KBqhO1AhXnKwR2Rm+33wW2ivf2tzEkXcGjNeXV8OKXvie2XtK99NBSBx3OGA2Wq+eQN2+IMqcZrvcbEnP6OCMYONcyzUpnMGRp2ErF4llNaWq4sd+mok8jGLrKXk/vdaVuDQ9MrnkPWs/h9nMqz612amL67w2I4Dtsp1Vm+ePHOTZfD/4jsGaB/D49okjGrp4/6MLA1yH/UkiG/ZGpCFQckBf9QcVe8xkrIxKmeGcvhIl43RvuLC/voMaKmUii4V75De7QqzTzUiO1jN3scM+brp2Afv2AQn4DCJGj98CRxpwpBeNANm2zDmAGXkzhBA0RM+S+PRytrArvwRU9AJLCCpIIYlK70Sxer8cxSm9z3S+GBqgGbqefUQuLFrNi488siWnzd6NFxBQ8078EPlXQ3TT8OPaHwD7eXBYjReK+homALIQcb+k1MDSOfw5ndx0sutw1LH2/V/GX3BfFlTUjAenL+Dhslhg6k7YTlPB6YP0iCATMtbO60L2N1j/MfNc/guYHgi4F7yV1nHPMA2iofqFuFYaC4ZrS5SUBSWFggoVa+jL92wtp7zA9LZLNzfFJjCLo4/9GjCqv7D4AnsnyYdqpbXXhKG5j5CsSMMmqFuPyuyJ2uxys5enx/qZUxHT4HUuHOE/lde/GpK7+1u7SwNq+kdgPI0d2LlobPS6bJItYgF9YOQJoQczF3V3aBe5mYQDzdV67Ye9/oHLjZpOkdDYwOjfGnE3B8MRqbScYqUktf5qRJv5uk6xoGNGkGmbbr1V26ufm694sE21cdSDdliMG624q3N+51R9YKDrEfELmRaOL2n9HPMpLOXYLa9PtVBdLliPd/dnzO9i6FkAxy6l30r+FzpNRt8KpKfmZPyeVDS/4bHLRfy5DUsGtWqEx/NTg2Ce8beBUuNJXUCwCiB4/aDbQ5F2zEIZ9dcECRhC/uhJoI9oaAx2cP0bV6c32I8MZ9qq7FqvBXRqkROkgCxsgstmA4bJ82pR97lVSQe7chJLY0sSsKyN1PNK5i77taIJwqtq5KfPgKfvx3iDo7shDMe3TSzpp8OB082W9kKUoZsI0Y3GejX2mPThiTbBahXxydpMCTwrPE2HFMrtajnUGcOmDk8xGW+2mopuroOiO9vXLeBpFhutHZAG/yDBM5CK6snWxEXlHB9BkA67JoZBTK97TZJl8cWRvn+gosI//19siLkwafncrcQjN+x7rAmHLDc7KmRlr/Eyun58g5FuO4Nq2UcI0kTccCsNB5k7CAIJofnk4dyFUtVjA+MCEwCQYFKw4DAhoFAAQUTdEeyLK4HuSg3HlPlEY6aOlLPQoEFPsdBoAlUaYEzIPKeP4KpLsEKAn3AgMBhqA="
@@ -41,29 +46,54 @@ class FileServiceSpec extends AsyncWordSpec with Matchers with MockitoSugar {
     val uuid      = UUID.randomUUID().toString
     val applePass = ApplePassCard("Test Pass", "AB 12 34 56 Q", uuid)
 
-    "create test.pass with icon, thumbnail, pass.json, manifest files as bytes" in {
-      val passFileAsBytes = fileService.createFileBytesForPass(applePass)
-      passFileAsBytes.nonEmpty mustBe true
-      passFileAsBytes.size mustBe 4
+    "create a pkpass with pass.json, icon, logo, manifest and signature files" in {
+      val pkPass = buildPkPass(applePass)
 
-      passFileAsBytes.head.filename mustBe PASS_FILE_NAME
-      passFileAsBytes.head.content.length should be > 1
+      pkPass.map(_._1.getName) mustBe List(
+        PASS_FILE_NAME,
+        ICON_FILE_NAME,
+        LOGO_FILE_NAME,
+        LOGO_2X_FILE_NAME,
+        MANIFEST_JSON_FILE_NAME,
+        "signature"
+      )
+      pkPass.foreach { case (_, content) => content.length should be > 1 }
+      Json.parse(pkPass.head._2).as[ApplePassCard].serialNumber mustBe uuid
+    }
+
+    "store the already compressed images without deflating them again" in {
+      val pkPass = buildPkPass(applePass)
+
+      pkPass.filter(_._1.getName.endsWith(".png")).map(_._1.getMethod).distinct mustBe List(ZipEntry.STORED)
+      pkPass.find(_._1.getName == PASS_FILE_NAME).map(_._1.getMethod) mustBe Some(ZipEntry.DEFLATED)
+    }
+
+    "create a manifest with the SHA-1 of every file in the pass" in {
+      val pkPass   = buildPkPass(applePass)
+      val manifest = Json.parse(pkPass.find(_._1.getName == MANIFEST_JSON_FILE_NAME).get._2).as[Map[String, String]]
 
-      passFileAsBytes.lift(1).get.filename mustBe ICON_FILE_NAME
-      passFileAsBytes.last.content.length should be > 1
+      manifest mustBe pkPass
+        .filterNot(entry => Set(MANIFEST_JSON_FILE_NAME, "signature").contains(entry._1.getName))
+        .map { case (entry, content) => entry.getName -> PassAssetBundle.sha1Hex(content) }
+        .toMap
+    }
 
-      passFileAsBytes.lift(2).get.filename mustBe LOGO_FILE_NAME
-      passFileAsBytes.last.content.length should be > 1
+    "return the manifest that was written to the pkpass" in {
+      val writer = fileService.newPkPassWriter()
+      try {
+        val manifest = writer.writePassContent(applePass).get
+        val pkPass   = unzip(writer.finish(FileAsBytes("signature", "test".getBytes())).get)
 
-      passFileAsBytes.last.filename mustBe MANIFEST_JSON_FILE_NAME
-      passFileAsBytes.last.content.length should be > 1
+        pkPass.find(_._1.getName == MANIFEST_JSON_FILE_NAME).get._2 mustBe manifest
+      } finally writer.close()
     }
 
-    "create zip data with test directory" in {
-      val passFileAsBytes = fileService.createFileBytesForPass(applePass)
-      val passFilesZipped = fileService.createPkPassZipForPass(passFileAsBytes, FileAsBytes("test", "test".getBytes()))
-      passFilesZipped.get.nonEmpty mustBe true
-      passFilesZipped.get.length should be > 1
+    "record the bytes allocated for each pass" in {
+      val before = metricRegistry.histogram("apple-pass.pkpass.allocated-bytes").getCount
+
+      buildPkPass(applePass)
+
+      metricRegistry.histogram("apple-pass.pkpass.allocated-bytes").getCount mustBe before + 1
     }
   }
 }
@@ -74,5 +104,17 @@ object FileServiceSpec {
   implicit val passGenericFormat: OFormat[ApplePassGeneric] = Json.format[ApplePassGeneric]
   implicit val passFormat: OFormat[ApplePassCard]           = Json.format[ApplePassCard]
 
-  val fileService = new FileService()
+  val metricRegistry = new MetricRegistry()
+  val fileService    = new FileService(new PassAssetBundle(), metricRegistry)
+
+  def unzip(pkPass: Array[Byte]): List[(ZipEntry, Array[Byte])] =
+    Using.resource(new ZipInputStream(new ByteArrayInputStream(pkPass))) { zip =>
+      Iterator.continually(zip.getNextEntry).takeWhile(_ != null).map(entry => entry -> zip.readAllBytes()).toList
+    }
+
+  def buildPkPass(pass: ApplePassCard): List[(ZipEntry, Array[Byte])] =
+    Using.resource(fileService.newPkPassWriter()) { writer =>
+      writer.writePassContent(pass)
+      unzip(writer.finish(FileAsBytes("signature", "test".getBytes())).get)
+    }
 }
@@ -16,114 +16,177 @@
 
 package services
 
-import com.google.auth.oauth2.GoogleCredentials
+import com.codahale.metrics.MetricRegistry
 import config.AppConfig
-import models.google.GooglePass
+import models.PassOwner
+import models.google.{GooglePass, GooglePassDetails}
 import org.mockito.ArgumentMatchers.{any, anyString, eq as eqTo}
-import org.mockito.Mockito.{reset, times, verify, when}
+import org.mockito.Mockito.{never, reset, times, verify, verifyNoInteractions, when}
 import org.scalatest.BeforeAndAfterEach
 import org.scalatest.matchers.must.Matchers
 import org.scalatest.wordspec.AsyncWordSpec
 import org.scalatestplus.mockito.MockitoSugar
 import org.scalatestplus.mockito.MockitoSugar.mock
+import play.api.inject.ApplicationLifecycle
 import repositories.GooglePassRepository
-import services.googlepass.GooglePassUtil
+import services.googlepass.*
+import services.qrcode.QrCodeVariant
 
 import java.time.{Instant, ZoneId, ZonedDateTime}
 import scala.concurrent.Future
+import scala.util.{Failure, Success}
 
 class GooglePassServiceSpec extends AsyncWordSpec with Matchers with MockitoSugar with BeforeAndAfterEach {
 
   import GooglePassServiceSpec.*
 
-  override def beforeEach(): Unit =
-    reset(mockGooglePassRepository, mockGooglePassUtil, mockQrCodeService, mockAppConfig)
+  override def beforeEach(): Unit = {
+    reset(mockGooglePassRepository, mockGooglePassUtil, mockPassQrCodeService, mockAppConfig, mockSigningRegistry)
+    when(mockSigningRegistry.current).thenReturn(Success(mockSigningMaterial))
+    when(mockAppConfig.passBatchChunkSize).thenReturn(2)
+    ()
+  }
+
+  "isPassOwnedBy" must {
+    "use the owner projection and match the session NINO" in {
+      when(mockGooglePassRepository.findOwnerByPassId(eqTo(passId))(any()))
+        .thenReturn(Future.successful(Some(PassOwner(passId, "AB 12 34 56 Q"))))
+
+      googlePassService.isPassOwnedBy(passId, "AB123456Q")(implicitly).map { result =>
+        verify(mockGooglePassRepository, never).findByPassId(any())(any())
+        result mustBe true
+      }
+    }
+
+    "return false when the NINO does not match" in {
+      when(mockGooglePassRepository.findOwnerByPassId(eqTo(passId))(any()))
+        .thenReturn(Future.successful(Some(PassOwner(passId, "AB 12 34 56 Q"))))
+
+      googlePassService.isPassOwnedBy(passId, "AC123456Q")(implicitly).map { result =>
+        result mustBe false
+      }
+    }
+
+    "return false when pass id NOT exist" in {
+      when(mockGooglePassRepository.findOwnerByPassId(eqTo(passId))(any()))
+        .thenReturn(Future.successful(None))
+
+      googlePassService.isPassOwnedBy(passId, "AB123456Q")(implicitly).map { result =>
+        result mustBe false
+      }
+    }
+  }
 
   "findQrCodeByPassId" must {
     "return the QR Code when pass id exist" in {
-      val qrCode        = "QRCodeData".getBytes()
-      val googlePassUrl = "https://pay.google.com/gp/v/save/test"
-      val pass          = new GooglePass(
-        passId,
-        "Test Name",
-        "AB 12 34 56 Q",
-        ZonedDateTime.now(ZoneId.of("UTC")).plusYears(DEFAULT_EXPIRATION_YEARS).toString,
-        googlePassUrl,
-        qrCode,
-        Instant.now()
-      )
+      val qrCode = "QRCodeData".getBytes()
 
-      when(mockGooglePassRepository.findByPassId(eqTo(passId))(any()))
-        .thenReturn(Future.successful(Some(pass)))
+      when(mockGooglePassRepository.findOwnerByPassId(eqTo(passId))(any()))
+        .thenReturn(Future.successful(Some(PassOwner(passId, "AB 12 34 56 Q"))))
 
-      googlePassService.getQrCodeByPassIdAndNINO(passId, "AB123456Q")(implicitly).map { result =>
+      when(mockPassQrCodeService.googlePassQrCode(eqTo(passId), eqTo(QrCodeVariant.Default)))
+        .thenReturn(Some(qrCode))
+
+      googlePassService.getQrCodeByPassIdAndNINO(passId, "AB123456Q", QrCodeVariant.Default)(implicitly).map { result =>
+        verify(mockGooglePassRepository, never).findByPassId(any())(any())
         result mustBe Some(qrCode)
       }
     }
 
     "return None when session NINO does not match pass NINO" in {
-      val qrCode        = "QRCodeData".getBytes()
-      val googlePassUrl = "https://pay.google.com/gp/v/save/test"
-      val pass          = new GooglePass(
-        passId,
-        "Test Name",
-        "AB 12 34 56 Q",
-        ZonedDateTime.now(ZoneId.of("UTC")).plusYears(DEFAULT_EXPIRATION_YEARS).toString,
-        googlePassUrl,
-        qrCode,
-        Instant.now()
-      )
+      when(mockGooglePassRepository.findOwnerByPassId(eqTo(passId))(any()))
+        .thenReturn(Future.successful(Some(PassOwner(passId, "AB 12 34 56 Q"))))
 
-      when(mockGooglePassRepository.findByPassId(eqTo(passId))(any()))
-        .thenReturn(Future.successful(Some(pass)))
-
-      googlePassService.getQrCodeByPassIdAndNINO(passId, "AC123456Q")(implicitly).map { result =>
+      googlePassService.getQrCodeByPassIdAndNINO(passId, "AC123456Q", QrCodeVariant.Default)(implicitly).map { result =>
+        verify(mockPassQrCodeService, never).googlePassQrCode(any(), any())
         result mustBe None
       }
     }
 
     "return None when pass id NOT exist" in {
-      when(mockGooglePassRepository.findByPassId(eqTo(passId))(any()))
+      when(mockGooglePassRepository.findOwnerByPassId(eqTo(passId))(any()))
         .thenReturn(Future.successful(None))
 
-      googlePassService.getQrCodeByPassIdAndNINO(passId, "AB123456Q")(implicitly).map { result =>
+      googlePassService.getQrCodeByPassIdAndNINO(passId, "AB123456Q", QrCodeVariant.Default)(implicitly).map { result =>
         result mustBe None
       }
     }
   }
 
   "findGooglePassByPassId" must {
-    "return the Google Pass URL when pass id exist" in {
-      val qrCode        = "QRCodeData".getBytes()
+    "mint a Google Pass URL for the stored pass when pass id exist" in {
       val googlePassUrl = "https://pay.google.com/gp/v/save/test"
       val pass          = new GooglePass(
         passId,
         "Test Name",
         "AB 12 34 56 Q",
         ZonedDateTime.now(ZoneId.of("UTC")).plusYears(DEFAULT_EXPIRATION_YEARS).toString,
-        googlePassUrl,
-        qrCode,
         Instant.now()
       )
 
       when(mockGooglePassRepository.findByPassId(eqTo(passId))(any()))
         .thenReturn(Future.successful(Some(pass)))
+      when(mockGooglePassUtil.createGooglePassWithCredentials(eqTo(passId), eqTo("Test Name"), anyString(), any()))
+        .thenReturn(googlePassUrl)
 
       googlePassService.getPassUrlByPassIdAndNINO(passId, "AB123456Q")(implicitly).map { result =>
         result mustBe Some(googlePassUrl)
       }
     }
 
+    "reuse a minted Google Pass URL for repeat fetches of the same pass" in {
+      val reusedPassId = "test-pass-id-002"
+      val pass         = GooglePass(reusedPassId, "Test Name", "AB 12 34 56 Q", "2125-01-01T00:00Z[UTC]")
+
+      when(mockGooglePassRepository.findByPassId(eqTo(reusedPassId))(any()))
+        .thenReturn(Future.successful(Some(pass)))
+      when(mockGooglePassUtil.createGooglePassWithCredentials(eqTo(reusedPassId), anyString(), anyString(), any()))
+        .thenReturn("https://pay.google.com/gp/v/save/first", "https://pay.google.com/gp/v/save/second")
+
+      for {
+        first  <- googlePassService.getPassUrlByPassIdAndNINO(reusedPassId, "AB123456Q")
+        second <- googlePassService.getPassUrlByPassIdAndNINO(reusedPassId, "AB123456Q")
+      } yield {
+        verify(mockGooglePassUtil, times(1))
+          .createGooglePassWithCredentials(eqTo(reusedPassId), anyString(), anyString(), any())
+        first mustBe Some("https://pay.google.com/gp/v/save/first")
+        second mustBe first
+      }
+    }
+
+    "sign the Google Pass URL on the pass build pool" in {
+      val pooledPassId = "test-pass-id-004"
+      val pass         = GooglePass(pooledPassId, "Test Name", "AB 12 34 56 Q", "2125-01-01T00:00Z[UTC]")
+
+      when(mockGooglePassRepository.findByPassId(eqTo(pooledPassId))(any()))
+        .thenReturn(Future.successful(Some(pass)))
+      when(mockGooglePassUtil.createGooglePassWithCredentials(eqTo(pooledPassId), anyString(), anyString(), any()))
+        .thenAnswer(_ => Thread.currentThread().getName)
+
+      googlePassService.getPassUrlByPassIdAndNINO(pooledPassId, "AB123456Q").map { result =>
+        result.exists(_.startsWith("pass-build-")) mustBe true
+      }
+    }
+
+    "fail when the signing material is unavailable" in {
+      val unsignedPassId = "test-pass-id-003"
+      val pass           = GooglePass(unsignedPassId, "Test Name", "AB 12 34 56 Q", "2125-01-01T00:00Z[UTC]")
+
+      when(mockGooglePassRepository.findByPassId(eqTo(unsignedPassId))(any()))
+        .thenReturn(Future.successful(Some(pass)))
+      when(mockSigningRegistry.current).thenReturn(Failure(new IllegalStateException("bad key")))
+
+      recoverToSucceededIf[IllegalStateException] {
+        googlePassService.getPassUrlByPassIdAndNINO(unsignedPassId, "AB123456Q")
+      }
+    }
+
     "return None when session NINO does not match pass NINO" in {
-      val qrCode        = "QRCodeData".getBytes()
-      val googlePassUrl = "https://pay.google.com/gp/v/save/test"
-      val pass          = new GooglePass(
+      val pass = new GooglePass(
         passId,
         "Test Name",
         "AB 12 34 56 Q",
         ZonedDateTime.now(ZoneId.of("UTC")).plusYears(DEFAULT_EXPIRATION_YEARS).toString,
-        googlePassUrl,
-        qrCode,
         Instant.now()
       )
 
@@ -131,6 +194,7 @@ class GooglePassServiceSpec extends AsyncWordSpec with Matchers with MockitoSuga
         .thenReturn(Future.successful(Some(pass)))
 
       googlePassService.getPassUrlByPassIdAndNINO(passId, "AC123456Q")(implicitly).map { result =>
+        verifyNoInteractions(mockGooglePassUtil)
         result mustBe None
       }
     }
@@ -146,38 +210,22 @@ class GooglePassServiceSpec extends AsyncWordSpec with Matchers with MockitoSuga
   }
 
   "createPassWithCredentials" must {
-    "return an uuid when success" in {
-      when(mockGooglePassUtil.createGooglePassWithCredentials(anyString(), anyString(), any()))
-        .thenReturn("https://pay.google.com/gp/v/save/test")
-
-      when(mockQrCodeService.createQRCode(any(), any()))
-        .thenReturn(Some("SomeQrCode".getBytes()))
-
-      when(
-        mockGooglePassRepository.insert(anyString(), anyString(), anyString(), anyString(), anyString(), any())(any())
-      )
+    "store the pass details and return an uuid without minting a JWT" in {
+      when(mockGooglePassRepository.insert(anyString(), anyString(), anyString(), anyString())(any()))
         .thenReturn(Future.successful(()))
 
       googlePassService
         .createPassWithCredentials(
           "TestName TestSurname",
           "AB 12 34 56 Q",
-          ZonedDateTime.now(ZoneId.of("UTC")).plusYears(DEFAULT_EXPIRATION_YEARS).toString,
-          mockGoogleCredentials
+          ZonedDateTime.now(ZoneId.of("UTC")).plusYears(DEFAULT_EXPIRATION_YEARS).toString
         )
         .map {
           case Right(uuid) =>
-            verify(mockGooglePassUtil, times(1)).createGooglePassWithCredentials(anyString(), anyString(), any())
-            verify(mockQrCodeService, times(1)).createQRCode(any(), any())
+            verifyNoInteractions(mockGooglePassUtil)
+            verifyNoInteractions(mockPassQrCodeService)
             verify(mockGooglePassRepository, times(1))
-              .insert(
-                anyString(),
-                eqTo("TestName TestSurname"),
-                eqTo("AB 12 34 56 Q"),
-                anyString(),
-                anyString(),
-                any()
-              )(any())
+              .insert(anyString(), eqTo("TestName TestSurname"), eqTo("AB 12 34 56 Q"), anyString())(any())
             uuid.length mustBe 36
 
           case Left(e) =>
@@ -185,24 +233,29 @@ class GooglePassServiceSpec extends AsyncWordSpec with Matchers with MockitoSuga
         }
     }
 
-    "return Left when repository insert fails" in {
-      when(mockGooglePassUtil.createGooglePassWithCredentials(anyString(), anyString(), any()))
-        .thenReturn("https://pay.google.com/gp/v/save/test")
+    "return Left without storing the pass when the signing material is unavailable" in {
+      when(mockSigningRegistry.current).thenReturn(Failure(new IllegalStateException("bad key")))
 
-      when(mockQrCodeService.createQRCode(any(), any()))
-        .thenReturn(Some("SomeQrCode".getBytes()))
+      googlePassService
+        .createPassWithCredentials("TestName TestSurname", "AB 12 34 56 Q", "2125-01-01T00:00Z[UTC]")
+        .map {
+          case Left(e)  =>
+            verify(mockGooglePassRepository, never).insert(anyString(), anyString(), anyString(), anyString())(any())
+            e.getMessage mustBe "Problem occurred while creating Google Pass. Signing material unavailable"
+          case Right(_) =>
+            fail("Expected Left")
+        }
+    }
 
-      when(
-        mockGooglePassRepository.insert(anyString(), anyString(), anyString(), anyString(), anyString(), any())(any())
-      )
+    "return Left when repository insert fails" in {
+      when(mockGooglePassRepository.insert(anyString(), anyString(), anyString(), anyString())(any()))
         .thenReturn(Future.failed(new RuntimeException("db down")))
 
       googlePassService
         .createPassWithCredentials(
           "TestName TestSurname",
           "AB 12 34 56 Q",
-          ZonedDateTime.now(ZoneId.of("UTC")).plusYears(DEFAULT_EXPIRATION_YEARS).toString,
-          mockGoogleCredentials
+          ZonedDateTime.now(ZoneId.of("UTC")).plusYears(DEFAULT_EXPIRATION_YEARS).toString
         )
         .map {
           case Left(e)  =>
@@ -212,6 +265,45 @@ class GooglePassServiceSpec extends AsyncWordSpec with Matchers with MockitoSuga
         }
     }
   }
+
+  "createPassesWithCredentials" must {
+    val passDetails = Seq(
+      GooglePassDetails("TestName One", "AB 12 34 56 Q"),
+      GooglePassDetails("TestName Two", "AB 12 34 56 R"),
+      GooglePassDetails("TestName Three", "AB 12 34 56 S")
+    )
+
+    "store every pass and return the stored pass ids in request order" in {
+      when(mockGooglePassRepository.insertMany(any())(any())).thenAnswer { invocation =>
+        val googlePasses = invocation.getArgument[Seq[GooglePass]](0)
+        Future.successful(googlePasses.filterNot(_.nino == "AB 12 34 56 R").map(_.passId).toSet)
+      }
+
+      googlePassService
+        .createPassesWithCredentials(passDetails, "2125-01-01T00:00Z[UTC]")
+        .map { results =>
+          verify(mockGooglePassRepository, times(2)).insertMany(any())(any())
+          verify(mockGooglePassRepository, never)
+            .insert(anyString(), anyString(), anyString(), anyString())(any())
+          verifyNoInteractions(mockGooglePassUtil)
+          results.map(_.isRight) mustBe Seq(true, false, true)
+          results(1).left.map(_.getMessage) mustBe Left("Problem occurred while storing Google Pass.")
+        }
+    }
+
+    "report every pass without storing any while the signing material is unavailable" in {
+      when(mockSigningRegistry.current).thenReturn(Failure(new IllegalStateException("bad key")))
+
+      googlePassService
+        .createPassesWithCredentials(passDetails, "2125-01-01T00:00Z[UTC]")
+        .map { results =>
+          verify(mockGooglePassRepository, never).insertMany(any())(any())
+          results.map(_.left.map(_.getMessage)) mustBe Seq.fill(3)(
+            Left("Problem occurred while creating Google Pass. Signing material unavailable")
+          )
+        }
+    }
+  }
 }
 
 object GooglePassServiceSpec {
@@ -219,11 +311,31 @@ object GooglePassServiceSpec {
 
   private val mockGooglePassRepository = mock[GooglePassRepository]
   private val mockGooglePassUtil       = mock[GooglePassUtil]
-  private val mockQrCodeService        = mock[QrCodeService]
+  private val mockPassQrCodeService    = mock[PassQrCodeService]
   private val mockAppConfig            = mock[AppConfig]
   private val DEFAULT_EXPIRATION_YEARS = 100
-  private val mockGoogleCredentials    = mock[GoogleCredentials]
+  private val mockSigningRegistry      = mock[GooglePassSigningMaterialRegistry]
+  private val mockSigningMaterial      = mock[GooglePassSigningMaterial]
+
+  private val mockUrlCacheConfig = mock[AppConfig]
+
+  when(mockUrlCacheConfig.googleJWTExpiry).thenReturn(10)
+  when(mockUrlCacheConfig.googlePassUrlRefreshMarginInSeconds).thenReturn(120L)
+  when(mockUrlCacheConfig.googlePassUrlCacheMaxEntries).thenReturn(100L)
+
+  private val mockPoolConfig = mock[AppConfig]
+
+  when(mockPoolConfig.passBuildParallelism).thenReturn(2)
+  when(mockPoolConfig.passBuildQueueDepth).thenReturn(16)
 
   val googlePassService =
-    new GooglePassService(mockAppConfig, mockGooglePassUtil, mockGooglePassRepository, mockQrCodeService)
+    new GooglePassService(
+      mockAppConfig,
+      mockGooglePassUtil,
+      mockGooglePassRepository,
+      mockPassQrCodeService,
+      mockSigningRegistry,
+      new GooglePassUrlCache(mockUrlCacheConfig),
+      new PassBuildPool(mockPoolConfig, new MetricRegistry(), mock[ApplicationLifecycle])
+    )
 }
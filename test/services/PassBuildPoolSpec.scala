@@ -0,0 +1,160 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package services
+
+import com.codahale.metrics.MetricRegistry
+import config.AppConfig
+import org.mockito.Mockito.when
+import org.scalatest.matchers.must.Matchers
+import org.scalatest.wordspec.AsyncWordSpec
+import org.scalatestplus.mockito.MockitoSugar
+import org.scalatestplus.mockito.MockitoSugar.mock
+import play.api.inject.ApplicationLifecycle
+
+import java.util.concurrent.{ConcurrentLinkedQueue, CountDownLatch, ExecutionException}
+import scala.concurrent.Future
+import scala.jdk.CollectionConverters.*
+
+class PassBuildPoolSpec extends AsyncWordSpec with Matchers with MockitoSugar {
+
+  import PassBuildPoolSpec.*
+
+  "submit" must {
+    "run the task on the pool and time it" in {
+      passBuildPool.submit(Thread.currentThread().getName).map { threadName =>
+        threadName must startWith("pass-build-")
+        metricRegistry.timer("pass-build.run").getCount must be >= 1L
+        metricRegistry.timer("pass-build.queue-wait").getCount must be >= 1L
+      }
+    }
+
+    "reject work straight away once the queue is full" in {
+      val registry = new MetricRegistry()
+      val pool     = singleThreadPool(registry)
+      val started  = new CountDownLatch(1)
+      val release  = new CountDownLatch(1)
+
+      val running = pool.submit { started.countDown(); release.await() }
+      started.await()
+      val queued = pool.submit(1)
+      val shed   = pool.submit(2)
+
+      shed.failed.flatMap { error =>
+        release.countDown()
+        error mustBe a[PassBuildRejectedException]
+        error.asInstanceOf[PassBuildRejectedException].retryAfterSeconds mustBe 3L
+        registry.counter("pass-build.rejected").getCount mustBe 1L
+        running.flatMap(_ => queued).map(_ mustBe 1)
+      }
+    }
+
+    "fail rather than hang when the task throws a fatal error" in {
+      val pool = newPool(threads = 1, queueDepth = 1, chunkSize = 1)
+
+      // Future boxes fatal errors in an ExecutionException
+      recoverToExceptionIf[ExecutionException](pool.submit[Int](throw new LinkageError("fatal"))).map { error =>
+        error.getCause mustBe a[LinkageError]
+      }
+    }
+  }
+
+  "createInChunks" must {
+    "store the passes a chunk at a time and return the results in request order" in {
+      val storedChunks = new ConcurrentLinkedQueue[Seq[String]]()
+
+      passBuildPool
+        .createInChunks(Seq(1, 2, 3, 4, 5))(item => Right(s"pass-$item")) { passes =>
+          storedChunks.add(passes)
+          Future.successful(passes.map(Right(_)))
+        }
+        .map { results =>
+          storedChunks.asScala.toSeq mustBe Seq(Seq("pass-1", "pass-2"), Seq("pass-3", "pass-4"), Seq("pass-5"))
+          results mustBe Seq(1, 2, 3, 4, 5).map(item => Right(s"pass-$item"))
+        }
+    }
+
+    "report build failures in place without storing them" in {
+      val buildError = new Exception("build failed")
+
+      passBuildPool
+        .createInChunks(Seq(1, 2, 3)) {
+          case 1 => Left(buildError)
+          case 2 => throw new IllegalStateException("zip failed")
+          case n => Right(s"pass-$n")
+        } { passes =>
+          passes mustBe Seq("pass-3")
+          Future.successful(passes.map(Right(_)))
+        }
+        .map { results =>
+          results.head mustBe Left(buildError)
+          results(1).left.map(_.getMessage) mustBe Left("zip failed")
+          results(2) mustBe Right("pass-3")
+        }
+    }
+
+    "not submit more builds from a chunk at once than the pool has threads" in {
+      newPool(threads = 1, queueDepth = 1, chunkSize = 4)
+        .createInChunks(Seq(1, 2, 3, 4))(item => Right(s"pass-$item")) { passes =>
+          Future.successful(passes.map(Right(_)))
+        }
+        .map { results =>
+          results mustBe Seq(1, 2, 3, 4).map(item => Right(s"pass-$item"))
+        }
+    }
+
+    "keep the store results lined up with the passes that were built" in {
+      val storeError = new Exception("Problem occurred while storing")
+
+      passBuildPool
+        .createInChunks(Seq(1, 2))(item => if (item == 1) Left(new Exception("build failed")) else Right(item)) {
+          passes => Future.successful(passes.map(_ => Left(storeError)))
+        }
+        .map { results =>
+          results(1) mustBe Left(storeError)
+        }
+    }
+  }
+}
+
+object PassBuildPoolSpec {
+  private val mockAppConfig = mock[AppConfig]
+
+  when(mockAppConfig.passBuildParallelism).thenReturn(2)
+  when(mockAppConfig.passBuildQueueDepth).thenReturn(16)
+  when(mockAppConfig.passBuildRetryAfterInSeconds).thenReturn(3L)
+  when(mockAppConfig.passBatchChunkSize).thenReturn(2)
+
+  private val metricRegistry = new MetricRegistry()
+  private val passBuildPool  = new PassBuildPool(mockAppConfig, metricRegistry, mock[ApplicationLifecycle])
+
+  private def singleThreadPool(metricRegistry: MetricRegistry): PassBuildPool =
+    newPool(threads = 1, queueDepth = 1, chunkSize = 1, metricRegistry)
+
+  private def newPool(
+    threads: Int,
+    queueDepth: Int,
+    chunkSize: Int,
+    metricRegistry: MetricRegistry = new MetricRegistry()
+  ): PassBuildPool = {
+    val appConfig = mock[AppConfig]
+    when(appConfig.passBuildParallelism).thenReturn(threads)
+    when(appConfig.passBuildQueueDepth).thenReturn(queueDepth)
+    when(appConfig.passBuildRetryAfterInSeconds).thenReturn(3L)
+    when(appConfig.passBatchChunkSize).thenReturn(chunkSize)
+    new PassBuildPool(appConfig, metricRegistry, mock[ApplicationLifecycle])
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package services
+
+import config.AppConfig
+import org.mockito.ArgumentMatchers.{any, anyInt, anyString, eq as eqTo}
+import org.mockito.Mockito.{reset, times, verify, when}
+import org.scalatest.BeforeAndAfterEach
+import org.scalatest.matchers.must.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+import org.scalatestplus.mockito.MockitoSugar
+import org.scalatestplus.mockito.MockitoSugar.mock
+import services.qrcode.{QrCodeFormat, QrCodeVariant}
+
+class PassQrCodeServiceSpec extends AnyWordSpec with Matchers with MockitoSugar with BeforeAndAfterEach {
+
+  import PassQrCodeServiceSpec.*
+
+  override def beforeEach(): Unit = {
+    reset(mockAppConfig, mockQrCodeService)
+    when(mockAppConfig.frontendServiceUrl).thenReturn(frontendServiceUrl)
+    when(mockAppConfig.qrCodeCacheMaxEntries).thenReturn(100L)
+    when(mockAppConfig.qrCodeCacheTtlInSeconds).thenReturn(900L)
+  }
+
+  "applePassQrCode" must {
+    "render the QR code for the pass card URL" in {
+      val expectedText = s"$frontendServiceUrl/get-pass-card?passId=$passId&qr-code=true"
+      when(mockQrCodeService.createQRCode(eqTo(expectedText), eqTo(200), eqTo(QrCodeFormat.Png)))
+        .thenReturn(Some(qrCode))
+
+      new PassQrCodeService(mockAppConfig, mockQrCodeService).applePassQrCode(passId, QrCodeVariant.Default) mustBe
+        Some(qrCode)
+    }
+
+    "render each variant once and serve repeats from the cache" in {
+      when(mockQrCodeService.createQRCode(anyString(), anyInt(), any[QrCodeFormat]())).thenReturn(Some(qrCode))
+
+      val service = new PassQrCodeService(mockAppConfig, mockQrCodeService)
+      val svg     = QrCodeVariant(300, QrCodeFormat.Svg)
+
+      service.applePassQrCode(passId, QrCodeVariant.Default)
+      service.applePassQrCode(passId, QrCodeVariant.Default)
+      service.applePassQrCode(passId, svg)
+      service.applePassQrCode(passId, svg)
+
+      verify(mockQrCodeService, times(1)).createQRCode(anyString(), eqTo(200), eqTo(QrCodeFormat.Png))
+      verify(mockQrCodeService, times(1)).createQRCode(anyString(), eqTo(300), eqTo(QrCodeFormat.Svg))
+    }
+
+    "not cache a failed render" in {
+      when(mockQrCodeService.createQRCode(anyString(), anyInt(), any[QrCodeFormat]())).thenReturn(None)
+
+      val service = new PassQrCodeService(mockAppConfig, mockQrCodeService)
+
+      service.applePassQrCode(passId, QrCodeVariant.Default) mustBe None
+      service.applePassQrCode(passId, QrCodeVariant.Default) mustBe None
+
+      verify(mockQrCodeService, times(2)).createQRCode(anyString(), anyInt(), any[QrCodeFormat]())
+    }
+  }
+
+  "googlePassQrCode" must {
+    "render the QR code for the Google pass URL" in {
+      val expectedText = s"$frontendServiceUrl/get-google-pass?passId=$passId&qr-code=true"
+      when(mockQrCodeService.createQRCode(eqTo(expectedText), eqTo(200), eqTo(QrCodeFormat.Png)))
+        .thenReturn(Some(qrCode))
+
+      new PassQrCodeService(mockAppConfig, mockQrCodeService).googlePassQrCode(passId, QrCodeVariant.Default) mustBe
+        Some(qrCode)
+    }
+  }
+
+  "QrCodeVariant.fromRequest" must {
+    "default the size and format" in {
+      QrCodeVariant.fromRequest(None, None) mustBe Right(QrCodeVariant.Default)
+    }
+
+    "reject sizes outside the allowed range and unknown formats" in {
+      QrCodeVariant.fromRequest(Some(QrCodeVariant.MIN_SIZE - 1), None).isLeft mustBe true
+      QrCodeVariant.fromRequest(Some(QrCodeVariant.MAX_SIZE + 1), None).isLeft mustBe true
+      QrCodeVariant.fromRequest(None, Some("gif")).isLeft mustBe true
+    }
+  }
+}
+
+object PassQrCodeServiceSpec {
+  private val mockAppConfig     = mock[AppConfig]
+  private val mockQrCodeService = mock[QrCodeService]
+
+  private val frontendServiceUrl = "http://localhost:14006/save-your-national-insurance-number"
+  private val passId             = "test-pass-id-001"
+  private val qrCode             = "QRCodeData".getBytes()
+}
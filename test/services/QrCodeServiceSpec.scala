@@ -16,10 +16,18 @@
 
 package services
 
+import com.google.zxing.qrcode.QRCodeWriter
+import com.google.zxing.{BarcodeFormat, EncodeHintType}
 import org.scalatestplus.mockito.MockitoSugar
 import org.scalatest.matchers.must.Matchers
 import org.scalatest.matchers.should.Matchers.should
 import org.scalatest.wordspec.AsyncWordSpec
+import services.qrcode.QrCodeFormat
+
+import java.io.ByteArrayInputStream
+import java.nio.charset.StandardCharsets
+import java.util.Hashtable
+import javax.imageio.ImageIO
 
 class QrCodeServiceSpec extends AsyncWordSpec with Matchers with MockitoSugar {
 
@@ -27,15 +35,72 @@ class QrCodeServiceSpec extends AsyncWordSpec with Matchers with MockitoSugar {
 
   "createQRCode" must {
     "return the QR Code Data for given qrText" in {
-      val qrCodeText = "https://test.gov.uk/test-url/30b90407-142f-43cd-bfe2-ed90d75de1c6"
-
       val optionQrCode = qrCodeService.createQRCode(qrCodeText)
       optionQrCode.isDefined mustBe true
       optionQrCode.get.length should be > qrCodeText.length
     }
+
+    "return a 1-bit greyscale PNG matching the encoded matrix pixel for pixel" in {
+      val png = qrCodeService.createQRCode(qrCodeText).get
+      png.take(8) mustBe Array(0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n').map(_.toByte)
+      png(24).toInt mustBe 1 // bit depth
+      png(25).toInt mustBe 0 // greyscale
+
+      val image  = ImageIO.read(new ByteArrayInputStream(png))
+      val matrix = encodedMatrix(QrCodeService.DEFAULT_BARCODE_SIZE)
+      image.getWidth mustBe matrix.getWidth
+      image.getHeight mustBe matrix.getHeight
+
+      val mismatches = for {
+        x <- 0 until matrix.getWidth
+        y <- 0 until matrix.getHeight
+        if matrix.get(x, y) != ((image.getRGB(x, y) & 0xffffff) == 0)
+      } yield (x, y)
+      mismatches mustBe empty
+    }
+
+    "return byte-identical PNG output across calls" in {
+      qrCodeService.createQRCode(qrCodeText).get mustBe qrCodeService.createQRCode(qrCodeText).get
+    }
+
+    "return an SVG scaled to the requested size" in {
+      val svg = new String(qrCodeService.createQRCode(qrCodeText, 300, QrCodeFormat.Svg).get, StandardCharsets.UTF_8)
+      val modules = encodedMatrix(0).getWidth
+
+      svg must startWith("<svg")
+      svg must include("""width="300" height="300"""")
+      svg must include(s"""viewBox="0 0 $modules $modules"""")
+      svg must endWith("</svg>")
+    }
+
+    "return byte-identical SVG output across calls" in {
+      qrCodeService.createQRCode(qrCodeText, 200, QrCodeFormat.Svg).get mustBe
+        qrCodeService.createQRCode(qrCodeText, 200, QrCodeFormat.Svg).get
+    }
+
+    "return None when the code cannot be encoded" in {
+      qrCodeService.createQRCode(qrCodeText, -1) mustBe None
+    }
+  }
+
+  "QrCodeFormat.fromString" must {
+    "resolve formats case-insensitively" in {
+      QrCodeFormat.fromString("png") mustBe Some(QrCodeFormat.Png)
+      QrCodeFormat.fromString("SVG") mustBe Some(QrCodeFormat.Svg)
+      QrCodeFormat.fromString("gif") mustBe None
+    }
   }
 }
 
 object QrCodeServiceSpec {
   val qrCodeService = new QrCodeService()
+
+  val qrCodeText = "https://test.gov.uk/test-url/30b90407-142f-43cd-bfe2-ed90d75de1c6"
+
+  def encodedMatrix(size: Int) = {
+    val hintMap = new Hashtable[EncodeHintType, Any]
+    hintMap.put(EncodeHintType.CHARACTER_SET, QrCodeService.UTF_8)
+    hintMap.put(EncodeHintType.MARGIN, QrCodeService.MARGIN)
+    new QRCodeWriter().encode(qrCodeText, BarcodeFormat.QR_CODE, size, size, hintMap)
+  }
 }
@@ -18,12 +18,14 @@ package services
 
 import _root_.util.SpecBase
 import config.AppConfig
+import models.encryption.EncryptedJsValue
 import org.mockito.ArgumentMatchers.any
 import org.mockito.Mockito.{reset, times, verify, when}
 import org.scalatest.BeforeAndAfterEach
 import play.api.libs.json.*
 import services.SensitiveFormatService.SensitiveJsValue
-import uk.gov.hmrc.crypto.{Crypted, Decrypter, Encrypter, PlainText}
+import uk.gov.hmrc.crypto.{Crypted, Decrypter, Encrypter, PlainText, SymmetricCryptoFactory}
+import uk.gov.hmrc.mongo.play.json.formats.MongoBinaryFormats
 
 class SensitiveFormatServiceSpec extends SpecBase with BeforeAndAfterEach {
   private trait EncrypterDecrypter extends Encrypter with Decrypter
@@ -199,4 +201,57 @@ class SensitiveFormatServiceSpec extends SpecBase with BeforeAndAfterEach {
     }
   }
 
+  "sensitiveFormatFromReadsWrites with compact values" must {
+    val crypto = SymmetricCryptoFactory.aesCrypto("z4rWoRLf7a1OHTXLutSDJjhrUzZTBE3b")
+
+    def compactFormat: Format[JsValue] =
+      new SensitiveFormatService(crypto, mockAppConfig).sensitiveFormatFromReadsWrites[JsValue]
+
+    "write a binary envelope and read it back" in {
+      when(mockAppConfig.compactSensitiveValues).thenReturn(true)
+
+      val written = Json.toJson(Json.parse(fakeJsonPayload))(compactFormat)
+
+      written mustBe a[JsObject]
+      written.as[JsValue](compactFormat) mustBe Json.parse(fakeJsonPayload)
+    }
+
+    "store less than the value encrypted as a string" in {
+      when(mockAppConfig.compactSensitiveValues).thenReturn(true)
+      val envelope = Json.toJson(Json.parse(fakeJsonPayload))(compactFormat) match {
+        case EncryptedJsValue(bytes) => bytes
+        case other                   => fail(s"Expected an encrypted envelope but got $other")
+      }
+
+      when(mockAppConfig.compactSensitiveValues).thenReturn(false)
+      val encryptedString = Json.toJson(Json.parse(fakeJsonPayload))(compactFormat).as[String]
+
+      envelope.length must be < encryptedString.length
+    }
+
+    "still read values encrypted as a string and plaintext values" in {
+      when(mockAppConfig.compactSensitiveValues).thenReturn(false)
+      val encryptedString = Json.toJson(Json.parse(fakeJsonPayload))(compactFormat)
+
+      when(mockAppConfig.compactSensitiveValues).thenReturn(true)
+
+      encryptedString.as[JsValue](compactFormat) mustBe Json.parse(fakeJsonPayload)
+      Json.parse(fakeJsonPayload).as[JsValue](compactFormat) mustBe Json.parse(fakeJsonPayload)
+    }
+
+    "read envelopes after compact values are turned off" in {
+      when(mockAppConfig.compactSensitiveValues).thenReturn(true)
+      val written = Json.toJson(Json.parse(fakeJsonPayload))(compactFormat)
+
+      when(mockAppConfig.compactSensitiveValues).thenReturn(false)
+
+      written.as[JsValue](compactFormat) mustBe Json.parse(fakeJsonPayload)
+    }
+
+    "fail on an envelope version it does not know" in {
+      val unknownVersion = Json.toJson(Array[Byte](9, 1, 2, 3))(MongoBinaryFormats.byteArrayFormat)
+
+      an[IllegalStateException] mustBe thrownBy(unknownVersion.as[JsValue](compactFormat))
+    }
+  }
 }
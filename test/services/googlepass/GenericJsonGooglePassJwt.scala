@@ -0,0 +1,85 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package services.googlepass
+
+import com.auth0.jwt.JWT
+import com.auth0.jwt.algorithms.Algorithm
+import models.google.GooglePassCard
+import services.googlepass.googleModels.*
+
+import java.util
+import java.util.Collections
+import scala.jdk.CollectionConverters.*
+
+/** Builds a Google pass JWT the way it was built before the hand-written payload writer, from the reflective
+  * `GenericJson` models. Kept as the reference the payload writer and the JWT template are checked against.
+  */
+object GenericJsonGooglePassJwt {
+
+  private val logoImageUrl =
+    "https://www.tax.service.gov.uk/save-your-national-insurance-number/assets/images/hmrc-logo-tudor-google-pass.png"
+
+  def genericPrivatePass(id: String, issuerId: String, googlePassCard: GooglePassCard): GenericPrivatePass = {
+    val image = new Image().setSourceUri(
+      new ImageUri()
+        .setDescription("HMRC")
+        .setUri(logoImageUrl)
+    )
+
+    val textModulesData = googlePassCard.rows.get.toSeq.map { row =>
+      new TextModuleData()
+        .setBody(row.body.getOrElse(""))
+        .setId(row.id.getOrElse(""))
+        .setHeader(row.header.getOrElse(""))
+    }
+
+    def localized(value: String): LocalizedString =
+      new LocalizedString().setDefaultValue(
+        new TranslatedString()
+          .setValue(value)
+          .setLanguage(googlePassCard.language)
+      )
+
+    new GenericPrivatePass()
+      .setId(issuerId + "." + id)
+      .setHeaderLogo(image)
+      .setTitle(localized(googlePassCard.title))
+      .setType("GENERIC_PRIVATE_PASS_TYPE_UNSPECIFIED")
+      .setHeader(localized(googlePassCard.header))
+      .setTextModulesData(textModulesData.asJava)
+      .setHexBackgroundColor(googlePassCard.hexBackgroundColour)
+  }
+
+  def jwt(fields: GooglePassJwtFields, issuerId: String, origins: String, algorithm: Algorithm): String = {
+    val payload = new util.HashMap[String, Object]()
+    payload.put(
+      "genericPrivatePasses",
+      util.Arrays.asList(
+        genericPrivatePass(fields.id, issuerId, GooglePassUtil.createGooglePassCardContent(fields.name, fields.nino))
+      )
+    )
+
+    val claims = new util.HashMap[String, Object]()
+    claims.put("iss", fields.clientEmail)
+    claims.put("aud", "google")
+    claims.put("origins", Collections.singletonList(origins))
+    claims.put("typ", "savetowallet")
+    claims.put("payload", payload)
+
+    JWT.create.withExpiresAt(fields.expiresAt).withPayload(claims).sign(algorithm)
+  }
+}
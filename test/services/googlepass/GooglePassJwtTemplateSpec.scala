@@ -0,0 +1,101 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package services.googlepass
+
+import com.auth0.jwt.algorithms.Algorithm
+import com.fasterxml.jackson.databind.ObjectMapper
+import config.AppConfig
+import org.mockito.Mockito.when
+import org.scalatest.matchers.must.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+import org.scalatestplus.mockito.MockitoSugar.mock
+
+class GooglePassJwtTemplateSpec extends AnyWordSpec with Matchers {
+
+  import GooglePassJwtTemplateSpec.*
+
+  "sign" must {
+    "produce the same token as rendering and signing the GenericJson pass" in {
+      Seq(
+        fields("Test Name", "AB 12 34 56 Q"),
+        fields("Zoë O’Brien-Ünal", "AB123456Q"),
+        fields("Name \"Quoted\" \\ back\nslash\t\u0001\u001f/<>", "AB 12 34 56 Q")
+      ).foreach { passFields =>
+        template.sign(passFields, signingMaterial.algorithm) mustBe
+          GenericJsonGooglePassJwt.jwt(passFields, issuerId, origins, signingMaterial.algorithm)
+      }
+    }
+
+    "refuse an algorithm the template was not compiled for" in {
+      an[IllegalArgumentException] must be thrownBy
+        template.sign(fields("Test Name", "AB 12 34 56 Q"), Algorithm.HMAC256("secret"))
+    }
+  }
+
+  "compile" must {
+    "fail when a field is not rendered into the payload" in {
+      an[IllegalStateException] must be thrownBy
+        GooglePassJwtTemplate.compile(GooglePassJwtTemplate.RS256)(
+          passFields => renderPayload(passFields.copy(nino = "AB 12 34 56 Q")),
+          renderJwt
+        )
+    }
+  }
+
+  "escape" must {
+    "escape every character the same way as Jackson" in {
+      val mapper = new ObjectMapper()
+
+      ((0 until 0x80).map(_.toChar.toString) ++ Seq("é", "’", "•", " ", "plain text")).foreach { value =>
+        GooglePassJwtTemplate.escape(value) mustBe mapper.writeValueAsString(value).drop(1).dropRight(1)
+      }
+    }
+  }
+}
+
+object GooglePassJwtTemplateSpec {
+  private val mockAppConfig = mock[AppConfig]
+
+  private val issuerId = "test-issuer-id"
+  private val origins  = "localhost:14006"
+
+  when(mockAppConfig.googleOrigins).thenReturn(origins)
+
+  private val createGenericPrivatePass = new CreateGenericPrivatePass(mockAppConfig)
+
+  private val signingMaterial =
+    GooglePassSigningMaterialRegistry
+      .loadSigningMaterial(GooglePassSigningMaterialRegistrySpec.serviceAccountKey("issuer@test"))
+      .get
+
+  private val expiresAt = CreateGenericPrivatePass.expiresAt(10)
+
+  private def fields(name: String, nino: String): GooglePassJwtFields =
+    GooglePassJwtFields("hmrc-test-pass-id", "issuer@test", name, nino, expiresAt)
+
+  private def renderPayload(passFields: GooglePassJwtFields): String =
+    createGenericPrivatePass.createPayloadJson(
+      passFields.id,
+      issuerId,
+      GooglePassUtil.createGooglePassCardContent(passFields.name, passFields.nino)
+    )
+
+  private def renderJwt(passFields: GooglePassJwtFields, payloadClaim: String, algorithm: Algorithm): String =
+    createGenericPrivatePass.createJwt(passFields.clientEmail, payloadClaim, algorithm, passFields.expiresAt)
+
+  private val template = GooglePassJwtTemplate.compile(GooglePassJwtTemplate.RS256)(renderPayload, renderJwt)
+}
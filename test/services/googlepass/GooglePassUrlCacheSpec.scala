@@ -0,0 +1,90 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package services.googlepass
+
+import config.AppConfig
+import org.mockito.Mockito.when
+import org.scalatest.matchers.must.Matchers
+import org.scalatest.wordspec.AsyncWordSpec
+import org.scalatestplus.mockito.MockitoSugar
+import org.scalatestplus.mockito.MockitoSugar.mock
+
+import java.util.concurrent.atomic.AtomicInteger
+import scala.concurrent.{Future, Promise}
+
+class GooglePassUrlCacheSpec extends AsyncWordSpec with Matchers with MockitoSugar {
+
+  import GooglePassUrlCacheSpec.*
+
+  "getOrMint" must {
+    "share a mint that is still running between concurrent fetches" in {
+      val cache  = urlCache(refreshMarginInSeconds = 120L)
+      val mints  = new AtomicInteger()
+      val minted = Promise[String]()
+
+      val first  = cache.getOrMint(passId) { mints.incrementAndGet(); minted.future }
+      val second = cache.getOrMint(passId) { mints.incrementAndGet(); minted.future }
+      minted.success(saveUrl)
+
+      for {
+        firstUrl  <- first
+        secondUrl <- second
+      } yield {
+        mints.get() mustBe 1
+        firstUrl mustBe saveUrl
+        secondUrl mustBe saveUrl
+      }
+    }
+
+    "mint again after a failed mint" in {
+      val cache = urlCache(refreshMarginInSeconds = 120L)
+
+      cache
+        .getOrMint(passId)(Future.failed(new IllegalStateException("bad key")))
+        .failed
+        .flatMap { _ =>
+          cache.getOrMint(passId)(Future.successful(saveUrl))
+        }
+        .map { url =>
+          url mustBe saveUrl
+        }
+    }
+
+    "not reuse URLs when the refresh margin covers the whole JWT expiry" in {
+      val cache = urlCache(refreshMarginInSeconds = 600L)
+      val mints = new AtomicInteger()
+
+      for {
+        _ <- cache.getOrMint(passId) { mints.incrementAndGet(); Future.successful(saveUrl) }
+        _ <- cache.getOrMint(passId) { mints.incrementAndGet(); Future.successful(saveUrl) }
+      } yield mints.get() mustBe 2
+    }
+  }
+}
+
+object GooglePassUrlCacheSpec {
+  private val passId  = "test-pass-id-001"
+  private val saveUrl = "https://pay.google.com/gp/v/save/token"
+
+  private def urlCache(refreshMarginInSeconds: Long): GooglePassUrlCache = {
+    val config = mock[AppConfig]
+    when(config.googleJWTExpiry).thenReturn(10)
+    when(config.googlePassUrlRefreshMarginInSeconds).thenReturn(refreshMarginInSeconds)
+    when(config.googlePassUrlCacheMaxEntries).thenReturn(100L)
+    new GooglePassUrlCache(config)
+  }
+}
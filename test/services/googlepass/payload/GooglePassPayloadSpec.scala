@@ -0,0 +1,90 @@
+/*
+ * Copyright 2025 HM Revenue & Customs
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package services.googlepass.payload
+
+import com.auth0.jwt.algorithms.Algorithm
+import config.AppConfig
+import org.scalatest.matchers.must.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+import org.scalatestplus.mockito.MockitoSugar.mock
+import services.googlepass.{CreateGenericPrivatePass, GenericJsonGooglePassJwt, GooglePassJwtFields, GooglePassUtil}
+
+import java.nio.charset.StandardCharsets
+import java.util.{Base64, Date}
+
+class GooglePassPayloadSpec extends AnyWordSpec with Matchers {
+
+  import GooglePassPayloadSpec.*
+
+  "json" must {
+    "write a pass exactly as java-jwt writes the GenericJson models" in {
+      Seq(
+        ("Test Name", "AB 12 34 56 Q"),
+        ("Zoë O’Brien-Ünal", "AB123456Q"),
+        ("Name \"Quoted\" \\ back\nslash\t\u0001", "AB 12 34 56 Q")
+      ).foreach { case (name, nino) =>
+        val card     = GooglePassUtil.createGooglePassCardContent(name, nino)
+        val fields   = GooglePassJwtFields("hmrc-test-pass-id", "issuer@test", name, nino, new Date(0))
+        val expected = payloadClaimOf(GenericJsonGooglePassJwt.jwt(fields, issuerId, "localhost", Algorithm.none()))
+
+        createGenericPrivatePass.createPayloadJson(fields.id, issuerId, card) mustBe expected
+      }
+    }
+
+    "write every pass in the order given" in {
+      val pass = GenericPrivatePass(
+        header = LocalizedString(TranslatedString("en", "header")),
+        headerLogo = Image(ImageUri("logo", "https://example.com/logo.png")),
+        hexBackgroundColor = "#008985",
+        id = "issuer.one",
+        textModulesData = Seq(TextModuleData("body", "", "row1")),
+        title = LocalizedString(TranslatedString("en", "title")),
+        `type` = "GENERIC_PRIVATE_PASS_TYPE_UNSPECIFIED"
+      )
+
+      GooglePassPayload.json(Seq(pass, pass.copy(id = "issuer.two"))) mustBe
+        """{"genericPrivatePasses":[""" +
+        """{"header":{"defaultValue":{"language":"en","value":"header"}},""" +
+        """"headerLogo":{"sourceUri":{"description":"logo","uri":"https://example.com/logo.png"}},""" +
+        """"hexBackgroundColor":"#008985","id":"issuer.one",""" +
+        """"textModulesData":[{"body":"body","header":"","id":"row1"}],""" +
+        """"title":{"defaultValue":{"language":"en","value":"title"}},""" +
+        """"type":"GENERIC_PRIVATE_PASS_TYPE_UNSPECIFIED"},""" +
+        """{"header":{"defaultValue":{"language":"en","value":"header"}},""" +
+        """"headerLogo":{"sourceUri":{"description":"logo","uri":"https://example.com/logo.png"}},""" +
+        """"hexBackgroundColor":"#008985","id":"issuer.two",""" +
+        """"textModulesData":[{"body":"body","header":"","id":"row1"}],""" +
+        """"title":{"defaultValue":{"language":"en","value":"title"}},""" +
+        """"type":"GENERIC_PRIVATE_PASS_TYPE_UNSPECIFIED"}""" +
+        """]}"""
+    }
+  }
+}
+
+object GooglePassPayloadSpec {
+  private val issuerId = "test-issuer-id"
+
+  private val createGenericPrivatePass = new CreateGenericPrivatePass(mock[AppConfig])
+
+  /** The `payload` claim as java-jwt wrote it, cut from the JSON of the other claims around it. */
+  private def payloadClaimOf(jwt: String): String = {
+    val claimsJson = new String(Base64.getUrlDecoder.decode(jwt.split('.')(1)), StandardCharsets.UTF_8)
+    val start      = claimsJson.indexOf("\"payload\":") + "\"payload\":".length
+    val end        = claimsJson.indexOf("]}", start) + "]}".length
+    claimsJson.substring(start, end)
+  }
+}
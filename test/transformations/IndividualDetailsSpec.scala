@@ -18,9 +18,13 @@ package transformations
 
 import _root_.util.SpecBase
 import helper.ApiPayloadHelper
+import org.scalacheck.Gen
+import org.scalatestplus.scalacheck.ScalaCheckPropertyChecks
 import play.api.libs.json.*
 
-class IndividualDetailsSpec extends SpecBase with ApiPayloadHelper {
+import scala.util.Try
+
+class IndividualDetailsSpec extends SpecBase with ApiPayloadHelper with ScalaCheckPropertyChecks {
   import transformations.IndividualDetails.*
 
   "reads" must {
@@ -84,4 +88,79 @@ class IndividualDetailsSpec extends SpecBase with ApiPayloadHelper {
       result mustBe JsSuccess(apiTransformedIndividualDetailsJson_WithTitleType_0)
     }
   }
+
+  "singlePassReads" must {
+    "produce the same projection as reads for generated name and address histories" in {
+      forAll(genPayload) { payload =>
+        val expected = payload.validate[JsObject](IndividualDetails.reads)
+        val result   = payload.validate[JsObject](IndividualDetails.singlePassReads)
+
+        result mustBe expected
+        result.map(Json.stringify) mustBe expected.map(Json.stringify)
+      }
+    }
+
+    "fail the same way as reads for irregular name and address lists" in {
+      val main = individualDetailsApiResponseMain(crnIndicator = 1, generatedNinoWithoutSuffix, generatedNinoSuffix)
+      val name = individualDetailsApiNameSection(1, NameTypeReal, 1, Some("name1"), surname = Some("surname1"))
+      val addr = individualDetailsApiAddressSection(1, AddressTypeResidential, "addr1", "addr2")
+
+      val irregular = Seq(
+        individualDetailsApiFull(main, Seq(name - "nameType"), Seq(addr)),
+        individualDetailsApiFull(main, Seq(name, JsString("name")), Seq(addr)),
+        individualDetailsApiFull(main, Seq(name, name - "nameSequenceNumber"), Seq(addr)),
+        individualDetailsApiFull(main, Seq(name ++ Json.obj("nameType" -> "1")), Seq(addr)),
+        individualDetailsApiFull(main, Seq(name), Seq(addr - "addressLine1")),
+        individualDetailsApiFull(main, Seq(name), Seq(addr - "addressSequenceNumber")),
+        individualDetailsApiFull(main, Seq(name), Seq(addr, JsNumber(1))),
+        main ++ Json.obj("nameList" -> Json.obj("name" -> name), "addressList" -> Json.obj("address" -> addr)),
+        main
+      )
+
+      irregular.foreach { payload =>
+        val expected = Try(payload.validate[JsObject](IndividualDetails.reads))
+        val result   = Try(payload.validate[JsObject](IndividualDetails.singlePassReads))
+
+        result.toEither.left.map(_.getClass) mustBe expected.toEither.left.map(_.getClass)
+        result.toOption mustBe expected.toOption
+      }
+    }
+  }
+
+  // Narrow ranges so that generated histories regularly contain equal sequence numbers
+  private val genSequenceNumber: Gen[Int] = Gen.choose(0, 5)
+
+  private val genName: Gen[JsObject] =
+    for {
+      seqNo     <- genSequenceNumber
+      nameType  <- Gen.oneOf(NameTypeReal, NameTypeKnownAs, 3)
+      titleType <- Gen.choose(0, 7)
+      name1     <- Gen.option(Gen.alphaStr)
+      name2     <- Gen.option(Gen.alphaStr)
+      surname   <- Gen.option(Gen.alphaStr)
+      honours   <- Gen.option(Gen.oneOf("PhD", "OBE"))
+    } yield individualDetailsApiNameSection(seqNo, nameType, titleType, name1, name2, surname, honours)
+
+  private val genAddress: Gen[JsObject] =
+    for {
+      seqNo       <- genSequenceNumber
+      addressType <- Gen.oneOf(AddressTypeResidential, AddressTypeCorrespondance, 3)
+      addr1       <- Gen.alphaStr
+      addr2       <- Gen.alphaStr
+      addr3       <- Gen.option(Gen.alphaStr)
+      addr4       <- Gen.option(Gen.alphaStr)
+      addr5       <- Gen.option(Gen.alphaStr)
+      postcode    <- Gen.option(Gen.alphaNumStr)
+    } yield individualDetailsApiAddressSection(seqNo, addressType, addr1, addr2, addr3, addr4, addr5, postcode)
+
+  private val genPayload: Gen[JsObject] =
+    for {
+      crnIndicator <- Gen.oneOf(0, 1)
+      names        <- Gen.choose(0, 8).flatMap(Gen.listOfN(_, genName))
+      addresses    <- Gen.choose(0, 8).flatMap(Gen.listOfN(_, genAddress))
+    } yield individualDetailsApiFull(
+      individualDetailsApiResponseMain(crnIndicator, generatedNinoWithoutSuffix, generatedNinoSuffix),
+      names,
+      addresses
+    )
 }
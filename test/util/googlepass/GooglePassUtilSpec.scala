@@ -16,30 +16,52 @@
 
 package util.googlepass
 
-import com.google.auth.oauth2.GoogleCredentials
+import com.auth0.jwt.JWT
 import config.AppConfig
-import org.mockito.ArgumentMatchers.any
 import org.mockito.Mockito.when
 import org.scalatestplus.mockito.MockitoSugar
 import org.scalatest.matchers.must.Matchers
 import org.scalatest.wordspec.AsyncWordSpec
-import services.googlepass.{CreateGenericPrivatePass, GooglePassUtil}
+import services.googlepass.*
+
+import scala.jdk.CollectionConverters.*
+
 class GooglePassUtilSpec extends AsyncWordSpec with Matchers with MockitoSugar {
 
-  val mockConfig: AppConfig                                  = mock[AppConfig]
-  val mockCreateGenericPrivatePass: CreateGenericPrivatePass = mock[CreateGenericPrivatePass]
-  val mockGoogleCredentials: GoogleCredentials               = mock[GoogleCredentials]
+  val mockConfig: AppConfig                      = mock[AppConfig]
+  val signingMaterial: GooglePassSigningMaterial =
+    GooglePassSigningMaterialRegistry
+      .loadSigningMaterial(GooglePassSigningMaterialRegistrySpec.serviceAccountKey("issuer@test"))
+      .get
+  val passId: String                             = "test-pass-id"
 
   when(mockConfig.googleAddUrl).thenReturn("https://pay.google.com/gp/v/save/")
-  when(mockCreateGenericPrivatePass.createJwtWithCredentials(any, any, any, any, any)).thenReturn("testJwt")
+  when(mockConfig.googleIssuerId).thenReturn("test-issuer-id")
+  when(mockConfig.googleJWTExpiry).thenReturn(10)
+  when(mockConfig.googleOrigins).thenReturn("localhost:14006")
 
-  lazy val googlePassUtil: GooglePassUtil = new GooglePassUtil(mockConfig, mockCreateGenericPrivatePass)
+  lazy val googlePassUtil: GooglePassUtil = new GooglePassUtil(mockConfig, new CreateGenericPrivatePass(mockConfig))
 
   "GooglePassUtil createGooglePass" must {
     "must return valid url" in {
-      val result = googlePassUtil.createGooglePassWithCredentials("test name", "AB 01 23 45 C", mockGoogleCredentials)
+      val result =
+        googlePassUtil.createGooglePassWithCredentials(passId, "test name", "AB 01 23 45 C", signingMaterial)
+
+      result must startWith("https://pay.google.com/gp/v/save/")
+      JWT.decode(result.stripPrefix("https://pay.google.com/gp/v/save/")).getIssuer mustBe "issuer@test"
+    }
+
+    "must derive the pass object id from the pass id" in {
+      val result =
+        googlePassUtil.createGooglePassWithCredentials(passId, "test name", "AB 01 23 45 C", signingMaterial)
+
+      val payload = JWT
+        .decode(result.stripPrefix("https://pay.google.com/gp/v/save/"))
+        .getClaim("payload")
+        .asMap()
+      val passes  = payload.get("genericPrivatePasses").asInstanceOf[java.util.List[java.util.Map[String, Any]]].asScala
 
-      result mustBe "https://pay.google.com/gp/v/save/testJwt"
+      passes.map(_.get("id")) mustBe Seq("test-issuer-id.hmrc-test-pass-id")
     }
   }
 }